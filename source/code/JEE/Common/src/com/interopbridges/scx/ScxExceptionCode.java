@@ -126,6 +126,15 @@ public class ScxExceptionCode implements Serializable {
     
     public static final ScxExceptionCode ERROR_INVOKE_PARAM_EMPTY = new ScxExceptionCode(
     "ERROR_INVOKE_PARAM_EMPTY");
+
+    public static final ScxExceptionCode ERROR_INVALID_CURSOR = new ScxExceptionCode(
+    "ERROR_INVALID_CURSOR");
+
+    public static final ScxExceptionCode ERROR_QUERY_COST_EXCEEDS_LIMITS = new ScxExceptionCode(
+    "ERROR_QUERY_COST_EXCEEDS_LIMITS");
+
+    public static final ScxExceptionCode ERROR_QUERY_COST_QUEUE_TIMEOUT = new ScxExceptionCode(
+    "ERROR_QUERY_COST_QUEUE_TIMEOUT");
     
     /**
      * <p>
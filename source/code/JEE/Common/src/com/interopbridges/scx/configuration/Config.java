@@ -16,6 +16,8 @@
 
 package com.interopbridges.scx.configuration;
 
+import java.util.MissingResourceException;
+
 import com.interopbridges.scx.configuration.ConfigBundle;
 import com.interopbridges.scx.configuration.ConfigKey;
 
@@ -62,4 +64,91 @@ public class Config
     {
         return ConfigBundle.getBundle(resourceBundleName).getString(_key);
     }
-}
\ No newline at end of file
+
+  /**
+    * <p>
+    * Return the value in the property file for the key. If the key is not
+    * present in the property file the given default is returned instead.
+    * </p>
+    *
+    * @param defaultValue
+    *            Value to use when the key cannot be read.
+    */
+    public String getStringValue(String defaultValue) 
+    {
+        try
+        {
+            String value = getValue();
+            return value == null ? defaultValue : value.trim();
+        }
+        catch (MissingResourceException e)
+        {
+            return defaultValue;
+        }
+    }
+
+  /**
+    * <p>
+    * Return the value in the property file for the key as a long. If the key
+    * is not present in the property file, or the value is not a number, the
+    * given default is returned instead.
+    * </p>
+    *
+    * @param defaultValue
+    *            Value to use when the key cannot be read.
+    */
+    public long getLongValue(long defaultValue) 
+    {
+        try
+        {
+            String value = getValue();
+            return value == null ? defaultValue : Long.parseLong(value.trim());
+        }
+        catch (MissingResourceException e)
+        {
+            return defaultValue;
+        }
+        catch (NumberFormatException e)
+        {
+            return defaultValue;
+        }
+    }
+
+  /**
+    * <p>
+    * Return the value in the property file for the key as an int. If the key
+    * is not present in the property file, or the value is not a number, the
+    * given default is returned instead.
+    * </p>
+    *
+    * @param defaultValue
+    *            Value to use when the key cannot be read.
+    */
+    public int getIntValue(int defaultValue) 
+    {
+        return (int) getLongValue(defaultValue);
+    }
+
+  /**
+    * <p>
+    * Return the value in the property file for the key as a boolean. If the
+    * key is not present in the property file the given default is returned
+    * instead.
+    * </p>
+    *
+    * @param defaultValue
+    *            Value to use when the key cannot be read.
+    */
+    public boolean getBooleanValue(boolean defaultValue) 
+    {
+        try
+        {
+            String value = getValue();
+            return value == null ? defaultValue : Boolean.valueOf(value.trim()).booleanValue();
+        }
+        catch (MissingResourceException e)
+        {
+            return defaultValue;
+        }
+    }
+}
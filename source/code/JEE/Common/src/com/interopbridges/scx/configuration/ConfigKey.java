@@ -27,6 +27,34 @@ package com.interopbridges.scx.configuration;
 public class ConfigKey {
         
     public static final ConfigKey ABS_MAX_XML_SIZE = new ConfigKey("ABS_MAX_XML_SIZE");
+    
+    public static final ConfigKey STORE_QUARANTINE_THRESHOLD = new ConfigKey("STORE_QUARANTINE_THRESHOLD");
+    
+    public static final ConfigKey STORE_QUARANTINE_BACKOFF = new ConfigKey("STORE_QUARANTINE_BACKOFF");
+    
+    public static final ConfigKey STORE_QUARANTINE_MAX_BACKOFF = new ConfigKey("STORE_QUARANTINE_MAX_BACKOFF");
+    
+    public static final ConfigKey OBJECTNAME_CACHE_SIZE = new ConfigKey("OBJECTNAME_CACHE_SIZE");
+    
+    public static final ConfigKey OBJECTNAME_INDEX_ENABLED = new ConfigKey("OBJECTNAME_INDEX_ENABLED");
+    
+    public static final ConfigKey STATS_SAMPLE_INTERVAL = new ConfigKey("STATS_SAMPLE_INTERVAL");
+    
+    public static final ConfigKey THREAD_ACTIVITY_TOP_N = new ConfigKey("THREAD_ACTIVITY_TOP_N");
+    
+    public static final ConfigKey PROMETHEUS_MBEAN_PATTERNS = new ConfigKey("PROMETHEUS_MBEAN_PATTERNS");
+    
+    public static final ConfigKey PROMETHEUS_STATS_GROUPS = new ConfigKey("PROMETHEUS_STATS_GROUPS");
+    
+    public static final ConfigKey STATS_CACHE_TTL = new ConfigKey("STATS_CACHE_TTL");
+    
+    public static final ConfigKey QUERY_COST_THRESHOLD = new ConfigKey("QUERY_COST_THRESHOLD");
+    
+    public static final ConfigKey QUERY_COST_POLICY = new ConfigKey("QUERY_COST_POLICY");
+    
+    public static final ConfigKey QUERY_COST_QUEUE_SIZE = new ConfigKey("QUERY_COST_QUEUE_SIZE");
+    
+    public static final ConfigKey QUERY_COST_QUEUE_TIMEOUT = new ConfigKey("QUERY_COST_QUEUE_TIMEOUT");
 
       
     /**
@@ -315,7 +315,7 @@ public class JMXFilterParameters
              }
              catch(MalformedObjectNameException e)
              {
-                 this._logger.fine(new StringBuffer("The exclusion MBeanObjectName does not equate to a JMX query : ").append(entry.getKey()).toString());
+                 this._logger.fine("The exclusion MBeanObjectName does not equate to a JMX query : {0}", entry.getKey());
              }
          }
          return results;
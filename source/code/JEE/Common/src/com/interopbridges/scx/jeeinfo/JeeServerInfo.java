@@ -17,16 +17,10 @@
 package com.interopbridges.scx.jeeinfo;
 
 import java.util.Iterator;
-import java.util.List;
-import java.util.Set;
-
-import javax.management.ObjectInstance;
-import javax.management.ObjectName;
 
 import com.interopbridges.scx.jeestats.GenericStatistics;
 import com.interopbridges.scx.jeestats.Statistic;
 import com.interopbridges.scx.jeestats.StatisticMethod;
-import com.interopbridges.scx.jmx.IJMX;
 import com.interopbridges.scx.jmx.JBossJMXAbstraction;
 import com.interopbridges.scx.jmx.JdkJMXAbstraction;
 import com.interopbridges.scx.jmx.JmxStores;
@@ -34,7 +28,6 @@ import com.interopbridges.scx.jmx.WebSphereJMXAbstraction;
 import com.interopbridges.scx.jmx.WeblogicRuntimeJMXAbstraction;
 import com.interopbridges.scx.log.ILogger;
 import com.interopbridges.scx.log.LoggingFactory;
-import com.interopbridges.scx.util.JmxConstant;
 
 
 /**
@@ -51,6 +44,12 @@ import com.interopbridges.scx.util.JmxConstant;
  * The return values are read only and cannot be modified.
  * </p>
  * 
+ * <p>
+ * The server name and version are taken from the ServerFingerprint that
+ * JmxStores builds when the stores are added, so the server is not detected
+ * again for every request.
+ * </p>
+ * 
  * @author Geoff Erasmus
  * 
  */
@@ -116,62 +115,7 @@ public class JeeServerInfo extends GenericStatistics
     @StatisticMethod
     public Statistic getAppServerName()
     {
-        List<IJMX> lijmx = JmxStores.getListOfJmxStoreAbstractions();
-        List<String> names = JmxStores.getListOfJmxStoreAbstractionNames();
-        String ServerName=null;
-
-        /*
-         * We need to cycle through the JMX stores to find the platform specific values
-         * one we find the correct store break out of the loop and return the value
-         */
-        if(lijmx.size() > 0)
-        {
-            // If there are multiple MBean stores the first one is a specific application server instance
-            // and the second would be the JDK MBean store.
-            IJMX ijmx = lijmx.get(0);
-            
-            if(names.size() > 0)
-            {
-                String storename = names.get(0);
-            
-                if(storename.compareTo(JmxConstant.JBOSS_MBEAN_STORE_NAME)==0)
-				{
-					// If there is a jboss store we determine if it is a jboss 7 or wildfly instance vs jboss 4/5/6
-					// Because there is no JMX accessible property detailing server name for jboss 7 or widlfly
-					// we have to use the version to determine correct label to assign
-					// Version 7 = JBoss AS Version 8 = Wildfly
-					if(JmxConstant.IS_JBOSS7_WILDFLY == true)
-					{
-						String serverVersion = getJMXAttribute(ijmx, "jboss.as:management-root=server,*", "releaseVersion");
-						int majorVersion = Character.getNumericValue(serverVersion.charAt(0));
-
-						if(majorVersion == 7)
-							ServerName = "JBoss AS";
-						else
-						if(majorVersion == 8)
-							ServerName = "Wildfly";
-					}
-					else
-						ServerName = getJMXAttribute(ijmx, "jboss.management.local:j2eeType=J2EEServer,*", "serverVendor");
-                }
-                else
-                if(storename.compareTo(JmxConstant.TOMCAT_MBEAN_STORE_NAME)==0)
-                {
-                    ServerName = getJMXAttribute(ijmx, "Catalina:type=Server,*", "serverInfo");
-                }
-                else
-                if(storename.compareTo(JmxConstant.WEBLOGIC_MBEAN_STORE_NAME)==0)
-                {
-                    ServerName = getJMXAttribute(ijmx, "com.bea:Type=ServerRuntime,*", "WeblogicVersion");
-                }
-                else
-                if(storename.compareTo(JmxConstant.WEBSPHERE_MBEAN_STORE_NAME)==0)
-                {
-                    ServerName = getJMXAttribute(ijmx, "WebSphere:j2eeType=J2EEServer,*", "platformName");
-                }
-            }            
-        }
-        
+        String ServerName = JmxStores.getServerFingerprint().getAppServerName();
         return   ServerName!=null ? new Statistic(AppServerName, String.class, ServerName) : null;
     }
     
@@ -195,79 +139,7 @@ public class JeeServerInfo extends GenericStatistics
     @StatisticMethod
     public Statistic getVersion()
     {
-        List<IJMX> lijmx = JmxStores.getListOfJmxStoreAbstractions();
-        List<String> names = JmxStores.getListOfJmxStoreAbstractionNames();
-        String ServerVersion=null;
-        
-        if(lijmx.size() > 0)
-        {
-            // If there are multiple MBean stores the first one is a specific application server instance
-            // and the second would be the JDK MBean store.
-            IJMX ijmx = lijmx.get(0);
-            
-            if(names.size() > 0)
-            {
-                String storename = names.get(0);
-            
-                if(storename.compareTo(JmxConstant.JBOSS_MBEAN_STORE_NAME)==0)
-                {
-					// If there is a jboss store we determine if it is a jboss 7 or wildfly instance vs jboss 4/5/6
-
-					if(JmxConstant.IS_JBOSS7_WILDFLY == true)
-					{
-						ServerVersion = getJMXAttribute(ijmx, "jboss.as:management-root=server,*", "releaseVersion");
-					}
-					else
-						ServerVersion = getJMXAttribute(ijmx, "jboss.management.local:j2eeType=J2EEServer,*", "serverVersion");
-				}
-                else
-                if(storename.compareTo(JmxConstant.WEBSPHERE_MBEAN_STORE_NAME)==0)
-                {
-                    ServerVersion = getJMXAttribute(ijmx, "WebSphere:j2eeType=J2EEServer,*", "platformVersion");
-                }
-            }            
-        }
+        String ServerVersion = JmxStores.getServerFingerprint().getAppServerVersion();
         return   ServerVersion!=null ? new Statistic(AppServerVersion, String.class, ServerVersion) : null;
     }
-
-    /**
-     * <p>
-     * Retrieves an attribute from a JMX store
-     * </p>
-     * 
-     * @param store
-     *          The JMX store to query.
-     * @param MBeanQuery
-     *          The JMX query specifying the MBean from 
-     *          which to retrieve the attribute.
-     * @param attributeName
-     *          The name of the attribute to query.
-     * 
-     * @return the attribute value of null if an error occurs 
-     */    
-    private String getJMXAttribute(IJMX store, String MBeanQuery, String attributeName)
-    {
-        String attrVal=null;
-        try
-        {
-            ObjectName objName = new ObjectName(MBeanQuery);
-            Set<ObjectInstance> oi = store.queryMBeans(objName,null);
-            /* 
-             * There is a remote possibility that there can be multiple MBeans returned by the query
-             * We will not iterate through all of them, but only use the first MBean returned.  
-             */
-            attrVal = store.getAttribute(oi.iterator().next().getObjectName(),attributeName).toString();
-        }
-        catch(Exception e)
-        {
-            this._logger.finer(new StringBuffer(
-                "Unable to retrieve the attribute (").
-                append(attributeName).append(") for the ").
-                append(store.getClass().getName()).
-                append(" Mbean store. ").
-                append("Error reason:").
-                append(e.getMessage()).toString());
-        }
-        return attrVal;
-    }
 }
@@ -0,0 +1,602 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Metrics of the cost of BeanSpy itself: the latency, bytes written and
+ * failures of the requests to each endpoint, the MBeans and attributes read,
+ * the time spent in each JMX store, the errors by ScxExceptionCode and the
+ * number of requests being served.
+ * </p>
+ *
+ * <p>
+ * The counters are StripedCounters and the latency histograms fixed arrays
+ * of power of two buckets, so recording is lock free and allocates nothing
+ * once a store or error code has been seen. The metrics are reported by the
+ * /Stats/BeanSpy statistics group and by the MBean registered as
+ * OBJECT_NAME.
+ * </p>
+ *
+ */
+public class BeanSpyMetrics implements BeanSpyMetricsMBean
+{
+    /**
+     * <p>
+     * Name the metrics MBean is registered under.
+     * </p>
+     */
+    public static final String OBJECT_NAME = "com.interopbridges.scx.beanspy:type=Metrics";
+
+    /**
+     * <p>
+     * Endpoint of the /MBeans requests.
+     * </p>
+     */
+    public static final int MBEANS = 0;
+
+    /**
+     * <p>
+     * Endpoint of the /Invoke requests.
+     * </p>
+     */
+    public static final int INVOKE = 1;
+
+    /**
+     * <p>
+     * Endpoint of the /Stats requests.
+     * </p>
+     */
+    public static final int STATS = 2;
+
+    /**
+     * <p>
+     * Endpoint of the /Metrics requests.
+     * </p>
+     */
+    public static final int METRICS = 3;
+
+    /**
+     * <p>
+     * Names of the endpoints, by endpoint.
+     * </p>
+     */
+    private static final String[] ENDPOINT_NAMES = { "MBeans", "Invoke", "Stats", "Metrics" };
+
+    /**
+     * <p>
+     * Error code reported for errors that are not ScxExceptions.
+     * </p>
+     */
+    static final String OTHER_ERROR = "OTHER";
+
+    /**
+     * <p>
+     * The metrics shared by all requests.
+     * </p>
+     */
+    private static final BeanSpyMetrics _inst = new BeanSpyMetrics();
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * The metrics of each endpoint, by endpoint.
+     * </p>
+     */
+    private final Endpoint[] _endpoints;
+
+    /**
+     * <p>
+     * Number of requests being served.
+     * </p>
+     */
+    private final StripedCounter _inFlight = new StripedCounter();
+
+    /**
+     * <p>
+     * Number of MBeans rendered.
+     * </p>
+     */
+    private final StripedCounter _mbeansVisited = new StripedCounter();
+
+    /**
+     * <p>
+     * Number of attributes read.
+     * </p>
+     */
+    private final StripedCounter _attributesFetched = new StripedCounter();
+
+    /**
+     * <p>
+     * Number of errors by error code.
+     * </p>
+     */
+    private final ConcurrentHashMap<String, StripedCounter> _errors = new ConcurrentHashMap<String, StripedCounter>();
+
+    /**
+     * <p>
+     * The metrics of each JMX store, by class of the store.
+     * </p>
+     */
+    private final ConcurrentHashMap<Class<?>, Store> _stores = new ConcurrentHashMap<Class<?>, Store>();
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     */
+    BeanSpyMetrics()
+    {
+        this._logger = LoggingFactory.getLogger();
+        this._endpoints = new Endpoint[ENDPOINT_NAMES.length];
+        for (int i = 0; i < ENDPOINT_NAMES.length; i++)
+        {
+            this._endpoints[i] = new Endpoint(ENDPOINT_NAMES[i]);
+        }
+    }
+
+    /**
+     * <p>
+     * Get the metrics shared by all requests.
+     * </p>
+     */
+    public static BeanSpyMetrics getInstance()
+    {
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * Register the metrics MBean in the platform MBean server, if it is not
+     * registered already.
+     * </p>
+     */
+    public synchronized void register()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name))
+            {
+                server.registerMBean(this, name);
+            }
+        }
+        catch (Exception e)
+        {
+            this._logger.fine(new StringBuffer("Unable to register the BeanSpy metrics MBean: ")
+                    .append(e.getMessage()).toString());
+        }
+    }
+
+    /**
+     * <p>
+     * Unregister the metrics MBean from the platform MBean server.
+     * </p>
+     */
+    public synchronized void unregister()
+    {
+        try
+        {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name))
+            {
+                server.unregisterMBean(name);
+            }
+        }
+        catch (Exception e)
+        {
+            this._logger.fine(new StringBuffer("Unable to unregister the BeanSpy metrics MBean: ")
+                    .append(e.getMessage()).toString());
+        }
+    }
+
+    /**
+     * <p>
+     * Record the start of a request.
+     * </p>
+     *
+     * @return The start time to pass to requestFinished
+     */
+    public long requestStarted()
+    {
+        this._inFlight.increment();
+        return System.nanoTime();
+    }
+
+    /**
+     * <p>
+     * Record the end of a request.
+     * </p>
+     *
+     * @param endpoint
+     *            MBEANS, INVOKE, STATS or METRICS
+     * @param start
+     *            The value returned by requestStarted
+     * @param bytesWritten
+     *            Number of bytes of the response
+     * @param failed
+     *            Whether the request failed
+     */
+    public void requestFinished(int endpoint, long start, long bytesWritten, boolean failed)
+    {
+        this._inFlight.decrement();
+        this._endpoints[endpoint].record((System.nanoTime() - start) / 1000, bytesWritten, failed);
+    }
+
+    /**
+     * <p>
+     * Record an error reported to a client, by the ScxExceptionCode of the
+     * ScxException causing it.
+     * </p>
+     *
+     * @param cause
+     *            The error, may be null
+     */
+    public void recordError(Throwable cause)
+    {
+        String code = OTHER_ERROR;
+        if (cause instanceof ScxException && ((ScxException) cause).getExceptionCode() != null)
+        {
+            code = ((ScxException) cause).getExceptionCode().getCode();
+        }
+        StripedCounter counter = this._errors.get(code);
+        if (counter == null)
+        {
+            this._errors.putIfAbsent(code, new StripedCounter());
+            counter = this._errors.get(code);
+        }
+        counter.increment();
+    }
+
+    /**
+     * <p>
+     * Record an MBean rendered in a response.
+     * </p>
+     */
+    public void recordMBeanVisited()
+    {
+        this._mbeansVisited.increment();
+    }
+
+    /**
+     * <p>
+     * Record an attribute read from a JMX store.
+     * </p>
+     *
+     * @param store
+     *            The JMX store
+     * @param nanos
+     *            Time spent reading the attribute
+     */
+    public void recordAttributeFetched(Object store, long nanos)
+    {
+        this._attributesFetched.increment();
+        Store counters = getStore(store);
+        counters._attributeFetches.increment();
+        counters._attributeMicros.add(nanos / 1000);
+    }
+
+    /**
+     * <p>
+     * Record a query of a JMX store.
+     * </p>
+     *
+     * @param store
+     *            The JMX store
+     * @param nanos
+     *            Time spent running the query
+     */
+    public void recordStoreQuery(Object store, long nanos)
+    {
+        Store counters = getStore(store);
+        counters._queries.increment();
+        counters._queryMicros.add(nanos / 1000);
+    }
+
+    /**
+     * <p>
+     * Get the metrics of each endpoint.
+     * </p>
+     */
+    public Endpoint[] getEndpoints()
+    {
+        return this._endpoints.clone();
+    }
+
+    /**
+     * <p>
+     * Get the metrics of each JMX store queried so far.
+     * </p>
+     */
+    public List<Store> getStores()
+    {
+        return new ArrayList<Store>(this._stores.values());
+    }
+
+    /**
+     * <p>
+     * Get the number of errors by error code, sorted by error code.
+     * </p>
+     */
+    public Map<String, Long> getErrors()
+    {
+        Map<String, Long> errors = new TreeMap<String, Long>();
+        for (Map.Entry<String, StripedCounter> error : this._errors.entrySet())
+        {
+            errors.put(error.getKey(), Long.valueOf(error.getValue().sum()));
+        }
+        return errors;
+    }
+
+    /*
+     * BeanSpyMetricsMBean
+     */
+
+    public long getInFlightRequests()
+    {
+        return this._inFlight.sum();
+    }
+
+    public long getMBeansVisited()
+    {
+        return this._mbeansVisited.sum();
+    }
+
+    public long getAttributesFetched()
+    {
+        return this._attributesFetched.sum();
+    }
+
+    public long getErrorCount()
+    {
+        long count = 0;
+        for (StripedCounter counter : this._errors.values())
+        {
+            count += counter.sum();
+        }
+        return count;
+    }
+
+    public long getBytesWritten()
+    {
+        long bytes = 0;
+        for (int i = 0; i < this._endpoints.length; i++)
+        {
+            bytes += this._endpoints[i].getBytesWritten();
+        }
+        return bytes;
+    }
+
+    public long getMBeansRequestCount()
+    {
+        return this._endpoints[MBEANS].getRequestCount();
+    }
+
+    public long getMBeansLatencyP99()
+    {
+        return this._endpoints[MBEANS].getLatencyPercentile(99);
+    }
+
+    public long getInvokeRequestCount()
+    {
+        return this._endpoints[INVOKE].getRequestCount();
+    }
+
+    public long getInvokeLatencyP99()
+    {
+        return this._endpoints[INVOKE].getLatencyPercentile(99);
+    }
+
+    public long getStatsRequestCount()
+    {
+        return this._endpoints[STATS].getRequestCount();
+    }
+
+    public long getStatsLatencyP99()
+    {
+        return this._endpoints[STATS].getLatencyPercentile(99);
+    }
+
+    /**
+     * <p>
+     * Get the metrics of a store, creating them the first time the store is
+     * seen.
+     * </p>
+     */
+    private Store getStore(Object store)
+    {
+        Class<?> type = store.getClass();
+        Store counters = this._stores.get(type);
+        if (counters == null)
+        {
+            this._stores.putIfAbsent(type, new Store(type.getSimpleName()));
+            counters = this._stores.get(type);
+        }
+        return counters;
+    }
+
+    /**
+     * <p>
+     * Metrics of the requests to one endpoint. The latencies are kept in a
+     * histogram of power of two buckets of microseconds, the percentiles are
+     * accurate to a power of two.
+     * </p>
+     */
+    public static final class Endpoint
+    {
+        private final String _name;
+        private final StripedCounter _requests = new StripedCounter();
+        private final StripedCounter _failures = new StripedCounter();
+        private final StripedCounter _bytes = new StripedCounter();
+        private final AtomicLongArray _latencies = new AtomicLongArray(GCPauseRecorder.BUCKETS);
+        private final AtomicLong _maxLatency = new AtomicLong();
+
+        Endpoint(String name)
+        {
+            this._name = name;
+        }
+
+        void record(long micros, long bytes, boolean failed)
+        {
+            this._requests.increment();
+            this._bytes.add(bytes);
+            if (failed)
+            {
+                this._failures.increment();
+            }
+            this._latencies.incrementAndGet(GCPauseRecorder.bucket(micros));
+            long max = this._maxLatency.get();
+            while (micros > max && !this._maxLatency.compareAndSet(max, micros))
+            {
+                max = this._maxLatency.get();
+            }
+        }
+
+        /** Name of the endpoint */
+        public String getName()
+        {
+            return this._name;
+        }
+
+        /** Number of requests served */
+        public long getRequestCount()
+        {
+            return this._requests.sum();
+        }
+
+        /** Number of requests that failed */
+        public long getFailureCount()
+        {
+            return this._failures.sum();
+        }
+
+        /** Number of bytes written */
+        public long getBytesWritten()
+        {
+            return this._bytes.sum();
+        }
+
+        /** Longest request in microseconds */
+        public long getMaxLatency()
+        {
+            return this._maxLatency.get();
+        }
+
+        /**
+         * Latency in microseconds under which the given percentage of the
+         * requests completed, 0 if no request was served.
+         */
+        public long getLatencyPercentile(int percent)
+        {
+            long[] counts = new long[GCPauseRecorder.BUCKETS];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++)
+            {
+                counts[i] = this._latencies.get(i);
+                total += counts[i];
+            }
+            if (total == 0)
+            {
+                return 0;
+            }
+            long rank = (total * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++)
+            {
+                seen += counts[i];
+                if (seen >= rank)
+                {
+                    return Math.min(GCPauseRecorder.upperBound(i), getMaxLatency());
+                }
+            }
+            return getMaxLatency();
+        }
+    }
+
+    /**
+     * <p>
+     * Time spent in one JMX store.
+     * </p>
+     */
+    public static final class Store
+    {
+        private final String _name;
+        private final StripedCounter _queries = new StripedCounter();
+        private final StripedCounter _queryMicros = new StripedCounter();
+        private final StripedCounter _attributeFetches = new StripedCounter();
+        private final StripedCounter _attributeMicros = new StripedCounter();
+
+        Store(String name)
+        {
+            this._name = name;
+        }
+
+        /** Name of the store class */
+        public String getName()
+        {
+            return this._name;
+        }
+
+        /** Number of queries run */
+        public long getQueryCount()
+        {
+            return this._queries.sum();
+        }
+
+        /** Time spent running queries in microseconds */
+        public long getQueryTime()
+        {
+            return this._queryMicros.sum();
+        }
+
+        /** Number of attributes read */
+        public long getAttributeCount()
+        {
+            return this._attributeFetches.sum();
+        }
+
+        /** Time spent reading attributes in microseconds */
+        public long getAttributeTime()
+        {
+            return this._attributeMicros.sum();
+        }
+    }
+}
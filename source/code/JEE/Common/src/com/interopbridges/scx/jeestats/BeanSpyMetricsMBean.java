@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+/**
+ * <p>
+ * Management interface of the BeanSpy request metrics. The complete set of
+ * metrics, per endpoint, store and error code, is returned by the
+ * /Stats/BeanSpy statistics group.
+ * </p>
+ *
+ */
+public interface BeanSpyMetricsMBean
+{
+    /**
+     * @return Number of requests being served
+     */
+    public long getInFlightRequests();
+
+    /**
+     * @return Number of MBeans rendered since BeanSpy started
+     */
+    public long getMBeansVisited();
+
+    /**
+     * @return Number of MBean attributes read since BeanSpy started
+     */
+    public long getAttributesFetched();
+
+    /**
+     * @return Number of errors reported to clients since BeanSpy started
+     */
+    public long getErrorCount();
+
+    /**
+     * @return Number of bytes written to clients since BeanSpy started
+     */
+    public long getBytesWritten();
+
+    /**
+     * @return Number of /MBeans requests served
+     */
+    public long getMBeansRequestCount();
+
+    /**
+     * @return 99th percentile latency of the /MBeans requests in microseconds
+     */
+    public long getMBeansLatencyP99();
+
+    /**
+     * @return Number of /Invoke requests served
+     */
+    public long getInvokeRequestCount();
+
+    /**
+     * @return 99th percentile latency of the /Invoke requests in microseconds
+     */
+    public long getInvokeLatencyP99();
+
+    /**
+     * @return Number of /Stats requests served
+     */
+    public long getStatsRequestCount();
+
+    /**
+     * @return 99th percentile latency of the /Stats requests in microseconds
+     */
+    public long getStatsLatencyP99();
+}
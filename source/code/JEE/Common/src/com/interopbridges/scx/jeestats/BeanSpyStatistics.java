@@ -0,0 +1,227 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.util.Map;
+
+/**
+ * <p>
+ * Reports the BeanSpyMetrics, the cost of BeanSpy itself.
+ * </p>
+ *
+ * <p>
+ * The first group of properties holds the totals (requests being served,
+ * MBeans rendered and attributes read). It is followed by a group per
+ * endpoint with its request count, failures, bytes written and latency
+ * percentiles in microseconds, a group per JMX store with the time spent
+ * querying it and reading attributes from it, and a group per error code.
+ * </p>
+ *
+ */
+public class BeanSpyStatistics extends GenericStatistics
+{
+    /**
+     * <p>
+     * Group name for this type of statistic
+     * </p>
+     */
+    private static final String StatisticGroupname = "BeanSpy";
+
+    /**
+     * <p>
+     * Name identifying the number of requests being served
+     * </p>
+     */
+    private static final String InFlightRequests = "InFlightRequests";
+
+    /**
+     * <p>
+     * Name identifying the number of MBeans rendered
+     * </p>
+     */
+    private static final String MBeansVisited = "MBeansVisited";
+
+    /**
+     * <p>
+     * Name identifying the number of MBean attributes read
+     * </p>
+     */
+    private static final String AttributesFetched = "AttributesFetched";
+
+    /**
+     * <p>
+     * Name identifying the endpoint (MBeans, Invoke or Stats)
+     * </p>
+     */
+    private static final String Endpoint = "Endpoint";
+
+    /**
+     * <p>
+     * Name identifying the number of requests served by the endpoint
+     * </p>
+     */
+    private static final String RequestCount = "RequestCount";
+
+    /**
+     * <p>
+     * Name identifying the number of requests of the endpoint that failed
+     * </p>
+     */
+    private static final String FailureCount = "FailureCount";
+
+    /**
+     * <p>
+     * Name identifying the number of bytes written by the endpoint
+     * </p>
+     */
+    private static final String BytesWritten = "BytesWritten";
+
+    /**
+     * <p>
+     * Name identifying the median latency of the endpoint in microseconds
+     * </p>
+     */
+    private static final String LatencyP50 = "LatencyP50";
+
+    /**
+     * <p>
+     * Name identifying the 99th percentile latency of the endpoint in microseconds
+     * </p>
+     */
+    private static final String LatencyP99 = "LatencyP99";
+
+    /**
+     * <p>
+     * Name identifying the longest request of the endpoint in microseconds
+     * </p>
+     */
+    private static final String LatencyMax = "LatencyMax";
+
+    /**
+     * <p>
+     * Name identifying the JMX store
+     * </p>
+     */
+    private static final String StoreName = "StoreName";
+
+    /**
+     * <p>
+     * Name identifying the number of queries run on the store
+     * </p>
+     */
+    private static final String QueryCount = "QueryCount";
+
+    /**
+     * <p>
+     * Name identifying the time spent querying the store in microseconds
+     * </p>
+     */
+    private static final String QueryTime = "QueryTime";
+
+    /**
+     * <p>
+     * Name identifying the number of attributes read from the store
+     * </p>
+     */
+    private static final String GetAttributeCount = "GetAttributeCount";
+
+    /**
+     * <p>
+     * Name identifying the time spent reading attributes from the store in microseconds
+     * </p>
+     */
+    private static final String GetAttributeTime = "GetAttributeTime";
+
+    /**
+     * <p>
+     * Name identifying the ScxExceptionCode of the errors
+     * </p>
+     */
+    private static final String ErrorCode = "ErrorCode";
+
+    /**
+     * <p>
+     * Name identifying the number of errors with the error code
+     * </p>
+     */
+    private static final String ErrorCount = "ErrorCount";
+
+    /**
+     * <p>
+     * Default constructor
+     * </p>
+     */
+    public BeanSpyStatistics()
+    {
+       super(StatisticGroupname);
+    }
+
+    /**
+     * <p>
+     * Retrieves the BeanSpy metrics
+     * </p>
+     *
+     * @return a StatisticGroup containing the totals, then a group of
+     *         statistics per endpoint, store and error code
+     */
+    public StatisticGroup getStats()
+    {
+        BeanSpyMetrics metrics = BeanSpyMetrics.getInstance();
+        StatisticGroup _statsgrp = new StatisticGroup(_name);
+
+        StatisticItemGroup _statsitemgrp = new StatisticItemGroup();
+        _statsitemgrp.addStatistic(new LongStatistic(InFlightRequests, long.class, metrics.getInFlightRequests()));
+        _statsitemgrp.addStatistic(new LongStatistic(MBeansVisited, long.class, metrics.getMBeansVisited()));
+        _statsitemgrp.addStatistic(new LongStatistic(AttributesFetched, long.class, metrics.getAttributesFetched()));
+        _statsgrp.addStatisticItemGroup(_statsitemgrp);
+
+        BeanSpyMetrics.Endpoint[] endpoints = metrics.getEndpoints();
+        for (int i = 0; i < endpoints.length; i++)
+        {
+            _statsitemgrp = new StatisticItemGroup();
+            _statsitemgrp.addStatistic(new Statistic(Endpoint, String.class, endpoints[i].getName()));
+            _statsitemgrp.addStatistic(new LongStatistic(RequestCount, long.class, endpoints[i].getRequestCount()));
+            _statsitemgrp.addStatistic(new LongStatistic(FailureCount, long.class, endpoints[i].getFailureCount()));
+            _statsitemgrp.addStatistic(new LongStatistic(BytesWritten, long.class, endpoints[i].getBytesWritten()));
+            _statsitemgrp.addStatistic(new LongStatistic(LatencyP50, long.class, endpoints[i].getLatencyPercentile(50)));
+            _statsitemgrp.addStatistic(new LongStatistic(LatencyP99, long.class, endpoints[i].getLatencyPercentile(99)));
+            _statsitemgrp.addStatistic(new LongStatistic(LatencyMax, long.class, endpoints[i].getMaxLatency()));
+            _statsgrp.addStatisticItemGroup(_statsitemgrp);
+        }
+
+        for (BeanSpyMetrics.Store store : metrics.getStores())
+        {
+            _statsitemgrp = new StatisticItemGroup();
+            _statsitemgrp.addStatistic(new Statistic(StoreName, String.class, store.getName()));
+            _statsitemgrp.addStatistic(new LongStatistic(QueryCount, long.class, store.getQueryCount()));
+            _statsitemgrp.addStatistic(new LongStatistic(QueryTime, long.class, store.getQueryTime()));
+            _statsitemgrp.addStatistic(new LongStatistic(GetAttributeCount, long.class, store.getAttributeCount()));
+            _statsitemgrp.addStatistic(new LongStatistic(GetAttributeTime, long.class, store.getAttributeTime()));
+            _statsgrp.addStatisticItemGroup(_statsitemgrp);
+        }
+
+        for (Map.Entry<String, Long> error : metrics.getErrors().entrySet())
+        {
+            _statsitemgrp = new StatisticItemGroup();
+            _statsitemgrp.addStatistic(new Statistic(ErrorCode, String.class, error.getKey()));
+            _statsitemgrp.addStatistic(new LongStatistic(ErrorCount, long.class, error.getValue().longValue()));
+            _statsgrp.addStatisticItemGroup(_statsitemgrp);
+        }
+
+        return _statsgrp;
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.List;
+
+/**
+ * <p>
+ * Retrieves the statistic values of the NIO buffer pools (direct and mapped
+ * buffers) from the BufferPoolMXBeans of the ManagementFactory.
+ * </p>
+ *
+ * <p>
+ * BufferPoolMXBean was introduced in Java 7, it is accessed by reflection so
+ * that BeanSpy still runs on older JVMs, where this group is returned empty.
+ * The values of a pool are read together once per request.
+ * </p>
+ *
+ */
+public class BufferPoolStatistics extends GenericStatistics
+{
+    /**
+     * <p>
+     * Group name for this type of statistic
+     * </p>
+     */
+    private static final String StatisticGroupname = "BufferPool";
+
+    /**
+     * <p>
+     * Name identifying the buffer pool
+     * </p>
+     */
+    private static final String PoolName = "PoolName";
+
+    /**
+     * <p>
+     * Name identifying the number of buffers in the pool
+     * </p>
+     */
+    private static final String BufferCount = "BufferCount";
+
+    /**
+     * <p>
+     * Name identifying the total capacity of the buffers in the pool
+     * </p>
+     */
+    private static final String TotalCapacity = "TotalCapacity";
+
+    /**
+     * <p>
+     * Name identifying the memory used by the JVM for the buffers in the pool
+     * </p>
+     */
+    private static final String UsedMemory = "UsedMemory";
+
+    /*
+     * java.lang.management.BufferPoolMXBean and its methods, null if the JVM
+     * does not provide them.
+     */
+    private static final Class<?> _bufferPoolClass;
+    private static final Method _getPlatformMXBeans;
+    private static final Method _getName;
+    private static final Method _getCount;
+    private static final Method _getTotalCapacity;
+    private static final Method _getMemoryUsed;
+
+    static
+    {
+        Class<?> bufferPoolClass = null;
+        Method getPlatformMXBeans = null;
+        Method getName = null;
+        Method getCount = null;
+        Method getTotalCapacity = null;
+        Method getMemoryUsed = null;
+        try
+        {
+            bufferPoolClass = Class.forName("java.lang.management.BufferPoolMXBean");
+            getPlatformMXBeans = ManagementFactory.class.getMethod("getPlatformMXBeans", new Class<?>[] { Class.class });
+            getName = bufferPoolClass.getMethod("getName", (Class<?>[]) null);
+            getCount = bufferPoolClass.getMethod("getCount", (Class<?>[]) null);
+            getTotalCapacity = bufferPoolClass.getMethod("getTotalCapacity", (Class<?>[]) null);
+            getMemoryUsed = bufferPoolClass.getMethod("getMemoryUsed", (Class<?>[]) null);
+        }
+        catch (Exception e)
+        {
+            // Not available before Java 7
+            bufferPoolClass = null;
+        }
+        _bufferPoolClass = bufferPoolClass;
+        _getPlatformMXBeans = getPlatformMXBeans;
+        _getName = getName;
+        _getCount = getCount;
+        _getTotalCapacity = getTotalCapacity;
+        _getMemoryUsed = getMemoryUsed;
+    }
+
+    /**
+     * <p>
+     * Default constructor
+     * </p>
+     */
+    public BufferPoolStatistics()
+    {
+       super(StatisticGroupname);
+    }
+
+    /**
+     * <p>
+     * Retrieves the statistics of every buffer pool
+     * </p>
+     *
+     * @return a StatisticGroup containing a group of statistics per pool
+     */
+    public StatisticGroup getStats()
+    {
+        StatisticGroup _statsgrp = new StatisticGroup(_name);
+        if (_bufferPoolClass == null)
+        {
+            return _statsgrp;
+        }
+
+        try
+        {
+            List<?> pools = (List<?>) _getPlatformMXBeans.invoke(null, new Object[] { _bufferPoolClass });
+            for (Object pool : pools)
+            {
+                StatisticItemGroup _statsitemgrp = new StatisticItemGroup();
+                _statsitemgrp.addStatistic(new Statistic(PoolName, String.class, _getName.invoke(pool, (Object[]) null)));
+                _statsitemgrp.addStatistic(new LongStatistic(BufferCount, long.class,
+                        ((Long) _getCount.invoke(pool, (Object[]) null)).longValue()));
+                _statsitemgrp.addStatistic(new LongStatistic(TotalCapacity, long.class,
+                        ((Long) _getTotalCapacity.invoke(pool, (Object[]) null)).longValue()));
+                _statsitemgrp.addStatistic(new LongStatistic(UsedMemory, long.class,
+                        ((Long) _getMemoryUsed.invoke(pool, (Object[]) null)).longValue()));
+                _statsgrp.addStatisticItemGroup(_statsitemgrp);
+            }
+        }
+        catch (Exception e)
+        {
+            this._logger.fine(new StringBuffer("Unable to read the buffer pools: ").append(e.getMessage()).toString());
+        }
+
+        return _statsgrp;
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.interopbridges.scx.jeestats;
 
+import java.lang.management.ClassLoadingMXBean;
 import java.lang.management.ManagementFactory;
 
 
@@ -45,6 +46,13 @@ public class ClassLoaderStatistics extends GenericStatistics
      */
     private static final String StatisticGroupname         = "ClassLoader";
     
+    /**
+     * <p>
+     * The MXBean the statistics are read from
+     * </p>
+     */
+    private final ClassLoadingMXBean _classLoading;
+    
     /**
      * <p>
      * Name identifying the statistical value containing the loaded class count
@@ -74,8 +82,43 @@ public class ClassLoaderStatistics extends GenericStatistics
      * </p>
      */
     public ClassLoaderStatistics()
+    {
+       this(ManagementFactory.getClassLoadingMXBean());
+    }
+    
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * 
+     * @param classLoading
+     *            The MXBean the statistics are read from
+     */
+    ClassLoaderStatistics(ClassLoadingMXBean classLoading)
     {
        super(StatisticGroupname);    
+       this._classLoading = classLoading;
+    }
+    
+    /**
+     * <p>
+     * Read the class counts once for all the statistics of a request.
+     * </p>
+     */
+    protected Object capture()
+    {
+        return new Snapshot(_classLoading.getLoadedClassCount(), _classLoading.getTotalLoadedClassCount(),
+                _classLoading.getUnloadedClassCount());
+    }
+    
+    /**
+     * <p>
+     * Get the snapshot of the current request.
+     * </p>
+     */
+    private Snapshot current()
+    {
+        return (Snapshot) getSnapshot();
     }
     
     /**
@@ -98,8 +141,8 @@ public class ClassLoaderStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getLoadedClassCount()
     {
-        return     new Statistic(LoadedClassCount,    int.class,
-        ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+        return     new LongStatistic(LoadedClassCount,    int.class,
+        current()._loadedClassCount);
     }
     
     /**
@@ -123,8 +166,8 @@ public class ClassLoaderStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getTotalLoadedClassCount()
     {
-        return new Statistic(TotalLoadedClassCount,    long.class,    
-                ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount());
+        return new LongStatistic(TotalLoadedClassCount,    long.class,    
+                current()._totalLoadedClassCount);
     }
     
     /**
@@ -148,8 +191,26 @@ public class ClassLoaderStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getUnloadedClassCount()
     {
-        return new Statistic(UnloadedClassCount,long.class,    
-                ManagementFactory.getClassLoadingMXBean().getUnloadedClassCount());
+        return new LongStatistic(UnloadedClassCount,long.class,    
+                current()._unloadedClassCount);
     }
     
+    /**
+     * <p>
+     * The values read from the ClassLoadingMXBean for one request.
+     * </p>
+     */
+    private static final class Snapshot
+    {
+        private final int _loadedClassCount;
+        private final long _totalLoadedClassCount;
+        private final long _unloadedClassCount;
+
+        Snapshot(int loadedClassCount, long totalLoadedClassCount, long unloadedClassCount)
+        {
+            this._loadedClassCount = loadedClassCount;
+            this._totalLoadedClassCount = totalLoadedClassCount;
+            this._unloadedClassCount = unloadedClassCount;
+        }
+    }
 }
@@ -0,0 +1,500 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.interopbridges.scx.configuration.Config;
+import com.interopbridges.scx.configuration.ConfigKey;
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Samples the cumulative JVM counters (garbage collection time and count,
+ * started threads, loaded classes, JIT compilation time and allocated bytes)
+ * on a fixed interval and derives rates from the difference between two
+ * consecutive samples.
+ * </p>
+ *
+ * <p>
+ * The counters are read by a single daemon timer thread, which keeps the
+ * previous sample in plain primitive fields. The rates are published as an
+ * immutable Rates object through a volatile field, so requests read them
+ * without taking a lock and always see a consistent set of values.
+ * </p>
+ *
+ * <p>
+ * The allocation rate is taken from the allocated bytes of the live threads,
+ * which is only available on JVMs that provide
+ * com.sun.management.ThreadMXBean. The allocated bytes are matched by thread
+ * id with those of the previous sample, as the ThreadActivitySampler does, and
+ * only the per-thread differences are summed. A thread started since the
+ * previous sample counts with all its bytes, the bytes allocated by a thread
+ * that ended between two samples are not counted.
+ * </p>
+ *
+ */
+public class CounterSampler
+{
+    /**
+     * <p>
+     * Default interval in milliseconds between two samples.
+     * </p>
+     */
+    public static final long DEFAULT_INTERVAL = 10000;
+
+    /**
+     * <p>
+     * The sampler shared by all requests.
+     * </p>
+     */
+    private static final CounterSampler _inst = new CounterSampler(
+            new Config(ConfigKey.STATS_SAMPLE_INTERVAL).getLongValue(DEFAULT_INTERVAL));
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * Interval in milliseconds between two samples.
+     * </p>
+     */
+    private final long _interval;
+
+    /**
+     * <p>
+     * Timer running the sampling, null while the sampler is stopped.
+     * </p>
+     */
+    private Timer _timer;
+
+    /**
+     * <p>
+     * The rates computed from the last two samples.
+     * </p>
+     */
+    private volatile Rates _rates = Rates.NONE;
+
+    /**
+     * <p>
+     * Accessor for the bytes allocated by a set of threads, null if the JVM
+     * does not support it.
+     * </p>
+     */
+    private final Method _allocatedBytes;
+
+    /*
+     * The previous sample, only accessed by the sampling thread.
+     */
+    private boolean _hasSample;
+    private long _sampleTime;
+    private long _gcTime;
+    private long _gcCount;
+    private long _startedThreads;
+    private long _loadedClasses;
+    private long _compilationTime;
+
+    /*
+     * Allocated bytes of the threads, sorted by thread id, for the previous
+     * and the current sample. The two sets are swapped after each sample and
+     * only grown, never shrunk.
+     */
+    private int _prevCount;
+    private long[] _prevIds = new long[0];
+    private long[] _prevAllocated = new long[0];
+    private long[] _curIds = new long[0];
+    private long[] _curAllocated = new long[0];
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param interval
+     *            Interval in milliseconds between two samples
+     */
+    CounterSampler(long interval)
+    {
+        this._logger = LoggingFactory.getLogger();
+        this._interval = interval > 0 ? interval : DEFAULT_INTERVAL;
+        this._allocatedBytes = getAllocatedBytesMethod();
+    }
+
+    /**
+     * <p>
+     * Get the sampler shared by all requests.
+     * </p>
+     */
+    public static CounterSampler getInstance()
+    {
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * Start sampling, if the sampler is not running already. The first rates
+     * are available one interval after the sampler is started.
+     * </p>
+     */
+    public synchronized void start()
+    {
+        if (this._timer != null)
+        {
+            return;
+        }
+        this._timer = new Timer("BeanSpy-CounterSampler", true);
+        this._timer.schedule(new TimerTask()
+        {
+            public void run()
+            {
+                try
+                {
+                    sample();
+                }
+                catch (RuntimeException e)
+                {
+                    _logger.fine(new StringBuffer("Unable to sample the JVM counters: ")
+                            .append(e.getMessage()).toString());
+                }
+            }
+        }, 0, this._interval);
+    }
+
+    /**
+     * <p>
+     * Stop sampling. The last rates remain available.
+     * </p>
+     */
+    public synchronized void stop()
+    {
+        if (this._timer != null)
+        {
+            this._timer.cancel();
+            this._timer = null;
+        }
+    }
+
+    /**
+     * <p>
+     * Check whether the sampler is running.
+     * </p>
+     */
+    public synchronized boolean isRunning()
+    {
+        return this._timer != null;
+    }
+
+    /**
+     * <p>
+     * The rates computed from the last two samples.
+     * </p>
+     *
+     * @return The rates, all zero until two samples have been taken
+     */
+    public Rates getRates()
+    {
+        return this._rates;
+    }
+
+    /**
+     * <p>
+     * Take a sample of the counters and publish the rates since the previous
+     * sample. Called from the timer thread only (or directly by the unit
+     * tests on a sampler that is not started).
+     * </p>
+     */
+    void sample()
+    {
+        long now = System.nanoTime();
+
+        long gcTime = 0;
+        long gcCount = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            gcTime += Math.max(0, gc.getCollectionTime());
+            gcCount += Math.max(0, gc.getCollectionCount());
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long startedThreads = threads.getTotalStartedThreadCount();
+
+        ClassLoadingMXBean classes = ManagementFactory.getClassLoadingMXBean();
+        long loadedClasses = classes.getTotalLoadedClassCount();
+
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        long compilationTime = (jit != null && jit.isCompilationTimeMonitoringSupported())
+                ? jit.getTotalCompilationTime() : 0;
+
+        long allocated = getAllocatedDelta(threads);
+
+        if (this._hasSample && now > this._sampleTime)
+        {
+            double elapsedMillis = (now - this._sampleTime) / 1000000.0;
+            double perSecond = 1000.0 / elapsedMillis;
+            long gcTimeDelta = gcTime - this._gcTime;
+
+            this._rates = new Rates(
+                    (long) elapsedMillis,
+                    gcTimeDelta * perSecond,
+                    Math.min(100.0, gcTimeDelta * 100.0 / elapsedMillis),
+                    (gcCount - this._gcCount) * perSecond * 60,
+                    (startedThreads - this._startedThreads) * perSecond,
+                    (loadedClasses - this._loadedClasses) * perSecond,
+                    (compilationTime - this._compilationTime) * perSecond * 60,
+                    allocated < 0 ? -1 : allocated * perSecond);
+        }
+
+        this._hasSample = true;
+        this._sampleTime = now;
+        this._gcTime = gcTime;
+        this._gcCount = gcCount;
+        this._startedThreads = startedThreads;
+        this._loadedClasses = loadedClasses;
+        this._compilationTime = compilationTime;
+    }
+
+    /**
+     * <p>
+     * Sum of the bytes allocated by each live thread since the previous
+     * sample, the current allocated bytes become the previous ones.
+     * </p>
+     *
+     * @return The allocated bytes, or -1 if not supported by the JVM
+     */
+    private long getAllocatedDelta(ThreadMXBean threads)
+    {
+        if (this._allocatedBytes == null)
+        {
+            return -1;
+        }
+        long[] ids = threads.getAllThreadIds();
+        Arrays.sort(ids);
+        long[] bytes;
+        try
+        {
+            bytes = (long[]) this._allocatedBytes.invoke(threads, new Object[] { ids });
+        }
+        catch (Exception e)
+        {
+            return -1;
+        }
+
+        int count = ids.length;
+        if (this._curIds.length < count)
+        {
+            int size = Math.max(count, this._curIds.length * 2);
+            this._curIds = new long[size];
+            this._curAllocated = new long[size];
+        }
+        System.arraycopy(ids, 0, this._curIds, 0, count);
+        System.arraycopy(bytes, 0, this._curAllocated, 0, count);
+
+        // Both sets are sorted by thread id, walk them side by side
+        long total = 0;
+        int p = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (this._curAllocated[i] < 0)
+            {
+                continue;
+            }
+            while (p < this._prevCount && this._prevIds[p] < this._curIds[i])
+            {
+                p++;
+            }
+            boolean known = p < this._prevCount && this._prevIds[p] == this._curIds[i]
+                    && this._prevAllocated[p] >= 0;
+            total += known ? Math.max(0, this._curAllocated[i] - this._prevAllocated[p]) : this._curAllocated[i];
+        }
+
+        // The current sample becomes the previous one
+        long[] swap = this._prevIds;
+        this._prevIds = this._curIds;
+        this._curIds = swap;
+        swap = this._prevAllocated;
+        this._prevAllocated = this._curAllocated;
+        this._curAllocated = swap;
+        this._prevCount = count;
+        return total;
+    }
+
+    /**
+     * <p>
+     * Look up com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long[]),
+     * when it is available and enabled.
+     * </p>
+     */
+    private static Method getAllocatedBytesMethod()
+    {
+        try
+        {
+            Class<?> sunThreadBean = Class.forName("com.sun.management.ThreadMXBean");
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (!sunThreadBean.isInstance(threads))
+            {
+                return null;
+            }
+            Boolean supported = (Boolean) sunThreadBean.getMethod("isThreadAllocatedMemorySupported",
+                    (Class<?>[]) null).invoke(threads, (Object[]) null);
+            Boolean enabled = (Boolean) sunThreadBean.getMethod("isThreadAllocatedMemoryEnabled",
+                    (Class<?>[]) null).invoke(threads, (Object[]) null);
+            if (!supported.booleanValue() || !enabled.booleanValue())
+            {
+                return null;
+            }
+            return sunThreadBean.getMethod("getThreadAllocatedBytes", new Class<?>[] { long[].class });
+        }
+        catch (Throwable e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Immutable set of rates computed from two consecutive samples.
+     * </p>
+     */
+    public static final class Rates
+    {
+        /**
+         * <p>
+         * Rates reported before two samples have been taken.
+         * </p>
+         */
+        static final Rates NONE = new Rates(0, 0, 0, 0, 0, 0, 0, -1);
+
+        /*
+         * The rates, see the corresponding get methods.
+         */
+        private final long _interval;
+        private final double _gcTimePerSecond;
+        private final double _gcOverheadPercent;
+        private final double _gcCollectionsPerMinute;
+        private final double _threadCreationRate;
+        private final double _classLoadRate;
+        private final double _jitTimePerMinute;
+        private final double _allocationRate;
+
+        Rates(long interval, double gcTimePerSecond, double gcOverheadPercent,
+                double gcCollectionsPerMinute, double threadCreationRate,
+                double classLoadRate, double jitTimePerMinute, double allocationRate)
+        {
+            this._interval = interval;
+            this._gcTimePerSecond = gcTimePerSecond;
+            this._gcOverheadPercent = gcOverheadPercent;
+            this._gcCollectionsPerMinute = gcCollectionsPerMinute;
+            this._threadCreationRate = threadCreationRate;
+            this._classLoadRate = classLoadRate;
+            this._jitTimePerMinute = jitTimePerMinute;
+            this._allocationRate = allocationRate;
+        }
+
+        /**
+         * <p>
+         * Milliseconds between the two samples, 0 if no rates are available yet
+         * </p>
+         */
+        public long getInterval()
+        {
+            return this._interval;
+        }
+
+        /**
+         * <p>
+         * Milliseconds of garbage collection per second
+         * </p>
+         */
+        public double getGCTimePerSecond()
+        {
+            return this._gcTimePerSecond;
+        }
+
+        /**
+         * <p>
+         * Share of the elapsed time spent in garbage collection, in percent
+         * </p>
+         */
+        public double getGCOverheadPercent()
+        {
+            return this._gcOverheadPercent;
+        }
+
+        /**
+         * <p>
+         * Garbage collections per minute
+         * </p>
+         */
+        public double getGCCollectionsPerMinute()
+        {
+            return this._gcCollectionsPerMinute;
+        }
+
+        /**
+         * <p>
+         * Threads started per second
+         * </p>
+         */
+        public double getThreadCreationRate()
+        {
+            return this._threadCreationRate;
+        }
+
+        /**
+         * <p>
+         * Classes loaded per second
+         * </p>
+         */
+        public double getClassLoadRate()
+        {
+            return this._classLoadRate;
+        }
+
+        /**
+         * <p>
+         * Milliseconds of JIT compilation per minute
+         * </p>
+         */
+        public double getJITTimePerMinute()
+        {
+            return this._jitTimePerMinute;
+        }
+
+        /**
+         * <p>
+         * Bytes allocated per second, -1 if not supported by the JVM
+         * </p>
+         */
+        public double getAllocationRate()
+        {
+            return this._allocationRate;
+        }
+    }
+}
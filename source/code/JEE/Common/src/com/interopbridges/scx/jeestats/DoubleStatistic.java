@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+/**
+ * <p>
+ * Statistic holding a decimal value as a primitive double rounded to a fixed
+ * number of decimals, so that the value is neither boxed when the statistic
+ * is created nor converted to a String when it is serialized.
+ * </p>
+ *
+ */
+public class DoubleStatistic extends Statistic
+{
+    /**
+     * <p>
+     * Internal value of the Statistic, rounded to _Decimals decimals
+     * </p>
+     */
+    private final double _DoubleValue;
+
+    /**
+     * <p>
+     * Number of decimals kept
+     * </p>
+     */
+    private final int _Decimals;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param Name
+     *            Name of the statistic
+     *
+     * @param Value
+     *            The data Value of the statistic
+     *
+     * @param Decimals
+     *            Number of decimals the value is rounded to
+     */
+    public DoubleStatistic(String Name, double Value, int Decimals)
+    {
+        super(Name, double.class, null);
+        double scale = Math.pow(10, Decimals);
+        this._DoubleValue = Math.round(Value * scale) / scale;
+        this._Decimals = Decimals;
+    }
+
+    /**
+     * <p>
+     * getter method for retrieving the Statistic value without boxing it.
+     * </p>
+     *
+     * @return double
+     */
+    public double getDoubleValue()
+    {
+        return _DoubleValue;
+    }
+
+    /**
+     * <p>
+     * getter method for retrieving the number of decimals of the value.
+     * </p>
+     *
+     * @return int
+     */
+    public int getDecimals()
+    {
+        return _Decimals;
+    }
+
+    /**
+     * <p>
+     * getter method for retrieving the boxed Statistic value.
+     * </p>
+     *
+     * @return Double
+     */
+    public Object getStatisticValue()
+    {
+        return Double.valueOf(_DoubleValue);
+    }
+}
@@ -0,0 +1,500 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Records the duration of every garbage collection into a histogram per
+ * collector and cause, from the notifications the JVM sends for each
+ * collection.
+ * </p>
+ *
+ * <p>
+ * The notifications (com.sun.management.gc.notification) are sent by the
+ * GarbageCollectorMXBeans of JVMs from Java 7 update 4 onwards. They are read
+ * as plain CompositeData so that no com.sun class is needed; on JVMs without
+ * them no pause is ever recorded.
+ * </p>
+ *
+ * <p>
+ * Each histogram has a fixed memory footprint: a ring of one minute slots,
+ * each holding a count per power of two bucket of milliseconds and the
+ * largest pause. Once the histogram of a collector and cause exists, recording
+ * a pause only updates atomic counters and allocates nothing.
+ * </p>
+ *
+ * <p>
+ * The slots are aligned to the minutes of the clock, so a window of N minutes
+ * covers the N full minutes before the current one plus the elapsed part of
+ * the current minute: between N and N + 1 minutes. A window thus never misses
+ * a pause of the last N minutes, at the cost of reporting up to one minute
+ * more.
+ * </p>
+ *
+ */
+public class GCPauseRecorder implements NotificationListener
+{
+    /**
+     * <p>
+     * Type of the notification sent at the end of a garbage collection.
+     * </p>
+     */
+    public static final String GC_NOTIFICATION_TYPE = "com.sun.management.gc.notification";
+
+    /**
+     * <p>
+     * Length in milliseconds of a slot of the histograms.
+     * </p>
+     */
+    public static final long SLOT_MILLIS = 60000;
+
+    /**
+     * <p>
+     * Number of slots kept by a histogram: the full minutes of the longest
+     * window that can be reported, plus the current minute.
+     * </p>
+     */
+    public static final int SLOTS = 16;
+
+    /**
+     * <p>
+     * The windows, in full slots before the current one, reported for every
+     * histogram.
+     * </p>
+     */
+    public static final int[] WINDOWS = { 1, 5, 15 };
+
+    /**
+     * <p>
+     * Number of buckets of a slot. Bucket 0 holds the pauses of 0 ms, bucket
+     * k the pauses from 2^(k-1) to 2^k - 1 ms; the last bucket holds every
+     * longer pause.
+     * </p>
+     */
+    static final int BUCKETS = 32;
+
+    /**
+     * <p>
+     * The recorder shared by all requests.
+     * </p>
+     */
+    private static final GCPauseRecorder _inst = new GCPauseRecorder();
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * The histograms by collector name and cause.
+     * </p>
+     */
+    private final Map<String, Map<String, PauseHistogram>> _histograms =
+        new ConcurrentHashMap<String, Map<String, PauseHistogram>>();
+
+    /**
+     * <p>
+     * The collectors the recorder is listening to, empty while it is stopped.
+     * </p>
+     */
+    private final List<NotificationEmitter> _emitters = new ArrayList<NotificationEmitter>();
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     */
+    GCPauseRecorder()
+    {
+        this._logger = LoggingFactory.getLogger();
+    }
+
+    /**
+     * <p>
+     * Get the recorder shared by all requests.
+     * </p>
+     */
+    public static GCPauseRecorder getInstance()
+    {
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * Start listening to the garbage collectors, if the recorder is not
+     * listening already.
+     * </p>
+     */
+    public synchronized void start()
+    {
+        if (!this._emitters.isEmpty())
+        {
+            return;
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            if (gc instanceof NotificationEmitter)
+            {
+                NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(this, null, null);
+                this._emitters.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Stop listening to the garbage collectors. The recorded pauses remain
+     * available.
+     * </p>
+     */
+    public synchronized void stop()
+    {
+        for (NotificationEmitter emitter : this._emitters)
+        {
+            try
+            {
+                emitter.removeNotificationListener(this);
+            }
+            catch (ListenerNotFoundException e)
+            {
+                // Already removed
+            }
+        }
+        this._emitters.clear();
+    }
+
+    /**
+     * <p>
+     * Check whether the recorder is listening to at least one collector.
+     * </p>
+     */
+    public synchronized boolean isRunning()
+    {
+        return !this._emitters.isEmpty();
+    }
+
+    /**
+     * <p>
+     * Record the pause of a garbage collection notification.
+     * </p>
+     *
+     * @param notification
+     *            The notification sent by a GarbageCollectorMXBean
+     * @param handback
+     *            Not used
+     */
+    public void handleNotification(Notification notification, Object handback)
+    {
+        if (!GC_NOTIFICATION_TYPE.equals(notification.getType())
+                || !(notification.getUserData() instanceof CompositeData))
+        {
+            return;
+        }
+        try
+        {
+            CompositeData data = (CompositeData) notification.getUserData();
+            CompositeData info = (CompositeData) data.get("gcInfo");
+            record((String) data.get("gcName"), (String) data.get("gcCause"),
+                    ((Long) info.get("duration")).longValue(), System.currentTimeMillis());
+        }
+        catch (RuntimeException e)
+        {
+            this._logger.fine(new StringBuffer("Unable to record the garbage collection pause: ")
+                    .append(e.getMessage()).toString());
+        }
+    }
+
+    /**
+     * <p>
+     * Record a pause.
+     * </p>
+     *
+     * @param collector
+     *            Name of the garbage collector
+     * @param cause
+     *            Cause of the collection
+     * @param duration
+     *            Duration of the pause in milliseconds
+     * @param now
+     *            Time of the pause in milliseconds
+     */
+    void record(String collector, String cause, long duration, long now)
+    {
+        Map<String, PauseHistogram> causes = this._histograms.get(collector);
+        if (causes == null)
+        {
+            synchronized (this._histograms)
+            {
+                causes = this._histograms.get(collector);
+                if (causes == null)
+                {
+                    causes = new ConcurrentHashMap<String, PauseHistogram>();
+                    this._histograms.put(collector, causes);
+                }
+            }
+        }
+        PauseHistogram histogram = causes.get(cause);
+        if (histogram == null)
+        {
+            synchronized (causes)
+            {
+                histogram = causes.get(cause);
+                if (histogram == null)
+                {
+                    histogram = new PauseHistogram();
+                    causes.put(cause, histogram);
+                }
+            }
+        }
+        histogram.record(duration, now);
+    }
+
+    /**
+     * <p>
+     * Summarize every histogram over every reported window.
+     * </p>
+     *
+     * @param now
+     *            Current time in milliseconds
+     *
+     * @return A summary per collector, cause and window
+     */
+    public List<Summary> summarize(long now)
+    {
+        List<Summary> summaries = new ArrayList<Summary>();
+        for (Map.Entry<String, Map<String, PauseHistogram>> collector : this._histograms.entrySet())
+        {
+            for (Map.Entry<String, PauseHistogram> cause : collector.getValue().entrySet())
+            {
+                for (int i = 0; i < WINDOWS.length; i++)
+                {
+                    summaries.add(cause.getValue().summarize(collector.getKey(), cause.getKey(), WINDOWS[i], now));
+                }
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * <p>
+     * Get the bucket of a pause.
+     * </p>
+     */
+    static int bucket(long duration)
+    {
+        if (duration <= 0)
+        {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(duration));
+    }
+
+    /**
+     * <p>
+     * Get the longest pause that falls in a bucket.
+     * </p>
+     */
+    static long upperBound(int bucket)
+    {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * <p>
+     * Fixed size histogram of the pauses of one collector and cause.
+     * </p>
+     *
+     * <p>
+     * The slot of the current minute is reset by the first pause recorded in
+     * it. The notifications of all collectors are delivered by a single JVM
+     * thread, so a reset never races with a pause being recorded.
+     * </p>
+     */
+    static final class PauseHistogram
+    {
+        private final AtomicLongArray _epochs = new AtomicLongArray(SLOTS);
+        private final AtomicLongArray _counts = new AtomicLongArray(SLOTS * BUCKETS);
+        private final AtomicLongArray _max = new AtomicLongArray(SLOTS);
+
+        PauseHistogram()
+        {
+            for (int i = 0; i < SLOTS; i++)
+            {
+                this._epochs.set(i, -1);
+            }
+        }
+
+        void record(long duration, long now)
+        {
+            long epoch = now / SLOT_MILLIS;
+            int slot = (int) (epoch % SLOTS);
+            long current = this._epochs.get(slot);
+            if (current != epoch && this._epochs.compareAndSet(slot, current, epoch))
+            {
+                for (int i = 0; i < BUCKETS; i++)
+                {
+                    this._counts.set(slot * BUCKETS + i, 0);
+                }
+                this._max.set(slot, 0);
+            }
+            this._counts.incrementAndGet(slot * BUCKETS + bucket(duration));
+            long max = this._max.get(slot);
+            while (duration > max && !this._max.compareAndSet(slot, max, duration))
+            {
+                max = this._max.get(slot);
+            }
+        }
+
+        Summary summarize(String collector, String cause, int window, long now)
+        {
+            long epoch = now / SLOT_MILLIS;
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            long max = 0;
+            for (int slot = 0; slot < SLOTS; slot++)
+            {
+                long slotEpoch = this._epochs.get(slot);
+                if (slotEpoch >= epoch - window && slotEpoch <= epoch)
+                {
+                    for (int i = 0; i < BUCKETS; i++)
+                    {
+                        long count = this._counts.get(slot * BUCKETS + i);
+                        counts[i] += count;
+                        total += count;
+                    }
+                    max = Math.max(max, this._max.get(slot));
+                }
+            }
+            return new Summary(collector, cause, window * SLOT_MILLIS / 60000, total,
+                    percentile(counts, total, max, 50), percentile(counts, total, max, 99), max);
+        }
+
+        /**
+         * Upper bound of the bucket holding the given percentile, capped at
+         * the largest pause.
+         */
+        private static long percentile(long[] counts, long total, long max, int percent)
+        {
+            if (total == 0)
+            {
+                return 0;
+            }
+            long rank = (total * percent + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++)
+            {
+                seen += counts[i];
+                if (seen >= rank)
+                {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    /**
+     * <p>
+     * Pause distribution of one collector and cause over one window, in
+     * milliseconds. The percentiles are accurate to a power of two.
+     * </p>
+     */
+    public static final class Summary
+    {
+        private final String _collector;
+        private final String _cause;
+        private final long _window;
+        private final long _count;
+        private final long _p50;
+        private final long _p99;
+        private final long _max;
+
+        Summary(String collector, String cause, long window, long count, long p50, long p99, long max)
+        {
+            this._collector = collector;
+            this._cause = cause;
+            this._window = window;
+            this._count = count;
+            this._p50 = p50;
+            this._p99 = p99;
+            this._max = max;
+        }
+
+        /** Name of the garbage collector */
+        public String getCollector()
+        {
+            return this._collector;
+        }
+
+        /** Cause of the collections */
+        public String getCause()
+        {
+            return this._cause;
+        }
+
+        /** Length of the window in minutes */
+        public long getWindow()
+        {
+            return this._window;
+        }
+
+        /** Number of pauses in the window */
+        public long getCount()
+        {
+            return this._count;
+        }
+
+        /** Median pause */
+        public long getP50()
+        {
+            return this._p50;
+        }
+
+        /** 99th percentile pause */
+        public long getP99()
+        {
+            return this._p99;
+        }
+
+        /** Longest pause */
+        public long getMax()
+        {
+            return this._max;
+        }
+    }
+}
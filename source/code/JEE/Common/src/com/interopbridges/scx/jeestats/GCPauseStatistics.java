@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+/**
+ * <p>
+ * Reports the distribution of the garbage collection pauses recorded by the
+ * GCPauseRecorder: the number of pauses, the median, the 99th percentile and
+ * the longest pause over the last 1, 5 and 15 minutes. The windows are aligned
+ * to the minutes of the clock and also include the elapsed part of the
+ * current minute, so they span up to one minute more than their length.
+ * </p>
+ *
+ * <p>
+ * Each collector, cause and window is returned as its own group of
+ * properties, identified by the collector, the cause and WindowMinutes. Nothing is returned until a collection has been recorded, or on
+ * JVMs that do not send garbage collection notifications.
+ * </p>
+ *
+ */
+public class GCPauseStatistics extends GenericStatistics
+{
+    /**
+     * <p>
+     * Group name for this type of statistic
+     * </p>
+     */
+    private static final String StatisticGroupname = "GCPause";
+
+    /**
+     * <p>
+     * Name identifying the garbage collector
+     * </p>
+     */
+    private static final String GCName = "GCName";
+
+    /**
+     * <p>
+     * Name identifying the cause of the collections
+     * </p>
+     */
+    private static final String GCCause = "GCCause";
+
+    /**
+     * <p>
+     * Name identifying the length of the window in minutes
+     * </p>
+     */
+    private static final String WindowMinutes = "WindowMinutes";
+
+    /**
+     * <p>
+     * Name identifying the number of pauses in the window
+     * </p>
+     */
+    private static final String PauseCount = "PauseCount";
+
+    /**
+     * <p>
+     * Name identifying the median pause in milliseconds
+     * </p>
+     */
+    private static final String PauseP50 = "PauseP50";
+
+    /**
+     * <p>
+     * Name identifying the 99th percentile pause in milliseconds
+     * </p>
+     */
+    private static final String PauseP99 = "PauseP99";
+
+    /**
+     * <p>
+     * Name identifying the longest pause in milliseconds
+     * </p>
+     */
+    private static final String PauseMax = "PauseMax";
+
+    /**
+     * <p>
+     * The recorder the pauses are read from
+     * </p>
+     */
+    private final GCPauseRecorder _recorder;
+
+    /**
+     * <p>
+     * Default constructor, starts the recorder if it is not running yet.
+     * </p>
+     */
+    public GCPauseStatistics()
+    {
+       this(GCPauseRecorder.getInstance());
+       GCPauseRecorder.getInstance().start();
+    }
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param recorder
+     *            The recorder the pauses are read from
+     */
+    GCPauseStatistics(GCPauseRecorder recorder)
+    {
+       super(StatisticGroupname);
+       this._recorder = recorder;
+    }
+
+    /**
+     * <p>
+     * Retrieves the pause distribution of every collector and cause
+     * </p>
+     *
+     * @return a StatisticGroup containing a group of statistics per
+     *         collector, cause and window
+     */
+    public StatisticGroup getStats()
+    {
+        StatisticGroup _statsgrp = new StatisticGroup(_name);
+
+        for (GCPauseRecorder.Summary summary : this._recorder.summarize(System.currentTimeMillis()))
+        {
+            StatisticItemGroup _statsitemgrp = new StatisticItemGroup();
+            _statsitemgrp.addStatistic(new Statistic(GCName, String.class, summary.getCollector()));
+            _statsitemgrp.addStatistic(new Statistic(GCCause, String.class, summary.getCause()));
+            _statsitemgrp.addKeyStatistic(new LongStatistic(WindowMinutes, long.class, summary.getWindow()));
+            _statsitemgrp.addStatistic(new LongStatistic(PauseCount, long.class, summary.getCount()));
+            _statsitemgrp.addStatistic(new LongStatistic(PauseP50, long.class, summary.getP50()));
+            _statsitemgrp.addStatistic(new LongStatistic(PauseP99, long.class, summary.getP99()));
+            _statsitemgrp.addStatistic(new LongStatistic(PauseMax, long.class, summary.getMax()));
+            _statsgrp.addStatisticItemGroup(_statsitemgrp);
+        }
+
+        return _statsgrp;
+    }
+}
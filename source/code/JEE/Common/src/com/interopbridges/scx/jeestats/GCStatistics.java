@@ -106,8 +106,8 @@ public class GCStatistics extends GenericStatistics
             time  = l.getCollectionTime();
             name  = l.getName();
             l.getMemoryPoolNames();
-            _statsitemgrp.addStatistic(new Statistic(GCCollectionCount, long.class, count));
-            _statsitemgrp.addStatistic(new Statistic(GCCollectionTime, long.class, time));
+            _statsitemgrp.addStatistic(new LongStatistic(GCCollectionCount, long.class, count));
+            _statsitemgrp.addStatistic(new LongStatistic(GCCollectionTime, long.class, time));
             _statsitemgrp.addStatistic(new Statistic(GCName, String.class, name));
             _statsgrp.addStatisticItemGroup(_statsitemgrp);
         }
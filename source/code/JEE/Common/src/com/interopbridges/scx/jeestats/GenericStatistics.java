@@ -28,6 +28,14 @@ import com.interopbridges.scx.log.LoggingFactory;
  * method. 
  * </p>
  * 
+ * <p>
+ * A request is served in two phases. The capture method first reads the
+ * MXBeans of the group once into a snapshot, the @StatisticMethod methods then
+ * derive their values from that snapshot, so the statistics returned by one
+ * call to getStats are consistent with each other. A @StatisticMethod called
+ * on its own captures a snapshot of its own.
+ * </p>
+ * 
  * @author Geoff Erasmus
  * 
  */
@@ -48,6 +56,15 @@ public class GenericStatistics implements IStatistics
      */
     protected ILogger _logger;
     
+    /**
+     * <p>
+     * Snapshot captured for the request served by the current thread. The
+     * statistics classes are shared between requests, so the snapshot cannot
+     * be kept in a plain field.
+     * </p>
+     */
+    private final ThreadLocal<Object> _snapshot = new ThreadLocal<Object>();
+    
     /**
      * <p>
      * Default Constructor
@@ -76,13 +93,16 @@ public class GenericStatistics implements IStatistics
         StatisticGroup _statsgrp = new StatisticGroup(_name);
         StatisticItemGroup _statsitemgrp = new StatisticItemGroup();
         
-        Method[] m = this.getClass().getDeclaredMethods();
-        for(int i=0;i<m.length;i++)
+        // The @StatisticMethod methods are looked up once per class
+        Method[] m = StatisticAccessors.forClass(this.getClass()).getStatisticMethods();
+        _snapshot.set(capture());
+        try
         {
-            try{
-                if( m[i].isAnnotationPresent( StatisticMethod.class ) )
-                {
-                    Object o = m[i].invoke(this,(Object[])null);
+            for(int i=0;i<m.length;i++)
+            {
+                try{
+                    // Statistics configured with a TTL are taken from the cache
+                    Object o = StatisticsCache.getInstance().getStatistic(this, m[i]);
                     if(o instanceof Statistic) 
                         _statsitemgrp.addStatistic((Statistic)o);
                     else
@@ -92,24 +112,56 @@ public class GenericStatistics implements IStatistics
                                 append(" type must be a Statistics : ").append(this.getClass().getName()).toString());
                     }
                 }
-            }
-            catch(InvocationTargetException e){ 
-                // ignore the result from this method call
-                // and continue processing other entries
-                this._logger.fine(
-                        new StringBuffer("Unable to invoke : ").append(m[i].getName()).
-                        append(" on Statistics class : ").append(this.getClass().getName()).toString());
-            }
-            catch(IllegalAccessException e){
-                // ignore the result from this method call
-                // and continue processing other entries
-                this._logger.fine(
-                        new StringBuffer("Unable to access : ").append(m[i].getName()).
-                        append(" on Statistics class : ").append(this.getClass().getName()).toString());
+                catch(InvocationTargetException e){ 
+                    // ignore the result from this method call
+                    // and continue processing other entries
+                    this._logger.fine(
+                            new StringBuffer("Unable to invoke : ").append(m[i].getName()).
+                            append(" on Statistics class : ").append(this.getClass().getName()).toString());
+                }
+                catch(IllegalAccessException e){
+                    // ignore the result from this method call
+                    // and continue processing other entries
+                    this._logger.fine(
+                            new StringBuffer("Unable to access : ").append(m[i].getName()).
+                            append(" on Statistics class : ").append(this.getClass().getName()).toString());
+                }
             }
         }
+        finally
+        {
+            _snapshot.remove();
+        }
         _statsgrp.addStatisticItemGroup(_statsitemgrp);
         return _statsgrp;
     }
 
+    /**
+     * <p>
+     * Read the sources of this group of statistics once. Groups whose
+     * statistics share a source override this method and return the values
+     * read, the default captures nothing.
+     * </p>
+     * 
+     * @return The snapshot, or null if the group keeps none
+     */
+    protected Object capture()
+    {
+        return null;
+    }
+
+    /**
+     * <p>
+     * Get the snapshot of the request being served, capturing a new one when
+     * a statistic is retrieved outside getStats.
+     * </p>
+     * 
+     * @return The snapshot returned by capture
+     */
+    protected Object getSnapshot()
+    {
+        Object snapshot = _snapshot.get();
+        return snapshot != null ? snapshot : capture();
+    }
+
 }
@@ -32,6 +32,11 @@ public interface IStatistics {
    * Get the values of all the statistics for this group of statistics.
    * </p>
    * 
+   * <p>
+   * Implementations read each of their sources once per call, so that the
+   * values returned together are consistent with each other.
+   * </p>
+   * 
    * @return List of statistics containing the values acquired.
    */
     public StatisticGroup getStats();
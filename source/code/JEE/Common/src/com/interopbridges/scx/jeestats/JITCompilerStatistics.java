@@ -82,7 +82,7 @@ public class JITCompilerStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getTotalCompilationTime()
     {
-        return new Statistic(TotalCompilationTime, 
+        return new LongStatistic(TotalCompilationTime, 
                 long.class, ManagementFactory.getCompilationMXBean().getTotalCompilationTime());
     }
 }
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+/**
+ * <p>
+ * Statistic holding an integral value as a primitive long, so that the value
+ * is neither boxed when the statistic is created nor converted to a String
+ * when it is serialized.
+ * </p>
+ *
+ * <p>
+ * The declared type is reported as is, a statistic declared as int.class
+ * returns its boxed value as an Integer.
+ * </p>
+ *
+ */
+public class LongStatistic extends Statistic
+{
+    /**
+     * <p>
+     * Internal value of the Statistic
+     * </p>
+     */
+    private final long _LongValue;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param Name
+     *            Name of the statistic
+     *
+     * @param Type
+     *            The data Type of the statistic, long.class or int.class
+     *
+     * @param Value
+     *            The data Value of the statistic
+     */
+    public LongStatistic(String Name, Class<?> Type, long Value)
+    {
+        super(Name, Type, null);
+        this._LongValue = Value;
+    }
+
+    /**
+     * <p>
+     * getter method for retrieving the Statistic value without boxing it.
+     * </p>
+     *
+     * @return long
+     */
+    public long getLongValue()
+    {
+        return _LongValue;
+    }
+
+    /**
+     * <p>
+     * getter method for retrieving the boxed Statistic value.
+     * </p>
+     *
+     * @return Integer if the statistic is declared as int.class, otherwise Long
+     */
+    public Object getStatisticValue()
+    {
+        if (_Type == int.class)
+        {
+            return Integer.valueOf((int) _LongValue);
+        }
+        return Long.valueOf(_LongValue);
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+
+/**
+ * <p>
+ * Retrieves the statistic values of each memory pool (e.g. the eden, survivor
+ * and old generation of the heap, and the code cache) from the
+ * MemoryPoolMXBeans of the ManagementFactory.
+ * </p>
+ *
+ * <p>
+ * The usage, peak usage and collection usage of a pool are each read once per
+ * request, so the values returned for a pool are consistent with each other.
+ * Values a pool does not support are returned as -1.
+ * </p>
+ *
+ */
+public class MemoryPoolStatistics extends GenericStatistics
+{
+    /**
+     * <p>
+     * Group name for this type of statistic
+     * </p>
+     */
+    private static final String StatisticGroupname = "MemoryPool";
+
+    /**
+     * <p>
+     * Name identifying the memory pool
+     * </p>
+     */
+    private static final String PoolName = "PoolName";
+
+    /**
+     * <p>
+     * Name identifying the type of the memory pool (HEAP or NON_HEAP)
+     * </p>
+     */
+    private static final String PoolType = "PoolType";
+
+    /**
+     * <p>
+     * Name identifying the memory used by the pool
+     * </p>
+     */
+    private static final String UsedMemory = "UsedMemory";
+
+    /**
+     * <p>
+     * Name identifying the memory committed for the pool
+     * </p>
+     */
+    private static final String CommittedMemory = "CommittedMemory";
+
+    /**
+     * <p>
+     * Name identifying the maximum memory of the pool
+     * </p>
+     */
+    private static final String MaximumMemory = "MaximumMemory";
+
+    /**
+     * <p>
+     * Name identifying the peak memory used by the pool
+     * </p>
+     */
+    private static final String PeakUsedMemory = "PeakUsedMemory";
+
+    /**
+     * <p>
+     * Name identifying the memory used by the pool after the last collection
+     * </p>
+     */
+    private static final String CollectionUsedMemory = "CollectionUsedMemory";
+
+    /**
+     * <p>
+     * Name identifying the number of times the usage threshold was exceeded
+     * </p>
+     */
+    private static final String UsageThresholdCount = "UsageThresholdCount";
+
+    /**
+     * <p>
+     * Name identifying the number of times the collection usage threshold
+     * was exceeded
+     * </p>
+     */
+    private static final String CollectionUsageThresholdCount = "CollectionUsageThresholdCount";
+
+    /**
+     * <p>
+     * Default constructor
+     * </p>
+     */
+    public MemoryPoolStatistics()
+    {
+       super(StatisticGroupname);
+    }
+
+    /**
+     * <p>
+     * Retrieves the statistics of every valid memory pool
+     * </p>
+     *
+     * @return a StatisticGroup containing a group of statistics per pool
+     *
+     * @see java.lang.management.MemoryPoolMXBean
+     */
+    public StatisticGroup getStats()
+    {
+        StatisticGroup _statsgrp = new StatisticGroup(_name);
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (!pool.isValid())
+            {
+                continue;
+            }
+            MemoryUsage usage = pool.getUsage();
+            MemoryUsage peak = pool.getPeakUsage();
+            MemoryUsage collection = pool.getCollectionUsage();
+            if (usage == null)
+            {
+                continue;
+            }
+
+            StatisticItemGroup _statsitemgrp = new StatisticItemGroup();
+            _statsitemgrp.addStatistic(new Statistic(PoolName, String.class, pool.getName()));
+            _statsitemgrp.addStatistic(new Statistic(PoolType, String.class, pool.getType().name()));
+            _statsitemgrp.addStatistic(new LongStatistic(UsedMemory, long.class, usage.getUsed()));
+            _statsitemgrp.addStatistic(new LongStatistic(CommittedMemory, long.class, usage.getCommitted()));
+            _statsitemgrp.addStatistic(new LongStatistic(MaximumMemory, long.class, usage.getMax()));
+            _statsitemgrp.addStatistic(new LongStatistic(PeakUsedMemory, long.class,
+                    peak == null ? -1L : peak.getUsed()));
+            _statsitemgrp.addStatistic(new LongStatistic(CollectionUsedMemory, long.class,
+                    collection == null ? -1L : collection.getUsed()));
+            _statsitemgrp.addStatistic(new LongStatistic(UsageThresholdCount, long.class,
+                    pool.isUsageThresholdSupported() ? pool.getUsageThresholdCount() : -1L));
+            _statsitemgrp.addStatistic(new LongStatistic(CollectionUsageThresholdCount, long.class,
+                    pool.isCollectionUsageThresholdSupported() ? pool.getCollectionUsageThresholdCount() : -1L));
+            _statsgrp.addStatisticItemGroup(_statsitemgrp);
+        }
+
+        return _statsgrp;
+    }
+}
@@ -17,6 +17,8 @@
 package com.interopbridges.scx.jeestats;
 
 import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
 
 /**
  * <p>
@@ -128,14 +130,57 @@ public class MemoryStatistics extends GenericStatistics
      */
     private static final String PercentHeapUsed = "PercentHeapMemoryUsed";
     
+    /**
+     * <p>
+     * The MXBean the statistics are read from
+     * </p>
+     */
+    private final MemoryMXBean _memory;
+    
     /**
      * <p>
      * Default constructor
      * </p>
      */
     public MemoryStatistics()
+    {
+       this(ManagementFactory.getMemoryMXBean());
+    }
+    
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * 
+     * @param memory
+     *            The MXBean the statistics are read from
+     */
+    MemoryStatistics(MemoryMXBean memory)
     {
        super(StatisticGroupname);    
+       this._memory = memory;
+    }
+    
+    /**
+     * <p>
+     * Read the heap usage, the non-heap usage and the pending finalization
+     * count once for all the statistics of a request.
+     * </p>
+     */
+    protected Object capture()
+    {
+        return new Snapshot(_memory.getHeapMemoryUsage(), _memory.getNonHeapMemoryUsage(),
+                _memory.getObjectPendingFinalizationCount());
+    }
+    
+    /**
+     * <p>
+     * Get the snapshot of the current request.
+     * </p>
+     */
+    private Snapshot current()
+    {
+        return (Snapshot) getSnapshot();
     }
     
     /**
@@ -159,8 +204,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getHeapInitialMemoryAllocated()
     {
-        return new Statistic(HeapInitialMemoryAllocated, 
-                long.class, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getInit());
+        return new LongStatistic(HeapInitialMemoryAllocated, 
+                long.class, current()._heap.getInit());
     }
     
     /**
@@ -183,8 +228,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getHeapUsedMemory()
     {
-        return new Statistic(HeapUsedMemory,              
-                long.class, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        return new LongStatistic(HeapUsedMemory,              
+                long.class, current()._heap.getUsed());
     }
     
     /**
@@ -207,8 +252,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getHeapCommittedMemory()
     {
-        return new Statistic(HeapCommittedMemory,         
-                long.class, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getCommitted());
+        return new LongStatistic(HeapCommittedMemory,         
+                long.class, current()._heap.getCommitted());
     }
     
     /**
@@ -232,8 +277,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getHeapMaximumMemory()
     {
-        return new Statistic(HeapMaximumMemory,              
-                long.class, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax());
+        return new LongStatistic(HeapMaximumMemory,              
+                long.class, current()._heap.getMax());
     }
     
     /**
@@ -257,8 +302,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getNonHeapInitialMemoryAllocated()
     {
-        return new Statistic(NonHeapInitialMemoryAllocated, 
-                long.class, ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getInit());
+        return new LongStatistic(NonHeapInitialMemoryAllocated, 
+                long.class, current()._nonHeap.getInit());
     }
     
     /**
@@ -281,8 +326,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getNonHeapUsedMemory()
     {
-        return new Statistic(NonHeapUsedMemory,              
-                long.class, ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed());
+        return new LongStatistic(NonHeapUsedMemory,              
+                long.class, current()._nonHeap.getUsed());
     }
     
     /**
@@ -305,8 +350,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getNonHeapCommittedMemory()
     {
-        return new Statistic(NonHeapCommittedMemory,         
-                long.class, ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getCommitted());
+        return new LongStatistic(NonHeapCommittedMemory,         
+                long.class, current()._nonHeap.getCommitted());
     }
     
     /**
@@ -330,8 +375,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getNonHeapMaximumMemory()
     {
-        return new Statistic(NonHeapMaximumMemory,              
-                long.class, ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getMax());
+        return new LongStatistic(NonHeapMaximumMemory,              
+                long.class, current()._nonHeap.getMax());
     }
     
     /**
@@ -356,8 +401,8 @@ public class MemoryStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getPendingFinalizationCount()
     {
-        return new Statistic(PendingFinalizationCount,          
-                int.class, ManagementFactory.getMemoryMXBean().getObjectPendingFinalizationCount());
+        return new LongStatistic(PendingFinalizationCount,          
+                int.class, current()._pendingFinalizationCount);
     }
     
     /**
@@ -382,9 +427,28 @@ public class MemoryStatistics extends GenericStatistics
     {
         int value=0;
         
-        value = (int)((ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed()* 100) /
-                 ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax());
-        return new Statistic(PercentHeapUsed, int.class, value);
+        MemoryUsage heap = current()._heap;
+        value = (int)((heap.getUsed()* 100) / heap.getMax());
+        return new LongStatistic(PercentHeapUsed, int.class, value);
+    }
+    
+    /**
+     * <p>
+     * The values read from the MemoryMXBean for one request.
+     * </p>
+     */
+    private static final class Snapshot
+    {
+        private final MemoryUsage _heap;
+        private final MemoryUsage _nonHeap;
+        private final int _pendingFinalizationCount;
+
+        Snapshot(MemoryUsage heap, MemoryUsage nonHeap, int pendingFinalizationCount)
+        {
+            this._heap = heap;
+            this._nonHeap = nonHeap;
+            this._pendingFinalizationCount = pendingFinalizationCount;
+        }
     }
     
 }
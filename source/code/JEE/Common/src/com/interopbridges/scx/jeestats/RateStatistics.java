@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+/**
+ * <p>
+ * Rates derived from the cumulative statistic values (GCCollectionTime,
+ * TotalStartedThreadCount, TotalLoadedClassCount, TotalCompilationTime and
+ * the allocated bytes) by the CounterSampler. The rates are computed over the
+ * last sampling interval on the server, so they remain correct when a client
+ * misses a poll.
+ * </p>
+ *
+ * <p>
+ * The values are all zero (and AllocationRate -1) until the sampler has taken
+ * two samples, the SampleInterval statistic is zero until then.
+ * </p>
+ *
+ */
+public class RateStatistics extends GenericStatistics
+{
+    /**
+     * <p>
+     * Group name for this type of statistic
+     * </p>
+     */
+    private static final String StatisticGroupname = "Rates";
+
+    /**
+     * <p>
+     * Number of decimals the rates are rounded to
+     * </p>
+     */
+    private static final int RateDecimals = 2;
+
+    /**
+     * <p>
+     * Name identifying the milliseconds between the two samples the rates
+     * are computed from
+     * </p>
+     */
+    private static final String SampleInterval = "SampleInterval";
+
+    /**
+     * <p>
+     * Name identifying the milliseconds of garbage collection per second
+     * </p>
+     */
+    private static final String GCTimePerSecond = "GCTimePerSecond";
+
+    /**
+     * <p>
+     * Name identifying the share of time spent in garbage collection
+     * </p>
+     */
+    private static final String GCOverheadPercent = "GCOverheadPercent";
+
+    /**
+     * <p>
+     * Name identifying the number of garbage collections per minute
+     * </p>
+     */
+    private static final String GCCollectionsPerMinute = "GCCollectionsPerMinute";
+
+    /**
+     * <p>
+     * Name identifying the number of threads started per second
+     * </p>
+     */
+    private static final String ThreadCreationRate = "ThreadCreationRate";
+
+    /**
+     * <p>
+     * Name identifying the number of classes loaded per second
+     * </p>
+     */
+    private static final String ClassLoadRate = "ClassLoadRate";
+
+    /**
+     * <p>
+     * Name identifying the milliseconds of JIT compilation per minute
+     * </p>
+     */
+    private static final String JITTimePerMinute = "JITTimePerMinute";
+
+    /**
+     * <p>
+     * Name identifying the number of bytes allocated per second
+     * </p>
+     */
+    private static final String AllocationRate = "AllocationRate";
+
+    /**
+     * <p>
+     * Default constructor, starts the sampler if it is not running yet.
+     * </p>
+     */
+    public RateStatistics()
+    {
+       super(StatisticGroupname);
+       CounterSampler.getInstance().start();
+    }
+
+    /**
+     * <p>
+     * Read the rates published by the sampler once for all the statistics of
+     * a request, so they are all computed over the same interval.
+     * </p>
+     */
+    protected Object capture()
+    {
+        return CounterSampler.getInstance().getRates();
+    }
+
+    /**
+     * <p>
+     * Get the rates of the current request.
+     * </p>
+     */
+    private CounterSampler.Rates current()
+    {
+        return (CounterSampler.Rates) getSnapshot();
+    }
+
+    /**
+     * <p>
+     * Retrieves the milliseconds between the two samples the rates are
+     * computed from
+     * </p>
+     *
+     * @return Statistic containing the sample interval
+     */
+    @StatisticMethod
+    public Statistic getSampleInterval()
+    {
+        return new LongStatistic(SampleInterval, long.class,
+                current().getInterval());
+    }
+
+    /**
+     * <p>
+     * Retrieves the milliseconds spent in garbage collection per second
+     * </p>
+     *
+     * @return Statistic containing the garbage collection time per second
+     */
+    @StatisticMethod
+    public Statistic getGCTimePerSecond()
+    {
+        return new DoubleStatistic(GCTimePerSecond,
+                current().getGCTimePerSecond(), RateDecimals);
+    }
+
+    /**
+     * <p>
+     * Retrieves the percentage of time spent in garbage collection
+     * </p>
+     *
+     * @return Statistic containing the garbage collection overhead
+     */
+    @StatisticMethod
+    public Statistic getGCOverheadPercent()
+    {
+        return new DoubleStatistic(GCOverheadPercent,
+                current().getGCOverheadPercent(), RateDecimals);
+    }
+
+    /**
+     * <p>
+     * Retrieves the number of garbage collections per minute
+     * </p>
+     *
+     * @return Statistic containing the garbage collection rate
+     */
+    @StatisticMethod
+    public Statistic getGCCollectionsPerMinute()
+    {
+        return new DoubleStatistic(GCCollectionsPerMinute,
+                current().getGCCollectionsPerMinute(), RateDecimals);
+    }
+
+    /**
+     * <p>
+     * Retrieves the number of threads started per second
+     * </p>
+     *
+     * @return Statistic containing the thread creation rate
+     */
+    @StatisticMethod
+    public Statistic getThreadCreationRate()
+    {
+        return new DoubleStatistic(ThreadCreationRate,
+                current().getThreadCreationRate(), RateDecimals);
+    }
+
+    /**
+     * <p>
+     * Retrieves the number of classes loaded per second
+     * </p>
+     *
+     * @return Statistic containing the class load rate
+     */
+    @StatisticMethod
+    public Statistic getClassLoadRate()
+    {
+        return new DoubleStatistic(ClassLoadRate,
+                current().getClassLoadRate(), RateDecimals);
+    }
+
+    /**
+     * <p>
+     * Retrieves the milliseconds spent by the JIT compiler per minute
+     * </p>
+     *
+     * @return Statistic containing the JIT compilation time per minute
+     */
+    @StatisticMethod
+    public Statistic getJITTimePerMinute()
+    {
+        return new DoubleStatistic(JITTimePerMinute,
+                current().getJITTimePerMinute(), RateDecimals);
+    }
+
+    /**
+     * <p>
+     * Retrieves the number of bytes allocated per second, -1 if the JVM
+     * does not report allocated bytes
+     * </p>
+     *
+     * @return Statistic containing the allocation rate
+     */
+    @StatisticMethod
+    public Statistic getAllocationRate()
+    {
+        return new LongStatistic(AllocationRate, long.class,
+                (long) current().getAllocationRate());
+    }
+}
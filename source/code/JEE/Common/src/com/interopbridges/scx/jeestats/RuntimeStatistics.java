@@ -90,7 +90,7 @@ public class RuntimeStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getStartTime()
     {
-        return new Statistic(StartTime, 
+        return new LongStatistic(StartTime, 
                 long.class, ManagementFactory.getRuntimeMXBean().getStartTime());
     }
     
@@ -115,7 +115,7 @@ public class RuntimeStatistics extends GenericStatistics
     @StatisticMethod
     public Statistic getUpTime()
     {
-        return new Statistic(UpTime,    
+        return new LongStatistic(UpTime,    
                 long.class,    ManagementFactory.getRuntimeMXBean().getUptime());
     }
 }
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Accessor table for a statistics class, built once per class from its
+ * declared methods.
+ * </p>
+ *
+ * <p>
+ * The table holds the methods annotated with @StatisticMethod (used to
+ * retrieve all the statistics of a group) and the public no-argument methods
+ * indexed by name (used to retrieve a single statistic), so neither needs to
+ * look at the declared methods or their annotations on every request.
+ * </p>
+ *
+ */
+public class StatisticAccessors
+{
+    /**
+     * <p>
+     * Accessor tables already built, keyed by statistics class.
+     * </p>
+     */
+    private static final ConcurrentHashMap<Class<?>, StatisticAccessors> _tables =
+        new ConcurrentHashMap<Class<?>, StatisticAccessors>();
+
+    /**
+     * <p>
+     * Methods annotated with @StatisticMethod, in declaration order.
+     * </p>
+     */
+    private final Method[] _statisticMethods;
+
+    /**
+     * <p>
+     * Public no-argument methods declared by the class, keyed by method name.
+     * </p>
+     */
+    private final HashMap<String, Method> _methodsByName;
+
+    /**
+     * <p>
+     * Build the accessor table for a class.
+     * </p>
+     *
+     * @param statisticsClass
+     *            The statistics class
+     */
+    private StatisticAccessors(Class<?> statisticsClass)
+    {
+        List<Method> annotated = new ArrayList<Method>();
+        HashMap<String, Method> byName = new HashMap<String, Method>();
+
+        Method[] m = statisticsClass.getDeclaredMethods();
+        for (int i = 0; i < m.length; i++)
+        {
+            if (m[i].isAnnotationPresent(StatisticMethod.class))
+            {
+                annotated.add(m[i]);
+            }
+            if (Modifier.isPublic(m[i].getModifiers()) && m[i].getParameterTypes().length == 0)
+            {
+                byName.put(m[i].getName(), m[i]);
+            }
+        }
+
+        this._statisticMethods = annotated.toArray(new Method[annotated.size()]);
+        this._methodsByName = byName;
+    }
+
+    /**
+     * <p>
+     * Get the accessor table for a class, building it on first use.
+     * </p>
+     *
+     * @param statisticsClass
+     *            The statistics class
+     *
+     * @return The accessor table for the class
+     */
+    public static StatisticAccessors forClass(Class<?> statisticsClass)
+    {
+        StatisticAccessors table = _tables.get(statisticsClass);
+        if (table == null)
+        {
+            table = new StatisticAccessors(statisticsClass);
+            StatisticAccessors existing = _tables.putIfAbsent(statisticsClass, table);
+            if (existing != null)
+            {
+                table = existing;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * <p>
+     * The methods annotated with @StatisticMethod.
+     * </p>
+     *
+     * @return The annotated methods, the array must not be modified
+     */
+    public Method[] getStatisticMethods()
+    {
+        return this._statisticMethods;
+    }
+
+    /**
+     * <p>
+     * Look up a public no-argument method by name.
+     * </p>
+     *
+     * @param methodName
+     *            Name of the method, e.g. getHeapUsedMemory
+     *
+     * @return The method, or null if the class does not declare it
+     */
+    public Method getMethod(String methodName)
+    {
+        return this._methodsByName.get(methodName);
+    }
+}
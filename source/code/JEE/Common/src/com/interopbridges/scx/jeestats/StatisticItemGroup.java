@@ -34,6 +34,14 @@ public class StatisticItemGroup {
      * </p>
      */
      List<Statistic> _stats;
+
+    /**
+     * <p>
+     * The statistics that identify this item group among the item groups of
+     * its statistic group, null if there are none
+     * </p>
+     */
+     List<Statistic> _keys;
      
     /**
      * <p>
@@ -57,6 +65,40 @@ public class StatisticItemGroup {
         _stats.add(stat);
     }
     
+    /**
+     * <p>
+     * Add a statistic that identifies this item group among the item groups
+     * of its statistic group (e.g. the length of a window, or the position
+     * in a ranking). It is returned with the other statistics, but exporters
+     * that label their samples use it as a label rather than as a value.
+     * </p>
+     * @param stat
+     *            A statistic to add to the item group
+     */    
+    public void addKeyStatistic(Statistic stat)
+    {
+        _stats.add(stat);
+        if (_keys == null)
+        {
+            _keys = new ArrayList<Statistic>();
+        }
+        _keys.add(stat);
+    }
+    
+    /**
+     * <p>
+     * Check whether a statistic identifies this item group.
+     * </p>
+     * @param stat
+     *            A statistic of this item group
+     * @return
+     *          true if the statistic was added with addKeyStatistic
+     */    
+    public boolean isKeyStatistic(Statistic stat)
+    {
+        return _keys != null && _keys.contains(stat);
+    }
+    
     /**
      * <p>
      * Get the statistics of this item group.
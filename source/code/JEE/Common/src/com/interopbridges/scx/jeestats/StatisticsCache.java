@@ -0,0 +1,351 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.interopbridges.scx.configuration.Config;
+import com.interopbridges.scx.configuration.ConfigKey;
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Keeps the values of statistic groups and single statistics for a
+ * configured time, so that values which rarely or never change are not read
+ * again for every request.
+ * </p>
+ *
+ * <p>
+ * The times are read from STATS_CACHE_TTL in config.properties, a list of
+ * entries separated by semicolons. An entry Group=TTL applies to a whole
+ * statistic group, an entry Group/Statistic=TTL to a single statistic of a
+ * group, where Statistic is the name used in the URL (e.g.
+ * JavaVirtualMachine/ClassPath). The TTL is a number of milliseconds, or
+ * "immutable" for values that are kept for the life of the process. Groups
+ * and statistics without an entry are not cached.
+ * </p>
+ *
+ * <p>
+ * Cached values are shared between requests and must not be modified.
+ * Concurrent requests that find an entry expired may each read the value,
+ * the last one read is kept.
+ * </p>
+ *
+ */
+public class StatisticsCache
+{
+    /**
+     * <p>
+     * TTL of values that are kept for the life of the process.
+     * </p>
+     */
+    public static final long IMMUTABLE = Long.MAX_VALUE;
+
+    /**
+     * <p>
+     * Value of a TTL entry for values that are kept for the life of the
+     * process.
+     * </p>
+     */
+    public static final String IMMUTABLE_VALUE = "immutable";
+
+    /**
+     * <p>
+     * The cache shared by all requests.
+     * </p>
+     */
+    private static final StatisticsCache _inst = new StatisticsCache(
+            new Config(ConfigKey.STATS_CACHE_TTL).getStringValue(""));
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * TTL in milliseconds by group, or by group and statistic.
+     * </p>
+     */
+    private final Map<String, Long> _ttls;
+
+    /**
+     * <p>
+     * True if there is an entry for a single statistic, when there is none
+     * the key of a statistic is not even built.
+     * </p>
+     */
+    private final boolean _statisticTtls;
+
+    /**
+     * <p>
+     * Cached statistic groups by group.
+     * </p>
+     */
+    private final ConcurrentHashMap<String, Entry> _groups = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * <p>
+     * Cached statistics by group and statistic.
+     * </p>
+     */
+    private final ConcurrentHashMap<String, Entry> _statistics = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param spec
+     *            The TTL entries, separated by semicolons
+     */
+    StatisticsCache(String spec)
+    {
+        this._logger = LoggingFactory.getLogger();
+        this._ttls = parse(spec);
+
+        boolean statisticTtls = false;
+        for (String key : this._ttls.keySet())
+        {
+            if (key.indexOf('/') >= 0)
+            {
+                statisticTtls = true;
+                break;
+            }
+        }
+        this._statisticTtls = statisticTtls;
+    }
+
+    /**
+     * <p>
+     * Get the cache shared by all requests.
+     * </p>
+     *
+     * @return The statistics cache
+     */
+    public static StatisticsCache getInstance()
+    {
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * Get the statistics of a provider, from the cache if the group is cached
+     * and its TTL has not expired yet.
+     * </p>
+     *
+     * @param provider
+     *            The statistics provider
+     *
+     * @return The statistics of the provider
+     */
+    public StatisticGroup getStats(IStatistics provider)
+    {
+        if (!(provider instanceof GenericStatistics))
+        {
+            return provider.getStats();
+        }
+
+        String group = ((GenericStatistics) provider)._name;
+        long ttl = getTtl(group);
+        if (ttl <= 0)
+        {
+            return provider.getStats();
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = this._groups.get(group);
+        if (entry != null && !entry.isExpired(now))
+        {
+            return (StatisticGroup) entry.getValue();
+        }
+
+        StatisticGroup stats = provider.getStats();
+        this._groups.put(group, new Entry(stats, now, ttl));
+        return stats;
+    }
+
+    /**
+     * <p>
+     * Get a single statistic of a provider, from the cache if the statistic
+     * is cached and its TTL has not expired yet.
+     * </p>
+     *
+     * @param provider
+     *            The statistics provider
+     * @param method
+     *            The @StatisticMethod returning the statistic
+     *
+     * @return The value returned by the method
+     *
+     * @throws IllegalAccessException
+     *             If the method is not accessible
+     * @throws InvocationTargetException
+     *             If the method failed
+     */
+    public Object getStatistic(GenericStatistics provider, Method method)
+        throws IllegalAccessException, InvocationTargetException
+    {
+        if (!this._statisticTtls)
+        {
+            return method.invoke(provider, (Object[]) null);
+        }
+
+        String key = getKey(provider._name, method);
+        long ttl = getTtl(key);
+        if (ttl <= 0)
+        {
+            return method.invoke(provider, (Object[]) null);
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = this._statistics.get(key);
+        if (entry != null && !entry.isExpired(now))
+        {
+            return entry.getValue();
+        }
+
+        Object stat = method.invoke(provider, (Object[]) null);
+        if (stat != null)
+        {
+            this._statistics.put(key, new Entry(stat, now, ttl));
+        }
+        return stat;
+    }
+
+    /**
+     * <p>
+     * Get the TTL of a group, or of a statistic given as Group/Statistic.
+     * </p>
+     *
+     * @param key
+     *            The group, or the group and statistic
+     *
+     * @return The TTL in milliseconds, IMMUTABLE, or 0 if it is not cached
+     */
+    public long getTtl(String key)
+    {
+        Long ttl = this._ttls.get(key);
+        return ttl == null ? 0 : ttl.longValue();
+    }
+
+    /**
+     * <p>
+     * Drop all cached values, e.g. when the JMX stores the values were read
+     * from have changed.
+     * </p>
+     */
+    public void invalidate()
+    {
+        this._groups.clear();
+        this._statistics.clear();
+    }
+
+    /**
+     * <p>
+     * Build the key of a statistic from its group and the name of the
+     * method, without the get prefix.
+     * </p>
+     */
+    private static String getKey(String group, Method method)
+    {
+        String name = method.getName();
+        if (name.startsWith("get"))
+        {
+            name = name.substring(3);
+        }
+        return new StringBuffer(group).append('/').append(name).toString();
+    }
+
+    /**
+     * <p>
+     * Parse the TTL entries. Entries that are not valid are logged and left
+     * out.
+     * </p>
+     */
+    private Map<String, Long> parse(String spec)
+    {
+        Map<String, Long> ttls = new HashMap<String, Long>();
+        String[] entries = spec.split(";");
+        for (int i = 0; i < entries.length; i++)
+        {
+            String entry = entries[i].trim();
+            if (entry.length() == 0)
+            {
+                continue;
+            }
+
+            int separator = entry.indexOf('=');
+            if (separator <= 0)
+            {
+                this._logger.warning(new StringBuffer("Invalid statistics cache entry: ").append(entry).toString());
+                continue;
+            }
+            String key = entry.substring(0, separator).trim();
+            String value = entry.substring(separator + 1).trim();
+            if (IMMUTABLE_VALUE.equalsIgnoreCase(value))
+            {
+                ttls.put(key, Long.valueOf(IMMUTABLE));
+                continue;
+            }
+            try
+            {
+                ttls.put(key, Long.valueOf(Long.parseLong(value)));
+            }
+            catch (NumberFormatException e)
+            {
+                this._logger.warning(new StringBuffer("Invalid statistics cache TTL: ").append(entry).toString());
+            }
+        }
+        return ttls;
+    }
+
+    /**
+     * <p>
+     * A cached value with the time it expires.
+     * </p>
+     */
+    private static final class Entry
+    {
+        private final Object _value;
+        private final long _expires;
+
+        Entry(Object value, long now, long ttl)
+        {
+            this._value = value;
+            this._expires = ttl == IMMUTABLE ? IMMUTABLE : now + ttl;
+        }
+
+        Object getValue()
+        {
+            return this._value;
+        }
+
+        boolean isExpired(long now)
+        {
+            return now >= this._expires;
+        }
+    }
+}
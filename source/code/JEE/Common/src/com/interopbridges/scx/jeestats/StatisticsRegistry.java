@@ -0,0 +1,392 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Registry of the statistics providers (IStatistics classes) served by the
+ * MXBeanExtender.
+ * </p>
+ *
+ * <p>
+ * The statistics classes hold no state of their own, so a single instance of
+ * each is created and shared by all requests. The built-in providers are
+ * created when the registry is built. Additional providers can be added by
+ * listing their class names in a
+ * <code>META-INF/services/com.interopbridges.scx.jeestats.IStatistics</code>
+ * resource (the java.util.ServiceLoader file format), these are returned with
+ * the built-in statistics and are addressed by their class name without the
+ * Statistics suffix.
+ * </p>
+ *
+ * <p>
+ * Other statistics classes are resolved by name on first use and kept for
+ * later requests. Only classes that could be loaded are kept, names that do
+ * not resolve to a statistics class are looked up again every time.
+ * </p>
+ *
+ */
+public class StatisticsRegistry
+{
+    /**
+     * <p>
+     * Package of the built-in statistics classes
+     * </p>
+     */
+    public static final String STATISTICS_PACKAGE = "com.interopbridges.scx.jeestats";
+
+    /**
+     * <p>
+     * Package of the built-in JEE information classes
+     * </p>
+     */
+    public static final String INFORMATION_PACKAGE = "com.interopbridges.scx.jeeinfo";
+
+    /**
+     * <p>
+     * Suffix for all statistic classes
+     * </p>
+     */
+    public static final String STATISTICS_SUFFIX = "Statistics";
+
+    /**
+     * <p>
+     * Resource listing additional statistics classes, one class name per line.
+     * </p>
+     */
+    public static final String SERVICE_RESOURCE = "META-INF/services/" + IStatistics.class.getName();
+
+    /**
+     * <p>
+     * The built-in statistics classes, in the order they are returned.
+     * </p>
+     */
+    private static final String[] BUILTIN_STATISTICS = {
+        STATISTICS_PACKAGE + ".JmxStoreStatistics",
+        STATISTICS_PACKAGE + ".ClassLoaderStatistics",
+        STATISTICS_PACKAGE + ".ThreadStatistics",
+        STATISTICS_PACKAGE + ".JITCompilerStatistics",
+        STATISTICS_PACKAGE + ".GCStatistics",
+        STATISTICS_PACKAGE + ".MemoryStatistics",
+        STATISTICS_PACKAGE + ".RuntimeStatistics",
+    };
+
+    /**
+     * <p>
+     * The built-in JEE information classes, in the order they are returned.
+     * </p>
+     */
+    private static final String[] BUILTIN_INFORMATION = {
+        INFORMATION_PACKAGE + ".JeeJVMMemoryInfo",
+        INFORMATION_PACKAGE + ".JeeJVMOSInfo",
+        INFORMATION_PACKAGE + ".JeeJVMInfo",
+        INFORMATION_PACKAGE + ".JeeServerInfo",
+    };
+
+    /**
+     * <p>
+     * The single instance of the registry.
+     * </p>
+     */
+    private static StatisticsRegistry _inst = null;
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * Statistics instances keyed by class name.
+     * </p>
+     */
+    private final ConcurrentHashMap<String, IStatistics> _providers = new ConcurrentHashMap<String, IStatistics>();
+
+    /**
+     * <p>
+     * Statistics instances added from the service resource, keyed by group
+     * (class name without package and Statistics suffix).
+     * </p>
+     */
+    private final ConcurrentHashMap<String, IStatistics> _extensions = new ConcurrentHashMap<String, IStatistics>();
+
+    /**
+     * <p>
+     * Statistics returned for a request for all statistics.
+     * </p>
+     */
+    private final List<IStatistics> _statistics;
+
+    /**
+     * <p>
+     * Information returned for a request for the JEE information.
+     * </p>
+     */
+    private final List<IStatistics> _information;
+
+    /**
+     * <p>
+     * Build the registry, creating the built-in and additional providers.
+     * </p>
+     */
+    private StatisticsRegistry()
+    {
+        this._logger = LoggingFactory.getLogger();
+
+        List<IStatistics> statistics = new ArrayList<IStatistics>();
+        for (String className : BUILTIN_STATISTICS)
+        {
+            addBuiltin(className, statistics);
+        }
+        for (String className : readServiceResource())
+        {
+            if (this._providers.containsKey(className))
+            {
+                continue;
+            }
+            IStatistics provider = addBuiltin(className, statistics);
+            if (provider != null)
+            {
+                this._extensions.put(getGroup(className), provider);
+            }
+        }
+
+        List<IStatistics> information = new ArrayList<IStatistics>();
+        for (String className : BUILTIN_INFORMATION)
+        {
+            addBuiltin(className, information);
+        }
+
+        this._statistics = Collections.unmodifiableList(statistics);
+        this._information = Collections.unmodifiableList(information);
+    }
+
+    /**
+     * <p>
+     * Singleton entry point, the registry is built on first use.
+     * </p>
+     *
+     * @return The statistics registry
+     */
+    public static synchronized StatisticsRegistry getInstance()
+    {
+        if (_inst == null)
+        {
+            _inst = new StatisticsRegistry();
+        }
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * The statistics returned for a request for all statistics, the built-in
+     * statistics followed by the additional ones.
+     * </p>
+     *
+     * @return Unmodifiable list of statistics providers
+     */
+    public List<IStatistics> getStatistics()
+    {
+        return this._statistics;
+    }
+
+    /**
+     * <p>
+     * The providers returned for a request for the JEE information.
+     * </p>
+     *
+     * @return Unmodifiable list of information providers
+     */
+    public List<IStatistics> getInformation()
+    {
+        return this._information;
+    }
+
+    /**
+     * <p>
+     * Get the provider for a statistic group as used in the URL, e.g. Memory
+     * for /Stats/Memory.
+     * </p>
+     *
+     * @param group
+     *            Name of the group
+     *
+     * @return The provider, or null if the class for the group is not a
+     *         statistics class
+     *
+     * @throws ClassNotFoundException
+     *             If there is no class for the group
+     * @throws InstantiationException
+     *             If the class could not be instantiated
+     * @throws IllegalAccessException
+     *             If the class or its constructor is not accessible
+     */
+    public IStatistics getProviderForGroup(String group)
+        throws ClassNotFoundException, InstantiationException, IllegalAccessException
+    {
+        IStatistics provider = this._extensions.get(group);
+        if (provider != null)
+        {
+            return provider;
+        }
+        return getProvider(STATISTICS_PACKAGE + "." + group + STATISTICS_SUFFIX);
+    }
+
+    /**
+     * <p>
+     * Get the provider for a statistics class, creating and keeping it on
+     * first use.
+     * </p>
+     *
+     * @param className
+     *            Fully qualified name of the statistics class
+     *
+     * @return The provider, or null if the class is not a statistics class
+     *
+     * @throws ClassNotFoundException
+     *             If the class does not exist
+     * @throws InstantiationException
+     *             If the class could not be instantiated
+     * @throws IllegalAccessException
+     *             If the class or its constructor is not accessible
+     */
+    public IStatistics getProvider(String className)
+        throws ClassNotFoundException, InstantiationException, IllegalAccessException
+    {
+        IStatistics provider = this._providers.get(className);
+        if (provider != null)
+        {
+            return provider;
+        }
+
+        Object instance = Class.forName(className).newInstance();
+        if (!(instance instanceof IStatistics))
+        {
+            return null;
+        }
+        provider = this._providers.putIfAbsent(className, (IStatistics) instance);
+        return provider == null ? (IStatistics) instance : provider;
+    }
+
+    /**
+     * <p>
+     * Create a built-in or additional provider and add it to a list. A class
+     * that cannot be created is logged and left out.
+     * </p>
+     */
+    private IStatistics addBuiltin(String className, List<IStatistics> list)
+    {
+        try
+        {
+            IStatistics provider = getProvider(className);
+            if (provider != null)
+            {
+                list.add(provider);
+                StatisticAccessors.forClass(provider.getClass());
+                return provider;
+            }
+            this._logger.warning(new StringBuffer("Class is not a statistics class: ").append(className).toString());
+        }
+        catch (Exception e)
+        {
+            this._logger.warning(new StringBuffer("Unable to create statistics class ").append(className)
+                    .append(" : ").append(e.getMessage()).toString());
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     * Read the class names listed in the service resources. Blank lines and
+     * comments (starting with #) are ignored.
+     * </p>
+     */
+    private List<String> readServiceResource()
+    {
+        List<String> classNames = new ArrayList<String>();
+        try
+        {
+            ClassLoader loader = StatisticsRegistry.class.getClassLoader();
+            Enumeration<URL> resources = loader == null ?
+                    ClassLoader.getSystemResources(SERVICE_RESOURCE) : loader.getResources(SERVICE_RESOURCE);
+            while (resources.hasMoreElements())
+            {
+                InputStream in = resources.nextElement().openStream();
+                try
+                {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        int comment = line.indexOf('#');
+                        if (comment >= 0)
+                        {
+                            line = line.substring(0, comment);
+                        }
+                        line = line.trim();
+                        if (line.length() > 0 && !classNames.contains(line))
+                        {
+                            classNames.add(line);
+                        }
+                    }
+                }
+                finally
+                {
+                    in.close();
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            this._logger.warning(new StringBuffer("Unable to read ").append(SERVICE_RESOURCE)
+                    .append(" : ").append(e.getMessage()).toString());
+        }
+        return classNames;
+    }
+
+    /**
+     * <p>
+     * The group name for a statistics class, the class name without package
+     * and Statistics suffix.
+     * </p>
+     */
+    private static String getGroup(String className)
+    {
+        String group = className.substring(className.lastIndexOf('.') + 1);
+        if (group.endsWith(STATISTICS_SUFFIX) && group.length() > STATISTICS_SUFFIX.length())
+        {
+            group = group.substring(0, group.length() - STATISTICS_SUFFIX.length());
+        }
+        return group;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * Counter spread over several cells so that threads updating it concurrently
+ * rarely contend on the same cache line, in the manner of the Java 8
+ * LongAdder. The cell is picked from the id of the updating thread.
+ * </p>
+ *
+ * <p>
+ * Updates are cheap, reading the value sums all the cells and is meant for
+ * the comparatively rare reporting of the value.
+ * </p>
+ *
+ */
+public final class StripedCounter
+{
+    /**
+     * <p>
+     * Number of cells, a power of two.
+     * </p>
+     */
+    private static final int STRIPES = 16;
+
+    /**
+     * <p>
+     * Distance in longs between two cells, so that each cell sits on its own
+     * 64 byte cache line.
+     * </p>
+     */
+    private static final int PADDING = 8;
+
+    /**
+     * <p>
+     * The cells, only every PADDING-th long is used.
+     * </p>
+     */
+    private final AtomicLongArray _cells = new AtomicLongArray(STRIPES * PADDING);
+
+    /**
+     * <p>
+     * Add to the counter.
+     * </p>
+     *
+     * @param delta
+     *            Value to add, may be negative
+     */
+    public void add(long delta)
+    {
+        int cell = ((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING;
+        this._cells.addAndGet(cell, delta);
+    }
+
+    /**
+     * <p>
+     * Add one to the counter.
+     * </p>
+     */
+    public void increment()
+    {
+        add(1);
+    }
+
+    /**
+     * <p>
+     * Subtract one from the counter.
+     * </p>
+     */
+    public void decrement()
+    {
+        add(-1);
+    }
+
+    /**
+     * <p>
+     * Get the value of the counter. Updates made while the cells are summed
+     * may or may not be included.
+     * </p>
+     *
+     * @return The sum of the cells
+     */
+    public long sum()
+    {
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++)
+        {
+            sum += this._cells.get(i * PADDING);
+        }
+        return sum;
+    }
+}
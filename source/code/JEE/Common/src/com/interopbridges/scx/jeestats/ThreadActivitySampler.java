@@ -0,0 +1,595 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import com.interopbridges.scx.configuration.Config;
+import com.interopbridges.scx.configuration.ConfigKey;
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Samples the CPU time and allocated bytes of every live thread on a fixed
+ * interval and keeps the N threads that used the most CPU, and the N threads
+ * that allocated the most, over the last interval.
+ * </p>
+ *
+ * <p>
+ * The per-thread counters are read with the bulk methods of
+ * com.sun.management.ThreadMXBean (getThreadCpuTime(long[]) and
+ * getThreadAllocatedBytes(long[])) when the JVM provides them, and one thread
+ * at a time otherwise. The values of the previous sample are kept in long[]
+ * buffers sorted by thread id which are reused (and only grown) from one
+ * sample to the next, and the top N are selected in fixed size arrays, so a
+ * sample does not build any per-thread objects. Thread names are only looked
+ * up for the threads that made the top N.
+ * </p>
+ *
+ * <p>
+ * The result is published as an immutable Activity object through a volatile
+ * field, requests read it without taking a lock.
+ * </p>
+ *
+ */
+public class ThreadActivitySampler
+{
+    /**
+     * <p>
+     * Default number of threads reported for each ranking.
+     * </p>
+     */
+    public static final int DEFAULT_TOP_N = 5;
+
+    /**
+     * <p>
+     * The sampler shared by all requests.
+     * </p>
+     */
+    private static final ThreadActivitySampler _inst = new ThreadActivitySampler(
+            new Config(ConfigKey.STATS_SAMPLE_INTERVAL).getLongValue(CounterSampler.DEFAULT_INTERVAL),
+            new Config(ConfigKey.THREAD_ACTIVITY_TOP_N).getIntValue(DEFAULT_TOP_N));
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * Interval in milliseconds between two samples.
+     * </p>
+     */
+    private final long _interval;
+
+    /**
+     * <p>
+     * Number of threads reported for each ranking.
+     * </p>
+     */
+    private final int _topN;
+
+    /**
+     * <p>
+     * Timer running the sampling, null while the sampler is stopped.
+     * </p>
+     */
+    private Timer _timer;
+
+    /**
+     * <p>
+     * The busiest threads over the last interval.
+     * </p>
+     */
+    private volatile Activity _activity = Activity.NONE;
+
+    /**
+     * <p>
+     * Bulk accessors of com.sun.management.ThreadMXBean, null if the JVM
+     * does not provide them.
+     * </p>
+     */
+    private final Method _bulkCpuTime;
+    private final Method _bulkAllocatedBytes;
+
+    /*
+     * State of the sampling thread. The previous sample is held in buffers
+     * sorted by thread id, the current sample in the same kind of buffers,
+     * the two sets are swapped after each sample.
+     */
+    private boolean _hasSample;
+    private long _sampleTime;
+    private int _prevCount;
+    private long[] _prevIds = new long[0];
+    private long[] _prevCpu = new long[0];
+    private long[] _prevAllocated = new long[0];
+    private long[] _curCpu = new long[0];
+    private long[] _curAllocated = new long[0];
+    private long[] _curIds = new long[0];
+    private final long[] _topCpuIds;
+    private final long[] _topCpuValues;
+    private final long[] _topAllocatedIds;
+    private final long[] _topAllocatedValues;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param interval
+     *            Interval in milliseconds between two samples
+     * @param topN
+     *            Number of threads reported for each ranking
+     */
+    ThreadActivitySampler(long interval, int topN)
+    {
+        this._logger = LoggingFactory.getLogger();
+        this._interval = interval > 0 ? interval : CounterSampler.DEFAULT_INTERVAL;
+        this._topN = topN > 0 ? topN : DEFAULT_TOP_N;
+        this._topCpuIds = new long[this._topN];
+        this._topCpuValues = new long[this._topN];
+        this._topAllocatedIds = new long[this._topN];
+        this._topAllocatedValues = new long[this._topN];
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        this._bulkCpuTime = getBulkMethod(threads, "getThreadCpuTime", "isThreadCpuTimeEnabled");
+        this._bulkAllocatedBytes = getBulkMethod(threads, "getThreadAllocatedBytes", "isThreadAllocatedMemoryEnabled");
+    }
+
+    /**
+     * <p>
+     * Get the sampler shared by all requests.
+     * </p>
+     */
+    public static ThreadActivitySampler getInstance()
+    {
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * Start sampling, if the sampler is not running already.
+     * </p>
+     */
+    public synchronized void start()
+    {
+        if (this._timer != null)
+        {
+            return;
+        }
+        this._timer = new Timer("BeanSpy-ThreadActivitySampler", true);
+        this._timer.schedule(new TimerTask()
+        {
+            public void run()
+            {
+                try
+                {
+                    sample();
+                }
+                catch (RuntimeException e)
+                {
+                    _logger.fine(new StringBuffer("Unable to sample the thread activity: ")
+                            .append(e.getMessage()).toString());
+                }
+            }
+        }, 0, this._interval);
+    }
+
+    /**
+     * <p>
+     * Stop sampling. The last result remains available.
+     * </p>
+     */
+    public synchronized void stop()
+    {
+        if (this._timer != null)
+        {
+            this._timer.cancel();
+            this._timer = null;
+        }
+    }
+
+    /**
+     * <p>
+     * The busiest threads over the last interval.
+     * </p>
+     *
+     * @return The thread activity, empty until two samples have been taken
+     */
+    public Activity getActivity()
+    {
+        return this._activity;
+    }
+
+    /**
+     * <p>
+     * Take a sample of the per-thread counters and publish the busiest
+     * threads since the previous sample. Called from the timer thread only
+     * (or directly by the unit tests on a sampler that is not started).
+     * </p>
+     */
+    void sample()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long now = System.nanoTime();
+
+        long[] ids = threads.getAllThreadIds();
+        Arrays.sort(ids);
+        int count = ids.length;
+        ensureCapacity(count);
+        System.arraycopy(ids, 0, this._curIds, 0, count);
+
+        boolean cpuAvailable = readCpuTime(threads, ids, this._curCpu);
+        boolean allocatedAvailable = readAllocatedBytes(threads, ids, this._curAllocated);
+
+        if (this._hasSample && now > this._sampleTime)
+        {
+            Arrays.fill(this._topCpuIds, -1);
+            Arrays.fill(this._topCpuValues, -1);
+            Arrays.fill(this._topAllocatedIds, -1);
+            Arrays.fill(this._topAllocatedValues, -1);
+
+            // Both sets are sorted by thread id, walk them side by side
+            int p = 0;
+            for (int i = 0; i < count; i++)
+            {
+                long id = this._curIds[i];
+                while (p < this._prevCount && this._prevIds[p] < id)
+                {
+                    p++;
+                }
+                boolean known = p < this._prevCount && this._prevIds[p] == id;
+                long cpuDelta = known ? this._curCpu[i] - this._prevCpu[p] : this._curCpu[i];
+                long allocatedDelta = known ? this._curAllocated[i] - this._prevAllocated[p] : this._curAllocated[i];
+
+                if (cpuAvailable && this._curCpu[i] >= 0)
+                {
+                    insertTop(this._topCpuIds, this._topCpuValues, id, cpuDelta);
+                }
+                if (allocatedAvailable && this._curAllocated[i] >= 0)
+                {
+                    insertTop(this._topAllocatedIds, this._topAllocatedValues, id, allocatedDelta);
+                }
+            }
+
+            long elapsed = now - this._sampleTime;
+            this._activity = new Activity(elapsed / 1000000L,
+                    toEntries(threads, this._topCpuIds, this._topCpuValues, elapsed, true),
+                    toEntries(threads, this._topAllocatedIds, this._topAllocatedValues, elapsed, false));
+        }
+
+        // The current sample becomes the previous one
+        long[] swap = this._prevIds;
+        this._prevIds = this._curIds;
+        this._curIds = swap;
+        swap = this._prevCpu;
+        this._prevCpu = this._curCpu;
+        this._curCpu = swap;
+        swap = this._prevAllocated;
+        this._prevAllocated = this._curAllocated;
+        this._curAllocated = swap;
+        this._prevCount = count;
+        this._sampleTime = now;
+        this._hasSample = true;
+    }
+
+    /**
+     * <p>
+     * Grow the buffers of the current sample when there are more threads than
+     * they can hold, the buffers are never shrunk.
+     * </p>
+     */
+    private void ensureCapacity(int count)
+    {
+        if (this._curIds.length < count)
+        {
+            int size = Math.max(count, this._curIds.length * 2);
+            this._curIds = new long[size];
+            this._curCpu = new long[size];
+            this._curAllocated = new long[size];
+        }
+    }
+
+    /**
+     * <p>
+     * Read the CPU time of the threads into the buffer.
+     * </p>
+     *
+     * @return false if the CPU time of the threads is not available
+     */
+    private boolean readCpuTime(ThreadMXBean threads, long[] ids, long[] buffer)
+    {
+        if (this._bulkCpuTime != null)
+        {
+            long[] values = invokeBulk(this._bulkCpuTime, threads, ids);
+            if (values != null)
+            {
+                System.arraycopy(values, 0, buffer, 0, ids.length);
+                return true;
+            }
+        }
+        if (!threads.isThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled())
+        {
+            return false;
+        }
+        for (int i = 0; i < ids.length; i++)
+        {
+            buffer[i] = threads.getThreadCpuTime(ids[i]);
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Read the allocated bytes of the threads into the buffer.
+     * </p>
+     *
+     * @return false if the allocated bytes are not available
+     */
+    private boolean readAllocatedBytes(ThreadMXBean threads, long[] ids, long[] buffer)
+    {
+        if (this._bulkAllocatedBytes == null)
+        {
+            return false;
+        }
+        long[] values = invokeBulk(this._bulkAllocatedBytes, threads, ids);
+        if (values == null)
+        {
+            return false;
+        }
+        System.arraycopy(values, 0, buffer, 0, ids.length);
+        return true;
+    }
+
+    /**
+     * <p>
+     * Add a value to a top N ranking held in two fixed size arrays sorted by
+     * descending value, the smallest entry drops out.
+     * </p>
+     */
+    static void insertTop(long[] topIds, long[] topValues, long id, long value)
+    {
+        int n = topValues.length;
+        if (value < 0 || value <= topValues[n - 1])
+        {
+            return;
+        }
+        int pos = n - 1;
+        while (pos > 0 && topValues[pos - 1] < value)
+        {
+            topValues[pos] = topValues[pos - 1];
+            topIds[pos] = topIds[pos - 1];
+            pos--;
+        }
+        topValues[pos] = value;
+        topIds[pos] = id;
+    }
+
+    /**
+     * <p>
+     * Build the published entries for a ranking, looking up the names of the
+     * ranked threads only.
+     * </p>
+     */
+    private static Entry[] toEntries(ThreadMXBean threads, long[] topIds, long[] topValues,
+            long elapsedNanos, boolean cpu)
+    {
+        int n = 0;
+        while (n < topIds.length && topIds[n] >= 0)
+        {
+            n++;
+        }
+        long[] ids = new long[n];
+        System.arraycopy(topIds, 0, ids, 0, n);
+        ThreadInfo[] infos = n == 0 ? new ThreadInfo[0] : threads.getThreadInfo(ids);
+
+        Entry[] entries = new Entry[n];
+        for (int i = 0; i < n; i++)
+        {
+            String name = infos[i] == null ? "" : infos[i].getThreadName();
+            double perSecond = topValues[i] * 1000000000.0 / elapsedNanos;
+            entries[i] = cpu
+                    ? new Entry(ids[i], name, perSecond / 10000000.0, -1)
+                    : new Entry(ids[i], name, -1, (long) perSecond);
+        }
+        return entries;
+    }
+
+    /**
+     * <p>
+     * Invoke a bulk accessor of com.sun.management.ThreadMXBean.
+     * </p>
+     *
+     * @return The values, or null if the call failed
+     */
+    private static long[] invokeBulk(Method method, ThreadMXBean threads, long[] ids)
+    {
+        try
+        {
+            return (long[]) method.invoke(threads, new Object[] { ids });
+        }
+        catch (Exception e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Look up a bulk accessor of com.sun.management.ThreadMXBean, when it is
+     * available and the matching measurement is enabled.
+     * </p>
+     */
+    private static Method getBulkMethod(ThreadMXBean threads, String methodName, String enabledName)
+    {
+        try
+        {
+            Class<?> sunThreadBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (!sunThreadBean.isInstance(threads))
+            {
+                return null;
+            }
+            Boolean enabled = (Boolean) sunThreadBean.getMethod(enabledName, (Class<?>[]) null)
+                    .invoke(threads, (Object[]) null);
+            if (!enabled.booleanValue())
+            {
+                return null;
+            }
+            return sunThreadBean.getMethod(methodName, new Class<?>[] { long[].class });
+        }
+        catch (Throwable e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * <p>
+     * Immutable result of a sample: the threads that used the most CPU and
+     * the threads that allocated the most over the interval.
+     * </p>
+     */
+    public static final class Activity
+    {
+        /**
+         * <p>
+         * Activity reported before two samples have been taken.
+         * </p>
+         */
+        static final Activity NONE = new Activity(0, new Entry[0], new Entry[0]);
+
+        /*
+         * See the corresponding get methods.
+         */
+        private final long _interval;
+        private final Entry[] _topCpu;
+        private final Entry[] _topAllocation;
+
+        Activity(long interval, Entry[] topCpu, Entry[] topAllocation)
+        {
+            this._interval = interval;
+            this._topCpu = topCpu;
+            this._topAllocation = topAllocation;
+        }
+
+        /**
+         * <p>
+         * Milliseconds between the two samples, 0 if no sample is available
+         * yet
+         * </p>
+         */
+        public long getInterval()
+        {
+            return this._interval;
+        }
+
+        /**
+         * <p>
+         * The threads that used the most CPU, busiest first
+         * </p>
+         */
+        public Entry[] getTopCpu()
+        {
+            return this._topCpu.clone();
+        }
+
+        /**
+         * <p>
+         * The threads that allocated the most, busiest first
+         * </p>
+         */
+        public Entry[] getTopAllocation()
+        {
+            return this._topAllocation.clone();
+        }
+    }
+
+    /**
+     * <p>
+     * Immutable activity of a single thread.
+     * </p>
+     */
+    public static final class Entry
+    {
+        /*
+         * See the corresponding get methods.
+         */
+        private final long _threadId;
+        private final String _threadName;
+        private final double _cpuPercent;
+        private final long _allocationRate;
+
+        Entry(long threadId, String threadName, double cpuPercent, long allocationRate)
+        {
+            this._threadId = threadId;
+            this._threadName = threadName;
+            this._cpuPercent = cpuPercent;
+            this._allocationRate = allocationRate;
+        }
+
+        /**
+         * <p>
+         * Id of the thread
+         * </p>
+         */
+        public long getThreadId()
+        {
+            return this._threadId;
+        }
+
+        /**
+         * <p>
+         * Name of the thread, empty if it ended before its name was read
+         * </p>
+         */
+        public String getThreadName()
+        {
+            return this._threadName;
+        }
+
+        /**
+         * <p>
+         * CPU used by the thread in percent of one processor, -1 if this
+         * entry is from the allocation ranking
+         * </p>
+         */
+        public double getCpuPercent()
+        {
+            return this._cpuPercent;
+        }
+
+        /**
+         * <p>
+         * Bytes allocated per second by the thread, -1 if this entry is from
+         * the CPU ranking
+         * </p>
+         */
+        public long getAllocationRate()
+        {
+            return this._allocationRate;
+        }
+    }
+}
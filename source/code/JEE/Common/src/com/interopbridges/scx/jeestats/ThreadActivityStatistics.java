@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+/**
+ * <p>
+ * Reports the threads that used the most CPU and the threads that allocated
+ * the most over the last sampling interval of the ThreadActivitySampler.
+ * </p>
+ *
+ * <p>
+ * Each ranked thread is returned as its own group of properties, identified
+ * by RankedBy, Rank and ThreadId, the threads ranked by CPU first (busiest first) followed by the threads ranked by
+ * allocation. Nothing is returned until the sampler has taken two samples, or
+ * for a ranking the JVM cannot measure.
+ * </p>
+ *
+ */
+public class ThreadActivityStatistics extends GenericStatistics
+{
+    /**
+     * <p>
+     * Group name for this type of statistic
+     * </p>
+     */
+    private static final String StatisticGroupname = "ThreadActivity";
+
+    /**
+     * <p>
+     * Name identifying the ranking the thread is listed in (CPU or Allocation)
+     * </p>
+     */
+    private static final String RankedBy = "RankedBy";
+
+    /**
+     * <p>
+     * Name identifying the position of the thread in the ranking
+     * </p>
+     */
+    private static final String Rank = "Rank";
+
+    /**
+     * <p>
+     * Name identifying the thread id
+     * </p>
+     */
+    private static final String ThreadId = "ThreadId";
+
+    /**
+     * <p>
+     * Name identifying the thread name
+     * </p>
+     */
+    private static final String ThreadName = "ThreadName";
+
+    /**
+     * <p>
+     * Name identifying the CPU used by the thread in percent of one processor
+     * </p>
+     */
+    private static final String CpuPercent = "CpuPercent";
+
+    /**
+     * <p>
+     * Name identifying the bytes allocated per second by the thread
+     * </p>
+     */
+    private static final String AllocationRate = "AllocationRate";
+
+    /**
+     * <p>
+     * Name identifying the length of the window in milliseconds
+     * </p>
+     */
+    private static final String SampleInterval = "SampleInterval";
+
+    /**
+     * <p>
+     * The sampler the ranked threads are read from
+     * </p>
+     */
+    private final ThreadActivitySampler _sampler;
+
+    /**
+     * <p>
+     * Default constructor, starts the sampler if it is not running yet.
+     * </p>
+     */
+    public ThreadActivityStatistics()
+    {
+       this(ThreadActivitySampler.getInstance());
+       ThreadActivitySampler.getInstance().start();
+    }
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param sampler
+     *            The sampler the ranked threads are read from
+     */
+    ThreadActivityStatistics(ThreadActivitySampler sampler)
+    {
+       super(StatisticGroupname);
+       this._sampler = sampler;
+    }
+
+    /**
+     * <p>
+     * Retrieves the ranked threads of the last sampling interval
+     * </p>
+     *
+     * @return a StatisticGroup containing a group of statistics per ranked
+     *         thread
+     */
+    public StatisticGroup getStats()
+    {
+        StatisticGroup _statsgrp = new StatisticGroup(_name);
+        ThreadActivitySampler.Activity activity = this._sampler.getActivity();
+
+        ThreadActivitySampler.Entry[] cpu = activity.getTopCpu();
+        for (int i = 0; i < cpu.length; i++)
+        {
+            StatisticItemGroup _statsitemgrp = newRankedThread("CPU", i + 1, cpu[i], activity.getInterval());
+            _statsitemgrp.addStatistic(new DoubleStatistic(CpuPercent,
+                    cpu[i].getCpuPercent(), 2));
+            _statsgrp.addStatisticItemGroup(_statsitemgrp);
+        }
+
+        ThreadActivitySampler.Entry[] allocation = activity.getTopAllocation();
+        for (int i = 0; i < allocation.length; i++)
+        {
+            StatisticItemGroup _statsitemgrp = newRankedThread("Allocation", i + 1, allocation[i], activity.getInterval());
+            _statsitemgrp.addStatistic(new LongStatistic(AllocationRate, long.class, allocation[i].getAllocationRate()));
+            _statsgrp.addStatisticItemGroup(_statsitemgrp);
+        }
+
+        return _statsgrp;
+    }
+
+    /**
+     * <p>
+     * Build the statistics common to the CPU and allocation rankings.
+     * </p>
+     */
+    private static StatisticItemGroup newRankedThread(String rankedBy, int rank,
+            ThreadActivitySampler.Entry entry, long interval)
+    {
+        StatisticItemGroup _statsitemgrp = new StatisticItemGroup();
+        _statsitemgrp.addStatistic(new Statistic(RankedBy, String.class, rankedBy));
+        _statsitemgrp.addKeyStatistic(new LongStatistic(Rank, int.class, rank));
+        _statsitemgrp.addKeyStatistic(new LongStatistic(ThreadId, long.class, entry.getThreadId()));
+        _statsitemgrp.addStatistic(new Statistic(ThreadName, String.class, entry.getThreadName()));
+        _statsitemgrp.addStatistic(new LongStatistic(SampleInterval, long.class, interval));
+        return _statsitemgrp;
+    }
+}
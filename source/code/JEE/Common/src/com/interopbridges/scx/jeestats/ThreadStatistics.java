@@ -17,6 +17,7 @@
 package com.interopbridges.scx.jeestats;
 
 import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 
 
 /**
@@ -45,6 +46,13 @@ public class ThreadStatistics  extends GenericStatistics
      */
     private static final String StatisticGroupname = "Thread";
     
+    /**
+     * <p>
+     * The MXBean the statistics are read from
+     * </p>
+     */
+    private final ThreadMXBean _threads;
+    
     /**
      * <p>
      * Name identifying the statistical value containing the 
@@ -76,8 +84,43 @@ public class ThreadStatistics  extends GenericStatistics
      * </p>
      */
     public ThreadStatistics()
+    {
+       this(ManagementFactory.getThreadMXBean());
+    }
+    
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     * 
+     * @param threads
+     *            The MXBean the statistics are read from
+     */
+    ThreadStatistics(ThreadMXBean threads)
     {
        super(StatisticGroupname);    
+       this._threads = threads;
+    }
+    
+    /**
+     * <p>
+     * Read the thread counts once for all the statistics of a request.
+     * </p>
+     */
+    protected Object capture()
+    {
+        return new Snapshot(_threads.getPeakThreadCount(), _threads.getThreadCount(),
+                _threads.getTotalStartedThreadCount());
+    }
+    
+    /**
+     * <p>
+     * Get the snapshot of the current request.
+     * </p>
+     */
+    private Snapshot current()
+    {
+        return (Snapshot) getSnapshot();
     }
     
     /**
@@ -100,8 +143,8 @@ public class ThreadStatistics  extends GenericStatistics
     @StatisticMethod
     public Statistic getPeakThreadCount()
     {
-        return new Statistic(PeakThreadCount,
-                int.class,ManagementFactory.getThreadMXBean().getPeakThreadCount());
+        return new LongStatistic(PeakThreadCount,
+                int.class,current()._peakThreadCount);
     }
     
     /**
@@ -124,8 +167,8 @@ public class ThreadStatistics  extends GenericStatistics
     @StatisticMethod
     public Statistic getThreadCount()
     {
-        return new Statistic(ThreadCount,
-                int.class,ManagementFactory.getThreadMXBean().getThreadCount());
+        return new LongStatistic(ThreadCount,
+                int.class,current()._threadCount);
     }
     
     /**
@@ -148,8 +191,26 @@ public class ThreadStatistics  extends GenericStatistics
     @StatisticMethod
     public Statistic getTotalStartedThreadCount()
     {
-        return new Statistic(TotalStartedThreadCount,
-                long.class,ManagementFactory.getThreadMXBean().getTotalStartedThreadCount());
+        return new LongStatistic(TotalStartedThreadCount,
+                long.class,current()._totalStartedThreadCount);
     }
     
+    /**
+     * <p>
+     * The values read from the ThreadMXBean for one request.
+     * </p>
+     */
+    private static final class Snapshot
+    {
+        private final int _peakThreadCount;
+        private final int _threadCount;
+        private final long _totalStartedThreadCount;
+
+        Snapshot(int peakThreadCount, int threadCount, long totalStartedThreadCount)
+        {
+            this._peakThreadCount = peakThreadCount;
+            this._threadCount = threadCount;
+            this._totalStartedThreadCount = totalStartedThreadCount;
+        }
+    }
 }
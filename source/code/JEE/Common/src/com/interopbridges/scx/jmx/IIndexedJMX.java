@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use 
+ * this file except in compliance with the License. You may obtain a copy of the 
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *  
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS 
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION 
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE, 
+ * MERCHANTABLITY OR NON-INFRINGEMENT. 
+ *
+ * See the Apache Version 2.0 License for specific language governing 
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jmx;
+
+/**
+ * <p>
+ * Implemented by the JMX Store abstractions that can answer queries from a
+ * local index of the registered ObjectNames (see {@link ObjectNameIndex})
+ * instead of querying the underlying MBeanServer each time.
+ * </p>
+ * 
+ * <p>
+ * The index is enabled by JmxStores when the store is added to the list of
+ * connected stores, and disabled when the store is removed.
+ * </p>
+ * 
+ */
+public interface IIndexedJMX
+{
+    /**
+     * <p>
+     * Start maintaining the ObjectName index for the store. If the underlying
+     * MBeanServer does not support registration notifications the store
+     * keeps querying the MBeanServer directly.
+     * </p>
+     * 
+     * @return true if queries are now answered from the index
+     */
+    public boolean enableObjectNameIndex();
+
+    /**
+     * <p>
+     * Stop maintaining the ObjectName index for the store, all further queries
+     * go to the underlying MBeanServer.
+     * </p>
+     */
+    public void disableObjectNameIndex();
+}
@@ -40,14 +40,13 @@ import com.interopbridges.scx.ScxExceptionCode;
 import com.interopbridges.scx.log.ILogger;
 import com.interopbridges.scx.log.LoggingFactory;
 
-import com.interopbridges.scx.util.JmxConstant;
 /**
  * <p>
  * JBoss 4.2.1/5.1.0 Abstraction for the MX4J JMX Store
  * </p>
  * 
  */
-public class JBossJMXAbstraction implements IJMX
+public class JBossJMXAbstraction implements IJMX, IIndexedJMX
 {
 
     /**
@@ -57,6 +56,13 @@ public class JBossJMXAbstraction implements IJMX
      */
     private MBeanServer _server;
 
+    /**
+     * <p>
+     * Local index of the registered ObjectNames of the store.
+     * </p>
+     */
+    private final ObjectNameIndexSupport _index = new ObjectNameIndexSupport();
+
     /**
      * <p>
      * Logger for the class.
@@ -109,13 +115,10 @@ public class JBossJMXAbstraction implements IJMX
 				
 				if (JMXClass == "java.lang.management.ManagementFactory")
 				{
-					ObjectName name = new ObjectName("jboss.as:management-root=server");
-					String serverState = (String) (_server.getAttribute(name, "processType"));
-					if(!serverState.isEmpty() &&
-						serverState.equals("Server"))
-					{
-						JmxConstant.IS_JBOSS7_WILDFLY = true;
-					}
+					// The platform MBeanServer is only a JBoss store if it holds the JBoss 7 / Wildfly
+					// server MBean, reading it fails otherwise. Telling JBoss 7 and Wildfly apart from
+					// the earlier versions is left to the ServerFingerprint built by JmxStores.
+					_server.getAttribute(new ObjectName("jboss.as:management-root=server"), "processType");
 				}
             }
             else
@@ -245,7 +248,7 @@ public class JBossJMXAbstraction implements IJMX
     public Set<ObjectInstance> queryMBeans(ObjectName name, QueryExp query)
             throws IOException
     {
-        return this._server.queryMBeans(name, query);
+        return this._index.queryMBeans(this._server, name, query);
     }
 
     /*
@@ -257,7 +260,7 @@ public class JBossJMXAbstraction implements IJMX
     public Set<ObjectName> queryNames(ObjectName name, QueryExp query)
             throws IOException
     {
-        return this._server.queryNames(name, query);
+        return this._index.queryNames(this._server, name, query);
     }
 
     /*
@@ -295,5 +298,24 @@ public class JBossJMXAbstraction implements IJMX
     {
         return this._server.invoke(name, operationName, params, signature);
     }
-    
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.interopbridges.scx.jmx.IIndexedJMX#enableObjectNameIndex()
+     */
+    public boolean enableObjectNameIndex()
+    {
+        return this._index.enable(this._server);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.interopbridges.scx.jmx.IIndexedJMX#disableObjectNameIndex()
+     */
+    public void disableObjectNameIndex()
+    {
+        this._index.disable();
+    }
 }
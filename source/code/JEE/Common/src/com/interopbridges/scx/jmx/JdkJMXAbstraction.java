@@ -41,7 +41,7 @@ import javax.management.ReflectionException;
  * 
  * @author Christopher Crammond
  */
-public class JdkJMXAbstraction implements IJMX {
+public class JdkJMXAbstraction implements IJMX, IIndexedJMX {
 
     /**
      * <p>
@@ -50,6 +50,13 @@ public class JdkJMXAbstraction implements IJMX {
      */
     protected MBeanServer _server;
 
+    /**
+     * <p>
+     * Local index of the registered ObjectNames of the store.
+     * </p>
+     */
+    private final ObjectNameIndexSupport _index = new ObjectNameIndexSupport();
+
     /**
      * <p>
      * Default Constructor
@@ -179,7 +186,7 @@ public class JdkJMXAbstraction implements IJMX {
     public Set<ObjectInstance> queryMBeans(ObjectName name, QueryExp query) 
             throws IOException
     {
-        return this._server.queryMBeans(name, query);
+        return this._index.queryMBeans(this._server, name, query);
     }
 
     /*
@@ -191,7 +198,7 @@ public class JdkJMXAbstraction implements IJMX {
     public Set<ObjectName> queryNames(ObjectName name, QueryExp query) 
             throws IOException
     {
-        return this._server.queryNames(name, query);
+        return this._index.queryNames(this._server, name, query);
     }
 
     /*
@@ -228,4 +235,24 @@ public class JdkJMXAbstraction implements IJMX {
     {
         return this._server.invoke(name, operationName, params, signature);
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.interopbridges.scx.jmx.IIndexedJMX#enableObjectNameIndex()
+     */
+    public boolean enableObjectNameIndex()
+    {
+        return this._index.enable(this._server);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.interopbridges.scx.jmx.IIndexedJMX#disableObjectNameIndex()
+     */
+    public void disableObjectNameIndex()
+    {
+        this._index.disable();
+    }
 }
@@ -0,0 +1,323 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jmx;
+
+/**
+ * <p>
+ * Health record for a single JMX store. The record keeps track of the number
+ * of queries sent to the store, how many of them failed, and how long they
+ * took.
+ * </p>
+ *
+ * <p>
+ * When a store fails a number of times in a row it is put into quarantine and
+ * no queries are sent to it until the quarantine period expires. Each time the
+ * store fails again after the quarantine period the period is doubled, up to
+ * a configurable maximum. A single successful call resets the record back to
+ * healthy.
+ * </p>
+ *
+ */
+public class JmxStoreHealth
+{
+    /**
+     * <p>
+     * Number of consecutive failures before the store is quarantined.
+     * </p>
+     */
+    private final int _quarantineThreshold;
+
+    /**
+     * <p>
+     * Initial quarantine period (in milliseconds).
+     * </p>
+     */
+    private final long _initialBackoff;
+
+    /**
+     * <p>
+     * Upper bound of the quarantine period (in milliseconds).
+     * </p>
+     */
+    private final long _maxBackoff;
+
+    /**
+     * <p>
+     * Total number of queries sent to the store.
+     * </p>
+     */
+    private long _requestCount;
+
+    /**
+     * <p>
+     * Total number of queries to the store that failed.
+     * </p>
+     */
+    private long _errorCount;
+
+    /**
+     * <p>
+     * Number of failures since the last successful query.
+     * </p>
+     */
+    private int _consecutiveFailures;
+
+    /**
+     * <p>
+     * Sum of the latency of all the queries (in milliseconds).
+     * </p>
+     */
+    private long _totalLatency;
+
+    /**
+     * <p>
+     * Latency of the slowest query (in milliseconds).
+     * </p>
+     */
+    private long _maxLatency;
+
+    /**
+     * <p>
+     * Latency of the most recent query (in milliseconds).
+     * </p>
+     */
+    private long _lastLatency;
+
+    /**
+     * <p>
+     * Current quarantine period, zero while the store is healthy.
+     * </p>
+     */
+    private long _backoff;
+
+    /**
+     * <p>
+     * Time (as returned by System.currentTimeMillis()) until which the store
+     * is quarantined, zero while the store is healthy.
+     * </p>
+     */
+    private long _quarantinedUntil;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param quarantineThreshold
+     *            Number of consecutive failures before the store is
+     *            quarantined.
+     * @param initialBackoff
+     *            Initial quarantine period (in milliseconds).
+     * @param maxBackoff
+     *            Upper bound of the quarantine period (in milliseconds).
+     */
+    public JmxStoreHealth(int quarantineThreshold, long initialBackoff, long maxBackoff)
+    {
+        this._quarantineThreshold = Math.max(1, quarantineThreshold);
+        this._initialBackoff = Math.max(1, initialBackoff);
+        this._maxBackoff = Math.max(this._initialBackoff, maxBackoff);
+    }
+
+    /**
+     * <p>
+     * Record a successful query against the store.
+     * </p>
+     *
+     * @param latency
+     *            Time taken by the query (in milliseconds).
+     */
+    public synchronized void recordSuccess(long latency)
+    {
+        recordLatency(latency);
+        this._consecutiveFailures = 0;
+        this._backoff = 0;
+        this._quarantinedUntil = 0;
+    }
+
+    /**
+     * <p>
+     * Record a failed query against the store. If the number of consecutive
+     * failures reaches the threshold the store is quarantined.
+     * </p>
+     *
+     * @param latency
+     *            Time taken by the query (in milliseconds).
+     * @param now
+     *            Current time (as returned by System.currentTimeMillis()).
+     *
+     * @return true if this failure put the store into quarantine.
+     */
+    public synchronized boolean recordFailure(long latency, long now)
+    {
+        recordLatency(latency);
+        this._errorCount++;
+        this._consecutiveFailures++;
+
+        if (this._consecutiveFailures >= this._quarantineThreshold)
+        {
+            this._backoff = this._backoff == 0 ? this._initialBackoff : Math.min(
+                    this._backoff * 2, this._maxBackoff);
+            this._quarantinedUntil = now + this._backoff;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * <p>
+     * Check if the store is in quarantine at the given time.
+     * </p>
+     *
+     * @param now
+     *            Current time (as returned by System.currentTimeMillis()).
+     *
+     * @return true if queries should not be sent to the store.
+     */
+    public synchronized boolean isQuarantined(long now)
+    {
+        return this._quarantinedUntil != 0 && now < this._quarantinedUntil;
+    }
+
+    /**
+     * <p>
+     * Check if the store has been quarantined and the quarantine period has
+     * expired, meaning the store should be probed before it is used again.
+     * </p>
+     *
+     * @param now
+     *            Current time (as returned by System.currentTimeMillis()).
+     *
+     * @return true if the store is due to be re-probed.
+     */
+    public synchronized boolean isProbeDue(long now)
+    {
+        return this._quarantinedUntil != 0 && now >= this._quarantinedUntil;
+    }
+
+    /**
+     * <p>
+     * Claim the probe of a store whose quarantine period has expired. Only
+     * one caller gets the probe: the quarantine is extended by the current
+     * period before returning, so the other callers keep treating the store
+     * as quarantined until the outcome of the probe is recorded.
+     * </p>
+     *
+     * @param now
+     *            Current time (as returned by System.currentTimeMillis()).
+     *
+     * @return true if the caller must probe the store.
+     */
+    public synchronized boolean claimProbe(long now)
+    {
+        if (!isProbeDue(now))
+        {
+            return false;
+        }
+        this._quarantinedUntil = now + this._backoff;
+        return true;
+    }
+
+    /**
+     * <p>
+     * Total number of queries sent to the store.
+     * </p>
+     */
+    public synchronized long getRequestCount()
+    {
+        return this._requestCount;
+    }
+
+    /**
+     * <p>
+     * Total number of queries to the store that failed.
+     * </p>
+     */
+    public synchronized long getErrorCount()
+    {
+        return this._errorCount;
+    }
+
+    /**
+     * <p>
+     * Number of failures since the last successful query.
+     * </p>
+     */
+    public synchronized int getConsecutiveFailures()
+    {
+        return this._consecutiveFailures;
+    }
+
+    /**
+     * <p>
+     * Average latency of the queries (in milliseconds).
+     * </p>
+     */
+    public synchronized long getAverageLatency()
+    {
+        return this._requestCount == 0 ? 0 : this._totalLatency / this._requestCount;
+    }
+
+    /**
+     * <p>
+     * Latency of the slowest query (in milliseconds).
+     * </p>
+     */
+    public synchronized long getMaxLatency()
+    {
+        return this._maxLatency;
+    }
+
+    /**
+     * <p>
+     * Latency of the most recent query (in milliseconds).
+     * </p>
+     */
+    public synchronized long getLastLatency()
+    {
+        return this._lastLatency;
+    }
+
+    /**
+     * <p>
+     * Current quarantine period (in milliseconds), zero while the store is
+     * healthy.
+     * </p>
+     */
+    public synchronized long getBackoff()
+    {
+        return this._backoff;
+    }
+
+    /**
+     * <p>
+     * Update the request count and latency figures.
+     * </p>
+     *
+     * @param latency
+     *            Time taken by the query (in milliseconds).
+     */
+    private void recordLatency(long latency)
+    {
+        this._requestCount++;
+        this._totalLatency += latency;
+        this._lastLatency = latency;
+        if (latency > this._maxLatency)
+        {
+            this._maxLatency = latency;
+        }
+    }
+}
@@ -17,8 +17,13 @@
 package com.interopbridges.scx.jmx;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.interopbridges.scx.configuration.Config;
+import com.interopbridges.scx.configuration.ConfigKey;
+import com.interopbridges.scx.jeestats.StatisticsCache;
 import com.interopbridges.scx.log.ILogger;
 import com.interopbridges.scx.log.LoggingFactory;
 import com.interopbridges.scx.util.JmxConstant;
@@ -55,6 +60,55 @@ public class JmxStores
      */
     private static List<String> _jmxStoreNames = new ArrayList<String>();
 
+    /**
+     * <p>
+     * Health record for each JMX store that has been queried. The stores do
+     * not necessarily implement equals(), so the map is keyed on identity.
+     * </p>
+     */
+    private static Map<IJMX, JmxStoreHealth> _storeHealth = new IdentityHashMap<IJMX, JmxStoreHealth>();
+
+    /**
+     * <p>
+     * Fingerprint of the application server, built again each time the
+     * stores change.
+     * </p>
+     */
+    private static volatile ServerFingerprint _fingerprint = ServerFingerprint.NONE;
+
+    /**
+     * <p>
+     * Number of consecutive failures before a JMX store is quarantined.
+     * </p>
+     */
+    private static final int QUARANTINE_THRESHOLD = (new Config(
+            ConfigKey.STORE_QUARANTINE_THRESHOLD)).getIntValue(3);
+
+    /**
+     * <p>
+     * Initial time (in milliseconds) a failing JMX store is quarantined for.
+     * </p>
+     */
+    private static final long QUARANTINE_BACKOFF = (new Config(
+            ConfigKey.STORE_QUARANTINE_BACKOFF)).getLongValue(5000);
+
+    /**
+     * <p>
+     * Maximum time (in milliseconds) a failing JMX store is quarantined for.
+     * </p>
+     */
+    private static final long QUARANTINE_MAX_BACKOFF = (new Config(
+            ConfigKey.STORE_QUARANTINE_MAX_BACKOFF)).getLongValue(300000);
+
+    /**
+     * <p>
+     * If true, stores that support it answer queries from a local index of
+     * the registered ObjectNames.
+     * </p>
+     */
+    private static final boolean OBJECTNAME_INDEX_ENABLED = (new Config(
+            ConfigKey.OBJECTNAME_INDEX_ENABLED)).getBooleanValue(true);
+
     /**
      * <p>
      * Clear the list of connected JMX Stores.
@@ -64,8 +118,19 @@ public class JmxStores
     {
         synchronized (semaphore)
         {
+            for (IJMX store : _iJmxStores)
+            {
+                if (store instanceof IIndexedJMX)
+                {
+                    ((IIndexedJMX) store).disableObjectNameIndex();
+                }
+            }
             _iJmxStores.clear();
             _jmxStoreNames.clear();
+            _storeHealth.clear();
+            _fingerprint = ServerFingerprint.NONE;
+            // Cached statistics may have been read from the removed stores
+            StatisticsCache.getInstance().invalidate();
         }
     }
 
@@ -201,7 +266,11 @@ public class JmxStores
                             * stores. This is done because there is specific logic in the Jdk JMX store to 
                             * handle context switching for class loading.
                             */
-                           _iJmxStores.remove(i);
+                           IJMX duplicate = _iJmxStores.remove(i);
+                           if (duplicate instanceof IIndexedJMX)
+                           {
+                               ((IIndexedJMX) duplicate).disableObjectNameIndex();
+                           }
 
                            /*
                             * We have found and removed the duplicate MBeanServer, there is no need to continue 
@@ -211,8 +280,20 @@ public class JmxStores
                        }
                     }
                      _iJmxStores.add(objJMXAbstraction);
+
+                     if (OBJECTNAME_INDEX_ENABLED && objJMXAbstraction instanceof IIndexedJMX)
+                     {
+                         if (((IIndexedJMX) objJMXAbstraction).enableObjectNameIndex())
+                         {
+                             _logger.fine(new StringBuffer("Using ObjectName index for ")
+                                     .append(storeName).toString());
+                         }
+                     }
                 }
                 _jmxStoreNames.add(storeName);
+                _fingerprint = ServerFingerprint.detect(_jmxStoreNames.get(0),
+                        _iJmxStores.isEmpty() ? null : _iJmxStores.get(0));
+                StatisticsCache.getInstance().invalidate();
                 _logger.info(new StringBuffer(
                         "Added JMX Store adapter ").append(
                                 storeName).toString());
@@ -256,4 +337,129 @@ public class JmxStores
             return _jmxStoreNames;
         }
     }
+
+    /**
+     * <p>
+     * Get the fingerprint of the application server, taken from the first
+     * store that was added.
+     * </p>
+     * 
+     * @return The server fingerprint, ServerFingerprint.NONE if no store has
+     *         been added
+     */
+    public static ServerFingerprint getServerFingerprint()
+    {
+        return _fingerprint;
+    }
+
+    /**
+     * <p>
+     * Get the health record of a JMX store, creating it the first time the
+     * store is seen.
+     * </p>
+     * 
+     * @param store
+     *            JMX Store
+     * 
+     * @return Health record of the JMX store
+     */
+    public static JmxStoreHealth getStoreHealth(IJMX store)
+    {
+        synchronized (semaphore)
+        {
+            JmxStoreHealth health = _storeHealth.get(store);
+            if (health == null)
+            {
+                health = new JmxStoreHealth(QUARANTINE_THRESHOLD,
+                        QUARANTINE_BACKOFF, QUARANTINE_MAX_BACKOFF);
+                _storeHealth.put(store, health);
+            }
+            return health;
+        }
+    }
+
+    /**
+     * <p>
+     * Check if queries should be sent to a JMX store. A store that is
+     * quarantined is not available. Once the quarantine period has expired
+     * the store connection is verified again by a single caller, the other
+     * callers keep skipping the store in the meantime. If this fails the
+     * store stays in quarantine for a longer period.
+     * </p>
+     * 
+     * @param store
+     *            JMX Store
+     * 
+     * @return true if the store can be queried.
+     */
+    public static boolean isStoreAvailable(IJMX store)
+    {
+        JmxStoreHealth health = getStoreHealth(store);
+        long now = System.currentTimeMillis();
+
+        if (health.claimProbe(now))
+        {
+            long start = System.currentTimeMillis();
+            boolean connected;
+            try
+            {
+                connected = store.verifyStoreConnection();
+            }
+            catch (RuntimeException e)
+            {
+                connected = false;
+            }
+            if (!connected)
+            {
+                long end = System.currentTimeMillis();
+                health.recordFailure(end - start, end);
+                LoggingFactory.getLogger().warning(new StringBuffer(
+                        "JMX Store ").append(store.getClass().getName()).append(
+                        " is still not responding, retrying in ").append(
+                        health.getBackoff()).append(" ms").toString());
+                return false;
+            }
+            return true;
+        }
+        return !health.isQuarantined(now);
+    }
+
+    /**
+     * <p>
+     * Record a successful query against a JMX store.
+     * </p>
+     * 
+     * @param store
+     *            JMX Store
+     * @param latency
+     *            Time taken by the query (in milliseconds).
+     */
+    public static void recordStoreSuccess(IJMX store, long latency)
+    {
+        getStoreHealth(store).recordSuccess(latency);
+    }
+
+    /**
+     * <p>
+     * Record a failed query against a JMX store, quarantining the store if it
+     * keeps failing.
+     * </p>
+     * 
+     * @param store
+     *            JMX Store
+     * @param latency
+     *            Time taken by the query (in milliseconds).
+     */
+    public static void recordStoreFailure(IJMX store, long latency)
+    {
+        JmxStoreHealth health = getStoreHealth(store);
+        if (health.recordFailure(latency, System.currentTimeMillis()))
+        {
+            LoggingFactory.getLogger().warning(new StringBuffer(
+                    "Quarantined JMX Store ").append(store.getClass().getName())
+                    .append(" for ").append(health.getBackoff()).append(
+                            " ms after ").append(health.getConsecutiveFailures())
+                    .append(" consecutive failures").toString());
+        }
+    }
 }
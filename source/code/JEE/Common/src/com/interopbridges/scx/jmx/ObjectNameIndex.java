@@ -0,0 +1,496 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jmx;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.relation.MBeanServerNotificationFilter;
+
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Local index of the ObjectNames registered in an MBeanServer.
+ * </p>
+ *
+ * <p>
+ * The index is seeded once from the MBeanServer and then kept current by
+ * listening to the registration and unregistration notifications sent by the
+ * MBeanServerDelegate. Names are grouped by domain, and within a domain by
+ * each of their key properties, so a query such as
+ * <code>Catalina:type=ThreadPool,*</code> only has to look at the MBeans that
+ * have the key property <code>type=ThreadPool</code> instead of asking the
+ * MBeanServer to scan its whole registry.
+ * </p>
+ *
+ * <p>
+ * Queries the index cannot answer (for example queries with a QueryExp)
+ * return null, and the caller is expected to ask the MBeanServer instead.
+ * </p>
+ *
+ */
+public class ObjectNameIndex implements NotificationListener
+{
+    /**
+     * <p>
+     * Names registered in a single domain.
+     * </p>
+     */
+    private static class DomainIndex
+    {
+        /**
+         * <p>
+         * All the names in the domain.
+         * </p>
+         */
+        final Set<ObjectName> _names = new HashSet<ObjectName>();
+
+        /**
+         * <p>
+         * Names in the domain, keyed on each "key=value" property they have.
+         * </p>
+         */
+        final Map<String, Set<ObjectName>> _byProperty = new HashMap<String, Set<ObjectName>>();
+    }
+
+    /**
+     * <p>
+     * The MBeanServer being indexed.
+     * </p>
+     */
+    private final MBeanServer _server;
+
+    /**
+     * <p>
+     * Index of the registered names, keyed on domain.
+     * </p>
+     */
+    private final Map<String, DomainIndex> _domains = new HashMap<String, DomainIndex>();
+
+    /**
+     * <p>
+     * Lock protecting the index, queries share the lock while notifications
+     * take it exclusively.
+     * </p>
+     */
+    private final ReadWriteLock _lock = new ReentrantReadWriteLock();
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * True while the index is listening to the MBeanServerDelegate.
+     * </p>
+     */
+    private volatile boolean _active;
+
+    /**
+     * <p>
+     * Names unregistered while the index is being seeded, null once seeding
+     * is done. Such names may still be in the snapshot the index is seeded
+     * from, and must not be added to the index. Guarded by the write lock.
+     * </p>
+     */
+    private Set<ObjectName> _removedWhileSeeding;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param server
+     *            The MBeanServer to index.
+     */
+    public ObjectNameIndex(MBeanServer server)
+    {
+        this._server = server;
+        this._logger = LoggingFactory.getLogger();
+    }
+
+    /**
+     * <p>
+     * Check if an MBeanServer can be indexed. This requires the
+     * MBeanServerDelegate to be registered, as it is the source of the
+     * registration notifications.
+     * </p>
+     *
+     * @param server
+     *            The MBeanServer to check
+     *
+     * @return true if an index can be kept for the MBeanServer
+     */
+    public static boolean isSupported(MBeanServer server)
+    {
+        try
+        {
+            return server != null && server.isRegistered(MBeanServerDelegate.DELEGATE_NAME);
+        }
+        catch (RuntimeException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * <p>
+     * Start listening for registration notifications and seed the index with
+     * the names currently registered. The listener is added before seeding so
+     * that no registration can be missed in between, and names unregistered
+     * in between are left out of the seeded names so that no stale name
+     * reaches the index.
+     * </p>
+     *
+     * @return true if the index was started
+     */
+    public boolean start()
+    {
+        if (_active)
+        {
+            return true;
+        }
+        try
+        {
+            MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+            filter.enableAllObjectNames();
+            _lock.writeLock().lock();
+            try
+            {
+                _removedWhileSeeding = new HashSet<ObjectName>();
+            }
+            finally
+            {
+                _lock.writeLock().unlock();
+            }
+            this._server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null);
+            _active = true;
+
+            Set<ObjectName> names = this._server.queryNames(null, null);
+            _lock.writeLock().lock();
+            try
+            {
+                for (ObjectName name : names)
+                {
+                    if (!_removedWhileSeeding.contains(name))
+                    {
+                        add(name);
+                    }
+                }
+                _removedWhileSeeding = null;
+            }
+            finally
+            {
+                _lock.writeLock().unlock();
+            }
+            _logger.fine(new StringBuffer("Indexed ").append(names.size())
+                    .append(" MBean names").toString());
+            return true;
+        }
+        catch (Exception e)
+        {
+            _logger.fine(new StringBuffer("Unable to index the MBean names: ")
+                    .append(e.getMessage()).toString());
+            stop();
+            return false;
+        }
+    }
+
+    /**
+     * <p>
+     * Stop listening for registration notifications and drop the index.
+     * </p>
+     */
+    public void stop()
+    {
+        if (_active)
+        {
+            _active = false;
+            try
+            {
+                this._server.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this);
+            }
+            catch (Exception e)
+            {
+                _logger.fine(new StringBuffer("Unable to remove the MBean name listener: ")
+                        .append(e.getMessage()).toString());
+            }
+        }
+        _lock.writeLock().lock();
+        try
+        {
+            _domains.clear();
+            _removedWhileSeeding = null;
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * True while the index is being kept current.
+     * </p>
+     */
+    public boolean isActive()
+    {
+        return _active;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.management.NotificationListener#handleNotification(javax.management.Notification,
+     * java.lang.Object)
+     */
+    public void handleNotification(Notification notification, Object handback)
+    {
+        if (!(notification instanceof MBeanServerNotification))
+        {
+            return;
+        }
+        ObjectName name = ((MBeanServerNotification) notification).getMBeanName();
+        String type = notification.getType();
+
+        _lock.writeLock().lock();
+        try
+        {
+            if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(type))
+            {
+                if (_removedWhileSeeding != null)
+                {
+                    _removedWhileSeeding.remove(name);
+                }
+                add(name);
+            }
+            else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(type))
+            {
+                if (_removedWhileSeeding != null)
+                {
+                    _removedWhileSeeding.add(name);
+                }
+                remove(name);
+            }
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Find the registered names matching a pattern.
+     * </p>
+     *
+     * @param pattern
+     *            ObjectName (pattern) to match, null matches all names
+     *
+     * @return The matching names, or null if the index is not active.
+     */
+    public Set<ObjectName> queryNames(ObjectName pattern)
+    {
+        if (!_active)
+        {
+            return null;
+        }
+
+        Set<ObjectName> result = new HashSet<ObjectName>();
+        _lock.readLock().lock();
+        try
+        {
+            if (pattern == null)
+            {
+                for (DomainIndex domain : _domains.values())
+                {
+                    result.addAll(domain._names);
+                }
+            }
+            else if (pattern.isDomainPattern())
+            {
+                for (DomainIndex domain : _domains.values())
+                {
+                    addMatches(domain, pattern, result);
+                }
+            }
+            else
+            {
+                DomainIndex domain = _domains.get(pattern.getDomain());
+                if (domain != null)
+                {
+                    addMatches(domain, pattern, result);
+                }
+            }
+        }
+        finally
+        {
+            _lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Find the registered MBeans matching a pattern. A name unregistered
+     * since the names were collected is skipped.
+     * </p>
+     *
+     * @param pattern
+     *            ObjectName (pattern) to match, null matches all names
+     *
+     * @return The matching MBeans, or null if the index is not active.
+     */
+    public Set<ObjectInstance> queryMBeans(ObjectName pattern)
+    {
+        Set<ObjectName> names = queryNames(pattern);
+        if (names == null)
+        {
+            return null;
+        }
+
+        Set<ObjectInstance> result = new HashSet<ObjectInstance>();
+        for (ObjectName name : names)
+        {
+            try
+            {
+                result.add(this._server.getObjectInstance(name));
+            }
+            catch (InstanceNotFoundException e)
+            {
+                // Unregistered since the names were collected
+            }
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Add the names in a domain that match a pattern to the result. The
+     * smallest set of candidates is picked using the key properties of the
+     * pattern that do not contain wildcards.
+     * </p>
+     */
+    private void addMatches(DomainIndex domain, ObjectName pattern, Set<ObjectName> result)
+    {
+        Set<ObjectName> candidates = domain._names;
+        Map<String, String> keys = pattern.getKeyPropertyList();
+        for (Map.Entry<String, String> key : keys.entrySet())
+        {
+            String value = key.getValue();
+            if (value.indexOf('*') >= 0 || value.indexOf('?') >= 0)
+            {
+                continue;
+            }
+            Set<ObjectName> byProperty = domain._byProperty.get(key.getKey() + "=" + value);
+            if (byProperty == null)
+            {
+                return;
+            }
+            if (byProperty.size() < candidates.size())
+            {
+                candidates = byProperty;
+            }
+        }
+
+        for (ObjectName name : candidates)
+        {
+            if (pattern.apply(name))
+            {
+                result.add(name);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Add a name to the index, the caller must hold the write lock.
+     * </p>
+     */
+    private void add(ObjectName name)
+    {
+        DomainIndex domain = _domains.get(name.getDomain());
+        if (domain == null)
+        {
+            domain = new DomainIndex();
+            _domains.put(name.getDomain(), domain);
+        }
+        if (!domain._names.add(name))
+        {
+            return;
+        }
+        for (Map.Entry<String, String> key : name.getKeyPropertyList().entrySet())
+        {
+            String property = key.getKey() + "=" + key.getValue();
+            Set<ObjectName> names = domain._byProperty.get(property);
+            if (names == null)
+            {
+                names = new HashSet<ObjectName>();
+                domain._byProperty.put(property, names);
+            }
+            names.add(name);
+        }
+    }
+
+    /**
+     * <p>
+     * Remove a name from the index, the caller must hold the write lock.
+     * </p>
+     */
+    private void remove(ObjectName name)
+    {
+        DomainIndex domain = _domains.get(name.getDomain());
+        if (domain == null || !domain._names.remove(name))
+        {
+            return;
+        }
+        for (Map.Entry<String, String> key : name.getKeyPropertyList().entrySet())
+        {
+            String property = key.getKey() + "=" + key.getValue();
+            Set<ObjectName> names = domain._byProperty.get(property);
+            if (names != null)
+            {
+                names.remove(name);
+                if (names.isEmpty())
+                {
+                    domain._byProperty.remove(property);
+                }
+            }
+        }
+        if (domain._names.isEmpty())
+        {
+            _domains.remove(name.getDomain());
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.jmx;
+
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+/**
+ * <p>
+ * The ObjectName index of a JMX Store abstraction implementing IIndexedJMX.
+ * The abstractions delegate their queries and the enabling of the index to
+ * it, queries the index cannot answer go to the MBeanServer.
+ * </p>
+ *
+ */
+public class ObjectNameIndexSupport
+{
+    /**
+     * <p>
+     * Local index of the registered ObjectNames, null if queries go to the
+     * MBeanServer.
+     * </p>
+     */
+    private volatile ObjectNameIndex _index;
+
+    /**
+     * <p>
+     * Start maintaining the index for an MBeanServer, if it supports
+     * registration notifications.
+     * </p>
+     *
+     * @param server
+     *            The MBeanServer of the JMX Store
+     *
+     * @return true if queries are now answered from the index
+     *
+     * @see com.interopbridges.scx.jmx.IIndexedJMX#enableObjectNameIndex()
+     */
+    public synchronized boolean enable(MBeanServer server)
+    {
+        if (this._index == null && ObjectNameIndex.isSupported(server))
+        {
+            ObjectNameIndex index = new ObjectNameIndex(server);
+            if (index.start())
+            {
+                this._index = index;
+            }
+        }
+        return this._index != null;
+    }
+
+    /**
+     * <p>
+     * Stop maintaining the index, all further queries go to the MBeanServer.
+     * </p>
+     *
+     * @see com.interopbridges.scx.jmx.IIndexedJMX#disableObjectNameIndex()
+     */
+    public synchronized void disable()
+    {
+        if (this._index != null)
+        {
+            this._index.stop();
+            this._index = null;
+        }
+    }
+
+    /**
+     * <p>
+     * Find the MBeans matching a query, from the index when it can answer
+     * the query.
+     * </p>
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#queryMBeans(javax.management.ObjectName,
+     *      javax.management.QueryExp)
+     */
+    public Set<ObjectInstance> queryMBeans(MBeanServer server, ObjectName name, QueryExp query)
+    {
+        ObjectNameIndex index = this._index;
+        if (index != null && query == null)
+        {
+            Set<ObjectInstance> result = index.queryMBeans(name);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+        return server.queryMBeans(name, query);
+    }
+
+    /**
+     * <p>
+     * Find the names matching a query, from the index when it can answer
+     * the query.
+     * </p>
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#queryNames(javax.management.ObjectName,
+     *      javax.management.QueryExp)
+     */
+    public Set<ObjectName> queryNames(MBeanServer server, ObjectName name, QueryExp query)
+    {
+        ObjectNameIndex index = this._index;
+        if (index != null && query == null)
+        {
+            Set<ObjectName> result = index.queryNames(name);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+        return server.queryNames(name, query);
+    }
+}
@@ -0,0 +1,341 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.jmx;
+
+import java.util.Set;
+
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+import com.interopbridges.scx.util.JmxConstant;
+
+/**
+ * <p>
+ * Identifies the application server BeanSpy is running in. The fingerprint
+ * is taken from the first JMX store that was added, which is the application
+ * server specific store if there is one, and is built again by JmxStores
+ * each time the list of stores changes.
+ * </p>
+ *
+ * <p>
+ * The kind of server is determined when the fingerprint is built. The name
+ * and version of the server are read from the MBeans of the server the first
+ * time they are asked for, since these MBeans may be registered after the
+ * store was added, and are kept from then on. A value that could not be read
+ * is tried again on the next request.
+ * </p>
+ *
+ */
+public class ServerFingerprint
+{
+    /**
+     * <p>
+     * The fingerprint when no JMX store has been added.
+     * </p>
+     */
+    public static final ServerFingerprint NONE = new ServerFingerprint(null, null, false);
+
+    /**
+     * <p>
+     * MBean of JBoss 7 and Wildfly holding the server type and version.
+     * </p>
+     */
+    private static final String JBOSS7_SERVER = "jboss.as:management-root=server";
+
+    /**
+     * <p>
+     * MBean of JBoss 4, 5 and 6 holding the server name and version.
+     * </p>
+     */
+    private static final String JBOSS_SERVER = "jboss.management.local:j2eeType=J2EEServer,*";
+
+    /**
+     * <p>
+     * MBean of Tomcat holding the server name.
+     * </p>
+     */
+    private static final String TOMCAT_SERVER = "Catalina:type=Server,*";
+
+    /**
+     * <p>
+     * MBean of WebLogic holding the server name.
+     * </p>
+     */
+    private static final String WEBLOGIC_SERVER = "com.bea:Type=ServerRuntime,*";
+
+    /**
+     * <p>
+     * MBean of WebSphere holding the server name and version.
+     * </p>
+     */
+    private static final String WEBSPHERE_SERVER = "WebSphere:j2eeType=J2EEServer,*";
+
+    /**
+     * <p>
+     * Name of the first store that was added, null if there is none.
+     * </p>
+     */
+    private final String _storeName;
+
+    /**
+     * <p>
+     * The store the server MBeans are read from, null if there is none.
+     * </p>
+     */
+    private final IJMX _store;
+
+    /**
+     * <p>
+     * Whether a JBoss store is JBoss 7 or Wildfly rather than JBoss 4, 5 or 6.
+     * </p>
+     */
+    private final boolean _jboss7Wildfly;
+
+    /**
+     * <p>
+     * Name of the application server once it has been read.
+     * </p>
+     */
+    private volatile String _appServerName;
+
+    /**
+     * <p>
+     * Version of the application server once it has been read.
+     * </p>
+     */
+    private volatile String _appServerVersion;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param storeName
+     *            Name of the first store that was added
+     * @param store
+     *            The store the server MBeans are read from
+     * @param jboss7Wildfly
+     *            Whether the server is JBoss 7 or Wildfly
+     */
+    ServerFingerprint(String storeName, IJMX store, boolean jboss7Wildfly)
+    {
+        this._storeName = storeName;
+        this._store = store;
+        this._jboss7Wildfly = jboss7Wildfly;
+    }
+
+    /**
+     * <p>
+     * Build the fingerprint of the stores. For a JBoss store the server MBean
+     * is checked once to tell JBoss 7 and Wildfly from the earlier versions.
+     * </p>
+     *
+     * @param storeName
+     *            Name of the first store that was added, null if none
+     * @param store
+     *            The first connected store, null if none
+     *
+     * @return The fingerprint
+     */
+    static ServerFingerprint detect(String storeName, IJMX store)
+    {
+        if (storeName == null || store == null)
+        {
+            return new ServerFingerprint(storeName, store, false);
+        }
+
+        boolean jboss7Wildfly = false;
+        if (JmxConstant.JBOSS_MBEAN_STORE_NAME.equals(storeName))
+        {
+            try
+            {
+                Object processType = store.getAttribute(new ObjectName(JBOSS7_SERVER), "processType");
+                jboss7Wildfly = "Server".equals(processType);
+            }
+            catch (Exception e)
+            {
+                // Not JBoss 7 or Wildfly
+            }
+        }
+        return new ServerFingerprint(storeName, store, jboss7Wildfly);
+    }
+
+    /**
+     * <p>
+     * Name of the first store that was added.
+     * </p>
+     *
+     * @return The store name, null if no store has been added
+     */
+    public String getStoreName()
+    {
+        return this._storeName;
+    }
+
+    /**
+     * <p>
+     * Whether the server is JBoss 7 or Wildfly.
+     * </p>
+     *
+     * @return true for JBoss 7 and Wildfly
+     */
+    public boolean isJBoss7OrWildfly()
+    {
+        return this._jboss7Wildfly;
+    }
+
+    /**
+     * <p>
+     * Name of the application server, e.g. the serverInfo of Tomcat.
+     * </p>
+     *
+     * @return The name, or null if it is not known
+     */
+    public String getAppServerName()
+    {
+        String name = this._appServerName;
+        if (name == null && this._store != null)
+        {
+            name = readAppServerName();
+            this._appServerName = name;
+        }
+        return name;
+    }
+
+    /**
+     * <p>
+     * Version of the application server, only known for JBoss and WebSphere.
+     * </p>
+     *
+     * @return The version, or null if it is not known
+     */
+    public String getAppServerVersion()
+    {
+        String version = this._appServerVersion;
+        if (version == null && this._store != null)
+        {
+            version = readAppServerVersion();
+            this._appServerVersion = version;
+        }
+        return version;
+    }
+
+    /**
+     * <p>
+     * Read the name of the application server from its MBeans.
+     * </p>
+     */
+    private String readAppServerName()
+    {
+        if (JmxConstant.JBOSS_MBEAN_STORE_NAME.equals(this._storeName))
+        {
+            if (this._jboss7Wildfly)
+            {
+                // There is no attribute holding the name of JBoss 7 or Wildfly,
+                // version 7 is JBoss AS and version 8 is Wildfly
+                String version = getAppServerVersion();
+                int majorVersion = version == null || version.length() == 0 ? -1
+                        : Character.getNumericValue(version.charAt(0));
+                if (majorVersion == 7)
+                {
+                    return "JBoss AS";
+                }
+                if (majorVersion == 8)
+                {
+                    return "Wildfly";
+                }
+                return null;
+            }
+            return getJMXAttribute(JBOSS_SERVER, "serverVendor");
+        }
+        if (JmxConstant.TOMCAT_MBEAN_STORE_NAME.equals(this._storeName))
+        {
+            return getJMXAttribute(TOMCAT_SERVER, "serverInfo");
+        }
+        if (JmxConstant.WEBLOGIC_MBEAN_STORE_NAME.equals(this._storeName))
+        {
+            return getJMXAttribute(WEBLOGIC_SERVER, "WeblogicVersion");
+        }
+        if (JmxConstant.WEBSPHERE_MBEAN_STORE_NAME.equals(this._storeName))
+        {
+            return getJMXAttribute(WEBSPHERE_SERVER, "platformName");
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     * Read the version of the application server from its MBeans.
+     * </p>
+     */
+    private String readAppServerVersion()
+    {
+        if (JmxConstant.JBOSS_MBEAN_STORE_NAME.equals(this._storeName))
+        {
+            return this._jboss7Wildfly
+                ? getJMXAttribute(JBOSS7_SERVER + ",*", "releaseVersion")
+                : getJMXAttribute(JBOSS_SERVER, "serverVersion");
+        }
+        if (JmxConstant.WEBSPHERE_MBEAN_STORE_NAME.equals(this._storeName))
+        {
+            return getJMXAttribute(WEBSPHERE_SERVER, "platformVersion");
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     * Retrieves an attribute of the first MBean matching a query.
+     * </p>
+     * 
+     * @param MBeanQuery
+     *          The JMX query specifying the MBean from 
+     *          which to retrieve the attribute.
+     * @param attributeName
+     *          The name of the attribute to query.
+     * 
+     * @return the attribute value of null if an error occurs 
+     */
+    private String getJMXAttribute(String MBeanQuery, String attributeName)
+    {
+        String attrVal = null;
+        try
+        {
+            Set<ObjectInstance> oi = this._store.queryMBeans(new ObjectName(MBeanQuery), null);
+            /* 
+             * There is a remote possibility that there can be multiple MBeans returned by the query
+             * We will not iterate through all of them, but only use the first MBean returned.  
+             */
+            attrVal = this._store.getAttribute(oi.iterator().next().getObjectName(), attributeName).toString();
+        }
+        catch (Exception e)
+        {
+            ILogger logger = LoggingFactory.getLogger();
+            logger.finer(new StringBuffer(
+                "Unable to retrieve the attribute (").
+                append(attributeName).append(") for the ").
+                append(this._store.getClass().getName()).
+                append(" Mbean store. ").
+                append("Error reason:").
+                append(e.getMessage()).toString());
+        }
+        return attrVal;
+    }
+}
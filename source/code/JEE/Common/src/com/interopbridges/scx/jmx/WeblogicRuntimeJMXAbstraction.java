@@ -46,7 +46,7 @@ import com.interopbridges.scx.ScxExceptionCode;
  * 
  * @author Geoff Erasmus
  */
-public class WeblogicRuntimeJMXAbstraction implements IJMX {
+public class WeblogicRuntimeJMXAbstraction implements IJMX, IIndexedJMX {
 
     /**
      * <p>
@@ -55,6 +55,13 @@ public class WeblogicRuntimeJMXAbstraction implements IJMX {
      */
     private MBeanServer _server;
 
+    /**
+     * <p>
+     * Local index of the registered ObjectNames of the store.
+     * </p>
+     */
+    private final ObjectNameIndexSupport _index = new ObjectNameIndexSupport();
+
     /**
      * <p>
      * Constructor. The constructor sets the MBeanServer to be used by this class. 
@@ -159,7 +166,7 @@ public class WeblogicRuntimeJMXAbstraction implements IJMX {
     public Set<ObjectInstance> queryMBeans(ObjectName name, QueryExp query) 
             throws IOException
     {
-        return this._server.queryMBeans(name, query);
+        return this._index.queryMBeans(this._server, name, query);
     }
 
     /*
@@ -171,7 +178,7 @@ public class WeblogicRuntimeJMXAbstraction implements IJMX {
     public Set<ObjectName> queryNames(ObjectName name, QueryExp query) 
             throws IOException
     {
-        return this._server.queryNames(name, query);
+        return this._index.queryNames(this._server, name, query);
     }
     
     /*
@@ -208,4 +215,24 @@ public class WeblogicRuntimeJMXAbstraction implements IJMX {
     {
         return this._server.invoke(name, operationName, params, signature);
     }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.interopbridges.scx.jmx.IIndexedJMX#enableObjectNameIndex()
+     */
+    public boolean enableObjectNameIndex()
+    {
+        return this._index.enable(this._server);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.interopbridges.scx.jmx.IIndexedJMX#disableObjectNameIndex()
+     */
+    public void disableObjectNameIndex()
+    {
+        this._index.disable();
+    }
 }
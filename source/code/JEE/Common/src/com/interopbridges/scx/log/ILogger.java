@@ -100,4 +100,82 @@ public interface ILogger {
 	 */
 	public void info(String message);
 
+	/**
+	 * <p>
+	 * Check if messages at the fine level are logged. Callers building an
+	 * expensive message should check this first.
+	 * </p>
+	 * @return true if fine messages are logged
+	 */
+	public boolean isFineEnabled();
+
+	/**
+	 * <p>
+	 * Check if messages at the finer level are logged.
+	 * </p>
+	 * @return true if finer messages are logged
+	 */
+	public boolean isFinerEnabled();
+
+	/**
+	 * <p>
+	 * Check if messages at the finest level are logged.
+	 * </p>
+	 * @return true if finest messages are logged
+	 */
+	public boolean isFinestEnabled();
+
+	/**
+	 * <p>
+	 * Log a message with a parameter at the fine level. The message is a
+	 * java.text.MessageFormat pattern, e.g. "Excluding mbean : {0}", and is
+	 * only formatted if fine messages are logged.
+	 * </p>
+	 * @param pattern
+	 *            Pattern of the message
+	 * @param param
+	 *            Value of {0} in the pattern
+	 */
+	public void fine(String pattern, Object param);
+
+	/**
+	 * <p>
+	 * Log a message with two parameters at the fine level. The message is
+	 * only formatted if fine messages are logged.
+	 * </p>
+	 * @param pattern
+	 *            Pattern of the message
+	 * @param param1
+	 *            Value of {0} in the pattern
+	 * @param param2
+	 *            Value of {1} in the pattern
+	 */
+	public void fine(String pattern, Object param1, Object param2);
+
+	/**
+	 * <p>
+	 * Log a message with a parameter at the finer level. The message is
+	 * only formatted if finer messages are logged.
+	 * </p>
+	 * @param pattern
+	 *            Pattern of the message
+	 * @param param
+	 *            Value of {0} in the pattern
+	 */
+	public void finer(String pattern, Object param);
+
+	/**
+	 * <p>
+	 * Log a message with two parameters at the finer level. The message is
+	 * only formatted if finer messages are logged.
+	 * </p>
+	 * @param pattern
+	 *            Pattern of the message
+	 * @param param1
+	 *            Value of {0} in the pattern
+	 * @param param2
+	 *            Value of {1} in the pattern
+	 */
+	public void finer(String pattern, Object param1, Object param2);
+
 }
@@ -28,10 +28,11 @@ public class LoggingFactory {
 
 	/**
 	 * <p>
-	 * Singleton instance of the Logger.
+	 * Singleton instance of the Logger, created when the class is loaded so
+	 * that it can be handed out without synchronization.
 	 * </p>
 	 */
-	private static ILogger _logger;
+	private static final ILogger _logger = new MsLogger();
 
 	/**
 	 * <p>
@@ -40,12 +41,7 @@ public class LoggingFactory {
 	 * 
 	 * @return Logger
 	 */
-	public static synchronized ILogger getLogger() {
-
-		if (null == _logger) {
-			_logger = new MsLogger();
-		}
+	public static ILogger getLogger() {
 		return _logger;
-
 	}
 }
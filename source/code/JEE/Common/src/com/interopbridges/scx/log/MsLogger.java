@@ -111,4 +111,75 @@ public class MsLogger implements ILogger {
 		_logger.warning(message);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.interopbridges.scx.log.ILogger#isFineEnabled()
+	 */
+	public boolean isFineEnabled() {
+		return _logger.isLoggable(Level.FINE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.interopbridges.scx.log.ILogger#isFinerEnabled()
+	 */
+	public boolean isFinerEnabled() {
+		return _logger.isLoggable(Level.FINER);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.interopbridges.scx.log.ILogger#isFinestEnabled()
+	 */
+	public boolean isFinestEnabled() {
+		return _logger.isLoggable(Level.FINEST);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.interopbridges.scx.log.ILogger#fine(java.lang.String,
+	 * java.lang.Object)
+	 */
+	public void fine(String pattern, Object param) {
+		_logger.log(Level.FINE, pattern, param);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.interopbridges.scx.log.ILogger#fine(java.lang.String,
+	 * java.lang.Object, java.lang.Object)
+	 */
+	public void fine(String pattern, Object param1, Object param2) {
+		if (_logger.isLoggable(Level.FINE)) {
+			_logger.log(Level.FINE, pattern, new Object[] { param1, param2 });
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.interopbridges.scx.log.ILogger#finer(java.lang.String,
+	 * java.lang.Object)
+	 */
+	public void finer(String pattern, Object param) {
+		_logger.log(Level.FINER, pattern, param);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.interopbridges.scx.log.ILogger#finer(java.lang.String,
+	 * java.lang.Object, java.lang.Object)
+	 */
+	public void finer(String pattern, Object param1, Object param2) {
+		if (_logger.isLoggable(Level.FINER)) {
+			_logger.log(Level.FINER, pattern, new Object[] { param1, param2 });
+		}
+	}
+
 }
@@ -28,13 +28,23 @@ import javax.management.MalformedObjectNameException;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import javax.management.QueryExp;
+import javax.xml.transform.sax.TransformerHandler;
+
+import org.xml.sax.helpers.AttributesImpl;
 
 import com.interopbridges.scx.ScxException;
 import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.configuration.Config;
+import com.interopbridges.scx.configuration.ConfigKey;
+import com.interopbridges.scx.jeestats.BeanSpyMetrics;
 import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JmxStores;
 import com.interopbridges.scx.log.ILogger;
 import com.interopbridges.scx.log.LoggingFactory;
+import com.interopbridges.scx.util.JmxConstant;
+import com.interopbridges.scx.xml.CommonXmlTransform;
 import com.interopbridges.scx.xml.MBeanTransformer;
+import com.interopbridges.scx.xml.XMLDoc;
 
 /**
  * <p>
@@ -59,6 +69,22 @@ public class MBeanGetter {
      * </p>
      */
     protected ILogger _logger;
+
+    /**
+     * <p>
+     * Cache of parsed JMX Queries, shared by all instances.
+     * </p>
+     */
+    private static final ObjectNameCache _objectNameCache = new ObjectNameCache(
+            (new Config(ConfigKey.OBJECTNAME_CACHE_SIZE)).getIntValue(256));
+
+    /**
+     * <p>
+     * Admission control deciding, from their estimated cost, how queries are
+     * run.
+     * </p>
+     */
+    private QueryAdmission _admission = QueryAdmission.getInstance();
     
     /**
      * <p>
@@ -70,6 +96,17 @@ public class MBeanGetter {
         this._logger = LoggingFactory.getLogger();
     }
 
+    /**
+     * <p>
+     * Set the admission control to use instead of the one configured in
+     * config.properties.
+     * </p>
+     */
+    void setQueryAdmission(QueryAdmission admission)
+    {
+        this._admission = admission;
+    }
+
     /**
      * <p>
      * For a given mbean, generate the appropriate XML. This method is an
@@ -80,6 +117,13 @@ public class MBeanGetter {
      *            JMX Query string
      * @param mbean
      *            List of MBeans to tranform into XML
+     * @param skippedStores
+     *            Names of the JMX stores that could not be queried
+     * @param nextCursor
+     *            Cursor for the next page of MBeans, null if there are no more
+     * @param downgradedDepth
+     *            Depth the MBeans are rendered to when MaxDepth was lowered
+     *            because of the cost of the query, -1 if it was not
      * 
      * @return Stream containing a XML representation of the MBean
      * 
@@ -87,7 +131,9 @@ public class MBeanGetter {
      *             If there was an inspecting the MBean or if there was an error
      *             generating the XML
      */
-    private StringWriter generateXmlforMBeans(String jmxQuery, HashMap<IJMX, Set<ObjectInstance>> mbeans, HashMap<String,String[]> Params)
+    private StringWriter generateXmlforMBeans(String jmxQuery, HashMap<IJMX, Set<ObjectInstance>> mbeans, 
+            HashMap<String,String[]> Params, List<String> skippedStores, String nextCursor,
+            int downgradedDepth)
             throws ScxException 
     {       
         MBeanTransformer mtf = new MBeanTransformer();
@@ -96,10 +142,69 @@ public class MBeanGetter {
         * pass _JMXQuery to MBeanTransformer.java.
         */
         mtf.setJMXQuery(jmxQuery); 
+        mtf.setSkippedJmxStores(skippedStores);
+        mtf.setNextCursor(nextCursor);
+        mtf.setDowngradedDepth(downgradedDepth);
                
         return mtf.transformMultipleMBeans(mbeans, Params);
     }
 
+    /**
+     * <p>
+     * Generate the XML answering Explain=true: the estimated cost of the
+     * query and the decision the admission control takes for it.
+     * </p>
+     * 
+     * @param jmxQuery
+     *            JMX Query string
+     * @param cost
+     *            The estimated cost of the query
+     * @param decision
+     *            Accept, or the policy applied to the query
+     * 
+     * @return Stream containing a XML representation of the cost
+     * 
+     * @throws ScxException
+     *             If there was an error generating the XML
+     */
+    private StringWriter generateXmlforQueryCost(String jmxQuery, QueryCost cost, String decision)
+            throws ScxException
+    {
+        try
+        {
+            StringWriter outputStringWriter = new StringWriter();
+            TransformerHandler transformer = XMLDoc.createXmlDocument(outputStringWriter,"UTF-8","no","no");
+            transformer.startDocument();
+            AttributesImpl atts = CommonXmlTransform.getOuterMostAttributes();
+            atts.addAttribute("", "", JmxConstant.STR_JMXQUERY, "CDATA", jmxQuery);
+            atts.addAttribute("", "", JmxConstant.XML_QUERY_COST_MBEAN_COUNT_ATTRIBUTE, "CDATA", 
+                    String.valueOf(cost.getMBeanCount()));
+            atts.addAttribute("", "", JmxConstant.XML_QUERY_COST_ATTRIBUTE_COUNT_ATTRIBUTE, "CDATA", 
+                    String.valueOf(cost.getAttributeCount()));
+            atts.addAttribute("", "", JmxConstant.STR_MAXDEPTH, "CDATA", String.valueOf(cost.getDepth()));
+            atts.addAttribute("", "", JmxConstant.XML_QUERY_COST_COST_ATTRIBUTE, "CDATA", 
+                    String.valueOf(cost.getCost()));
+            atts.addAttribute("", "", JmxConstant.XML_QUERY_COST_THRESHOLD_ATTRIBUTE, "CDATA", 
+                    String.valueOf(this._admission.getThreshold()));
+            atts.addAttribute("", "", JmxConstant.XML_QUERY_COST_POLICY_ATTRIBUTE, "CDATA", 
+                    this._admission.getPolicy());
+            atts.addAttribute("", "", JmxConstant.XML_QUERY_COST_DECISION_ATTRIBUTE, "CDATA", decision);
+            if (QueryAdmission.POLICY_DOWNGRADE.equals(decision))
+            {
+                atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_DOWNGRADED_DEPTH_ATTRIBUTE, "CDATA", 
+                        String.valueOf(this._admission.getDepth(cost)));
+            }
+            transformer.startElement("", "", JmxConstant.XML_QUERY_COST_TAG, atts);
+            transformer.endElement("", "", JmxConstant.XML_QUERY_COST_TAG);
+            transformer.endDocument();
+            return outputStringWriter;
+        }
+        catch (Exception e)
+        {
+            throw new ScxException(ScxExceptionCode.ERROR_TRANSFORMING_MBEAN, e);
+        }
+    }
+
     /**
      * <p>
      * Return a set of MBeans that match the given query.
@@ -144,12 +249,81 @@ public class MBeanGetter {
         try {
             StringWriter xmlResponse = new StringWriter();
             
-            HashMap<IJMX, Set<ObjectInstance>> mbeans = getMBeans(jmxQuery);
+            List<String> skippedStores = new ArrayList<String>();
+            HashMap<IJMX, Set<ObjectInstance>> mbeans = getMBeans(jmxQuery, skippedStores);
+            String nextCursor = null;
+
+            int limit = getPageLimit(Params);
+            if (limit > 0)
+            {
+                /*
+                 * Only render the requested page of MBeans, the cursor for the
+                 * next page is returned with the response.
+                 */
+                String[] cursor = Params.get(JmxConstant.STR_CURSOR);
+                MBeanPager pager = new MBeanPager(this._jmxStores, mbeans, limit, 
+                        cursor == null ? null : cursor[0]);
+                mbeans = pager.getPage();
+                nextCursor = pager.getNextCursor();
+            }
+
+            /*
+             * Estimate the cost of the query before rendering anything, the
+             * admission control decides whether (and how deep) it is run.
+             * Nothing is estimated when the admission control is disabled.
+             */
+            boolean explain = isExplainRequested(Params);
+            String decision = QueryAdmission.DECISION_ACCEPT;
+            QueryCost cost = null;
+            if (explain || this._admission.isEnabled())
+            {
+                cost = QueryCostEstimator.getInstance().estimate(mbeans, getRequestedDepth(Params));
+                decision = this._admission.decide(cost);
+            }
+            if (explain)
+            {
+                xmlResponse.append(this.generateXmlforQueryCost(jmxQuery, cost, decision).getBuffer());
+            }
+            else
+            {
+                int downgradedDepth = -1;
+                boolean queued = false;
+                if (QueryAdmission.POLICY_REJECT.equals(decision))
+                {
+                    this._admission.reject(cost, jmxQuery);
+                }
+                else if (QueryAdmission.POLICY_DOWNGRADE.equals(decision))
+                {
+                    downgradedDepth = this._admission.getDepth(cost);
+                    this._logger.fine("Lowering the depth of query {0} to {1}", jmxQuery, 
+                            String.valueOf(downgradedDepth));
+                    Params = withDepth(Params, downgradedDepth);
+                }
+                else if (QueryAdmission.POLICY_QUEUE.equals(decision))
+                {
+                    this._admission.enterQueue(jmxQuery);
+                    queued = true;
+                }
 
-            xmlResponse.append(this.generateXmlforMBeans(jmxQuery,mbeans,Params).getBuffer());
+                try
+                {
+                    xmlResponse.append(this.generateXmlforMBeans(jmxQuery,mbeans,Params,skippedStores,
+                            nextCursor,downgradedDepth).getBuffer());
+                }
+                finally
+                {
+                    if (queued)
+                    {
+                        this._admission.leaveQueue();
+                    }
+                }
+            }
 
-            this._logger.finest(new StringBuffer("Resulting XML for query: ")
-                    .append(xmlResponse.toString()).toString());
+            if (this._logger.isFinestEnabled())
+            {
+                this._logger.finest(new StringBuffer("Resulting XML for query: ")
+                        .append(xmlResponse.toString()).toString());
+            }
 
             return xmlResponse;
         } catch (NullPointerException npe) {
@@ -183,13 +357,171 @@ public class MBeanGetter {
      */
     public HashMap<IJMX, Set<ObjectInstance>> getMBeans(String objectName) 
             throws  ScxException 
+    {
+        return getMBeans(objectName, null);
+    }
+
+    /**
+     * <p>
+     * Get all MBeans that have an Objectname matching the input parameter.
+     * All relevant JMX stores are checked for the matching MBeans. 
+     * </p>
+     * 
+     * <p>
+     * JMX stores that are quarantined, or that fail while being queried, are
+     * skipped and the query is answered from the remaining stores. The
+     * request only fails if none of the stores could be queried.
+     * </p>
+     * 
+     * @param objectName
+     *            JMX Query
+     * @param skippedStores
+     *            If not null, the names of the JMX stores that were skipped
+     *            are added to this list.
+     * @return Map containing all matching MBeans and their associated MBean stores.
+     * 
+     * @throws ScxException
+     *             If there was a problem getting the MBean, inspecting it, or
+     *             transforming it to XML. For more details review the inner
+     *             exception.
+     */
+    public HashMap<IJMX, Set<ObjectInstance>> getMBeans(String objectName, List<String> skippedStores) 
+            throws  ScxException 
     {
         int TotalMBeanCount=0;
         HashMap<IJMX, Set<ObjectInstance>> mbeans = new HashMap<IJMX,Set<ObjectInstance>>();
         
-        this._logger.finer(new StringBuffer("Executing query for MBeans: ")
-                .append(objectName).toString());
+        this._logger.finer("Executing query for MBeans: {0}", objectName);
         
+        ObjectName objName = getObjectName(objectName);
+
+        int queriedStores = 0;
+        IOException lastFailure = null;
+
+        for(int i=0;i<this._jmxStores.size();i++)
+        {
+            IJMX store = this._jmxStores.get(i);
+
+            if(!JmxStores.isStoreAvailable(store))
+            {
+                this._logger.fine("Skipping quarantined mbean store: {0}", store.getClass().getName());
+
+                if(skippedStores != null)
+                {
+                    skippedStores.add(store.getClass().getName());
+                }
+                continue;
+            }
+
+            this._logger.fine("Query mbean store: {0}", store.getClass().getName());
+
+            long start = System.currentTimeMillis();
+            long queryStart = System.nanoTime();
+            try 
+            {
+                Set<ObjectInstance> theBeans = store.queryMBeans( objName, null);
+                BeanSpyMetrics.getInstance().recordStoreQuery(store, System.nanoTime() - queryStart);
+                JmxStores.recordStoreSuccess(store, System.currentTimeMillis() - start);
+                
+                if(theBeans.size()>0)
+                {
+                    mbeans.put(store, theBeans );
+                }
+                TotalMBeanCount += theBeans.size(); 
+                queriedStores++;
+            }
+            catch (IOException ioe) 
+            {
+                /*
+                 * The only declared method to throw this exception is queryMBeans
+                 * call. The store is skipped and the remaining stores are still
+                 * queried.
+                 */
+                JmxStores.recordStoreFailure(store, System.currentTimeMillis() - start);
+                this._logger.warning(new StringBuffer("Failed to query mbean store: ")
+                .append(store.getClass().getName()).append(" ")
+                .append(ioe.getMessage()).toString());
+
+                if(skippedStores != null)
+                {
+                    skippedStores.add(store.getClass().getName());
+                }
+                lastFailure = ioe;
+            }
+        }
+
+        if(queriedStores == 0 && this._jmxStores.size() > 0)
+        {
+            /*
+             * None of the stores could be queried (they either failed or are
+             * quarantined), there is nothing to return.
+             */
+            if(lastFailure != null)
+            {
+                throw new ScxException(ScxExceptionCode.IO_ERROR_EXCEPTION, lastFailure);
+            }
+            throw new ScxException(ScxExceptionCode.IO_ERROR_EXCEPTION);
+        }
+
+        if (this._logger.isFinerEnabled())
+        {
+            this._logger.finer("Found {0} MBeans matching the ObjectName ''{1}''",
+                    String.valueOf(TotalMBeanCount), objectName);
+        }
+
+        return mbeans;
+    }
+ 
+    /**
+     * <p>
+     * Get the ObjectName for a JMX Query. Parsed queries (and queries that
+     * failed to parse) are kept in a bounded cache shared by all the
+     * MBeanGetter instances, so a query that is repeated on every poll is only
+     * parsed once.
+     * </p>
+     * 
+     * @param objectName
+     *            JMX Query
+     * @return ObjectName matching the JMX Query
+     * 
+     * @throws ScxException
+     *             If the JMX Query is null or cannot be turned into an
+     *             ObjectName.
+     */
+    private ObjectName getObjectName(String objectName) throws ScxException
+    {
+        ObjectName objName = _objectNameCache.get(objectName);
+        if (objName == null)
+        {
+            try
+            {
+                objName = parseObjectName(objectName);
+            }
+            catch (ScxException e)
+            {
+                _objectNameCache.putMalformed(objectName, e);
+                throw e;
+            }
+            _objectNameCache.put(objectName, objName);
+        }
+        return objName;
+    }
+
+    /**
+     * <p>
+     * Parse a JMX Query into an ObjectName. 
+     * </p>
+     * 
+     * @param objectName
+     *            JMX Query
+     * @return ObjectName matching the JMX Query
+     * 
+     * @throws ScxException
+     *             If the JMX Query is null or cannot be turned into an
+     *             ObjectName.
+     */
+    private ObjectName parseObjectName(String objectName) throws ScxException
+    {
         ObjectName objName;
         try 
         {
@@ -239,37 +571,111 @@ public class MBeanGetter {
              */
             throw new ScxException(ScxExceptionCode.NULL_POINTER_EXCEPTION, npe);
         }
-        
-        try 
+        return objName;
+    }
+ 
+    /**
+     * <p>
+     * Get the requested page size. A Cursor without a Limit uses the default
+     * page size.
+     * </p>
+     * 
+     * @param Params
+     *            HashMap of parameters passed in to be parsed.
+     * 
+     * @return Maximum number of MBeans to return, or 0 if the result is not
+     *         paged.
+     */
+    private int getPageLimit(HashMap<String,String[]> Params)
+    {
+        if (Params == null)
         {
-            for(int i=0;i<this._jmxStores.size();i++)
+            return 0;
+        }
+        String[] limit = Params.get(JmxConstant.STR_LIMIT);
+        if (limit != null)
+        {
+            try
             {
-                this._logger.fine(new StringBuffer("Query mbean store: ")
-                .append(this._jmxStores.get(i).getClass().getName()).toString());
-                
-                Set<ObjectInstance> theBeans = this._jmxStores.get(i).queryMBeans( objName, null);
-                
-                if(theBeans.size()>0)
+                return Math.max(0, Integer.parseInt(limit[0]));
+            }
+            catch (NumberFormatException e)
+            {
+                this._logger.finer("The " + JmxConstant.STR_LIMIT + " parameter cannot be converted to a number.");
+            }
+        }
+        return Params.get(JmxConstant.STR_CURSOR) != null ? JmxConstant.DEFAULT_PAGE_LIMIT : 0;
+    }
+
+    /**
+     * <p>
+     * Get the depth requested by the MaxDepth parameter, the default depth if
+     * it is not given.
+     * </p>
+     * 
+     * @param Params
+     *            HashMap of parameters passed in to be parsed.
+     * @return The requested depth
+     */
+    private int getRequestedDepth(HashMap<String,String[]> Params)
+    {
+        if (Params != null)
+        {
+            String[] depth = Params.get(JmxConstant.STR_MAXDEPTH);
+            if (depth != null)
+            {
+                try
                 {
-                    mbeans.put(this._jmxStores.get(i), theBeans );
+                    return Integer.parseInt(depth[0]);
+                }
+                catch (NumberFormatException e)
+                {
+                    this._logger.finer("The " + JmxConstant.STR_MAXDEPTH + " parameter cannot be converted to a number.");
                 }
-                TotalMBeanCount += theBeans.size(); 
             }
-            
-            this._logger.finer(new StringBuffer("Found ").append(TotalMBeanCount)
-                    .append(" MBeans matching the ObjectName '").append(
-                            objectName).append("'").toString());
+        }
+        return JmxConstant.MAXDEPTH;
+    }
 
-        }  catch (IOException ioe) {
-            /*
-             * The only declared method to throw this exception is queryMBeans
-             * call
-             */
-            throw new ScxException(ScxExceptionCode.IO_ERROR_EXCEPTION, ioe);
+    /**
+     * <p>
+     * Check whether only the estimated cost of the query was requested
+     * (Explain=true).
+     * </p>
+     * 
+     * @param Params
+     *            HashMap of parameters passed in to be parsed.
+     * @return true if the cost is to be returned instead of the MBeans
+     */
+    private boolean isExplainRequested(HashMap<String,String[]> Params)
+    {
+        if (Params == null)
+        {
+            return false;
         }
-        return mbeans;
+        String[] explain = Params.get(JmxConstant.STR_EXPLAIN);
+        return explain != null && Boolean.valueOf(explain[0]).booleanValue();
     }
- 
+
+    /**
+     * <p>
+     * Copy the parameters of a request with the MaxDepth parameter replaced.
+     * </p>
+     * 
+     * @param Params
+     *            HashMap of parameters passed in, may be null
+     * @param depth
+     *            The depth to render the MBeans to
+     * @return The parameters with the given MaxDepth
+     */
+    private static HashMap<String,String[]> withDepth(HashMap<String,String[]> Params, int depth)
+    {
+        HashMap<String,String[]> params = Params == null 
+            ? new HashMap<String,String[]>() : new HashMap<String,String[]>(Params);
+        params.put(JmxConstant.STR_MAXDEPTH, new String[] { String.valueOf(depth) });
+        return params;
+    }
+
     /**
      * <p>
      * Get the domain part of the JMX Query. 
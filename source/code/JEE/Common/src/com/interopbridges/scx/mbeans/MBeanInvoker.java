@@ -43,6 +43,7 @@ import com.interopbridges.scx.util.JmxConstant;
 import com.interopbridges.scx.util.MsVersion;
 import com.interopbridges.scx.util.StringMangler;
 import com.interopbridges.scx.xml.CommonXmlTransform;
+import com.interopbridges.scx.xml.Utf8CountingWriter;
 import com.interopbridges.scx.xml.XMLDoc;
 
 /**
@@ -514,7 +515,7 @@ public class MBeanInvoker
             throws ScxException 
     {
         AttributesImpl emptyAttributes = new AttributesImpl();
-        StringWriter outputStringWriter = new StringWriter();
+        Utf8CountingWriter outputStringWriter = new Utf8CountingWriter();
         StringWriter returnStringWriter;
         TransformerHandler transformer=null;
 
@@ -547,7 +548,7 @@ public class MBeanInvoker
                 String text = o == null ? "null" : StringMangler.DecodeForJmx(o.toString());
                 transformer.characters( o.toString().toCharArray(), 0, text.length());
                 
-                if(outputStringWriter.getBuffer().length() >= absMaxSize)
+                if(outputStringWriter.getByteCount() >= absMaxSize)
                 {
                     throw new ScxException(ScxExceptionCode.ERROR_INVOKE_RESPONSE_TOO_LARGE);
                 }
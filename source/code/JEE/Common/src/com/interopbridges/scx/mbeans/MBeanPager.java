@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.mbeans;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.management.ObjectInstance;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.jmx.IJMX;
+
+/**
+ * <p>
+ * Splits the MBeans matching a query into pages.
+ * </p>
+ *
+ * <p>
+ * MBeans are ordered by the position of their JMX store in the list of
+ * stores, and then by their canonical ObjectName. A page holds the first
+ * <i>Limit</i> MBeans that sort after the position recorded in the cursor,
+ * and the cursor returned with the page records the last MBean on it. As the
+ * cursor holds a position rather than an offset, MBeans registered or
+ * unregistered between two requests do not cause MBeans to be skipped or
+ * returned twice.
+ * </p>
+ *
+ * <p>
+ * The cursor is an opaque (hex encoded) string, clients should only ever pass
+ * back a cursor they received from BeanSpy.
+ * </p>
+ *
+ */
+public class MBeanPager
+{
+    /**
+     * <p>
+     * Separator between the store position and the ObjectName in a cursor.
+     * </p>
+     */
+    private static final char CURSOR_SEPARATOR = ':';
+
+    /**
+     * <p>
+     * Digits used for the hex encoding of the cursor.
+     * </p>
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * <p>
+     * The MBeans on the page, in page order.
+     * </p>
+     */
+    private final LinkedHashMap<IJMX, Set<ObjectInstance>> _page;
+
+    /**
+     * <p>
+     * Cursor for the next page, null if this is the last page.
+     * </p>
+     */
+    private final String _nextCursor;
+
+    /**
+     * <p>
+     * Build a page of MBeans.
+     * </p>
+     *
+     * @param stores
+     *            The JMX stores, in the order they are paged through
+     * @param mbeans
+     *            All the MBeans matching the query
+     * @param limit
+     *            Maximum number of MBeans on the page
+     * @param cursor
+     *            Cursor returned with the previous page, or null for the first
+     *            page
+     *
+     * @throws ScxException
+     *             If the cursor is not a valid cursor.
+     */
+    public MBeanPager(List<IJMX> stores, HashMap<IJMX, Set<ObjectInstance>> mbeans,
+            int limit, String cursor) throws ScxException
+    {
+        int startStore = 0;
+        String startName = null;
+
+        if (cursor != null && cursor.length() > 0)
+        {
+            String decoded = decodeCursor(cursor);
+            int pos = decoded.indexOf(CURSOR_SEPARATOR);
+            try
+            {
+                startStore = Integer.parseInt(decoded.substring(0, pos));
+            }
+            catch (RuntimeException e)
+            {
+                throw new ScxException(ScxExceptionCode.ERROR_INVALID_CURSOR, e);
+            }
+            if (startStore < 0)
+            {
+                throw new ScxException(ScxExceptionCode.ERROR_INVALID_CURSOR);
+            }
+            startName = decoded.substring(pos + 1);
+        }
+
+        /*
+         * Keep only the first (limit + 1) MBeans after the cursor, the extra
+         * one tells whether there is a next page without having to sort all
+         * of the matching MBeans. The limit is clamped so that the count
+         * cannot overflow for Limit=2147483647.
+         */
+        LinkedHashMap<IJMX, Set<ObjectInstance>> page = new LinkedHashMap<IJMX, Set<ObjectInstance>>();
+        int remaining = Math.min(limit, Integer.MAX_VALUE - 1) + 1;
+        int lastStore = -1;
+        String lastName = null;
+        boolean more = false;
+
+        for (int i = startStore; i < stores.size() && !more; i++)
+        {
+            Set<ObjectInstance> storeBeans = mbeans.get(stores.get(i));
+            if (storeBeans == null)
+            {
+                continue;
+            }
+
+            TreeMap<String, ObjectInstance> sorted = new TreeMap<String, ObjectInstance>();
+            for (ObjectInstance mbean : storeBeans)
+            {
+                String name = mbean.getObjectName().getCanonicalName();
+                if (i == startStore && startName != null && name.compareTo(startName) <= 0)
+                {
+                    continue;
+                }
+                sorted.put(name, mbean);
+                if (sorted.size() > remaining)
+                {
+                    sorted.remove(sorted.lastKey());
+                }
+            }
+
+            Set<ObjectInstance> pageBeans = new LinkedHashSet<ObjectInstance>();
+            for (Map.Entry<String, ObjectInstance> entry : sorted.entrySet())
+            {
+                if (remaining == 1)
+                {
+                    more = true;
+                    break;
+                }
+                pageBeans.add(entry.getValue());
+                lastStore = i;
+                lastName = entry.getKey();
+                remaining--;
+            }
+            if (!pageBeans.isEmpty())
+            {
+                page.put(stores.get(i), pageBeans);
+            }
+        }
+
+        this._page = page;
+        this._nextCursor = more ? encodeCursor(lastStore, lastName) : null;
+    }
+
+    /**
+     * <p>
+     * The MBeans on the page, in page order.
+     * </p>
+     */
+    public LinkedHashMap<IJMX, Set<ObjectInstance>> getPage()
+    {
+        return this._page;
+    }
+
+    /**
+     * <p>
+     * Cursor to pass to get the next page, null if this is the last page.
+     * </p>
+     */
+    public String getNextCursor()
+    {
+        return this._nextCursor;
+    }
+
+    /**
+     * <p>
+     * Encode a position into a cursor string.
+     * </p>
+     *
+     * @param store
+     *            Position of the JMX store
+     * @param canonicalName
+     *            Canonical ObjectName of the last MBean on the page
+     *
+     * @return Opaque cursor string
+     */
+    static String encodeCursor(int store, String canonicalName)
+    {
+        byte[] bytes;
+        try
+        {
+            bytes = new StringBuffer().append(store).append(CURSOR_SEPARATOR)
+                    .append(canonicalName).toString().getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // UTF-8 is always supported
+            throw new IllegalStateException(e);
+        }
+
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * <p>
+     * Decode a cursor string.
+     * </p>
+     *
+     * @param cursor
+     *            Opaque cursor string
+     *
+     * @return The position as "store:canonicalName"
+     *
+     * @throws ScxException
+     *             If the cursor is not a valid cursor.
+     */
+    static String decodeCursor(String cursor) throws ScxException
+    {
+        if (cursor.length() % 2 != 0)
+        {
+            throw new ScxException(ScxExceptionCode.ERROR_INVALID_CURSOR);
+        }
+
+        byte[] bytes = new byte[cursor.length() / 2];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            int high = Character.digit(cursor.charAt(2 * i), 16);
+            int low = Character.digit(cursor.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0)
+            {
+                throw new ScxException(ScxExceptionCode.ERROR_INVALID_CURSOR);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+
+        String decoded;
+        try
+        {
+            decoded = new String(bytes, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            throw new ScxException(ScxExceptionCode.ERROR_INVALID_CURSOR, e);
+        }
+        if (decoded.indexOf(CURSOR_SEPARATOR) <= 0)
+        {
+            throw new ScxException(ScxExceptionCode.ERROR_INVALID_CURSOR);
+        }
+        return decoded;
+    }
+}
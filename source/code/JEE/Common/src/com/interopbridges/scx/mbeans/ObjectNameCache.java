@@ -0,0 +1,214 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.mbeans;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.ObjectName;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+
+/**
+ * <p>
+ * Bounded cache of parsed JMX queries. The key is the raw JMX query string as
+ * received in the request, the value is either the ObjectName parsed from it
+ * or, for queries that could not be parsed, the exception code and cause that
+ * were reported. A new exception is thrown for each request, so that requests
+ * never share (and fill in the stack trace of) the same exception.
+ * </p>
+ *
+ * <p>
+ * Collectors send the same small set of queries on every poll, so keeping the
+ * parsed result avoids building the ObjectName (and for queries that contain
+ * quotes, the MalformedObjectNameException from the first parse attempt) on
+ * every request. The least recently used entry is dropped once the cache is
+ * full.
+ * </p>
+ *
+ */
+public class ObjectNameCache
+{
+    /**
+     * <p>
+     * The failure reported for a query that could not be parsed.
+     * </p>
+     */
+    private static class MalformedQuery
+    {
+        /**
+         * <p>
+         * Exception code reported for the query.
+         * </p>
+         */
+        final ScxExceptionCode _code;
+
+        /**
+         * <p>
+         * Cause of the exception reported for the query, may be null.
+         * </p>
+         */
+        final Throwable _cause;
+
+        MalformedQuery(ScxExceptionCode code, Throwable cause)
+        {
+            this._code = code;
+            this._cause = cause;
+        }
+    }
+
+    /**
+     * <p>
+     * Maximum number of queries held in the cache.
+     * </p>
+     */
+    private final int _maxEntries;
+
+    /**
+     * <p>
+     * Access ordered map of query string to ObjectName or MalformedQuery.
+     * </p>
+     */
+    private final LinkedHashMap<String, Object> _cache;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param maxEntries
+     *            Maximum number of queries held in the cache, a value of zero
+     *            or less disables the cache.
+     */
+    public ObjectNameCache(int maxEntries)
+    {
+        this._maxEntries = maxEntries;
+        this._cache = new LinkedHashMap<String, Object>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest)
+            {
+                return size() > _maxEntries;
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Look up a previously parsed query.
+     * </p>
+     *
+     * @param query
+     *            Raw JMX query string
+     *
+     * @return The parsed ObjectName, or null if the query is not in the cache.
+     *
+     * @throws ScxException
+     *             If the query was previously found to be malformed.
+     */
+    public ObjectName get(String query) throws ScxException
+    {
+        Object entry;
+        synchronized (_cache)
+        {
+            entry = _cache.get(query);
+        }
+        if (entry instanceof MalformedQuery)
+        {
+            MalformedQuery malformed = (MalformedQuery) entry;
+            throw new ScxException(malformed._code, malformed._cause);
+        }
+        return (ObjectName) entry;
+    }
+
+    /**
+     * <p>
+     * Add a successfully parsed query to the cache.
+     * </p>
+     *
+     * @param query
+     *            Raw JMX query string
+     * @param objectName
+     *            ObjectName parsed from the query
+     */
+    public void put(String query, ObjectName objectName)
+    {
+        store(query, objectName);
+    }
+
+    /**
+     * <p>
+     * Record that a query could not be parsed, so that further requests with
+     * the same query fail without parsing it again.
+     * </p>
+     *
+     * @param query
+     *            Raw JMX query string
+     * @param e
+     *            Exception reported for the query, its code and cause are
+     *            kept
+     */
+    public void putMalformed(String query, ScxException e)
+    {
+        store(query, new MalformedQuery(e.getExceptionCode(), e.getCause()));
+    }
+
+    /**
+     * <p>
+     * Number of queries currently in the cache.
+     * </p>
+     */
+    public int size()
+    {
+        synchronized (_cache)
+        {
+            return _cache.size();
+        }
+    }
+
+    /**
+     * <p>
+     * Remove all queries from the cache.
+     * </p>
+     */
+    public void clear()
+    {
+        synchronized (_cache)
+        {
+            _cache.clear();
+        }
+    }
+
+    /**
+     * <p>
+     * Add an entry to the cache (if it is enabled).
+     * </p>
+     */
+    private void store(String query, Object value)
+    {
+        if (query == null || _maxEntries <= 0)
+        {
+            return;
+        }
+        synchronized (_cache)
+        {
+            _cache.put(query, value);
+        }
+    }
+}
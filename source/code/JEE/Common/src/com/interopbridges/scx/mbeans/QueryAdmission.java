@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.mbeans;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.configuration.Config;
+import com.interopbridges.scx.configuration.ConfigKey;
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Decides whether a query to /MBeans is run, from its estimated cost.
+ * </p>
+ *
+ * <p>
+ * A query whose cost is within QUERY_COST_THRESHOLD (from config.properties)
+ * is accepted. A query over the threshold is handled by QUERY_COST_POLICY:
+ * <ul>
+ * <li>Reject: the query fails.</li>
+ * <li>Downgrade: the MBeans are rendered to the greatest depth whose cost is
+ * within the threshold.</li>
+ * <li>Queue: the query waits until fewer than QUERY_COST_QUEUE_SIZE queries
+ * over the threshold are running, and fails if it waited more than
+ * QUERY_COST_QUEUE_TIMEOUT milliseconds.</li>
+ * </ul>
+ * A threshold of zero or less (the default) accepts every query, the
+ * cost is then not estimated unless Explain=true is requested.
+ * </p>
+ *
+ */
+public class QueryAdmission
+{
+    /**
+     * <p>
+     * Policy failing the queries over the threshold.
+     * </p>
+     */
+    public static final String POLICY_REJECT = "Reject";
+
+    /**
+     * <p>
+     * Policy lowering the depth of the queries over the threshold.
+     * </p>
+     */
+    public static final String POLICY_DOWNGRADE = "Downgrade";
+
+    /**
+     * <p>
+     * Policy running the queries over the threshold one batch at a time.
+     * </p>
+     */
+    public static final String POLICY_QUEUE = "Queue";
+
+    /**
+     * <p>
+     * Decision for a query within the threshold.
+     * </p>
+     */
+    public static final String DECISION_ACCEPT = "Accept";
+
+    /**
+     * <p>
+     * The admission control shared by all requests.
+     * </p>
+     */
+    private static final QueryAdmission _inst = new QueryAdmission(
+            new Config(ConfigKey.QUERY_COST_THRESHOLD).getLongValue(0),
+            new Config(ConfigKey.QUERY_COST_POLICY).getStringValue(POLICY_DOWNGRADE),
+            new Config(ConfigKey.QUERY_COST_QUEUE_SIZE).getIntValue(1),
+            new Config(ConfigKey.QUERY_COST_QUEUE_TIMEOUT).getLongValue(30000));
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * Cost over which the policy applies, zero or less for no limit.
+     * </p>
+     */
+    private final long _threshold;
+
+    /**
+     * <p>
+     * The policy for the queries over the threshold.
+     * </p>
+     */
+    private final String _policy;
+
+    /**
+     * <p>
+     * Permits of the queries over the threshold allowed to run at the same
+     * time, for the Queue policy.
+     * </p>
+     */
+    private final Semaphore _queue;
+
+    /**
+     * <p>
+     * Time (in milliseconds) a query waits for a permit before failing.
+     * </p>
+     */
+    private final long _queueTimeout;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param threshold
+     *            Cost over which the policy applies, zero or less for no limit
+     * @param policy
+     *            Reject, Downgrade or Queue, an unknown policy is logged and
+     *            taken as Downgrade
+     * @param queueSize
+     *            Number of queries over the threshold allowed to run at the
+     *            same time
+     * @param queueTimeout
+     *            Time (in milliseconds) a query waits to be run
+     */
+    QueryAdmission(long threshold, String policy, int queueSize, long queueTimeout)
+    {
+        this._logger = LoggingFactory.getLogger();
+        this._threshold = threshold;
+        if (POLICY_REJECT.equalsIgnoreCase(policy))
+        {
+            this._policy = POLICY_REJECT;
+        }
+        else if (POLICY_QUEUE.equalsIgnoreCase(policy))
+        {
+            this._policy = POLICY_QUEUE;
+        }
+        else
+        {
+            if (!POLICY_DOWNGRADE.equalsIgnoreCase(policy))
+            {
+                this._logger.warning(new StringBuffer("Unknown query cost policy ")
+                        .append(policy).append(", using ").append(POLICY_DOWNGRADE).toString());
+            }
+            this._policy = POLICY_DOWNGRADE;
+        }
+        this._queue = new Semaphore(Math.max(1, queueSize), true);
+        this._queueTimeout = queueTimeout;
+    }
+
+    /**
+     * <p>
+     * Get the admission control shared by all requests.
+     * </p>
+     *
+     * @return The admission control
+     */
+    public static QueryAdmission getInstance()
+    {
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * Get the cost over which the policy applies.
+     * </p>
+     *
+     * @return The threshold, zero or less for no limit
+     */
+    public long getThreshold()
+    {
+        return this._threshold;
+    }
+
+    /**
+     * <p>
+     * Check whether the cost of the queries is limited.
+     * </p>
+     *
+     * @return true if a threshold is configured
+     */
+    public boolean isEnabled()
+    {
+        return this._threshold > 0;
+    }
+
+    /**
+     * <p>
+     * Get the policy for the queries over the threshold.
+     * </p>
+     *
+     * @return Reject, Downgrade or Queue
+     */
+    public String getPolicy()
+    {
+        return this._policy;
+    }
+
+    /**
+     * <p>
+     * Decide how a query is handled.
+     * </p>
+     *
+     * @param cost
+     *            The estimated cost of the query
+     *
+     * @return Accept if the query is within the threshold, otherwise the
+     *         policy
+     */
+    public String decide(QueryCost cost)
+    {
+        if (this._threshold <= 0 || cost.getCost() <= this._threshold)
+        {
+            return DECISION_ACCEPT;
+        }
+        return this._policy;
+    }
+
+    /**
+     * <p>
+     * Get the depth a query is rendered to, lowered to fit the threshold by
+     * the Downgrade policy.
+     * </p>
+     *
+     * @param cost
+     *            The estimated cost of the query
+     *
+     * @return The depth to render the MBeans to
+     */
+    public int getDepth(QueryCost cost)
+    {
+        if (POLICY_DOWNGRADE.equals(decide(cost)))
+        {
+            return cost.getAffordableDepth(this._threshold);
+        }
+        return cost.getDepth();
+    }
+
+    /**
+     * <p>
+     * Fail a query rejected by the Reject policy.
+     * </p>
+     *
+     * @param cost
+     *            The estimated cost of the query
+     * @param jmxQuery
+     *            The JMX Query
+     *
+     * @throws ScxException
+     *             Always, the cost of the query exceeds the threshold.
+     */
+    public void reject(QueryCost cost, String jmxQuery) throws ScxException
+    {
+        Object[] args = {Long.valueOf(cost.getCost()), jmxQuery, Long.valueOf(this._threshold)};
+        this._logger.fine("Rejecting query {0} of cost {1}", jmxQuery, String.valueOf(cost.getCost()));
+        throw new ScxException(ScxExceptionCode.ERROR_QUERY_COST_EXCEEDS_LIMITS, args);
+    }
+
+    /**
+     * <p>
+     * Wait for the turn of a query held by the Queue policy. Each call that
+     * returns must be followed by a call to leaveQueue once the query is
+     * done.
+     * </p>
+     *
+     * @param jmxQuery
+     *            The JMX Query
+     *
+     * @throws ScxException
+     *             If the query waited longer than the queue timeout.
+     */
+    public void enterQueue(String jmxQuery) throws ScxException
+    {
+        boolean acquired;
+        try
+        {
+            acquired = this._queue.tryAcquire(this._queueTimeout, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired)
+        {
+            Object[] args = {jmxQuery, Long.valueOf(this._queueTimeout)};
+            this._logger.fine("Query {0} timed out in the queue", jmxQuery);
+            throw new ScxException(ScxExceptionCode.ERROR_QUERY_COST_QUEUE_TIMEOUT, args);
+        }
+    }
+
+    /**
+     * <p>
+     * Let the next query held by the Queue policy run.
+     * </p>
+     */
+    public void leaveQueue()
+    {
+        this._queue.release();
+    }
+}
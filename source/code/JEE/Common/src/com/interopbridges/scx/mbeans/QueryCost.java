@@ -0,0 +1,165 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.mbeans;
+
+/**
+ * <p>
+ * The estimated cost of rendering the MBeans matching a query.
+ * </p>
+ *
+ * <p>
+ * The cost is counted in properties: each MBean counts one, and each of its
+ * attributes counts one per level of the requested depth. At a MaxDepth of
+ * zero only the ObjectNames are rendered, the cost is the number of MBeans.
+ * </p>
+ *
+ */
+public class QueryCost
+{
+    /**
+     * <p>
+     * Number of MBeans matching the query.
+     * </p>
+     */
+    private final int _mbeanCount;
+
+    /**
+     * <p>
+     * Number of attributes of the MBeans matching the query.
+     * </p>
+     */
+    private final long _attributeCount;
+
+    /**
+     * <p>
+     * The requested depth (MaxDepth).
+     * </p>
+     */
+    private final int _depth;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param mbeanCount
+     *            Number of MBeans matching the query
+     * @param attributeCount
+     *            Number of attributes of the MBeans matching the query
+     * @param depth
+     *            The requested depth (MaxDepth)
+     */
+    public QueryCost(int mbeanCount, long attributeCount, int depth)
+    {
+        this._mbeanCount = mbeanCount;
+        this._attributeCount = attributeCount;
+        this._depth = depth;
+    }
+
+    /**
+     * <p>
+     * Get the number of MBeans matching the query.
+     * </p>
+     *
+     * @return The number of MBeans
+     */
+    public int getMBeanCount()
+    {
+        return this._mbeanCount;
+    }
+
+    /**
+     * <p>
+     * Get the number of attributes of the MBeans matching the query.
+     * </p>
+     *
+     * @return The number of attributes
+     */
+    public long getAttributeCount()
+    {
+        return this._attributeCount;
+    }
+
+    /**
+     * <p>
+     * Get the requested depth.
+     * </p>
+     *
+     * @return The requested depth (MaxDepth)
+     */
+    public int getDepth()
+    {
+        return this._depth;
+    }
+
+    /**
+     * <p>
+     * Get the estimated cost of the query at the requested depth.
+     * </p>
+     *
+     * @return The estimated cost
+     */
+    public long getCost()
+    {
+        return getCost(this._depth);
+    }
+
+    /**
+     * <p>
+     * Get the estimated cost of the query at a given depth.
+     * </p>
+     *
+     * @param depth
+     *            The depth to render the MBeans to
+     *
+     * @return The estimated cost
+     */
+    public long getCost(int depth)
+    {
+        if (depth <= 0)
+        {
+            return this._mbeanCount;
+        }
+        return this._mbeanCount + this._attributeCount * depth;
+    }
+
+    /**
+     * <p>
+     * Get the greatest depth, no deeper than the requested one, at which the
+     * cost of the query does not exceed a threshold. The ObjectNames alone
+     * (a depth of zero) are always affordable.
+     * </p>
+     *
+     * @param threshold
+     *            The maximum cost
+     *
+     * @return The depth to render the MBeans to
+     */
+    public int getAffordableDepth(long threshold)
+    {
+        if (getCost() <= threshold)
+        {
+            return this._depth;
+        }
+        if (this._attributeCount == 0 || threshold <= this._mbeanCount)
+        {
+            return 0;
+        }
+        return (int) Math.min(this._depth, (threshold - this._mbeanCount) / this._attributeCount);
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.mbeans;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanInfo;
+import javax.management.ObjectInstance;
+
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Estimates the cost of rendering the MBeans matching a query, from the
+ * number of MBeans, the number of attributes of each and the requested
+ * depth.
+ * </p>
+ *
+ * <p>
+ * The number of attributes is read from the MBeanInfo of the first MBean of
+ * each class and kept by class name, so estimating a query does not read
+ * the MBeanInfo of every MBean again. MBeans of a class (model MBeans for
+ * instance) may have different attributes, the count is an estimate. The
+ * number of classes kept is bounded, the classes over the bound have their
+ * MBeanInfo read each time.
+ * </p>
+ *
+ */
+public class QueryCostEstimator
+{
+    /**
+     * <p>
+     * Maximum number of classes whose attribute count is kept.
+     * </p>
+     */
+    static final int MAX_CLASSES = 4096;
+
+    /**
+     * <p>
+     * The estimator shared by all requests.
+     * </p>
+     */
+    private static final QueryCostEstimator _inst = new QueryCostEstimator();
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * Number of attributes by MBean class name.
+     * </p>
+     */
+    private final Map<String, Integer> _attributeCounts = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * <p>
+     * Constructor, the requests share the instance returned by getInstance.
+     * </p>
+     */
+    QueryCostEstimator()
+    {
+        this._logger = LoggingFactory.getLogger();
+    }
+
+    /**
+     * <p>
+     * Get the estimator shared by all requests.
+     * </p>
+     *
+     * @return The query cost estimator
+     */
+    public static QueryCostEstimator getInstance()
+    {
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * Estimate the cost of rendering MBeans to a depth. The attributes are
+     * not counted for a depth of zero, only the ObjectNames are rendered.
+     * </p>
+     *
+     * @param mbeans
+     *            The MBeans to render, by JMX store
+     * @param depth
+     *            The requested depth (MaxDepth)
+     *
+     * @return The estimated cost
+     */
+    public QueryCost estimate(HashMap<IJMX, Set<ObjectInstance>> mbeans, int depth)
+    {
+        int mbeanCount = 0;
+        long attributeCount = 0;
+        for (Map.Entry<IJMX, Set<ObjectInstance>> entry : mbeans.entrySet())
+        {
+            mbeanCount += entry.getValue().size();
+            if (depth > 0)
+            {
+                for (ObjectInstance mbean : entry.getValue())
+                {
+                    attributeCount += getAttributeCount(entry.getKey(), mbean);
+                }
+            }
+        }
+        return new QueryCost(mbeanCount, attributeCount, depth);
+    }
+
+    /**
+     * <p>
+     * Get the number of attributes of an MBean, from the count kept for its
+     * class if there is one.
+     * </p>
+     *
+     * @param store
+     *            The JMX store holding the MBean
+     * @param mbean
+     *            The MBean
+     *
+     * @return The number of attributes, zero if the MBeanInfo cannot be read
+     */
+    int getAttributeCount(IJMX store, ObjectInstance mbean)
+    {
+        String className = mbean.getClassName();
+        Integer count = this._attributeCounts.get(className);
+        if (count != null)
+        {
+            return count.intValue();
+        }
+        try
+        {
+            MBeanInfo info = store.getMBeanInfo(mbean.getObjectName());
+            count = Integer.valueOf(info.getAttributes().length);
+        }
+        catch (Exception e)
+        {
+            this._logger.finer("Unable to read the MBeanInfo of {0}", mbean.getObjectName());
+            return 0;
+        }
+        if (this._attributeCounts.size() < MAX_CLASSES)
+        {
+            this._attributeCounts.put(className, count);
+        }
+        return count.intValue();
+    }
+}
@@ -0,0 +1,670 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.prometheus;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+
+import com.interopbridges.scx.jeestats.BeanSpyMetrics;
+import com.interopbridges.scx.jeestats.DoubleStatistic;
+import com.interopbridges.scx.jeestats.LongStatistic;
+import com.interopbridges.scx.jeestats.Statistic;
+import com.interopbridges.scx.jeestats.StatisticGroup;
+import com.interopbridges.scx.jeestats.StatisticItemGroup;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JmxStores;
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+
+/**
+ * <p>
+ * Writes statistics and MBean attributes in the Prometheus text exposition
+ * format (version 0.0.4).
+ * </p>
+ *
+ * <p>
+ * A statistic Memory/HeapUsedMemory is written as the gauge
+ * beanspy_memory_heap_used_memory. When a statistic group holds several groups
+ * of properties (e.g. one per memory pool) the string properties of a group,
+ * such as PoolName, become the labels of its numeric properties, and so do
+ * the numeric properties the group declares as identifying it, such as the
+ * WindowMinutes of a GCPause group or the Rank of a ThreadActivity group;
+ * those are not written as gauges. The numeric
+ * and boolean attributes of an MBean are written as gauges named after the
+ * domain and the attribute, e.g. java_lang_thread_count, labeled with the key
+ * properties of the ObjectName. Label names that only differ in case map to
+ * the same snake case name, the later ones get a numeric suffix, e.g. type
+ * and type_2.
+ * </p>
+ *
+ * <p>
+ * The samples of one statistic group, or of all MBeans, are collected per
+ * metric family and then written to the output, so that the samples of a
+ * family are adjacent as the format requires while the response is streamed
+ * group by group. The HELP and TYPE lines of a family are escaped once and
+ * kept for the following requests.
+ * </p>
+ *
+ */
+public class PrometheusWriter
+{
+    /**
+     * <p>
+     * Content type of the text exposition format.
+     * </p>
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * <p>
+     * Prefix of the metric names of the statistics.
+     * </p>
+     */
+    static final String STATISTIC_PREFIX = "beanspy_";
+
+    /**
+     * <p>
+     * Maximum number of metric families whose headers are kept. MBean
+     * patterns can match an open ended set of attributes, beyond this number
+     * headers are built for every request.
+     * </p>
+     */
+    static final int MAX_CACHED_FAMILIES = 4096;
+
+    /**
+     * <p>
+     * Metric families by the statistic group and statistic, or MBean domain
+     * and attribute, they were built for.
+     * </p>
+     */
+    private static final ConcurrentHashMap<String, Family> _families = new ConcurrentHashMap<String, Family>();
+
+    /**
+     * <p>
+     * Class names of the MBean attribute types that are written.
+     * </p>
+     */
+    private static final Set<String> _numericTypes = new HashSet<String>();
+
+    static
+    {
+        String[] types = { "byte", "short", "int", "long", "float", "double", "boolean",
+                Byte.class.getName(), Short.class.getName(), Integer.class.getName(),
+                Long.class.getName(), Float.class.getName(), Double.class.getName(),
+                Boolean.class.getName() };
+        for (int i = 0; i < types.length; i++)
+        {
+            _numericTypes.add(types[i]);
+        }
+    }
+
+    /**
+     * <p>
+     * Output the exposition is written to.
+     * </p>
+     */
+    private final Writer _out;
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    private final ILogger _logger;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param out
+     *            Output the exposition is written to
+     */
+    public PrometheusWriter(Writer out)
+    {
+        this._out = out;
+        this._logger = LoggingFactory.getLogger();
+    }
+
+    /**
+     * <p>
+     * Write the numeric statistics of a statistic group.
+     * </p>
+     *
+     * @param group
+     *            The statistic group
+     *
+     * @throws IOException
+     *             If the output could not be written
+     */
+    public void writeStatistics(StatisticGroup group) throws IOException
+    {
+        Map<String, StringBuffer> samples = new LinkedHashMap<String, StringBuffer>();
+        String groupName = group.getName();
+
+        for (StatisticItemGroup item : group.getStatisticItemGroup())
+        {
+            List<Statistic> stats = item.getStatistics();
+            StringBuffer labels = new StringBuffer();
+            Set<String> labelNames = new HashSet<String>();
+            for (Statistic stat : stats)
+            {
+                String label = null;
+                if (stat.getStatisticValue() instanceof String)
+                {
+                    label = (String) stat.getStatisticValue();
+                }
+                else if (item.isKeyStatistic(stat))
+                {
+                    label = formatValue(stat);
+                }
+                if (label != null)
+                {
+                    appendLabel(labels, uniqueLabelName(labelNames, toSnakeCase(stat.getStatisticName())), label);
+                }
+            }
+
+            for (Statistic stat : stats)
+            {
+                String value = item.isKeyStatistic(stat) ? null : formatValue(stat);
+                if (value != null)
+                {
+                    Family family = getFamily(groupName, stat.getStatisticName(), true);
+                    appendSample(samples, family, labels, value);
+                }
+            }
+        }
+
+        flush(samples);
+    }
+
+    /**
+     * <p>
+     * Write the numeric and boolean attributes of the MBeans matching the
+     * given patterns. An MBean found in several stores, or matching several
+     * patterns, is written once. Stores that are quarantined are skipped, and
+     * the outcome of each query is recorded in the health of the store the
+     * same way as for the /MBeans queries.
+     * </p>
+     *
+     * @param stores
+     *            The JMX stores to query
+     * @param patterns
+     *            ObjectName patterns of the MBeans to write
+     *
+     * @throws IOException
+     *             If the output could not be written
+     */
+    public void writeMBeans(List<IJMX> stores, List<ObjectName> patterns) throws IOException
+    {
+        Map<String, StringBuffer> samples = new LinkedHashMap<String, StringBuffer>();
+        Set<ObjectName> written = new HashSet<ObjectName>();
+
+        for (IJMX store : stores)
+        {
+            if (!JmxStores.isStoreAvailable(store))
+            {
+                continue;
+            }
+            for (ObjectName pattern : patterns)
+            {
+                Set<ObjectInstance> mbeans;
+                long start = System.currentTimeMillis();
+                try
+                {
+                    long queryStart = System.nanoTime();
+                    mbeans = store.queryMBeans(pattern, null);
+                    BeanSpyMetrics.getInstance().recordStoreQuery(store, System.nanoTime() - queryStart);
+                    JmxStores.recordStoreSuccess(store, System.currentTimeMillis() - start);
+                }
+                catch (IOException e)
+                {
+                    /*
+                     * The store could not be reached, the remaining patterns
+                     * are not sent to it.
+                     */
+                    JmxStores.recordStoreFailure(store, System.currentTimeMillis() - start);
+                    this._logger.warning(new StringBuffer("Failed to query mbean store: ")
+                            .append(store.getClass().getName()).append(" ")
+                            .append(e.getMessage()).toString());
+                    break;
+                }
+                catch (Exception e)
+                {
+                    this._logger.fine(new StringBuffer("Unable to query the MBeans for ")
+                            .append(pattern).append(": ").append(e.getMessage()).toString());
+                    continue;
+                }
+
+                for (ObjectInstance mbean : mbeans)
+                {
+                    if (written.add(mbean.getObjectName()))
+                    {
+                        collectMBean(store, mbean.getObjectName(), samples);
+                    }
+                }
+            }
+        }
+
+        flush(samples);
+    }
+
+    /**
+     * <p>
+     * Collect the samples of the numeric and boolean attributes of an MBean.
+     * Attributes that cannot be read are left out.
+     * </p>
+     */
+    private void collectMBean(IJMX store, ObjectName name, Map<String, StringBuffer> samples)
+    {
+        MBeanInfo info;
+        try
+        {
+            info = store.getMBeanInfo(name);
+        }
+        catch (Exception e)
+        {
+            this._logger.fine(new StringBuffer("Unable to read the MBeanInfo of ")
+                    .append(name).append(": ").append(e.getMessage()).toString());
+            return;
+        }
+
+        StringBuffer labels = null;
+        MBeanAttributeInfo[] attributes = info.getAttributes();
+        for (int i = 0; i < attributes.length; i++)
+        {
+            if (!attributes[i].isReadable() || !_numericTypes.contains(attributes[i].getType()))
+            {
+                continue;
+            }
+
+            String value;
+            try
+            {
+                long start = System.nanoTime();
+                value = formatValue(store.getAttribute(name, attributes[i].getName()));
+                BeanSpyMetrics.getInstance().recordAttributeFetched(store, System.nanoTime() - start);
+            }
+            catch (Exception e)
+            {
+                this._logger.finer(new StringBuffer("Unable to read the attribute ")
+                        .append(attributes[i].getName()).append(" of ").append(name)
+                        .append(": ").append(e.getMessage()).toString());
+                continue;
+            }
+            if (value == null)
+            {
+                continue;
+            }
+
+            if (labels == null)
+            {
+                labels = getLabels(name);
+            }
+            appendSample(samples, getFamily(name.getDomain(), attributes[i].getName(), false), labels, value);
+        }
+        BeanSpyMetrics.getInstance().recordMBeanVisited();
+    }
+
+    /**
+     * <p>
+     * Write the collected samples, the samples of each family start with its
+     * header.
+     * </p>
+     */
+    private void flush(Map<String, StringBuffer> samples) throws IOException
+    {
+        for (Iterator<StringBuffer> it = samples.values().iterator(); it.hasNext();)
+        {
+            this._out.write(it.next().toString());
+        }
+    }
+
+    /**
+     * <p>
+     * Add a sample line to the samples of its family, starting the samples of
+     * a family not seen yet with its header.
+     * </p>
+     */
+    private static void appendSample(Map<String, StringBuffer> samples, Family family,
+            StringBuffer labels, String value)
+    {
+        StringBuffer lines = samples.get(family.getName());
+        if (lines == null)
+        {
+            lines = new StringBuffer(family.getHeader());
+            samples.put(family.getName(), lines);
+        }
+        lines.append(family.getName());
+        if (labels.length() > 0)
+        {
+            lines.append('{').append(labels).append('}');
+        }
+        lines.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * <p>
+     * Get the metric family of a statistic or MBean attribute, building and
+     * keeping it the first time it is seen.
+     * </p>
+     *
+     * @param scope
+     *            Statistic group or MBean domain
+     * @param name
+     *            Statistic or attribute name
+     * @param statistic
+     *            Whether the family is a statistic
+     *
+     * @return The metric family
+     */
+    static Family getFamily(String scope, String name, boolean statistic)
+    {
+        String key = new StringBuffer(statistic ? "S:" : "M:").append(scope).append('/').append(name).toString();
+        Family family = _families.get(key);
+        if (family != null)
+        {
+            return family;
+        }
+
+        String metric;
+        String help;
+        if (statistic)
+        {
+            metric = new StringBuffer(STATISTIC_PREFIX).append(toSnakeCase(scope)).append('_')
+                    .append(toSnakeCase(name)).toString();
+            help = new StringBuffer("BeanSpy statistic ").append(scope).append('/').append(name).toString();
+        }
+        else
+        {
+            metric = new StringBuffer(toSnakeCase(scope)).append('_').append(toSnakeCase(name)).toString();
+            help = new StringBuffer("MBean attribute ").append(name).append(" in domain ").append(scope).toString();
+        }
+        family = new Family(metric, help);
+
+        if (_families.size() < MAX_CACHED_FAMILIES)
+        {
+            Family existing = _families.putIfAbsent(key, family);
+            if (existing != null)
+            {
+                family = existing;
+            }
+        }
+        return family;
+    }
+
+    /**
+     * <p>
+     * Build the labels of an MBean from the key properties of its
+     * ObjectName, sorted by key.
+     * </p>
+     */
+    static StringBuffer getLabels(ObjectName name)
+    {
+        StringBuffer labels = new StringBuffer();
+        Set<String> labelNames = new HashSet<String>();
+        Map<String, String> keys = new TreeMap<String, String>();
+        for (Object entry : name.getKeyPropertyList().entrySet())
+        {
+            Map.Entry<?, ?> property = (Map.Entry<?, ?>) entry;
+            keys.put(String.valueOf(property.getKey()), String.valueOf(property.getValue()));
+        }
+        for (Map.Entry<String, String> key : keys.entrySet())
+        {
+            appendLabel(labels, uniqueLabelName(labelNames, toSnakeCase(key.getKey())), unquote(key.getValue()));
+        }
+        return labels;
+    }
+
+    /**
+     * <p>
+     * Format the value of a statistic, or null if it is not numeric.
+     * </p>
+     */
+    static String formatValue(Statistic stat)
+    {
+        if (stat instanceof LongStatistic)
+        {
+            return Long.toString(((LongStatistic) stat).getLongValue());
+        }
+        if (stat instanceof DoubleStatistic)
+        {
+            return formatDouble(((DoubleStatistic) stat).getDoubleValue());
+        }
+        return formatValue(stat.getStatisticValue());
+    }
+
+    /**
+     * <p>
+     * Format a numeric or boolean value, or null if it is neither.
+     * </p>
+     */
+    static String formatValue(Object value)
+    {
+        if (value instanceof Double || value instanceof Float)
+        {
+            return formatDouble(((Number) value).doubleValue());
+        }
+        if (value instanceof Number)
+        {
+            return Long.toString(((Number) value).longValue());
+        }
+        if (value instanceof Boolean)
+        {
+            return ((Boolean) value).booleanValue() ? "1" : "0";
+        }
+        return null;
+    }
+
+    /**
+     * <p>
+     * Format a floating point value, including the special values.
+     * </p>
+     */
+    private static String formatDouble(double value)
+    {
+        if (Double.isNaN(value))
+        {
+            return "NaN";
+        }
+        if (Double.isInfinite(value))
+        {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * <p>
+     * Convert a name in camel case to a valid metric or label name in snake
+     * case, e.g. HeapUsedMemory to heap_used_memory and GCPause to gc_pause.
+     * Characters that are not valid in a name are replaced by an underscore.
+     * </p>
+     *
+     * @param name
+     *            The name to convert
+     *
+     * @return The converted name
+     */
+    static String toSnakeCase(String name)
+    {
+        StringBuffer result = new StringBuffer(name.length() + 8);
+        for (int i = 0; i < name.length(); i++)
+        {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c))
+            {
+                if (i > 0 && result.charAt(result.length() - 1) != '_')
+                {
+                    char previous = name.charAt(i - 1);
+                    boolean nextLower = i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1));
+                    if (Character.isLowerCase(previous) || Character.isDigit(previous)
+                            || (Character.isUpperCase(previous) && nextLower))
+                    {
+                        result.append('_');
+                    }
+                }
+                result.append(Character.toLowerCase(c));
+            }
+            else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9' && i > 0))
+            {
+                result.append(c);
+            }
+            else if (result.length() == 0 || result.charAt(result.length() - 1) != '_')
+            {
+                result.append('_');
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * <p>
+     * Make a label name unique among the labels of a sample, adding a numeric
+     * suffix to a name already used.
+     * </p>
+     *
+     * @param used
+     *            The label names already used, the name returned is added
+     * @param name
+     *            The label name
+     *
+     * @return The unique label name
+     */
+    static String uniqueLabelName(Set<String> used, String name)
+    {
+        String label = name;
+        for (int suffix = 2; !used.add(label); suffix++)
+        {
+            label = new StringBuffer(name).append('_').append(suffix).toString();
+        }
+        return label;
+    }
+
+    /**
+     * <p>
+     * Append a label to a list of labels, escaping the value.
+     * </p>
+     */
+    private static void appendLabel(StringBuffer labels, String name, String value)
+    {
+        if (labels.length() > 0)
+        {
+            labels.append(',');
+        }
+        labels.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+            case '\\':
+                labels.append("\\\\");
+                break;
+            case '"':
+                labels.append("\\\"");
+                break;
+            case '\n':
+                labels.append("\\n");
+                break;
+            default:
+                labels.append(c);
+            }
+        }
+        labels.append('"');
+    }
+
+    /**
+     * <p>
+     * Remove the quotes of a quoted ObjectName value.
+     * </p>
+     */
+    private static String unquote(String value)
+    {
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"')
+        {
+            try
+            {
+                return ObjectName.unquote(value);
+            }
+            catch (IllegalArgumentException e)
+            {
+                return value;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * <p>
+     * A metric family with its escaped HELP and TYPE lines.
+     * </p>
+     */
+    static final class Family
+    {
+        private final String _name;
+        private final String _header;
+
+        Family(String name, String help)
+        {
+            this._name = name;
+            StringBuffer header = new StringBuffer("# HELP ").append(name).append(' ');
+            for (int i = 0; i < help.length(); i++)
+            {
+                char c = help.charAt(i);
+                if (c == '\\')
+                {
+                    header.append("\\\\");
+                }
+                else if (c == '\n')
+                {
+                    header.append("\\n");
+                }
+                else
+                {
+                    header.append(c);
+                }
+            }
+            header.append("\n# TYPE ").append(name).append(" gauge\n");
+            this._header = header.toString();
+        }
+
+        String getName()
+        {
+            return this._name;
+        }
+
+        String getHeader()
+        {
+            return this._header;
+        }
+    }
+}
@@ -37,13 +37,6 @@ public class JmxConstant {
      */
     public static final int URL_LENGTH_LIMITS = 2048;
    
-    /**
-     * <p>
-     * The boolean variable that determines if a JBoss instance version 7 or Wildfly version 8
-     * </p>
-     */ 
-    public static boolean IS_JBOSS7_WILDFLY = false;    
-    
     /**
      * <p>
      * BeanSpy Tampering Threat discovered during the STRIDE analysis. 
@@ -61,8 +54,48 @@ public class JmxConstant {
     public static final String STR_MAXSIZE = "MaxSize";
     public static final String STR_MAXDEPTH = "MaxDepth";
     public static final String STR_MAXCOUNT = "MaxCount";    
-    private static final String[] VALID_PARAMETERS = {STR_JMXQUERY, STR_MAXSIZE, STR_MAXDEPTH, STR_MAXCOUNT};
-    public static final String[] getValidParameters () { return VALID_PARAMETERS.clone();}
+
+    /**
+     * <p>
+     * Paging parameters for large result sets. Limit is the maximum number of
+     * MBeans returned in a response, Cursor is the continuation cursor returned
+     * with the previous page.
+     * </p>
+     */
+    public static final String STR_LIMIT = "Limit";
+    public static final String STR_CURSOR = "Cursor";
+
+    /**
+     * <p>
+     * Truncation parameter. When set to true, a response that reaches the
+     * absolute maximum XML size (or the MaxTime limit) is cut short and
+     * returned as a well-formed partial document instead of failing.
+     * </p>
+     */
+    public static final String STR_TRUNCATE = "Truncate";
+
+    /**
+     * <p>
+     * Maximum number of rows rendered for a TabularData property (for example
+     * the SystemProperties of java.lang:type=Runtime).
+     * </p>
+     */
+    public static final String STR_MAXROWS = "MaxRows";
+
+    /**
+     * <p>
+     * Maximum number of elements rendered for an array property.
+     * </p>
+     */
+    public static final String STR_MAXARRAYELEMENTS = "MaxArrayElements";
+
+    /**
+     * <p>
+     * Explain parameter. When set to true, the estimated cost of the query
+     * and the admission decision are returned instead of the MBeans.
+     * </p>
+     */
+    public static final String STR_EXPLAIN = "Explain";
     
     /*
      * <p>
@@ -74,6 +107,17 @@ public class JmxConstant {
     public static final String STR_MAXTIME = "MaxTime";    
     public static final String STR_INVOKE_URL = "/Invoke";
     public static final String[] VALID_INVOKE_PARAMETERS = {STR_MAXSIZE, STR_MAXTIME};
+
+    /*
+     * <p>
+     * MaxTime is also accepted by the GET request, it is the time limit in
+     * milliseconds for rendering the MBeans and implies Truncate=true.
+     * </p>
+     */
+    private static final String[] VALID_PARAMETERS = {STR_JMXQUERY, STR_MAXSIZE, STR_MAXDEPTH, STR_MAXCOUNT,
+        STR_LIMIT, STR_CURSOR, STR_TRUNCATE, STR_MAXTIME, STR_MAXROWS,
+        STR_MAXARRAYELEMENTS, STR_EXPLAIN};
+    public static final String[] getValidParameters () { return VALID_PARAMETERS.clone();}
     
     /**
      * <p>
@@ -116,6 +160,22 @@ public class JmxConstant {
      * </p>
      */
     public static final int MAXPROPERTIES = 5000;
+
+    /**
+     * <p>
+     * Default maximum number of rows to render for a TabularData property
+     * </p>
+     */
+    public static final int MAXROWS = 1000;
+
+    /**
+     * <p>
+     * Default maximum number of elements to render for an array property, no
+     * limit. Without a MaxArrayElements parameter a huge array is only bounded
+     * by the size of the XML output.
+     * </p>
+     */
+    public static final int MAXARRAYELEMENTS = Integer.MAX_VALUE;
      
     /**
      * <p>
@@ -276,6 +336,131 @@ public class JmxConstant {
      public static final String XML_TRANSFORMER_MBEAN_PROPERTY_TAG = "Property";
      public static final String XML_TRANSFORMER_MBEAN_PROPERTY_NAME_ATTRRIBUTE = "Name";
 
+     /**
+      * <p>
+      * Constants for the XML element listing the JMX stores that could not be
+      * queried (because they failed or are quarantined) while answering a request.
+      * <SkippedJmxStores>
+      *   <JmxStore Name="com.interopbridges.scx.jmx.WebSphereJMXAbstraction"/>
+      * </SkippedJmxStores>
+      * </p>
+      */
+     public static final String XML_TRANSFORMER_SKIPPED_STORES_TAG = "SkippedJmxStores";
+     public static final String XML_TRANSFORMER_SKIPPED_STORE_TAG = "JmxStore";
+     public static final String XML_TRANSFORMER_SKIPPED_STORE_NAME_ATTRRIBUTE = "Name";
+
+     /**
+      * <p>
+      * Attribute of the outermost MBeans element holding the cursor to pass
+      * to get the next page of MBeans. It is only present when there are more
+      * MBeans than the requested Limit.
+      * </p>
+      */
+     public static final String XML_TRANSFORMER_NEXT_CURSOR_ATTRIBUTE = "NextCursor";
+
+     /**
+      * <p>
+      * Page size used when a Cursor is given without a Limit.
+      * </p>
+      */
+     public static final int DEFAULT_PAGE_LIMIT = 500;
+
+     /**
+      * <p>
+      * Constants for the XML element marking a truncated response. It lists
+      * the MBeans that were not emitted, the list itself stops short of the
+      * absolute maximum XML size, OmittedCount always holds the full count.
+      * An MBean rendered without all of its properties is listed first.
+      * <Truncated Reason="MaxSize" OmittedCount="2">
+      *   <PartialMBean objectName="Catalina:name=ajp-8443,type=ThreadPool"/>
+      *   <OmittedMBean objectName="Catalina:name=ajp-8009,type=ThreadPool"/>
+      *   <OmittedMBean objectName="Catalina:name=http-8080,type=ThreadPool"/>
+      * </Truncated>
+      * </p>
+      */
+     public static final String XML_TRANSFORMER_TRUNCATED_TAG = "Truncated";
+     public static final String XML_TRANSFORMER_TRUNCATED_REASON_ATTRIBUTE = "Reason";
+     public static final String XML_TRANSFORMER_TRUNCATED_COUNT_ATTRIBUTE = "OmittedCount";
+     public static final String XML_TRANSFORMER_OMITTED_MBEAN_TAG = "OmittedMBean";
+     public static final String XML_TRANSFORMER_PARTIAL_MBEAN_TAG = "PartialMBean";
+
+     /**
+      * <p>
+      * Attributes of the Property elements rendered for Open MBean data. A
+      * TabularData property is rendered as one indexed Property per row, the
+      * RowCount attribute holds the number of rows of the table when MaxRows
+      * rows are not enough to render all of them.
+      * <Property Name="SystemProperties" type="javax.management.openmbean.TabularDataSupport" RowCount="57">
+      *   <Property Name="SystemProperties" index="0">
+      *     <Property Name="key" type="java.lang.String">java.version</Property>
+      *     <Property Name="value" type="java.lang.String">1.6.0_22</Property>
+      *   </Property>
+      * </Property>
+      * </p>
+      */
+     public static final String XML_TRANSFORMER_INDEX_ATTRIBUTE = "index";
+     public static final String XML_TRANSFORMER_ROW_COUNT_ATTRIBUTE = "RowCount";
+
+     /**
+      * <p>
+      * Attribute of the Property element of an array holding the length of
+      * the array when MaxArrayElements elements are not enough to render all
+      * of them. Only the first MaxArrayElements elements are rendered.
+      * <Property Name="AllThreadIds" type="[J" ElementCount="25000">
+      *   <Property Name="AllThreadIds" index="0">1</Property>
+      * </Property>
+      * </p>
+      */
+     public static final String XML_TRANSFORMER_ELEMENT_COUNT_ATTRIBUTE = "ElementCount";
+
+     /**
+      * <p>
+      * Attribute of the Property element of an object that was already
+      * rendered for the MBean (a back-reference or an object shared by several
+      * properties). The properties of the object are not rendered again, the
+      * attribute holds the path of the Property they were rendered in and the
+      * text of the element is the toString value of the object, as it is for
+      * an object beyond the MaxDepth.
+      * <Property Name="childClass" type="com.interopbridges.scx.mbeans.ComplexRecursiveClass">
+      *   <Property Name="parent" type="com.interopbridges.scx.mbeans.ComplexClass" Reference="complexitem">serialVersionUID 999999999999999999</Property>
+      * </Property>
+      * </p>
+      */
+     public static final String XML_TRANSFORMER_REFERENCE_ATTRIBUTE = "Reference";
+
+     /**
+      * <p>
+      * Share of the absolute maximum XML size kept free in truncation mode
+      * for the truncation marker and the closing elements (one eighth).
+      * </p>
+      */
+     public static final int TRUNCATION_RESERVE_DIVISOR = 8;
+
+     /**
+      * <p>
+      * Attribute of the outermost MBeans element holding the depth the MBeans
+      * were rendered to, when the estimated cost of the query made BeanSpy
+      * lower the requested MaxDepth.
+      * </p>
+      */
+     public static final String XML_TRANSFORMER_DOWNGRADED_DEPTH_ATTRIBUTE = "DowngradedDepth";
+
+     /**
+      * <p>
+      * Constants for the XML document returned for Explain=true, the
+      * estimated cost of the query and the decision taken for it.
+      * <QueryCost JMXQuery="*:*" MBeanCount="250" AttributeCount="2400" MaxDepth="10"
+      *     Cost="24250" Threshold="100000" Policy="Downgrade" Decision="Accept"/>
+      * </p>
+      */
+     public static final String XML_QUERY_COST_TAG = "QueryCost";
+     public static final String XML_QUERY_COST_MBEAN_COUNT_ATTRIBUTE = "MBeanCount";
+     public static final String XML_QUERY_COST_ATTRIBUTE_COUNT_ATTRIBUTE = "AttributeCount";
+     public static final String XML_QUERY_COST_COST_ATTRIBUTE = "Cost";
+     public static final String XML_QUERY_COST_THRESHOLD_ATTRIBUTE = "Threshold";
+     public static final String XML_QUERY_COST_POLICY_ATTRIBUTE = "Policy";
+     public static final String XML_QUERY_COST_DECISION_ATTRIBUTE = "Decision";
+
      /**
       * <p>
       * Constants for JMXAbstraction names.
@@ -31,6 +31,8 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Set;
 
 import javax.management.AttributeNotFoundException;
@@ -41,6 +43,11 @@ import javax.management.MBeanInfo;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import javax.management.ReflectionException;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
 import javax.xml.transform.sax.TransformerHandler;
 
 import org.xml.sax.SAXException;
@@ -50,6 +57,7 @@ import org.xml.sax.helpers.AttributesImpl;
 import com.interopbridges.scx.ScxException;
 import com.interopbridges.scx.ScxExceptionCode;
 import com.interopbridges.scx.configuration.JMXFilterParameters;
+import com.interopbridges.scx.jeestats.BeanSpyMetrics;
 import com.interopbridges.scx.jmx.IJMX;
 import com.interopbridges.scx.log.ILogger;
 import com.interopbridges.scx.log.LoggingFactory;
@@ -87,6 +95,46 @@ public class MBeanTransformer {
      */
     protected ILogger _logger;
     private String _JMXQuery;
+
+    /**
+     * <p>
+     * Names of the JMX stores that were skipped while answering the query.
+     * </p>
+     */
+    private List<String> _skippedJmxStores;
+
+    /**
+     * <p>
+     * Cursor for the next page of MBeans, null if there are no more.
+     * </p>
+     */
+    private String _nextCursor;
+
+    /**
+     * <p>
+     * Depth the MBeans are rendered to when the requested MaxDepth was
+     * lowered because of the cost of the query, -1 if it was not.
+     * </p>
+     */
+    private int _downgradedDepth = -1;
+
+    /**
+     * <p>
+     * Size of the XML output at which a response is cut short in truncation
+     * mode, the remainder of the absolute maximum XML size is kept for the
+     * truncation marker and the closing elements.
+     * </p>
+     */
+    private int _truncationLimit = JmxConstant.ABS_MAX_XML_SIZE
+            - JmxConstant.ABS_MAX_XML_SIZE / JmxConstant.TRUNCATION_RESERVE_DIVISOR;
+
+    /**
+     * <p>
+     * Estimates of the rendered size of the MBeans, used in truncation mode
+     * to stop before fetching what will not fit in the response.
+     * </p>
+     */
+    private RenderedSizeEstimator _sizeEstimator = RenderedSizeEstimator.getInstance();
     
     /**
      * <p>
@@ -109,6 +157,43 @@ public class MBeanTransformer {
      * </p>
      */
     private HashSet<Class<?>> wrapperclasses = new HashSet<Class<?>>(Arrays.asList(lst));
+
+    /**
+     * <p>
+     * Number of array elements rendered between two checks of the size of
+     * the XML output.
+     * </p>
+     */
+    private static final int ARRAY_SIZE_CHECK_INTERVAL = 256;
+
+    /**
+     * <p>
+     * Number of characters of the longest long (Long.MIN_VALUE).
+     * </p>
+     */
+    private static final int MAX_LONG_CHARS = 20;
+
+    /**
+     * <p>
+     * Text of the boolean array elements.
+     * </p>
+     */
+    private static final char[] TRUE_CHARS = "true".toCharArray();
+    private static final char[] FALSE_CHARS = "false".toCharArray();
+
+    /**
+     * <p>
+     * Cached text of the first array indexes.
+     * </p>
+     */
+    private static final String[] INDEX_STRINGS = new String[1024];
+    static
+    {
+        for (int i = 0; i < INDEX_STRINGS.length; i++)
+        {
+            INDEX_STRINGS[i] = String.valueOf(i);
+        }
+    }
     
     
     /**
@@ -140,6 +225,61 @@ public class MBeanTransformer {
         return this._JMXQuery;
     }
 
+    /**
+     * <p>
+     * Set the names of the JMX stores that were skipped while answering the
+     * query, these are reported in the XML response.
+     * </p>
+     */
+    public void setSkippedJmxStores(List<String> skippedJmxStores)
+    {
+        this._skippedJmxStores = skippedJmxStores;
+    }
+
+    /**
+     * <p>
+     * Set the cursor for the next page of MBeans, it is reported as an
+     * attribute of the outermost element.
+     * </p>
+     */
+    public void setNextCursor(String nextCursor)
+    {
+        this._nextCursor = nextCursor;
+    }
+
+    /**
+     * <p>
+     * Set the depth the MBeans are rendered to when the requested MaxDepth
+     * was lowered because of the cost of the query.
+     * </p>
+     */
+    public void setDowngradedDepth(int downgradedDepth)
+    {
+        this._downgradedDepth = downgradedDepth;
+    }
+
+    /**
+     * <p>
+     * Set the size of the XML output at which a response is cut short in
+     * truncation mode.
+     * </p>
+     */
+    void setTruncationLimit(int truncationLimit)
+    {
+        this._truncationLimit = truncationLimit;
+    }
+
+    /**
+     * <p>
+     * Set the estimates of the rendered size of the MBeans to use instead of
+     * the ones shared by all requests.
+     * </p>
+     */
+    void setSizeEstimator(RenderedSizeEstimator sizeEstimator)
+    {
+        this._sizeEstimator = sizeEstimator;
+    }
+
     /**
      * <p>
      * local helper function to retrieve parameters.
@@ -169,6 +309,18 @@ public class MBeanTransformer {
         {
             retval = JmxConstant.MAXXMLSIZE;
         }
+        else if(whichParam.compareTo(JmxConstant.STR_MAXTIME)==0)
+        {
+            retval = 0;
+        }
+        else if(whichParam.compareTo(JmxConstant.STR_MAXROWS)==0)
+        {
+            retval = JmxConstant.MAXROWS;
+        }
+        else if(whichParam.compareTo(JmxConstant.STR_MAXARRAYELEMENTS)==0)
+        {
+            retval = JmxConstant.MAXARRAYELEMENTS;
+        }
         
         if(Params!=null)
         {
@@ -188,6 +340,31 @@ public class MBeanTransformer {
         return retval;
     }
 
+    /**
+     * <p>
+     * local helper function to check whether a truncated response was
+     * requested, either explicitly with Truncate=true or by giving a MaxTime.
+     * </p>
+     * 
+     * @param Params
+     *            HashMap of parameters passed in to be parsed.
+     * 
+     * @return true if the response may be truncated
+     */
+    private boolean isTruncationRequested(HashMap<String,String[]> Params)
+    {
+        if(Params==null)
+        {
+            return false;
+        }
+        String[] vals = Params.get(JmxConstant.STR_TRUNCATE);
+        if(vals!=null && Boolean.valueOf(vals[0]).booleanValue())
+        {
+            return true;
+        }
+        return getParamValue(JmxConstant.STR_MAXTIME, Params) > 0;
+    }
+
     /**
      * <p>
      * For a given MBean, transform it into XML.
@@ -213,13 +390,15 @@ public class MBeanTransformer {
             HashMap<String,String[]> Params)
             throws ScxException {
         try {
-            StringWriter outputStringWriter = new StringWriter();
+            StringWriter outputStringWriter = new Utf8CountingWriter();
             TransformerHandler transformer = XMLDoc.createXmlDocument(outputStringWriter,"UTF-8","no","no");
             transformer.startDocument();
             
             int recursionCountdown = getParamValue(JmxConstant.STR_MAXDEPTH, Params);
             int maxProperties      = getParamValue(JmxConstant.STR_MAXCOUNT, Params);
             int maxBytes           = getParamValue(JmxConstant.STR_MAXSIZE, Params);
+            int maxRows            = getParamValue(JmxConstant.STR_MAXROWS, Params);
+            int maxArrayElements   = getParamValue(JmxConstant.STR_MAXARRAYELEMENTS, Params);
 
             /*
              * Build a Hashtable containing which attributes must be excluded for the given MBean
@@ -232,12 +411,14 @@ public class MBeanTransformer {
             // If all attributes are to be ignored, then ignore the whole MBean         
             if(mbeanexclusions.get("*") != null)
             {
-                this._logger.fine(new StringBuffer("Excluding mbean : ").append(mbean.getObjectName().toString()).toString());
+                this._logger.fine("Excluding mbean : {0}", mbean.getObjectName());
             }
             else
             {
-                this.mBeanToOuterXml(mbeanStore, transformer, mbean, new ControlParameters(recursionCountdown, maxProperties, maxBytes, outputStringWriter),
-                        mbeanexclusions);
+                ControlParameters controlParams = new ControlParameters(recursionCountdown, maxProperties, maxBytes, outputStringWriter);
+                controlParams.setMaxRows(maxRows);
+                controlParams.setMaxArrayElements(maxArrayElements);
+                this.mBeanToOuterXml(mbeanStore, transformer, mbean, controlParams, mbeanexclusions, null);
             }
             transformer.endDocument();
             return outputStringWriter;
@@ -251,6 +432,21 @@ public class MBeanTransformer {
      * For a given MBean, transform it into XML.
      * </p>
      * 
+     * <p>
+     * In truncation mode (Truncate=true or MaxTime given) the MBeans are
+     * rendered until the size of the output nears the absolute maximum XML
+     * size or the time limit passes. The MBean being rendered at that point is
+     * closed without its remaining properties, the MBeans not rendered are
+     * listed in a Truncated element and the document is closed normally.
+     * </p>
+     * 
+     * <p>
+     * The size is counted in UTF-8 bytes. Once an MBean has been rendered,
+     * an MBean (or an attribute) whose estimated size does not fit in what
+     * is left before the truncation limit is not fetched, the response is
+     * truncated before it.
+     * </p>
+     * 
      * @param mbeans
      *            Many MBeans to transform into XML.
      * 
@@ -264,15 +460,36 @@ public class MBeanTransformer {
     public StringWriter transformMultipleMBeans(
             HashMap<IJMX, Set<ObjectInstance>> mbeans, HashMap<String,String[]> Params) throws ScxException {
         try {
-            StringWriter outputStringWriter = new StringWriter();
+            StringWriter outputStringWriter = new Utf8CountingWriter();
             TransformerHandler transformer = XMLDoc.createXmlDocument(outputStringWriter,"UTF-8","no","no");
             transformer.startDocument();
             String elementTag = "MBeans";
-            transformer.startElement("", "", elementTag, CommonXmlTransform.getOuterMostAttributes());
+            AttributesImpl outerAttributes = CommonXmlTransform.getOuterMostAttributes();
+            if (this._nextCursor != null)
+            {
+                outerAttributes.addAttribute("", "", JmxConstant.XML_TRANSFORMER_NEXT_CURSOR_ATTRIBUTE, 
+                        "CDATA", this._nextCursor);
+            }
+            if (this._downgradedDepth >= 0)
+            {
+                outerAttributes.addAttribute("", "", JmxConstant.XML_TRANSFORMER_DOWNGRADED_DEPTH_ATTRIBUTE, 
+                        "CDATA", String.valueOf(this._downgradedDepth));
+            }
+            transformer.startElement("", "", elementTag, outerAttributes);
 
             int recursionCountdown = getParamValue(JmxConstant.STR_MAXDEPTH, Params);
             int maxProperties      = getParamValue(JmxConstant.STR_MAXCOUNT, Params);
             int maxBytes           = getParamValue(JmxConstant.STR_MAXSIZE, Params);
+            int maxTime            = getParamValue(JmxConstant.STR_MAXTIME, Params);
+            int maxRows            = getParamValue(JmxConstant.STR_MAXROWS, Params);
+            int maxArrayElements   = getParamValue(JmxConstant.STR_MAXARRAYELEMENTS, Params);
+
+            int truncationLimit = isTruncationRequested(Params) ? this._truncationLimit : 0;
+            long deadline = maxTime > 0 ? System.currentTimeMillis() + maxTime : 0;
+            String truncationReason = null;
+            List<ObjectInstance> omitted = new ArrayList<ObjectInstance>();
+            ObjectInstance partial = null;
+            boolean rendered = false;
 
             JMXFilterParameters filt = JMXFilterParameters.GetInstance();
             Set<IJMX> ijmx = mbeans.keySet();
@@ -287,21 +504,54 @@ public class MBeanTransformer {
                 Set<ObjectInstance> mbset = mbeans.get(ix);
                 for (ObjectInstance mbean : mbset)
                 {
+                    if (truncationReason != null)
+                    {
+                        omitted.add(mbean);
+                        continue;
+                    }
+
                     Hashtable<String,String> mbeanexclusions = filt.toHashTable(filt.GetMBeanExclusions(exclusions, mbean.getObjectName()));
 
                     // If all attributes are to be ignored, then ignore the whole MBean         
                     if(mbeanexclusions.get("*") != null) 
                     {
-                        this._logger.fine(new StringBuffer("Excluding mbean : ").append(mbean.getObjectName().toString()).toString());
+                        this._logger.fine("Excluding mbean : {0}", mbean.getObjectName());
                     }
                     else
                     {
-                        this.mBeanToOuterXml(ix, transformer, mbean, 
-                                new ControlParameters(recursionCountdown, maxProperties, maxBytes, outputStringWriter),
-                                mbeanexclusions);
+                        ControlParameters controlParams = new ControlParameters(recursionCountdown, 
+                                maxProperties, maxBytes, outputStringWriter, truncationLimit, deadline);
+                        controlParams.setMaxRows(maxRows);
+                        controlParams.setMaxArrayElements(maxArrayElements);
+                        /*
+                         * The estimates are only needed (and kept up to date)
+                         * when the response may be truncated.
+                         */
+                        RenderedSizeEstimator.ClassEstimate estimate = null;
+                        if (truncationLimit > 0)
+                        {
+                            estimate = this._sizeEstimator.forClass(mbean.getClassName(), recursionCountdown, 
+                                    maxProperties, maxBytes, maxRows, maxArrayElements, mbeanexclusions);
+                        }
+                        if (estimate != null && rendered && !controlParams.hasRoomFor(estimate.getMBeanSize()))
+                        {
+                            this._logger.fine("No room left for mbean : {0}", mbean.getObjectName());
+                            truncationReason = JmxConstant.STR_MAXSIZE;
+                            omitted.add(mbean);
+                            continue;
+                        }
+                        if (this.mBeanToOuterXml(ix, transformer, mbean, controlParams, mbeanexclusions, estimate))
+                        {
+                            partial = mbean;
+                        }
+                        rendered = true;
+                        BeanSpyMetrics.getInstance().recordMBeanVisited();
+                        truncationReason = controlParams.getTruncationReason();
                     }
                 }
             }
+            truncationToXml(transformer, outputStringWriter, truncationReason, partial, omitted);
+            skippedJmxStoresToXml(transformer);
             transformer.endElement("", "", elementTag);
             transformer.endDocument();
             return outputStringWriter;
@@ -310,6 +560,105 @@ public class MBeanTransformer {
         }
     }
 
+    /**
+     * <p>
+     * Write the marker for a truncated response, listing the MBean rendered
+     * without all of its properties and the MBeans that were not rendered.
+     * The list stops once the output nears the absolute maximum XML size, the
+     * OmittedCount attribute always holds the number of MBeans left out.
+     * Nothing is written if the response was not truncated.
+     * </p>
+     * 
+     * @param transformer
+     *            Desired XML parser to use
+     * @param outputStringWriter
+     *            The output string writer for the XML output.
+     * @param truncationReason
+     *            The limit that was reached, null if the response is complete
+     * @param partial
+     *            The MBean cut short by the limit, null if the limit was
+     *            reached between two MBeans
+     * @param omitted
+     *            The MBeans that were not rendered
+     * 
+     * @throws SAXException
+     *             If there was an error generating the XML
+     */
+    private void truncationToXml(TransformerHandler transformer, StringWriter outputStringWriter,
+            String truncationReason, ObjectInstance partial, List<ObjectInstance> omitted) 
+            throws SAXException
+    {
+        if (truncationReason == null)
+        {
+            return;
+        }
+        if (this._logger.isFineEnabled())
+        {
+            this._logger.fine("Response truncated ({0}), MBeans omitted: {1}", truncationReason,
+                    String.valueOf(omitted.size()));
+        }
+
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_TRUNCATED_REASON_ATTRIBUTE, "CDATA", truncationReason);
+        atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_TRUNCATED_COUNT_ATTRIBUTE, "CDATA", 
+                String.valueOf(omitted.size()));
+        transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_TRUNCATED_TAG, atts);
+
+        if (partial != null)
+        {
+            AttributesImpl partialAtts = new AttributesImpl();
+            partialAtts.addAttribute("", "", JmxConstant.OBJECTNAME, "CDATA", 
+                    MangleObjectName(partial.getObjectName().getCanonicalName()));
+            transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_PARTIAL_MBEAN_TAG, partialAtts);
+            transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_PARTIAL_MBEAN_TAG);
+        }
+
+        // Leave room for the closing elements of the document
+        int listLimit = JmxConstant.ABS_MAX_XML_SIZE - 1024;
+        for (ObjectInstance mbean : omitted)
+        {
+            if (Utf8CountingWriter.sizeOf(outputStringWriter) > listLimit)
+            {
+                break;
+            }
+            AttributesImpl mbeanAtts = new AttributesImpl();
+            mbeanAtts.addAttribute("", "", JmxConstant.OBJECTNAME, "CDATA", 
+                    MangleObjectName(mbean.getObjectName().getCanonicalName()));
+            transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_OMITTED_MBEAN_TAG, mbeanAtts);
+            transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_OMITTED_MBEAN_TAG);
+        }
+        transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_TRUNCATED_TAG);
+    }
+
+    /**
+     * <p>
+     * Write the names of the JMX stores that were skipped while answering the
+     * query. Nothing is written if all the stores were queried.
+     * </p>
+     * 
+     * @param transformer
+     *            Desired XML parser to use
+     * 
+     * @throws SAXException
+     *             If there was an error generating the XML
+     */
+    private void skippedJmxStoresToXml(TransformerHandler transformer) throws SAXException
+    {
+        if (this._skippedJmxStores == null || this._skippedJmxStores.isEmpty())
+        {
+            return;
+        }
+        transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_SKIPPED_STORES_TAG, new AttributesImpl());
+        for (String storeName : this._skippedJmxStores)
+        {
+            AttributesImpl atts = new AttributesImpl();
+            atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_SKIPPED_STORE_NAME_ATTRRIBUTE, "", storeName);
+            transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_SKIPPED_STORE_TAG, atts);
+            transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_SKIPPED_STORE_TAG);
+        }
+        transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_SKIPPED_STORES_TAG);
+    }
+
     /**
      * <p>
      * Take the given MBean (object) and turn it into XML
@@ -324,6 +673,13 @@ public class MBeanTransformer {
      * @param controlParams
      *            ControlParameters for controlling recursion depth, number of items
      *            and size of output.  
+     * @param estimate
+     *            Estimates of the rendered size of the MBeans of this class,
+     *            updated with the size of this MBean, null if the response
+     *            is not truncated
+     * 
+     * @return true if the response was truncated before all the properties
+     *         of the MBean were rendered
      * 
      * @throws IntrospectionException
      *             If there was an error using introspection to understand the
@@ -348,8 +704,9 @@ public class MBeanTransformer {
      * @throws ReflectionException
      *             When trying to find the attribute of a MBean
      */
-    private void mBeanToOuterXml(IJMX mbeanStore, TransformerHandler transformer,
-            ObjectInstance mbean, ControlParameters controlParams, Hashtable<String,String> mbeanexclusions) throws 
+    private boolean mBeanToOuterXml(IJMX mbeanStore, TransformerHandler transformer,
+            ObjectInstance mbean, ControlParameters controlParams, Hashtable<String,String> mbeanexclusions,
+            RenderedSizeEstimator.ClassEstimate estimate) throws 
             IntrospectionException, SAXException,
             IllegalAccessException, InvocationTargetException,
             InstanceNotFoundException, AttributeNotFoundException,
@@ -358,6 +715,8 @@ public class MBeanTransformer {
      {
 
         
+        long start = estimate != null ? controlParams.getOutputSize() : 0;
+        boolean partial = false;
         String elementTag = mbean.getClassName();
         ObjectName objname = mbean.getObjectName();
         MBeanInfo metadata = mbeanStore.getMBeanInfo(objname);
@@ -397,13 +756,19 @@ public class MBeanTransformer {
         {
             atts = new AttributesImpl(); 
             transformer.startElement("", "", JmxConstant.PROPERTIES, atts);
-            this.propertiesToXml(mbeanStore, transformer, mbean, metadata, controlParams, mbeanexclusions);
+            this.propertiesToXml(mbeanStore, transformer, mbean, metadata, controlParams, mbeanexclusions, estimate);
+            partial = controlParams.isTruncated();
             transformer.endElement("", "", JmxConstant.PROPERTIES);
         }
         transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_TAG);
         // Note: Need to add something for methods here.
         
         controlParams.CheckXMLFileSize(_JMXQuery);
+        if (estimate != null && !controlParams.isTruncated())
+        {
+            estimate.recordMBean(controlParams.getOutputSize() - start);
+        }
+        return partial;
     }
     
     /**
@@ -440,6 +805,10 @@ public class MBeanTransformer {
      * @param controlParams
      *            ControlParameters for controlling recursion depth, number of items
      *            and size of output.  
+     * @param estimate
+     *            Estimates of the rendered size of the MBeans of this class,
+     *            an attribute that will not fit is not fetched, null if the
+     *            response is not truncated
      * 
      * @throws IllegalAccessException
      *             If there was a security related error to using reflection to
@@ -465,59 +834,80 @@ public class MBeanTransformer {
      */
     private void propertiesToXml( IJMX mbeanStore, TransformerHandler transformer,
             ObjectInstance mbean, MBeanInfo metadata, ControlParameters controlParams,
-            Hashtable<String,String> mbeanexclusions)
+            Hashtable<String,String> mbeanexclusions, RenderedSizeEstimator.ClassEstimate estimate)
             throws IllegalAccessException, InvocationTargetException,
             SAXException, IntrospectionException, AttributeNotFoundException,
             InstanceNotFoundException, MBeanException, ReflectionException, IOException 
     {
         MBeanAttributeInfo[] propertyList = metadata.getAttributes();
 
-        this._logger.fine(new StringBuffer("Adding Properties for ").append(
-                propertyList.length).append(" metadata attributes of Bean.")
-                .toString());
+        if (this._logger.isFineEnabled())
+        {
+            this._logger.fine("Adding Properties for {0} metadata attributes of Bean.",
+                    String.valueOf(propertyList.length));
+        }
         controlParams.decRecursionDepth();        
-        for (int i = 0; i < propertyList.length; i++) 
+        boolean rendered = false;
+        for (int i = 0; i < propertyList.length && !controlParams.isTruncated(); i++) 
         {
-            this._logger.fine(new StringBuffer("Adding Properties #").append(i).toString());
+            if (this._logger.isFineEnabled())
+            {
+                this._logger.fine("Adding Properties #{0}", String.valueOf(i));
+            }
+            /*
+             * Once a property is rendered, do not fetch an attribute that is
+             * expected to go past the truncation limit.
+             */
+            if (estimate != null && rendered 
+                    && !controlParams.hasRoomFor(estimate.getAttributeSize(propertyList[i].getName())))
+            {
+                this._logger.fine("No room left for attribute {0}", propertyList[i].getName());
+                controlParams.truncate(JmxConstant.STR_MAXSIZE);
+                break;
+            }
             try 
             {
+                long start = System.nanoTime();
                 Object attribute = mbeanStore.getAttribute(mbean.getObjectName(),propertyList[i].getName());
+                BeanSpyMetrics.getInstance().recordAttributeFetched(mbeanStore, System.nanoTime() - start);
                 if(attribute!=null)
                 {
+                    long size = estimate != null ? controlParams.getOutputSize() : 0;
                     if ("objectName".equals(propertyList[i].getName()))
                     {
                         this.objectNameToXml(transformer, (String) attribute, propertyList[i].getName());
                     }
                     else
                     {
+                        controlParams.startAttribute();
                         ProcessItem(transformer, attribute, propertyList[i].getName(), controlParams,mbeanexclusions);
                     }
+                    rendered = true;
+                    if (estimate != null && !controlParams.isTruncated())
+                    {
+                        estimate.recordAttribute(propertyList[i].getName(), controlParams.getOutputSize() - size);
+                    }
                 }
             }
             catch(java.lang.UnsupportedOperationException e)
             {
-                this._logger.finer(new StringBuffer("getAttribute not supported for ")
-                            .append(propertyList[i].getName()).toString());
+                this._logger.finer("getAttribute not supported for {0}", propertyList[i].getName());
             }
             catch(javax.management.RuntimeMBeanException e)
             {
-                this._logger.finer(new StringBuffer("getAttribute runtime exception for ")
-                .append(propertyList[i].getName()).toString());
+                this._logger.finer("getAttribute runtime exception for {0}", propertyList[i].getName());
             }
             catch(javax.management.MBeanException e)
             {
-                this._logger.finer(new StringBuffer("getAttribute MBean exception for ")
-                .append(propertyList[i].getName()).toString());
+                this._logger.finer("getAttribute MBean exception for {0}", propertyList[i].getName());
             }
             catch(javax.management.ReflectionException e)
             {
-                this._logger.finer(new StringBuffer("getAttribute reflection exception for ")
-                .append(propertyList[i].getName()).toString());
+                this._logger.finer("getAttribute reflection exception for {0}", propertyList[i].getName());
             }
             catch(javax.management.AttributeNotFoundException e)
             {
-                this._logger.finer(new StringBuffer("getAttribute attribute not found exception for ")
-                .append(propertyList[i].getName()).toString());
+                this._logger.finer("getAttribute attribute not found exception for {0}", propertyList[i].getName());
             }
             /*
              * The Catch all is here for exceptional circumstances, In Weblogic accessing certain 
@@ -527,10 +917,7 @@ public class MBeanTransformer {
              */
             catch(Exception e)
             {
-                this._logger.finer(new StringBuffer("getAttribute exception for ")
-                .append(propertyList[i].getName())
-                .append(" :")
-                .append(e.getMessage()).toString());
+                this._logger.finer("getAttribute exception for {0} :{1}", propertyList[i].getName(), e.getMessage());
             }
         }
     }
@@ -587,7 +974,7 @@ public class MBeanTransformer {
         transformer.characters(text.toCharArray(), 0, text.length());
         transformer.endElement("", "", propertyName);
 
-        this._logger.finer(new StringBuffer("Generating XML representation of ").append(propertyValue).toString());
+        this._logger.finer("Generating XML representation of {0}", propertyValue);
         AttributesImpl objectNameAttributes = new AttributesImpl();
         objectNameAttributes.addAttribute("", "", "type", "CDATA", "objectName");
         transformer.startElement("", "", JmxConstant.OBJECTNAME_ELEMENTS, objectNameAttributes);
@@ -667,7 +1054,22 @@ public class MBeanTransformer {
             AttributesImpl atts = new AttributesImpl();      
             atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_NAME_ATTRRIBUTE, "CDATA", name);
             atts.addAttribute("", "", "type", "CDATA", property.getClass().getName());
-            this._logger.fine(new StringBuffer("Attribute Type: ").append(property.getClass().getName()).toString());
+            if (property instanceof TabularData && ((TabularData) property).size() > controlParams.getMaxRows())
+            {
+                atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_ROW_COUNT_ATTRIBUTE, "CDATA",
+                        String.valueOf(((TabularData) property).size()));
+            }
+            else if (property.getClass().isArray() && Array.getLength(property) > controlParams.getMaxArrayElements())
+            {
+                atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_ELEMENT_COUNT_ATTRIBUTE, "CDATA",
+                        String.valueOf(Array.getLength(property)));
+            }
+            String reference = isUserClass(property) ? controlParams.getRenderedPath(property) : null;
+            if (reference != null)
+            {
+                atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_REFERENCE_ATTRIBUTE, "CDATA", reference);
+            }
+            this._logger.fine("Attribute Type: {0}", property.getClass().getName());
             transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG, atts);
     
             controlParams.CheckXMLFileSize(_JMXQuery);
@@ -678,87 +1080,60 @@ public class MBeanTransformer {
                 controlParams.setRecursionDepth(0);
             }          
             
-            if (property.getClass().isArray()) 
+            if (property instanceof TabularData)
+            {
+                this.tabularDataToXml(transformer, (TabularData) property, name, controlParams, mbeanexclusions);
+            }
+            else if (property.getClass().isArray()) 
             {
-                this._logger.finer(new StringBuffer("Property is an array class(")
-                .append(property.getClass().getCanonicalName())
-                .append( ")").toString());
-                int length = Array.getLength(property);
-                for (int i = 0; i < length; i++) 
+                if (property instanceof Object[])
                 {
-                    Object x = Array.get(property, i);
-                    if(x!=null)
-                    {
-                        if(isBaseClass (x))
-                        {
-                            String text = ((x == null) ? "null" : StringMangler.DecodeForJmx(x.toString()));
-                            this._logger.fine(new StringBuffer("Attribute Value: ").append(text).toString());
-                        
-                            AttributesImpl indexAttribute = new AttributesImpl();
-                            indexAttribute.addAttribute("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_NAME_ATTRRIBUTE, "CDATA", name);
-                            indexAttribute.addAttribute("", "", "index", "CDATA", String.valueOf(i));
-                            transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG, indexAttribute);
-                            transformer.characters(text.toCharArray(), 0, text.length());
-                            transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG);
-                        }
-                        else
-                        {
-                            this._logger.fine(new StringBuffer("Array item Attribute is an object: ").append(x).toString());
-                            AttributesImpl indexAttribute = new AttributesImpl();
-                            indexAttribute.addAttribute("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_NAME_ATTRRIBUTE, "CDATA", name);
-                            indexAttribute.addAttribute("", "", "index", "CDATA", String.valueOf(i));
-                            transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG, indexAttribute);
-                        
-                            if(controlParams.RecursionDepthExceededForChild())
-                            {
-                                this._logger.fine(new StringBuffer("Recursion depth exceeded").toString());
-                                String text = x == null ? "null" : StringMangler.DecodeForJmx(x.toString());
-                                transformer.characters(text.toCharArray(), 0, text.length());
-                            }
-                            else
-                            {
-                                controlParams.decRecursionDepth();
-                                this.ProcessUserClass( transformer, x, controlParams, mbeanexclusions);
-                                controlParams.incRecursionDepth();
-                            }
-                            transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG);
-                        }
-                    }
-                    else
-                    {
-                        this._logger.fine(new StringBuffer("Array element for array [").append(property.getClass().getCanonicalName()).append("] is NULL").toString());
-                    }
+                    this.objectArrayToXml(transformer, (Object[]) property, name, controlParams, mbeanexclusions);
+                }
+                else
+                {
+                    this.primitiveArrayToXml(transformer, property, name, controlParams);
                 }
             } 
             else 
             {
                 if(isBaseClass (property))
                 {            
-                    this._logger.finer(new StringBuffer("Property is a base type class(")
-                                .append(property.getClass().getCanonicalName())
-                                .append( ")").toString());
+                    if (this._logger.isFinerEnabled())
+                    {
+                        this._logger.finer("Property is a base type class({0})", property.getClass().getCanonicalName());
+                    }
                     String text = property == null ? "null" : StringMangler.DecodeForJmx(property.toString());
-                    this._logger.fine(new StringBuffer("Attribute Value: ").append(text).toString());
+                    this._logger.fine("Attribute Value: {0}", text);
                     transformer.characters(text.toCharArray(), 0, text.length());
                 }
                 else
                 {
                     this._logger.finer("Attribute is an object.");
-                    this._logger.fine(new StringBuffer(
-                                    "Found attribute of type some other type (")
-                                    .append(property.getClass().getCanonicalName())
-                                    .append( "), assuming this is a Bean and will generate XML as such.")
-                                    .toString());
-                    if(controlParams.RecursionDepthExceeded())
+                    if (this._logger.isFineEnabled())
                     {
-                        this._logger.fine(new StringBuffer("Recursion depth exceeded").toString());
+                        this._logger.fine("Found attribute of type some other type ({0}), assuming this is a Bean and will generate XML as such.",
+                                property.getClass().getCanonicalName());
+                    }
+                    if(reference != null || controlParams.RecursionDepthExceeded())
+                    {
+                        this._logger.fine(reference != null ? "Property already rendered at {0}" : "Recursion depth exceeded", reference);
                         String text = property == null ? "null" : StringMangler.DecodeForJmx(property.toString());
                         transformer.characters(text.toCharArray(), 0, text.length());
                     }
                     else
                     {
                         controlParams.decRecursionDepth();
-                        this.ProcessUserClass( transformer, property, controlParams, mbeanexclusions);
+                        if (property instanceof CompositeData)
+                        {
+                            this.compositeDataToXml(transformer, (CompositeData) property, controlParams, mbeanexclusions);
+                        }
+                        else
+                        {
+                            controlParams.enterObject(property, name);
+                            this.ProcessUserClass( transformer, property, controlParams, mbeanexclusions);
+                            controlParams.exitObject();
+                        }
                         controlParams.incRecursionDepth();
                     }
                 }
@@ -768,93 +1143,615 @@ public class MBeanTransformer {
         }
         else
         {
-            this._logger.fine(new StringBuffer("Excluding property : ").append(name).toString());
+            this._logger.fine("Excluding property : {0}", name);
         }
     }
     
     /**
      * <p>
-     * Use the object ( class object ) to dynamically add the properties to the
-     * XML.
+     * Add the items of an Open MBean CompositeData (for example the
+     * HeapMemoryUsage of java.lang:type=Memory) to the XML. The item names
+     * and types are taken from the CompositeType, so no reflection is needed
+     * and the type attribute is the declared type of the item rather than the
+     * implementation class. Items of a simple open type are written as text,
+     * other items (arrays, nested CompositeData and TabularData) are processed
+     * like any other property.
      * </p>
      * 
      * @param transformer
      *            Desired XML parser to use
-     * @param mbean
-     *            The MBean to be turned into XML
+     * @param data
+     *            The CompositeData to be turned into XML
      * @param controlParams
      *            ControlParameters for controlling recursion depth, number of items
      *            and size of output.  
      * 
      * @throws IllegalAccessException
      *             If there was a security related error to using reflection to
-     *             understand the MBean
+     *             understand a nested item
      * @throws InvocationTargetException
-     *             If there an issue related to invoking methods on the MBean
-     *             via reflection
+     *             If there an issue related to invoking methods on a nested
+     *             item via reflection
      * @throws SAXException
      *             If there was an error generating the XML
      * @throws IntrospectionException
-     *             If there was an error using introspection to understand the
-     *             MBeans
+     *             If there was an error using introspection to understand a
+     *             nested item
      */
-    
-    private void ProcessUserClass( TransformerHandler transformer,
-            Object mbean, ControlParameters controlParams, Hashtable<String,String> mbeanexclusions) 
+    private void compositeDataToXml(TransformerHandler transformer, CompositeData data,
+            ControlParameters controlParams, Hashtable<String,String> mbeanexclusions)
             throws IllegalAccessException, InvocationTargetException, 
                    SAXException, IntrospectionException, ScxException 
     {
-        BeanInfo metadata = Introspector.getBeanInfo(mbean.getClass(), Object.class);
-        PropertyDescriptor[] propertyList = metadata.getPropertyDescriptors();
+        CompositeType type = data.getCompositeType();
+        if (this._logger.isFinerEnabled())
+        {
+            this._logger.finer("Property is a CompositeData of type {0}", type.getTypeName());
+        }
 
-        for (int i = 0; i < propertyList.length; i++) 
+        for (String itemName : type.keySet())
         {
-            this._logger.fine(new StringBuffer("Adding Properties #").append(i).toString());
-            
-            Method meth = propertyList[i].getReadMethod();
-            if(meth!=null) 
+            if (controlParams.isTruncated())
             {
-                try {
-                    Object property = meth.invoke(mbean,(Object[]) null);
-                    if(property!=null)
-                    {
-                        ProcessItem(transformer, property,propertyList[i].getName(), 
-                                controlParams, mbeanexclusions);                                                 
-                    }
-                }
-                catch (IllegalAccessException e)
-                {
-                    this._logger.finer("Unable to invoke ReadMethod. IllegalAccessException");
-                }
-                catch(InvocationTargetException e)
-                {
-                    this._logger.finer("Unable to invoke ReadMethod. InvocationTargetException");
-                }
+                break;
+            }
+            Object item = data.get(itemName);
+            if (item == null)
+            {
+                continue;
+            }
+            OpenType<?> itemType = type.getType(itemName);
+            if (itemType instanceof SimpleType)
+            {
+                this.simpleOpenDataToXml(transformer, item, itemName, itemType.getClassName(),
+                        controlParams, mbeanexclusions);
             }
             else
             {
-                /*
-                 * Certain properties are of IndexedPropertyDescriptor type, this means they act like arrays
+                this.ProcessItem(transformer, item, itemName, controlParams, mbeanexclusions);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Add the rows of an Open MBean TabularData (for example the
+     * SystemProperties of java.lang:type=Runtime) to the XML, each row is a
+     * CompositeData rendered as a Property with the name of the table and the
+     * index of the row. At most MaxRows rows are rendered, the RowCount
+     * attribute of the table then holds the number of rows of the table.
+     * </p>
+     * 
+     * <p>
+     * A row is rendered at the recursion depth of the table, so that a table
+     * is rendered as deep as a single CompositeData would be.
+     * </p>
+     * 
+     * @param transformer
+     *            Desired XML parser to use
+     * @param data
+     *            The TabularData to be turned into XML
+     * @param name
+     *            The name of the property to be used in the XML
+     * @param controlParams
+     *            ControlParameters for controlling recursion depth, number of items
+     *            and size of output.  
+     * 
+     * @throws IllegalAccessException
+     *             If there was a security related error to using reflection to
+     *             understand a nested item
+     * @throws InvocationTargetException
+     *             If there an issue related to invoking methods on a nested
+     *             item via reflection
+     * @throws SAXException
+     *             If there was an error generating the XML
+     * @throws IntrospectionException
+     *             If there was an error using introspection to understand a
+     *             nested item
+     */
+    private void tabularDataToXml(TransformerHandler transformer, TabularData data, String name,
+            ControlParameters controlParams, Hashtable<String,String> mbeanexclusions)
+            throws IllegalAccessException, InvocationTargetException, 
+                   SAXException, IntrospectionException, ScxException 
+    {
+        if (this._logger.isFinerEnabled())
+        {
+            this._logger.finer("Property is a TabularData of type {0} with {1} rows",
+                    data.getTabularType().getTypeName(), String.valueOf(data.size()));
+        }
+
+        int index = 0;
+        for (Object row : data.values())
+        {
+            if (index >= controlParams.getMaxRows() || controlParams.isTruncated())
+            {
+                break;
+            }
+            AttributesImpl indexAttribute = new AttributesImpl();
+            indexAttribute.addAttribute("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_NAME_ATTRRIBUTE, "CDATA", name);
+            indexAttribute.addAttribute("", "", JmxConstant.XML_TRANSFORMER_INDEX_ATTRIBUTE, "CDATA", String.valueOf(index));
+            transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG, indexAttribute);
+
+            if(controlParams.RecursionDepthExceeded())
+            {
+                this._logger.fine("Recursion depth exceeded");
+                String text = StringMangler.DecodeForJmx(row.toString());
+                transformer.characters(text.toCharArray(), 0, text.length());
+            }
+            else
+            {
+                controlParams.decRecursionDepth();
+                this.compositeDataToXml(transformer, (CompositeData) row, controlParams, mbeanexclusions);
+                controlParams.incRecursionDepth();
+            }
+            transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG);
+            index++;
+        }
+    }
+
+    /**
+     * <p>
+     * Add an item of a simple open type (a wrapper class, String, BigDecimal,
+     * BigInteger, Date or ObjectName) to the XML as text.
+     * </p>
+     * 
+     * @param transformer
+     *            Desired XML parser to use
+     * @param item
+     *            The value of the item
+     * @param name
+     *            The name of the item to be used in the XML
+     * @param typeName
+     *            The class name of the open type of the item
+     * @param controlParams
+     *            ControlParameters for controlling recursion depth, number of items
+     *            and size of output.  
+     * 
+     * @throws SAXException
+     *             If there was an error generating the XML
+     */
+    private void simpleOpenDataToXml(TransformerHandler transformer, Object item, String name,
+            String typeName, ControlParameters controlParams, Hashtable<String,String> mbeanexclusions)
+            throws SAXException, ScxException 
+    {
+        if(mbeanexclusions.get(name)!=null)
+        {
+            this._logger.fine("Excluding property : {0}", name);
+            return;
+        }
+        AttributesImpl atts = new AttributesImpl();      
+        atts.addAttribute("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_NAME_ATTRRIBUTE, "CDATA", name);
+        atts.addAttribute("", "", "type", "CDATA", typeName);
+        transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG, atts);
+
+        controlParams.CheckXMLFileSize(_JMXQuery);
+
+        controlParams.decMaxProperties();
+        if(controlParams.MaxPropertiesExceeded())
+        {
+            controlParams.setRecursionDepth(0);
+        }          
+
+        String text = StringMangler.DecodeForJmx(item.toString());
+        transformer.characters(text.toCharArray(), 0, text.length());
+        transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG);
+    }
+    
+    /**
+     * <p>
+     * Add the elements of an array of objects to the XML, each element is a
+     * Property with the name of the array and the index of the element. Null
+     * elements are skipped and at most MaxArrayElements elements are
+     * rendered.
+     * </p>
+     *
+     * @param transformer
+     *            Desired XML parser to use
+     * @param items
+     *            The array to be turned into XML
+     * @param name
+     *            The name of the property to be used in the XML
+     * @param controlParams
+     *            ControlParameters for controlling recursion depth, number of items
+     *            and size of output.
+     *
+     * @throws IllegalAccessException
+     *             If there was a security related error to using reflection to
+     *             understand an element
+     * @throws InvocationTargetException
+     *             If there an issue related to invoking methods on an element
+     *             via reflection
+     * @throws SAXException
+     *             If there was an error generating the XML
+     * @throws IntrospectionException
+     *             If there was an error using introspection to understand an
+     *             element
+     */
+    private void objectArrayToXml(TransformerHandler transformer, Object[] items, String name,
+            ControlParameters controlParams, Hashtable<String,String> mbeanexclusions)
+            throws IllegalAccessException, InvocationTargetException,
+                   SAXException, IntrospectionException, ScxException
+    {
+        if (this._logger.isFinerEnabled())
+        {
+            this._logger.finer("Property is an array class({0})", items.getClass().getCanonicalName());
+        }
+        AttributesImpl indexAttribute = newIndexAttributes(name);
+        int length = Math.min(items.length, controlParams.getMaxArrayElements());
+        for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+        {
+            Object x = items[i];
+            if(x==null)
+            {
+                if (this._logger.isFineEnabled())
+                {
+                    this._logger.fine("Array element for array [{0}] is NULL", items.getClass().getCanonicalName());
+                }
+                continue;
+            }
+            indexAttribute.setValue(1, indexToString(i));
+            String reference = isUserClass(x) ? controlParams.getRenderedPath(x) : null;
+            if (reference != null)
+            {
+                AttributesImpl referenceAttribute = new AttributesImpl(indexAttribute);
+                referenceAttribute.addAttribute("", "", JmxConstant.XML_TRANSFORMER_REFERENCE_ATTRIBUTE, "CDATA", reference);
+                transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG, referenceAttribute);
+            }
+            else
+            {
+                transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG, indexAttribute);
+            }
+            if(isBaseClass (x))
+            {
+                String text = StringMangler.DecodeForJmx(x.toString());
+                this._logger.fine("Attribute Value: {0}", text);
+                transformer.characters(text.toCharArray(), 0, text.length());
+            }
+            else
+            {
+                this._logger.fine("Array item Attribute is an object: {0}", x);
+                if(reference != null || controlParams.RecursionDepthExceededForChild())
+                {
+                    this._logger.fine(reference != null ? "Array item already rendered at {0}" : "Recursion depth exceeded", reference);
+                    String text = StringMangler.DecodeForJmx(x.toString());
+                    transformer.characters(text.toCharArray(), 0, text.length());
+                }
+                else
+                {
+                    controlParams.decRecursionDepth();
+                    if (x instanceof CompositeData)
+                    {
+                        this.compositeDataToXml(transformer, (CompositeData) x, controlParams, mbeanexclusions);
+                    }
+                    else
+                    {
+                        controlParams.enterObject(x, new StringBuffer(name).append('[').append(i).append(']').toString());
+                        this.ProcessUserClass( transformer, x, controlParams, mbeanexclusions);
+                        controlParams.exitObject();
+                    }
+                    controlParams.incRecursionDepth();
+                }
+            }
+            transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG);
+            if ((i + 1) % ARRAY_SIZE_CHECK_INTERVAL == 0)
+            {
+                controlParams.CheckXMLFileSize(_JMXQuery);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Add the elements of an array of a primitive type to the XML, each
+     * element is a Property with the name of the array and the index of the
+     * element. The elements are formatted straight from the array, without
+     * boxing them, and at most MaxArrayElements elements are rendered. The
+     * type of the array is checked once, each primitive type has its own
+     * loop.
+     * </p>
+     *
+     * @param transformer
+     *            Desired XML parser to use
+     * @param array
+     *            The array to be turned into XML, an array of a primitive type
+     * @param name
+     *            The name of the property to be used in the XML
+     * @param controlParams
+     *            ControlParameters for controlling recursion depth, number of items
+     *            and size of output.
+     *
+     * @throws SAXException
+     *             If there was an error generating the XML
+     */
+    private void primitiveArrayToXml(TransformerHandler transformer, Object array, String name,
+            ControlParameters controlParams)
+            throws SAXException, ScxException
+    {
+        if (this._logger.isFinerEnabled())
+        {
+            this._logger.finer("Property is an array class({0})", array.getClass().getCanonicalName());
+        }
+        AttributesImpl indexAttribute = newIndexAttributes(name);
+        char[] buffer = new char[MAX_LONG_CHARS];
+        int length = Math.min(Array.getLength(array), controlParams.getMaxArrayElements());
+        if (array instanceof long[])
+        {
+            long[] values = (long[]) array;
+            for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+            {
+                int start = formatLong(values[i], buffer);
+                arrayElementToXml(transformer, indexAttribute, i, buffer, start, controlParams);
+            }
+        }
+        else if (array instanceof int[])
+        {
+            int[] values = (int[]) array;
+            for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+            {
+                int start = formatLong(values[i], buffer);
+                arrayElementToXml(transformer, indexAttribute, i, buffer, start, controlParams);
+            }
+        }
+        else if (array instanceof byte[])
+        {
+            byte[] values = (byte[]) array;
+            for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+            {
+                int start = formatLong(values[i], buffer);
+                arrayElementToXml(transformer, indexAttribute, i, buffer, start, controlParams);
+            }
+        }
+        else if (array instanceof short[])
+        {
+            short[] values = (short[]) array;
+            for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+            {
+                int start = formatLong(values[i], buffer);
+                arrayElementToXml(transformer, indexAttribute, i, buffer, start, controlParams);
+            }
+        }
+        else if (array instanceof char[])
+        {
+            char[] values = (char[]) array;
+            int start = buffer.length - 1;
+            for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+            {
+                buffer[start] = values[i];
+                arrayElementToXml(transformer, indexAttribute, i, buffer, start, controlParams);
+            }
+        }
+        else if (array instanceof boolean[])
+        {
+            boolean[] values = (boolean[]) array;
+            for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+            {
+                arrayElementToXml(transformer, indexAttribute, i, values[i] ? TRUE_CHARS : FALSE_CHARS, 0,
+                        controlParams);
+            }
+        }
+        else if (array instanceof double[])
+        {
+            double[] values = (double[]) array;
+            for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+            {
+                arrayElementToXml(transformer, indexAttribute, i, Double.toString(values[i]).toCharArray(), 0,
+                        controlParams);
+            }
+        }
+        else
+        {
+            float[] values = (float[]) array;
+            for (int i = 0; i < length && !controlParams.isTruncated(); i++)
+            {
+                arrayElementToXml(transformer, indexAttribute, i, Float.toString(values[i]).toCharArray(), 0,
+                        controlParams);
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Add one element of an array of a primitive type to the XML, the size of
+     * the output is checked every ARRAY_SIZE_CHECK_INTERVAL elements.
+     * </p>
+     *
+     * @param transformer
+     *            Desired XML parser to use
+     * @param indexAttribute
+     *            The attributes of the Property element, the index is set
+     * @param index
+     *            The index of the element
+     * @param text
+     *            The formatted element, from position start to the end
+     * @param start
+     *            Position of the first character of the element in text
+     * @param controlParams
+     *            ControlParameters for controlling recursion depth, number of items
+     *            and size of output.
+     *
+     * @throws SAXException
+     *             If there was an error generating the XML
+     */
+    private void arrayElementToXml(TransformerHandler transformer, AttributesImpl indexAttribute, int index,
+            char[] text, int start, ControlParameters controlParams)
+            throws SAXException, ScxException
+    {
+        indexAttribute.setValue(1, indexToString(index));
+        transformer.startElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG, indexAttribute);
+        transformer.characters(text, start, text.length - start);
+        transformer.endElement("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_TAG);
+        if ((index + 1) % ARRAY_SIZE_CHECK_INTERVAL == 0)
+        {
+            controlParams.CheckXMLFileSize(_JMXQuery);
+        }
+    }
+
+    /**
+     * <p>
+     * Create the attributes of the Property element of an array element, the
+     * index (the attribute at position 1) is set for each element.
+     * </p>
+     *
+     * @param name
+     *            The name of the array property
+     *
+     * @return The attributes holding the name of the array
+     */
+    private static AttributesImpl newIndexAttributes(String name)
+    {
+        AttributesImpl indexAttribute = new AttributesImpl();
+        indexAttribute.addAttribute("", "", JmxConstant.XML_TRANSFORMER_MBEAN_PROPERTY_NAME_ATTRRIBUTE, "CDATA", name);
+        indexAttribute.addAttribute("", "", JmxConstant.XML_TRANSFORMER_INDEX_ATTRIBUTE, "CDATA", "0");
+        return indexAttribute;
+    }
+
+    /**
+     * <p>
+     * Get the text of an array index, the text of the first indexes is
+     * cached.
+     * </p>
+     *
+     * @param index
+     *            The index of the array element
+     *
+     * @return The index as a string
+     */
+    static String indexToString(int index)
+    {
+        return index < INDEX_STRINGS.length ? INDEX_STRINGS[index] : String.valueOf(index);
+    }
+
+    /**
+     * <p>
+     * Format a number into the end of the buffer, the digits are the same as
+     * the ones of Long.toString.
+     * </p>
+     *
+     * @param value
+     *            The number to format
+     * @param buffer
+     *            Buffer of at least MAX_LONG_CHARS characters
+     *
+     * @return The position of the first character of the number in the buffer
+     */
+    static int formatLong(long value, char[] buffer)
+    {
+        int pos = buffer.length;
+        /*
+         * Work on the negative value, Long.MIN_VALUE has no positive counterpart
+         */
+        long remaining = value < 0 ? value : -value;
+        do
+        {
+            buffer[--pos] = (char) ('0' - (remaining % 10));
+            remaining /= 10;
+        }
+        while (remaining != 0);
+        if (value < 0)
+        {
+            buffer[--pos] = '-';
+        }
+        return pos;
+    }
+
+    /**
+     * <p>
+     * Use the object ( class object ) to dynamically add the properties to the
+     * XML.
+     * </p>
+     * 
+     * @param transformer
+     *            Desired XML parser to use
+     * @param mbean
+     *            The MBean to be turned into XML
+     * @param controlParams
+     *            ControlParameters for controlling recursion depth, number of items
+     *            and size of output.  
+     * 
+     * @throws IllegalAccessException
+     *             If there was a security related error to using reflection to
+     *             understand the MBean
+     * @throws InvocationTargetException
+     *             If there an issue related to invoking methods on the MBean
+     *             via reflection
+     * @throws SAXException
+     *             If there was an error generating the XML
+     * @throws IntrospectionException
+     *             If there was an error using introspection to understand the
+     *             MBeans
+     */
+    
+    private void ProcessUserClass( TransformerHandler transformer,
+            Object mbean, ControlParameters controlParams, Hashtable<String,String> mbeanexclusions) 
+            throws IllegalAccessException, InvocationTargetException, 
+                   SAXException, IntrospectionException, ScxException 
+    {
+        BeanInfo metadata = Introspector.getBeanInfo(mbean.getClass(), Object.class);
+        PropertyDescriptor[] propertyList = metadata.getPropertyDescriptors();
+
+        for (int i = 0; i < propertyList.length && !controlParams.isTruncated(); i++) 
+        {
+            if (this._logger.isFineEnabled())
+            {
+                this._logger.fine("Adding Properties #{0}", String.valueOf(i));
+            }
+            
+            Method meth = propertyList[i].getReadMethod();
+            if(meth!=null) 
+            {
+                try {
+                    Object property = meth.invoke(mbean,(Object[]) null);
+                    if(property!=null)
+                    {
+                        ProcessItem(transformer, property,propertyList[i].getName(), 
+                                controlParams, mbeanexclusions);                                                 
+                    }
+                }
+                catch (IllegalAccessException e)
+                {
+                    this._logger.finer("Unable to invoke ReadMethod. IllegalAccessException");
+                }
+                catch(InvocationTargetException e)
+                {
+                    this._logger.finer("Unable to invoke ReadMethod. InvocationTargetException");
+                }
+            }
+            else
+            {
+                /*
+                 * Certain properties are of IndexedPropertyDescriptor type, this means they act like arrays
                  * and they support indexed read and write methods. These are not currently supported.
                  */
                 if(propertyList[i] instanceof IndexedPropertyDescriptor)
                 {
-                    this._logger.finer(new StringBuffer("MBean property [")
-                                            .append(propertyList[i].getName())
-                                            .append("], does not support a read method.")
-                                            .toString());
+                    this._logger.finer("MBean property [{0}], does not support a read method.", propertyList[i].getName());
                 }
                 else
                 {
-                    this._logger.finer(new StringBuffer("MBean property [")
-                                            .append(propertyList[i].getName())
-                                            .append("], does not support a read method and is not an IndexedProperty.")
-                                            .toString());
+                    this._logger.finer("MBean property [{0}], does not support a read method and is not an IndexedProperty.",
+                            propertyList[i].getName());
                 }
             }
         }
     }
 
+    /**
+     * <p>
+     * Helper method to determine whether an object is rendered by introspecting
+     * its properties, the objects that can be part of a cycle or be shared
+     * between several properties of a MBean.
+     * </p>
+     * 
+     * @param prop
+     *            The object to be checked
+     * @return true if the object is neither a base class, an array nor Open MBean data
+     */
+    private boolean isUserClass (Object prop)
+    {
+        return !isBaseClass(prop) && !prop.getClass().isArray()
+                && !(prop instanceof CompositeData) && !(prop instanceof TabularData);
+    }
+
     /**
      * <p>
      * Helper method to determine whether an object is either a wrapper class or a primitive
@@ -922,6 +1819,20 @@ class ControlParameters
      * </p>
      */
     protected int MaxProperties;
+
+    /**
+     * <p>
+     * Element representing the maximum number of rows rendered for a TabularData property.
+     * </p>
+     */
+    protected int MaxRows;
+
+    /**
+     * <p>
+     * Element representing the maximum number of elements rendered for an array property.
+     * </p>
+     */
+    protected int MaxArrayElements;
     
     /**
      * <p>
@@ -936,6 +1847,47 @@ class ControlParameters
      * </p>
      */
     protected ILogger _logger;
+
+    /**
+     * <p>
+     * Size of the XML output at which the response is truncated, zero if the
+     * response must not be truncated.
+     * </p>
+     */
+    protected int truncationLimit;
+
+    /**
+     * <p>
+     * Time (in milliseconds) after which the response is truncated, zero if
+     * there is no time limit.
+     * </p>
+     */
+    protected long deadline;
+
+    /**
+     * <p>
+     * The limit that caused the response to be truncated, null while the
+     * response is not truncated.
+     * </p>
+     */
+    protected String truncationReason;
+
+    /**
+     * <p>
+     * The objects rendered so far for the current attribute of the MBean,
+     * with the path of the Property they were rendered in. An object met
+     * again (a back-reference or an object shared by several properties) is
+     * not rendered a second time, the Property refers to the path instead.
+     * </p>
+     */
+    protected IdentityHashMap<Object,String> renderedObjects = new IdentityHashMap<Object,String>();
+
+    /**
+     * <p>
+     * Paths of the objects being rendered, the innermost last.
+     * </p>
+     */
+    protected ArrayList<String> objectPath = new ArrayList<String>();
       
     
     /**
@@ -957,10 +1909,42 @@ class ControlParameters
        this.RecursionDepth  = this.origRecursionDepth  = RecursionDepth; 
        this.MaxProperties   = this.origMaxProperties   = MaxProperties;
        this.origMaxXMLSize  = MaxXMLSize;
+       this.MaxRows         = JmxConstant.MAXROWS;
+       this.MaxArrayElements = JmxConstant.MAXARRAYELEMENTS;
        this.outputStringWriter = outputStringWriter;
        
        this._logger = LoggingFactory.getLogger();
     }
+
+    /**
+     * <p>
+     * Constructor for truncation mode, when a limit is reached the response
+     * is truncated rather than failed.
+     * </p>
+     * 
+     * @param RecursionDepth
+     *            Desired maximum recursion depth.
+     * @param MaxProperties
+     *            Desired maximum properties to process per MBean.
+     * @param MaxXMLSize
+     *            Desired maximum XML output size.
+     * @param outputStringWriter
+     *            The output string writer for the XML output.
+     * @param truncationLimit
+     *            Size of the XML output at which the response is truncated,
+     *            zero to fail the response when it exceeds the absolute maximum
+     *            XML size.
+     * @param deadline
+     *            Time (in milliseconds) after which the response is truncated,
+     *            zero for no time limit.
+     */
+    public ControlParameters (int RecursionDepth, int MaxProperties, int MaxXMLSize, StringWriter outputStringWriter,
+            int truncationLimit, long deadline)
+    {
+       this(RecursionDepth, MaxProperties, MaxXMLSize, outputStringWriter);
+       this.truncationLimit = truncationLimit;
+       this.deadline = deadline;
+    }
     
     /**
      * <p>
@@ -999,16 +1983,40 @@ class ControlParameters
      */
     public boolean XMLFileSizeExceeds (int Limits)
     {
-       StringBuffer XMLFileBuffer = outputStringWriter.getBuffer();
-       
-       if (XMLFileBuffer != null)
-       {
-          return XMLFileBuffer.length() > Limits;
-       }
-      else
-      {
-          return false;
-      }
+       return getOutputSize() > Limits;
+    }
+
+    /**
+     * <p>
+     * The size of the XML output so far, in UTF-8 bytes when the output is
+     * written to a Utf8CountingWriter.
+     * </p>
+     * 
+     * @return The size of the XML output
+     */
+    public long getOutputSize()
+    {
+       return Utf8CountingWriter.sizeOf(outputStringWriter);
+    }
+
+    /**
+     * <p>
+     * Check whether output of the estimated size still fits before the
+     * truncation limit. There is always room outside of truncation mode or
+     * when the size is not known.
+     * </p>
+     * 
+     * @param estimate
+     *            The estimated size, RenderedSizeEstimator.UNKNOWN if there
+     *            is no estimate
+     * 
+     * @return false if the output would go past the truncation limit
+     *         otherwise true
+     */
+    public boolean hasRoomFor(long estimate)
+    {
+       return truncationLimit <= 0 || estimate == RenderedSizeEstimator.UNKNOWN
+           || getOutputSize() + estimate <= truncationLimit;
     }
     
     /**
@@ -1030,9 +2038,13 @@ class ControlParameters
      */   
  public void CheckXMLFileSize(String JMXQuery) throws ScxException
     {
+          if(truncationLimit > 0 || deadline > 0)
+          {
+             CheckTruncation();
+          }
           if(XMLFileSizeExceeds(origMaxXMLSize))
           {
-             if(XMLFileSizeExceeds(JmxConstant.ABS_MAX_XML_SIZE))
+             if(truncationLimit <= 0 && XMLFileSizeExceeds(JmxConstant.ABS_MAX_XML_SIZE))
              {  
                 Object[] args = {new Integer(JmxConstant.ABS_MAX_XML_SIZE), JMXQuery}; 
                            
@@ -1046,6 +2058,72 @@ class ControlParameters
           }
     }
     
+    /**
+     * <p>
+     * In truncation mode, check whether the truncation size or the time limit
+     * has been reached. Once it has, the response is marked as truncated and
+     * no further properties are processed.
+     * </p>
+     */
+    private void CheckTruncation()
+    {
+          if(truncationReason != null)
+          {
+             return;
+          }
+          if(truncationLimit > 0 && XMLFileSizeExceeds(truncationLimit))
+          {
+             truncationReason = JmxConstant.STR_MAXSIZE;
+          }
+          else if(deadline > 0 && System.currentTimeMillis() > deadline)
+          {
+             truncationReason = JmxConstant.STR_MAXTIME;
+          }
+          if(truncationReason != null)
+          {
+             setRecursionDepth(0);
+          }
+    }
+
+    /**
+     * <p>
+     * Mark the response as truncated, no further properties are processed.
+     * </p>
+     * 
+     * @param reason
+     *            The limit that was reached, MaxSize or MaxTime
+     */
+    public void truncate(String reason)
+    {
+          truncationReason = reason;
+          setRecursionDepth(0);
+    }
+
+    /**
+     * <p>
+     * Used to check whether the response has been truncated.
+     * </p>
+     * 
+     * @return true if a truncation limit has been reached otherwise false
+     */
+    public boolean isTruncated()
+    {
+       return truncationReason != null;
+    }
+
+    /**
+     * <p>
+     * The limit that caused the response to be truncated, either MaxSize or
+     * MaxTime.
+     * </p>
+     * 
+     * @return The name of the limit, or null if the response is not truncated
+     */
+    public String getTruncationReason()
+    {
+       return truncationReason;
+    }
+
     /**
      * <p>
      * Used to check whether the number of properties has exceeded the configured level.
@@ -1107,6 +2185,105 @@ class ControlParameters
     {
        MaxProperties--;
     }
+
+    /**
+     * <p>
+     * Start rendering an attribute of the MBean. The attributes are read
+     * separately, so each one is rendered in full: objects it shares with the
+     * attributes before it are rendered again.
+     * </p>
+     */
+    public void startAttribute()
+    {
+       renderedObjects.clear();
+       objectPath.clear();
+    }
+
+    /**
+     * <p>
+     * Get the path of the Property an object was already rendered in for the
+     * current attribute of the MBean.
+     * </p>
+     * 
+     * @param obj
+     *            The object about to be rendered
+     * 
+     * @return the path of the Property, null if the object was not rendered yet
+     */
+    public String getRenderedPath(Object obj)
+    {
+       return renderedObjects.get(obj);
+    }
+
+    /**
+     * <p>
+     * Record that the properties of an object are being rendered. The path of
+     * the object is the path of the enclosing object followed by the name of
+     * the Property (with the index for an array element), separated by '/'.
+     * </p>
+     * 
+     * @param obj
+     *            The object being rendered
+     * @param name
+     *            The name of the Property of the object
+     */
+    public void enterObject(Object obj, String name)
+    {
+       String path = objectPath.isEmpty() ? name
+               : new StringBuffer(objectPath.get(objectPath.size() - 1)).append('/').append(name).toString();
+       renderedObjects.put(obj, path);
+       objectPath.add(path);
+    }
+
+    /**
+     * <p>
+     * Record that the properties of the innermost object have been rendered.
+     * </p>
+     */
+    public void exitObject()
+    {
+       objectPath.remove(objectPath.size() - 1);
+    }
+
+    /**
+     * <p>
+     * Set the maximum number of rows rendered for a TabularData property.
+     * </p>
+     */
+    public void setMaxRows(int MaxRows)
+    {
+       this.MaxRows = MaxRows;
+    }
+
+    /**
+     * <p>
+     * Get the maximum number of rows rendered for a TabularData property.
+     * </p>
+     */
+    public int getMaxRows()
+    {
+       return MaxRows;
+    }
+
+    /**
+     * <p>
+     * Set the maximum number of elements rendered for an array property.
+     * </p>
+     */
+    public void setMaxArrayElements(int MaxArrayElements)
+    {
+       this.MaxArrayElements = MaxArrayElements;
+    }
+
+    /**
+     * <p>
+     * Get the maximum number of elements rendered for an array property.
+     * </p>
+     */
+    public int getMaxArrayElements()
+    {
+       return MaxArrayElements;
+    }
     
    
 }
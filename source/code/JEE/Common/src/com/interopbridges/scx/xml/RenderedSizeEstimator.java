@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.xml;
+
+import java.util.Hashtable;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Keeps a running estimate of the size (in UTF-8 bytes) of the XML rendered
+ * for the MBeans of a class, and for each of their attributes.
+ * </p>
+ *
+ * <p>
+ * In truncation mode the MBeanTransformer uses the estimates to stop before
+ * fetching the attributes of an MBean, or a single attribute, that would not
+ * fit in what is left of the response, instead of calling getAttribute and
+ * then cutting the response short. The size rendered depends on the
+ * requested limits (MaxDepth, MaxCount, MaxSize, MaxRows, MaxArrayElements)
+ * and on the attributes excluded, so the estimates are kept by class and by
+ * all of these.
+ * </p>
+ *
+ * <p>
+ * An estimate is the moving average of the sizes recorded, each new size
+ * weighing a quarter. The number of classes and attributes tracked is
+ * bounded, the ones over the bounds have no estimate.
+ * </p>
+ *
+ */
+public class RenderedSizeEstimator
+{
+    /**
+     * <p>
+     * Returned when there is no estimate yet.
+     * </p>
+     */
+    public static final long UNKNOWN = -1;
+
+    /**
+     * <p>
+     * Maximum number of class and limits combinations tracked.
+     * </p>
+     */
+    static final int MAX_CLASSES = 1024;
+
+    /**
+     * <p>
+     * Maximum number of attributes tracked for a class.
+     * </p>
+     */
+    static final int MAX_ATTRIBUTES = 256;
+
+    /**
+     * <p>
+     * The estimator shared by all requests.
+     * </p>
+     */
+    private static final RenderedSizeEstimator _inst = new RenderedSizeEstimator();
+
+    /**
+     * <p>
+     * Estimates by class name and limits.
+     * </p>
+     */
+    private final ConcurrentHashMap<String, ClassEstimate> _classes = new ConcurrentHashMap<String, ClassEstimate>();
+
+    /**
+     * <p>
+     * Constructor, the requests share the instance returned by getInstance.
+     * </p>
+     */
+    RenderedSizeEstimator()
+    {
+    }
+
+    /**
+     * <p>
+     * Get the estimator shared by all requests.
+     * </p>
+     *
+     * @return The rendered size estimator
+     */
+    public static RenderedSizeEstimator getInstance()
+    {
+        return _inst;
+    }
+
+    /**
+     * <p>
+     * Get the estimates of the MBeans of a class rendered with the given
+     * limits and exclusions.
+     * </p>
+     *
+     * @param className
+     *            The class name of the MBean
+     * @param depth
+     *            The requested depth (MaxDepth)
+     * @param maxProperties
+     *            The requested maximum number of properties (MaxCount)
+     * @param maxBytes
+     *            The requested maximum size (MaxSize)
+     * @param maxRows
+     *            The requested maximum number of table rows (MaxRows)
+     * @param maxArrayElements
+     *            The requested maximum number of array elements
+     *            (MaxArrayElements)
+     * @param exclusions
+     *            The attributes excluded from the MBean, may be null
+     *
+     * @return The estimates of the class, not kept if too many classes are
+     *         tracked already
+     */
+    public ClassEstimate forClass(String className, int depth, int maxProperties, int maxBytes,
+            int maxRows, int maxArrayElements, Hashtable<String, String> exclusions)
+    {
+        StringBuffer buf = new StringBuffer(className).append('|').append(depth)
+                .append('|').append(maxProperties).append('|').append(maxBytes)
+                .append('|').append(maxRows).append('|').append(maxArrayElements);
+        if (exclusions != null && !exclusions.isEmpty())
+        {
+            buf.append('|').append(new TreeSet<String>(exclusions.keySet()));
+        }
+        String key = buf.toString();
+        ClassEstimate estimate = this._classes.get(key);
+        if (estimate == null)
+        {
+            estimate = new ClassEstimate();
+            if (this._classes.size() < MAX_CLASSES)
+            {
+                ClassEstimate existing = this._classes.putIfAbsent(key, estimate);
+                if (existing != null)
+                {
+                    estimate = existing;
+                }
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * <p>
+     * Add a size to a moving average, retrying if a concurrent request
+     * updated the average in between.
+     * </p>
+     */
+    private static void record(AtomicLong average, long bytes)
+    {
+        while (true)
+        {
+            long previous = average.get();
+            long next = previous == UNKNOWN ? bytes : previous + (bytes - previous) / 4;
+            if (average.compareAndSet(previous, next))
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * The rendered sizes of the MBeans of a class at a depth.
+     * </p>
+     */
+    public static class ClassEstimate
+    {
+        /**
+         * <p>
+         * Average size of a whole MBean.
+         * </p>
+         */
+        private final AtomicLong _mbean = new AtomicLong(UNKNOWN);
+
+        /**
+         * <p>
+         * Average size by attribute name.
+         * </p>
+         */
+        private final ConcurrentHashMap<String, AtomicLong> _attributes = new ConcurrentHashMap<String, AtomicLong>();
+
+        /**
+         * <p>
+         * Get the estimated size of a whole MBean.
+         * </p>
+         *
+         * @return The size in bytes, or UNKNOWN
+         */
+        public long getMBeanSize()
+        {
+            return this._mbean.get();
+        }
+
+        /**
+         * <p>
+         * Get the estimated size of an attribute.
+         * </p>
+         *
+         * @param attribute
+         *            The name of the attribute
+         *
+         * @return The size in bytes, or UNKNOWN
+         */
+        public long getAttributeSize(String attribute)
+        {
+            AtomicLong average = this._attributes.get(attribute);
+            return average == null ? UNKNOWN : average.get();
+        }
+
+        /**
+         * <p>
+         * Record the size of a whole MBean that was rendered.
+         * </p>
+         *
+         * @param bytes
+         *            The size in bytes
+         */
+        public void recordMBean(long bytes)
+        {
+            record(this._mbean, bytes);
+        }
+
+        /**
+         * <p>
+         * Record the size of an attribute that was rendered.
+         * </p>
+         *
+         * @param attribute
+         *            The name of the attribute
+         * @param bytes
+         *            The size in bytes
+         */
+        public void recordAttribute(String attribute, long bytes)
+        {
+            AtomicLong average = this._attributes.get(attribute);
+            if (average == null)
+            {
+                if (this._attributes.size() >= MAX_ATTRIBUTES)
+                {
+                    return;
+                }
+                AtomicLong created = new AtomicLong(UNKNOWN);
+                average = this._attributes.putIfAbsent(attribute, created);
+                if (average == null)
+                {
+                    average = created;
+                }
+            }
+            record(average, bytes);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.xml;
+
+/**
+ * <p>
+ * Formats primitive statistic values straight into a caller supplied char
+ * buffer, producing the same characters as Long.toString and Double.toString
+ * without creating a String for every value.
+ * </p>
+ *
+ */
+final class StatisticValueFormatter
+{
+    /**
+     * <p>
+     * Size of a buffer large enough for any value formatted by this class.
+     * </p>
+     */
+    static final int BUFFER_SIZE = 32;
+
+    /**
+     * <p>
+     * Powers of ten, by exponent.
+     * </p>
+     */
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+
+    /**
+     * <p>
+     * Smallest magnitude Double.toString writes without an exponent.
+     * </p>
+     */
+    private static final double MIN_PLAIN = 1e-3;
+
+    /**
+     * <p>
+     * Magnitude from which Double.toString writes an exponent.
+     * </p>
+     */
+    private static final double MAX_PLAIN = 1e7;
+
+    /**
+     * <p>
+     * Utility class, not instantiated.
+     * </p>
+     */
+    private StatisticValueFormatter()
+    {
+    }
+
+    /**
+     * <p>
+     * Write the decimal digits of a long.
+     * </p>
+     *
+     * @param value
+     *            The value to format
+     * @param buffer
+     *            Buffer of at least BUFFER_SIZE characters
+     *
+     * @return The number of characters written from the start of the buffer
+     */
+    static int formatLong(long value, char[] buffer)
+    {
+        if (value == Long.MIN_VALUE)
+        {
+            String min = Long.toString(Long.MIN_VALUE);
+            min.getChars(0, min.length(), buffer, 0);
+            return min.length();
+        }
+        int length = 0;
+        if (value < 0)
+        {
+            buffer[length++] = '-';
+            value = -value;
+        }
+        return length + writeDigits(value, buffer, length, 0);
+    }
+
+    /**
+     * <p>
+     * Write a double rounded to a number of decimals, the way Double.toString
+     * writes the rounded value: trailing zeros dropped but at least one
+     * decimal kept.
+     * </p>
+     *
+     * @param value
+     *            The value to format, already rounded to decimals
+     * @param decimals
+     *            Number of decimals of the value, at most 9
+     * @param buffer
+     *            Buffer of at least BUFFER_SIZE characters
+     *
+     * @return The number of characters written from the start of the buffer,
+     *         or -1 if Double.toString would write the value in another form
+     *         (exponent, NaN or infinity)
+     */
+    static int formatDouble(double value, int decimals, char[] buffer)
+    {
+        double magnitude = Math.abs(value);
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length || !(magnitude < MAX_PLAIN)
+                || (magnitude != 0 && magnitude < MIN_PLAIN))
+        {
+            return -1;
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        long scaled = Math.round(magnitude * scale);
+
+        int length = 0;
+        if (value < 0 || (value == 0 && 1 / value < 0))
+        {
+            buffer[length++] = '-';
+        }
+        length += writeDigits(scaled / scale, buffer, length, 0);
+        buffer[length++] = '.';
+
+        // Drop the trailing zeros of the decimals, keeping at least one digit
+        long fraction = scaled % scale;
+        int digits = decimals;
+        while (digits > 1 && fraction % 10 == 0)
+        {
+            fraction /= 10;
+            digits--;
+        }
+        if (digits == 0)
+        {
+            buffer[length++] = '0';
+            return length;
+        }
+        return length + writeDigits(fraction, buffer, length, digits);
+    }
+
+    /**
+     * <p>
+     * Write the digits of a non negative value, left padded with zeros to a
+     * minimum number of digits.
+     * </p>
+     *
+     * @return The number of characters written
+     */
+    private static int writeDigits(long value, char[] buffer, int offset, int minDigits)
+    {
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10)
+        {
+            digits++;
+        }
+        if (digits < minDigits)
+        {
+            digits = minDigits;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--)
+        {
+            buffer[i] = (char) ('0' + (value % 10));
+            value /= 10;
+        }
+        return digits;
+    }
+}
@@ -32,6 +32,8 @@ import org.xml.sax.helpers.AttributesImpl;
 
 import com.interopbridges.scx.ScxException;
 import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.jeestats.DoubleStatistic;
+import com.interopbridges.scx.jeestats.LongStatistic;
 import com.interopbridges.scx.jeestats.Statistic;
 import com.interopbridges.scx.jeestats.StatisticGroup;
 import com.interopbridges.scx.jeestats.StatisticItemGroup;
@@ -69,6 +71,22 @@ public class StatisticXMLTransformer {
      */
     protected ILogger _logger;
 
+    /**
+     * <p>
+     * Buffer the primitive statistic values are formatted into, reused for
+     * every statistic of the document.
+     * </p>
+     */
+    private final char[] _digits = new char[StatisticValueFormatter.BUFFER_SIZE];
+
+    /**
+     * <p>
+     * Attributes of the statistic element, reused for every statistic of the
+     * document.
+     * </p>
+     */
+    private final AttributesImpl _atts = new AttributesImpl();
+
     /**
      * <p>
      * Default Constructor
@@ -268,6 +286,28 @@ public class StatisticXMLTransformer {
     private void StatisticToOuterXml(TransformerHandler transformer,
             Statistic stat) throws SAXException
     {
+        int length = -1;
+        if (stat instanceof LongStatistic)
+        {
+            length = StatisticValueFormatter.formatLong(((LongStatistic) stat).getLongValue(), _digits);
+        }
+        else if (stat instanceof DoubleStatistic)
+        {
+            DoubleStatistic d = (DoubleStatistic) stat;
+            length = StatisticValueFormatter.formatDouble(d.getDoubleValue(), d.getDecimals(), _digits);
+        }
+        if (length >= 0)
+        {
+            // The type of a primitive statistic is a primitive class, whose
+            // name is what toString returns
+            _atts.clear();
+            _atts.addAttribute("", "", "type", "CDATA", ((Class<?>) stat.getStatisticType()).getName());
+            transformer.startElement("", "", stat.getStatisticName(), _atts);
+            transformer.characters(_digits, 0, length);
+            transformer.endElement("", "", stat.getStatisticName());
+            return;
+        }
+
         AttributesImpl atts = new AttributesImpl();
         String type = stat.getStatisticType().toString();
         String val = stat.getStatisticValue().toString();
@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.xml;
+
+import java.io.StringWriter;
+
+/**
+ * <p>
+ * StringWriter that keeps count of the number of bytes its content takes once
+ * encoded in UTF-8, the encoding BeanSpy responses are sent in.
+ * </p>
+ *
+ * <p>
+ * The count is updated as the characters are written, so the size of a
+ * response can be checked at any time without encoding or scanning what was
+ * written so far. Each half of a surrogate pair counts two bytes, the four
+ * bytes of the encoded pair.
+ * </p>
+ *
+ */
+public class Utf8CountingWriter extends StringWriter
+{
+    /**
+     * <p>
+     * Number of UTF-8 bytes written so far.
+     * </p>
+     */
+    private long _byteCount;
+
+    /**
+     * <p>
+     * Default constructor
+     * </p>
+     */
+    public Utf8CountingWriter()
+    {
+        super();
+    }
+
+    /**
+     * <p>
+     * Get the number of bytes of the content once encoded in UTF-8.
+     * </p>
+     *
+     * @return The number of UTF-8 bytes written so far
+     */
+    public long getByteCount()
+    {
+        return this._byteCount;
+    }
+
+    /**
+     * @see java.io.StringWriter#write(int)
+     */
+    public void write(int c)
+    {
+        super.write(c);
+        this._byteCount += utf8Length((char) c);
+    }
+
+    /**
+     * @see java.io.StringWriter#write(char[], int, int)
+     */
+    public void write(char[] cbuf, int off, int len)
+    {
+        super.write(cbuf, off, len);
+        long bytes = 0;
+        for (int i = off; i < off + len; i++)
+        {
+            bytes += utf8Length(cbuf[i]);
+        }
+        this._byteCount += bytes;
+    }
+
+    /**
+     * @see java.io.StringWriter#write(java.lang.String)
+     */
+    public void write(String str)
+    {
+        super.write(str);
+        this._byteCount += utf8Length(str, 0, str.length());
+    }
+
+    /**
+     * @see java.io.StringWriter#write(java.lang.String, int, int)
+     */
+    public void write(String str, int off, int len)
+    {
+        super.write(str, off, len);
+        this._byteCount += utf8Length(str, off, off + len);
+    }
+
+    /**
+     * <p>
+     * Get the number of bytes of a text once encoded in UTF-8.
+     * </p>
+     *
+     * @param text
+     *            The text to measure
+     *
+     * @return The number of UTF-8 bytes of the text
+     */
+    public static long utf8Length(CharSequence text)
+    {
+        return utf8Length(text, 0, text.length());
+    }
+
+    /**
+     * <p>
+     * Get the size of the content of a writer in bytes. The byte count is
+     * used for a Utf8CountingWriter, the number of characters for any other
+     * StringWriter.
+     * </p>
+     *
+     * @param writer
+     *            The writer holding the XML output
+     *
+     * @return The size of the content of the writer
+     */
+    public static long sizeOf(StringWriter writer)
+    {
+        if (writer instanceof Utf8CountingWriter)
+        {
+            return ((Utf8CountingWriter) writer).getByteCount();
+        }
+        return writer.getBuffer().length();
+    }
+
+    /**
+     * <p>
+     * Get the number of bytes of part of a text once encoded in UTF-8.
+     * </p>
+     */
+    private static long utf8Length(CharSequence text, int start, int end)
+    {
+        long bytes = 0;
+        for (int i = start; i < end; i++)
+        {
+            bytes += utf8Length(text.charAt(i));
+        }
+        return bytes;
+    }
+
+    /**
+     * <p>
+     * Get the number of bytes of a character once encoded in UTF-8, two for
+     * each half of a surrogate pair.
+     * </p>
+     */
+    private static int utf8Length(char c)
+    {
+        if (c < 0x80)
+        {
+            return 1;
+        }
+        if (c < 0x800 || Character.isHighSurrogate(c) || Character.isLowSurrogate(c))
+        {
+            return 2;
+        }
+        return 3;
+    }
+}
@@ -30,14 +30,17 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.interopbridges.scx.ScxException;
 import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.jeestats.BeanSpyMetrics;
 import com.interopbridges.scx.jmx.JmxStores;
 import com.interopbridges.scx.log.ILogger;
 import com.interopbridges.scx.log.LoggingFactory;
 import com.interopbridges.scx.mbeans.MBeanGetter;
 import com.interopbridges.scx.mbeans.MBeanInvoker;
+import com.interopbridges.scx.servlet.MeteredResponse;
 import com.interopbridges.scx.util.JmxConstant;
 import com.interopbridges.scx.util.JmxURLCheck;
 import com.interopbridges.scx.xml.InvokeDecoder;
+import com.interopbridges.scx.xml.Utf8CountingWriter;
 
 /**
  * <p>
@@ -116,6 +119,45 @@ public class BeanSpy extends HttpServlet
     public void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException, UnsupportedEncodingException
     {
+        BeanSpyMetrics metrics = BeanSpyMetrics.getInstance();
+        HttpServletResponse metered = MeteredResponse.wrap(response);
+        long start = metrics.requestStarted();
+        boolean failed = true;
+        try
+        {
+            writeMBeans(request, metered);
+            failed = false;
+        }
+        catch (ServletException e)
+        {
+            metrics.recordError(e.getRootCause());
+            throw e;
+        }
+        finally
+        {
+            metrics.requestFinished(BeanSpyMetrics.MBEANS, start, MeteredResponse.getBytesWritten(metered), failed);
+        }
+    }
+
+    /**
+     * <p>
+     * Write the MBeans matching the JMXQuery parameter of a GET request.
+     * </p>
+     * 
+     * @param request
+     *            the request send by the client to the server
+     * @param response
+     *            the response send by the server to the client
+     * @throws ServletException
+     *             if an error occurred
+     * @throws IOException
+     *             if an error occurred
+     * @throws UnsupportedEncodingException
+     *             if an error occurred
+     */
+    private void writeMBeans(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException, UnsupportedEncodingException
+    {
 
         String JMXQuery = null;
         
@@ -163,7 +205,7 @@ public class BeanSpy extends HttpServlet
                     String xml = _mbeanAccessor.getMBeansAsXml(JMXQuery, Params)
                             .toString();
 
-                    if (xml.toString().length() > JmxConstant.ABS_MAX_XML_SIZE)
+                    if (Utf8CountingWriter.utf8Length(xml) > JmxConstant.ABS_MAX_XML_SIZE)
                     {
                             Object[] args = {new Integer(JmxConstant.ABS_MAX_XML_SIZE), JMXQuery}; 
                             this._logger.finer(MessageFormat.format( "The size of the XML response has reached the limits of {0} bytes by the query: {1}.", args ) ) ; 
@@ -211,6 +253,38 @@ public class BeanSpy extends HttpServlet
     public void doPost(HttpServletRequest request, HttpServletResponse response)
             throws ServletException
     {
+        BeanSpyMetrics metrics = BeanSpyMetrics.getInstance();
+        HttpServletResponse metered = MeteredResponse.wrap(response);
+        long start = metrics.requestStarted();
+        boolean failed = true;
+        try
+        {
+            failed = !invokeMBean(request, metered);
+        }
+        finally
+        {
+            metrics.requestFinished(BeanSpyMetrics.INVOKE, start, MeteredResponse.getBytesWritten(metered), failed);
+        }
+    }
+
+    /**
+     * <p>
+     * Invoke the MBean operation described by a POST request and write its
+     * result, or the error that prevented the call.
+     * </p>
+     * 
+     * @param request
+     *            the request send by the client to the server
+     * @param response
+     *            the response send by the server to the client
+     * @return true if the operation was invoked, false if an error was written
+     * @throws ServletException
+     *             if the response could not be written
+     */
+    private boolean invokeMBean(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException
+    {
+        boolean invoked = true;
         String responseXML = null;
         MBeanInvoker mbm = null;
 
@@ -243,6 +317,8 @@ public class BeanSpy extends HttpServlet
         catch (Exception e)
         {
             this._logger.fine(e.getMessage());
+            BeanSpyMetrics.getInstance().recordError(e);
+            invoked = false;
             responseXML = MBeanInvoker.FormatXMLError(e);
         }
         
@@ -259,8 +335,10 @@ public class BeanSpy extends HttpServlet
         catch(Exception e)
         {
             this._logger.fine(e.getMessage());
+            BeanSpyMetrics.getInstance().recordError(e);
             throw new ServletException(e);
         }
+        return invoked;
     }
 
     /**
@@ -21,6 +21,7 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Vector;
 
 import javax.servlet.ServletException;
@@ -30,11 +31,20 @@ import javax.servlet.http.HttpServletResponse;
 
 import com.interopbridges.scx.ScxException;
 import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.jeestats.BeanSpyMetrics;
+import com.interopbridges.scx.jeestats.CounterSampler;
+import com.interopbridges.scx.jeestats.GCPauseRecorder;
+import com.interopbridges.scx.jeestats.GenericStatistics;
 import com.interopbridges.scx.jeestats.IStatistics;
 import com.interopbridges.scx.jeestats.Statistic;
+import com.interopbridges.scx.jeestats.StatisticAccessors;
 import com.interopbridges.scx.jeestats.StatisticGroup;
+import com.interopbridges.scx.jeestats.StatisticsCache;
+import com.interopbridges.scx.jeestats.StatisticsRegistry;
+import com.interopbridges.scx.jeestats.ThreadActivitySampler;
 import com.interopbridges.scx.log.ILogger;
 import com.interopbridges.scx.log.LoggingFactory;
+import com.interopbridges.scx.servlet.MeteredResponse;
 import com.interopbridges.scx.util.JmxConstant;
 import com.interopbridges.scx.util.JmxURLCheck;
 import com.interopbridges.scx.xml.StatisticXMLTransformer;
@@ -70,20 +80,6 @@ public class MXBeanExtender extends HttpServlet
      */
     private static final long serialVersionUID = 1417683441123718358L;
 
-    /**
-     * <p>
-     * Prefix for all statistic classes
-     * </p>
-     */
-    private static final String jeeStatsPrefix = "com.interopbridges.scx.jeestats";
-    
-    /**
-     * <p>
-     * Prefix for all statistic classes
-     * </p>
-     */
-    private static final String jeeInfoPrefix = "com.interopbridges.scx.jeeinfo";
-    
     /**
      * <p>
      * URL part denoting a statistical query
@@ -100,87 +96,10 @@ public class MXBeanExtender extends HttpServlet
     
     /**
      * <p>
-     * Suffix for all statistic classes
-     * </p>
-     */
-    private static final String jeeStatsSuffix = "Statistics";
-    
-    /**
-     * <p>
-     * JmxStore statistic class name
-     * </p>
-     */
-    private static final String JmxStoreStatisticsClassName = jeeStatsPrefix+".JmxStoreStatistics";
-    
-    /**
-     * <p>
-     * ClassLoader statistic class name
-     * </p>
-     */
-    private static final String ClassLoaderStatisticsClassName = jeeStatsPrefix+".ClassLoaderStatistics";
-    
-    /**
-     * <p>
-     * Thread statistic class name
+     * Registry holding the statistics providers
      * </p>
      */
-    private static final String ThreadStatisticsClassName = jeeStatsPrefix+".ThreadStatistics";
-    
-    /**
-     * <p>
-     * Just In Time Compiler statistic class name
-     * </p>
-     */
-    private static final String JITCompilerStatisticsClassName = jeeStatsPrefix+".JITCompilerStatistics";
-    
-    /**
-     * <p>
-     * garbage Collector statistic class name
-     * </p>
-     */
-    private static final String GCStatisticsClassName = jeeStatsPrefix+".GCStatistics";
-    
-    /**
-     * <p>
-     * Memory statistic class name
-     * </p>
-     */
-    private static final String MemoryStatisticsClassName = jeeStatsPrefix+".MemoryStatistics";
-
-    /**
-     * <p>
-     * Runtime statistic class name
-     * </p>
-     */
-    private static final String RuntimeStatisticsClassName = jeeStatsPrefix+".RuntimeStatistics";
-
-    /**
-     * <p>
-     * Jee JVM info class name
-     * </p>
-     */
-    private static final String JeeJVMInfoClassName = jeeInfoPrefix+".JeeJVMInfo";
-    
-    /**
-     * <p>
-     * Jee JVM Memoryinfo class name
-     * </p>
-     */
-    private static final String JeeJVMMemoryInfoClassName = jeeInfoPrefix+".JeeJVMMemoryInfo";
-    
-    /**
-     * <p>
-     * Jee JVM Operating System info class name
-     * </p>
-     */
-    private static final String JeeJVMOSInfoClassName = jeeInfoPrefix+".JeeJVMOSInfo";
-    
-    /**
-     * <p>
-     * Jee Server info class name
-     * </p>
-     */
-    private static final String JeeServerInfoClassName = jeeInfoPrefix+".JeeServerInfo";
+    private StatisticsRegistry _registry;
     
     /**
      * <p>
@@ -196,12 +115,16 @@ public class MXBeanExtender extends HttpServlet
     public MXBeanExtender() {
         super();
         this._logger = LoggingFactory.getLogger();
+        this._registry = StatisticsRegistry.getInstance();
     }
 
     /**
      * Destruction of the servlet. <br>
      */
     public void destroy() {
+        CounterSampler.getInstance().stop();
+        ThreadActivitySampler.getInstance().stop();
+        GCPauseRecorder.getInstance().stop();
         super.destroy(); // Just puts "destroy" string in log
     }
 
@@ -228,6 +151,46 @@ public class MXBeanExtender extends HttpServlet
     public void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException, UnsupportedEncodingException
     {
+        BeanSpyMetrics metrics = BeanSpyMetrics.getInstance();
+        HttpServletResponse metered = MeteredResponse.wrap(response);
+        long start = metrics.requestStarted();
+        boolean failed = true;
+        try
+        {
+            writeStatistics(request, metered);
+            failed = false;
+        }
+        catch (ServletException e)
+        {
+            metrics.recordError(e.getRootCause());
+            throw e;
+        }
+        finally
+        {
+            metrics.requestFinished(BeanSpyMetrics.STATS, start, MeteredResponse.getBytesWritten(metered), failed);
+        }
+    }
+
+    /**
+     * <p>
+     * Write the statistics or information selected by the path of a GET
+     * request.
+     * </p>
+     * 
+     * @param request
+     *            the request send by the client to the server
+     * @param response
+     *            the response send by the server to the client
+     * @throws ServletException
+     *             if an error occurred
+     * @throws IOException
+     *             if an error occurred
+     * @throws UnsupportedEncodingException
+     *             if an error occurred
+     */
+    private void writeStatistics(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException, UnsupportedEncodingException
+    {
 
         String path = request.getPathInfo();
 
@@ -293,16 +256,9 @@ public class MXBeanExtender extends HttpServlet
             try
             {
 
-                Vector<StatisticGroup> stats = new Vector<StatisticGroup>();
                 // Retrieve all the statistics for all classes
                 //
-                stats.add(getStatisticsforClass(JmxStoreStatisticsClassName));
-                stats.add(getStatisticsforClass(ClassLoaderStatisticsClassName));
-                stats.add(getStatisticsforClass(ThreadStatisticsClassName));
-                stats.add(getStatisticsforClass(JITCompilerStatisticsClassName));
-                stats.add(getStatisticsforClass(GCStatisticsClassName));
-                stats.add(getStatisticsforClass(MemoryStatisticsClassName));
-                stats.add(getStatisticsforClass(RuntimeStatisticsClassName));
+                Vector<StatisticGroup> stats = getStatistics(this._registry.getStatistics());
 
                 StatisticXMLTransformer xdoc = new StatisticXMLTransformer();
                 String xml = xdoc.transformAllStatistics(StatisticXMLTag, stats).toString();
@@ -333,21 +289,16 @@ public class MXBeanExtender extends HttpServlet
                      */
                     if(pieces[0].compareToIgnoreCase("Info")==0)
                     {
-                        Vector<StatisticGroup> stats = new Vector<StatisticGroup>();
                         /*
                          * Retrieve all the information for all classes
                          */
-                        stats.add(getStatisticsforClass(JeeJVMMemoryInfoClassName));
-                        stats.add(getStatisticsforClass(JeeJVMOSInfoClassName));
-                        stats.add(getStatisticsforClass(JeeJVMInfoClassName));
-                        stats.add(getStatisticsforClass(JeeServerInfoClassName));
+                        Vector<StatisticGroup> stats = getStatistics(this._registry.getInformation());
 
                         xml = xdoc.transformAllStatistics(InformationXMLTag, stats).toString();
                     }
                     else
                     {
-                        StatisticGroup stat = getStatisticsforClass(jeeStatsPrefix
-                                + "." + pieces[0] + jeeStatsSuffix);
+                        StatisticGroup stat = getStatistics(getProviderForGroup(pieces[0]));
 
                         xml = xdoc.transformGroupStatistics(StatisticXMLTag, stat).toString();
                     }
@@ -369,8 +320,7 @@ public class MXBeanExtender extends HttpServlet
                 try
                 {
                     StatisticXMLTransformer xdoc = new StatisticXMLTransformer();
-                    Statistic s = getSingleStatisticforClass(jeeStatsPrefix
-                            + "." + pieces[0] + jeeStatsSuffix, "get"
+                    Statistic s = getSingleStatistic(getProviderForGroup(pieces[0]), "get"
                             + pieces[1]);
                     String xml = xdoc.transformSingleStatistic(StatisticXMLTag, pieces[0], s)
                             .toString();
@@ -422,7 +372,11 @@ public class MXBeanExtender extends HttpServlet
      * @throws ServletException if an error occurs
      */
     public void init() throws ServletException {
-
+        // Start sampling the counters used for the Rates and ThreadActivity statistics
+        CounterSampler.getInstance().start();
+        ThreadActivitySampler.getInstance().start();
+        // Start recording the pauses reported by the GCPause statistics
+        GCPauseRecorder.getInstance().start();
     }
 
     /**
@@ -447,23 +401,17 @@ public class MXBeanExtender extends HttpServlet
     protected StatisticGroup getStatisticsforClass(String StatisticsClassname)
         throws ServletException  
     {
-        Object ClassInstance = null;
+        IStatistics provider = null;
         
         try {
-            Class<?> StatsClass = Class.forName(StatisticsClassname);
-            ClassInstance = StatsClass.newInstance();
+            provider = this._registry.getProvider(StatisticsClassname);
         }
         catch(Exception e) 
         {
             throw new ServletException(e);
         }
         
-        if(ClassInstance instanceof IStatistics)
-        {
-            return ((IStatistics)ClassInstance).getStats();
-        }
-        
-        throw new ServletException("returned object is not a statistic");
+        return getStatistics(provider);
     }
     
     /**
@@ -492,36 +440,135 @@ public class MXBeanExtender extends HttpServlet
     protected Statistic getSingleStatisticforClass(String StatisticsClassname,String MethodName)
         throws ServletException  
     {
-        IStatistics StatsClassInstance = null;
-        Class<?> StatsClass = null;
-        Object ClassInstance = null;
-        Method ClassMethod = null;
-        Object returnedObject = null;
+        IStatistics provider = null;
 
         try
         {
-            StatsClass = Class.forName(StatisticsClassname);
-            ClassInstance = StatsClass.newInstance();
+            provider = this._registry.getProvider(StatisticsClassname);
         }
         catch (Exception e)
         {
             throw new ServletException(e);
         }
 
-        if (!(ClassInstance instanceof IStatistics))
+        return getSingleStatistic(provider, MethodName);
+    }
+
+    /**
+     * <p>
+     * Internal helper method to look up the statistics provider for a group
+     * given in the URL.
+     * </p>
+     * 
+     * @param group
+     *            the name of the statistic group, e.g. Memory
+     *            
+     * @return the statistics provider, or null if the group does not name a
+     *         statistics class
+     * 
+     * @throws ServletException
+     *             if there is no class for the group
+     */
+    private IStatistics getProviderForGroup(String group) throws ServletException
+    {
+        try
+        {
+            return this._registry.getProviderForGroup(group);
+        }
+        catch (Exception e)
+        {
+            throw new ServletException(e);
+        }
+    }
+
+    /**
+     * <p>
+     * Internal helper method to retrieve the statistics of several providers.
+     * </p>
+     * 
+     * @param providers
+     *            the statistics providers
+     *            
+     * @return the statistics of every provider
+     * 
+     * @throws ServletException
+     *             if an error occurred
+     */
+    private Vector<StatisticGroup> getStatistics(List<IStatistics> providers) throws ServletException
+    {
+        Vector<StatisticGroup> stats = new Vector<StatisticGroup>(providers.size());
+        for (IStatistics provider : providers)
+        {
+            stats.add(getStatistics(provider));
+        }
+        return stats;
+    }
+
+    /**
+     * <p>
+     * Internal helper method to retrieve all statistics of a provider. Groups
+     * configured with a TTL are taken from the statistics cache.
+     * </p>
+     * 
+     * @param provider
+     *            the statistics provider, null if the class was not a statistic
+     *            
+     * @return the statistics of the provider
+     * 
+     * @throws ServletException
+     *             if the provider is not a statistic
+     */
+    private StatisticGroup getStatistics(IStatistics provider) throws ServletException
+    {
+        if (provider == null)
+        {
+            throw new ServletException("returned object is not a statistic");
+        }
+        return StatisticsCache.getInstance().getStats(provider);
+    }
+
+    /**
+     * <p>
+     * Internal helper method to retrieve a single statistic of a provider. The
+     * method is found in the accessor table of the provider class.
+     * </p>
+     * 
+     * @param provider
+     *            the statistics provider, null if the class was not a statistic
+     * @param MethodName
+     *            the specific statistical value to retrieve
+     *            
+     * @return Information for the specified statistic
+     * 
+     * @throws ServletException
+     *             if an error occurred
+     */
+    private Statistic getSingleStatistic(IStatistics provider, String MethodName)
+        throws ServletException  
+    {
+        if (provider == null)
         {
             throw new ServletException(
                     "Current class instance is not a statistic");
         }
 
-        StatsClassInstance = (IStatistics) ClassInstance;
+        Method ClassMethod = StatisticAccessors.forClass(provider.getClass()).getMethod(MethodName);
+        if (ClassMethod == null)
+        {
+            throw new ServletException(new NoSuchMethodException(MethodName));
+        }
 
+        Object returnedObject = null;
         try
         {
-            ClassMethod = StatsClass.getDeclaredMethod(MethodName,
-                    (Class<?>[]) null);
-            returnedObject = ClassMethod.invoke(StatsClassInstance,
-                    (Object[]) null);
+            if (provider instanceof GenericStatistics)
+            {
+                returnedObject = StatisticsCache.getInstance().getStatistic((GenericStatistics) provider, ClassMethod);
+            }
+            else
+            {
+                returnedObject = ClassMethod.invoke(provider, (Object[]) null);
+            }
         }
         catch (Exception e)
         {
@@ -0,0 +1,280 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.prometheus;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.configuration.Config;
+import com.interopbridges.scx.configuration.ConfigKey;
+import com.interopbridges.scx.jeestats.BeanSpyMetrics;
+import com.interopbridges.scx.jeestats.IStatistics;
+import com.interopbridges.scx.jeestats.StatisticsCache;
+import com.interopbridges.scx.jeestats.StatisticsRegistry;
+import com.interopbridges.scx.jmx.JmxStores;
+import com.interopbridges.scx.log.ILogger;
+import com.interopbridges.scx.log.LoggingFactory;
+import com.interopbridges.scx.servlet.MeteredResponse;
+
+/**
+ * <p>
+ * Servlet returning the statistics and the numeric MBean attributes in the
+ * Prometheus text exposition format, so that they can be scraped without
+ * translating the XML of the /Stats and /MBeans requests.
+ * </p>
+ *
+ * <p>
+ * The response holds all statistics returned by /Stats, the additional
+ * statistic groups listed in PROMETHEUS_STATS_GROUPS, and the attributes of
+ * the MBeans matching the ObjectName patterns listed in
+ * PROMETHEUS_MBEAN_PATTERNS. Both lists are separated by semicolons.
+ * </p>
+ *
+ */
+public class PrometheusExporter extends HttpServlet
+{
+    /**
+     * 
+     */
+    private static final long serialVersionUID = -3184466402391227316L;
+
+    /**
+     * <p>
+     * Separator of the entries of the configured lists.
+     * </p>
+     */
+    private static final String LIST_SEPARATOR = ";";
+
+    /**
+     * <p>
+     * Registry holding the statistics providers
+     * </p>
+     */
+    private StatisticsRegistry _registry;
+
+    /**
+     * <p>
+     * Statistics returned in addition to the ones returned by /Stats
+     * </p>
+     */
+    private List<IStatistics> _groups;
+
+    /**
+     * <p>
+     * ObjectName patterns of the MBeans to return
+     * </p>
+     */
+    private List<ObjectName> _patterns;
+
+    /**
+     * <p>
+     * Logger for the class.
+     * </p>
+     */
+    protected ILogger _logger;
+
+    /**
+     * Constructor of the object.
+     */
+    public PrometheusExporter()
+    {
+        super();
+        this._logger = LoggingFactory.getLogger();
+        this._registry = StatisticsRegistry.getInstance();
+        this._groups = Collections.emptyList();
+        this._patterns = Collections.emptyList();
+    }
+
+    /**
+     * <p>
+     * Initialization of the servlet, reads the configured statistic groups
+     * and MBean patterns. Entries that are not valid are logged and left out.
+     * </p>
+     *
+     * @throws ServletException if an error occurs
+     */
+    public void init() throws ServletException
+    {
+        List<IStatistics> groups = new ArrayList<IStatistics>();
+        for (String group : split(new Config(ConfigKey.PROMETHEUS_STATS_GROUPS).getStringValue("")))
+        {
+            try
+            {
+                IStatistics provider = this._registry.getProviderForGroup(group);
+                if (provider != null && !this._registry.getStatistics().contains(provider))
+                {
+                    groups.add(provider);
+                }
+            }
+            catch (Exception e)
+            {
+                this._logger.warning(new StringBuffer("Unknown statistic group: ").append(group).toString());
+            }
+        }
+
+        List<ObjectName> patterns = new ArrayList<ObjectName>();
+        for (String pattern : split(new Config(ConfigKey.PROMETHEUS_MBEAN_PATTERNS).getStringValue("")))
+        {
+            try
+            {
+                patterns.add(new ObjectName(pattern));
+            }
+            catch (MalformedObjectNameException e)
+            {
+                this._logger.warning(new StringBuffer("Invalid MBean pattern: ").append(pattern).toString());
+            }
+        }
+
+        this._groups = Collections.unmodifiableList(groups);
+        this._patterns = Collections.unmodifiableList(patterns);
+    }
+
+    /**
+     * <p>
+     * The doGet method of the servlet.
+     * </p>
+     *
+     * @param request
+     *            the request send by the client to the server
+     * @param response
+     *            the response send by the server to the client
+     * @throws ServletException
+     *             if an error occurred
+     * @throws IOException
+     *             if an error occurred
+     */
+    public void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException
+    {
+        BeanSpyMetrics metrics = BeanSpyMetrics.getInstance();
+        HttpServletResponse metered = MeteredResponse.wrap(response);
+        long start = metrics.requestStarted();
+        boolean failed = true;
+        try
+        {
+            writeMetrics(request, metered);
+            failed = false;
+        }
+        catch (ServletException e)
+        {
+            metrics.recordError(e.getRootCause());
+            throw e;
+        }
+        finally
+        {
+            metrics.requestFinished(BeanSpyMetrics.METRICS, start, MeteredResponse.getBytesWritten(metered), failed);
+        }
+    }
+
+    /**
+     * <p>
+     * Write the statistics followed by the MBean attributes.
+     * </p>
+     *
+     * @param request
+     *            the request send by the client to the server
+     * @param response
+     *            the response send by the server to the client
+     * @throws ServletException
+     *             if the request has a path
+     * @throws IOException
+     *             if an error occurred
+     */
+    private void writeMetrics(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException
+    {
+        String path = request.getPathInfo();
+        if (path != null && path.length() > 0 && !"/".equals(path))
+        {
+            this._logger.fine(new StringBuffer("Invalid servlet request for metrics: ").append(path).toString());
+            throw new ServletException(new ScxException(ScxExceptionCode.ERROR_INVALID_SERVLET_REQUEST_STATS));
+        }
+
+        response.setContentType(PrometheusWriter.CONTENT_TYPE);
+        Writer out = new OutputStreamWriter(response.getOutputStream(), "UTF-8");
+        PrometheusWriter writer = new PrometheusWriter(out);
+        StatisticsCache cache = StatisticsCache.getInstance();
+
+        for (IStatistics provider : this._registry.getStatistics())
+        {
+            writer.writeStatistics(cache.getStats(provider));
+        }
+        for (IStatistics provider : this._groups)
+        {
+            writer.writeStatistics(cache.getStats(provider));
+        }
+        if (!this._patterns.isEmpty())
+        {
+            writer.writeMBeans(JmxStores.getListOfJmxStoreAbstractions(), this._patterns);
+        }
+
+        out.flush();
+        out.close();
+    }
+
+    /**
+     * <p>
+     * The doPost method of the servlet.
+     * </p>
+     *
+     * @param request
+     *            the request send by the client to the server
+     * @param response
+     *            the response send by the server to the client
+     * @throws ServletException
+     *             always, POST is not supported
+     */
+    public void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException
+    {
+        throw new ServletException("Post method not supported");
+    }
+
+    /**
+     * <p>
+     * Split a configured list, leaving out empty entries.
+     * </p>
+     */
+    private static List<String> split(String value)
+    {
+        List<String> entries = new ArrayList<String>();
+        String[] pieces = value.split(LIST_SEPARATOR);
+        for (int i = 0; i < pieces.length; i++)
+        {
+            String entry = pieces[i].trim();
+            if (entry.length() > 0)
+            {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+}
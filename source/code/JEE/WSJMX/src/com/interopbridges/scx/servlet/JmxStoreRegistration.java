@@ -19,6 +19,7 @@ package com.interopbridges.scx.servlet;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
 
+import com.interopbridges.scx.jeestats.BeanSpyMetrics;
 import com.interopbridges.scx.jmx.JmxStores;
 import com.interopbridges.scx.log.ILogger;
 import com.interopbridges.scx.log.LoggingFactory;
@@ -45,6 +46,7 @@ public class JmxStoreRegistration implements ServletContextListener {
     public void contextDestroyed(ServletContextEvent arg0) {
         theLogger.info("contextDestroyed: clearing registered JMX stores");
         JmxStores.clearListOfJmxStores();
+        BeanSpyMetrics.getInstance().unregister();
     }
 
     /*
@@ -67,6 +69,8 @@ public class JmxStoreRegistration implements ServletContextListener {
                         MsVersion.BUILD_DATE).append(")").toString());
         theLogger.info("contextInitialized: connecting to JMX Stores");
         JmxStores.connectToJmxStores();
+        theLogger.info("contextInitialized: registering the BeanSpy metrics MBean");
+        BeanSpyMetrics.getInstance().register();
     }
 
 }
@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * <p>
+ * Response wrapper counting the bytes written to the output stream of the
+ * response, for the BeanSpy request metrics.
+ * </p>
+ *
+ */
+public class MeteredResponse extends HttpServletResponseWrapper
+{
+    /**
+     * <p>
+     * The counting stream, created on the first call to getOutputStream.
+     * </p>
+     */
+    private CountingOutputStream _output;
+
+    /**
+     * <p>
+     * Constructor
+     * </p>
+     *
+     * @param response
+     *            The response to count the bytes of
+     */
+    public MeteredResponse(HttpServletResponse response)
+    {
+        super(response);
+    }
+
+    /**
+     * <p>
+     * Wrap a response to count its bytes.
+     * </p>
+     *
+     * @param response
+     *            The response to count the bytes of, may be null
+     *
+     * @return The wrapped response, null if the response is null
+     */
+    public static HttpServletResponse wrap(HttpServletResponse response)
+    {
+        return response == null ? null : new MeteredResponse(response);
+    }
+
+    /**
+     * <p>
+     * Get the number of bytes written to a response returned by wrap.
+     * </p>
+     *
+     * @param response
+     *            The wrapped response, may be null
+     *
+     * @return The number of bytes written so far, 0 if the response was not
+     *         wrapped
+     */
+    public static long getBytesWritten(HttpServletResponse response)
+    {
+        return response instanceof MeteredResponse ? ((MeteredResponse) response).getBytesWritten() : 0;
+    }
+
+    /**
+     * <p>
+     * Get the output stream of the response, counting the bytes written.
+     * </p>
+     */
+    public ServletOutputStream getOutputStream() throws IOException
+    {
+        if (this._output == null)
+        {
+            this._output = new CountingOutputStream(super.getOutputStream());
+        }
+        return this._output;
+    }
+
+    /**
+     * <p>
+     * Get the number of bytes written to the output stream so far.
+     * </p>
+     */
+    public long getBytesWritten()
+    {
+        return this._output == null ? 0 : this._output._count;
+    }
+
+    /**
+     * <p>
+     * Stream counting the bytes written to the stream it wraps.
+     * </p>
+     */
+    private static final class CountingOutputStream extends ServletOutputStream
+    {
+        private final ServletOutputStream _out;
+        private long _count;
+
+        CountingOutputStream(ServletOutputStream out)
+        {
+            this._out = out;
+        }
+
+        public void write(int b) throws IOException
+        {
+            this._out.write(b);
+            this._count++;
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            this._out.write(b, off, len);
+            this._count += len;
+        }
+
+        public void flush() throws IOException
+        {
+            this._out.flush();
+        }
+
+        public void close() throws IOException
+        {
+            this._out.close();
+        }
+    }
+}
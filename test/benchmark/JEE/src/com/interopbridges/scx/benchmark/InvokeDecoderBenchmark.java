@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.benchmark;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.xml.InvokeDecoder;
+
+/**
+ * <p>
+ * Benchmark of InvokeDecoder.DecodeInput, the parsing of the body of an
+ * /Invoke request.
+ * </p>
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokeDecoderBenchmark
+{
+    /**
+     * <p>
+     * Body of an /Invoke request calling a method with several parameters.
+     * </p>
+     */
+    private static final String BODY = new StringBuffer()
+        .append("<Invoke>")
+        .append("<BeanObjectName>").append(MBeanRegistry.INVOKE_MBEAN).append("</BeanObjectName>")
+        .append("<Method name=\"VoidStringMethod\">")
+        .append("<Param name=\"Param1\" type=\"string\">abcdefg</Param>")
+        .append("<Param name=\"Param2\" type=\"int\">5</Param>")
+        .append("<Param name=\"Param3\" type=\"long\">1234567890123</Param>")
+        .append("<Param name=\"Param4\" type=\"boolean\">true</Param>")
+        .append("</Method>")
+        .append("</Invoke>")
+        .toString();
+
+    /**
+     * <p>
+     * Read and decode the request body.
+     * </p>
+     *
+     * @return the decoder holding the decoded request
+     *
+     * @throws ScxException
+     *             If the body could not be decoded
+     */
+    @Benchmark
+    public InvokeDecoder decode() throws ScxException
+    {
+        InvokeDecoder decoder = new InvokeDecoder(new BufferedReader(new StringReader(BODY)), BODY.length());
+        decoder.DecodeInput();
+        return decoder;
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.benchmark;
+
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.interopbridges.scx.configuration.JMXFilterParameters;
+import com.interopbridges.scx.jmx.JdkJMXAbstraction;
+
+/**
+ * <p>
+ * Benchmarks of the JMXFilterParameters exclusion matching done by the
+ * MBeanTransformer for every MBean it renders.
+ * </p>
+ *
+ * <p>
+ * The exclusions mix a pattern over a whole MBean type, exact ObjectNames and
+ * patterns of other domains and stores, as a tuned exclusions file would.
+ * Each invocation matches the next MBean of the registry, so the score is the
+ * cost of the exclusions of a single MBean.
+ * </p>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JMXFilterBenchmark
+{
+    /**
+     * <p>
+     * Exclusions loaded for the benchmark.
+     * </p>
+     */
+    private static final String EXCLUSIONS =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+        "<JMXQuery>" +
+            "<Exclude>" +
+                "<JMXStore Name=\"com.interopbridges.scx.jmx.JBossJMXAbstraction\">" +
+                    "<MBeanObjectName Name=\"jboss.system:*\">" +
+                        "<Attribute>*</Attribute>" +
+                    "</MBeanObjectName>" +
+                "</JMXStore>" +
+                "<JMXStore Name=\"com.interopbridges.scx.jmx.JdkJMXAbstraction\">" +
+                    "<MBeanObjectName Name=\"Catalina:*\">" +
+                        "<Attribute>entropy</Attribute>" +
+                    "</MBeanObjectName>" +
+                    "<MBeanObjectName Name=\"" + MBeanRegistry.DOMAIN + ":type=ComplexType,*\">" +
+                        "<Attribute>ComplexClassArray</Attribute>" +
+                    "</MBeanObjectName>" +
+                    "<MBeanObjectName Name=\"" + MBeanRegistry.DOMAIN + ":type=BasicTypeArrays,index=1\">" +
+                        "<Attribute>*</Attribute>" +
+                    "</MBeanObjectName>" +
+                    "<MBeanObjectName Name=\"" + MBeanRegistry.DOMAIN + ":type=BasicTypeArrays,index=3\">" +
+                        "<Attribute>CharLetter</Attribute>" +
+                        "<Attribute>Byte</Attribute>" +
+                    "</MBeanObjectName>" +
+                "</JMXStore>" +
+                "<JMXStore Name=\"*\">" +
+                    "<MBeanObjectName Name=\"*:type=Security,*\">" +
+                        "<Attribute>Password</Attribute>" +
+                    "</MBeanObjectName>" +
+                "</JMXStore>" +
+            "</Exclude>" +
+        "</JMXQuery>";
+
+    /**
+     * <p>
+     * The exclusions under test.
+     * </p>
+     */
+    private JMXFilterParameters _filter;
+
+    /**
+     * <p>
+     * The MBean registry.
+     * </p>
+     */
+    private MBeanRegistry _registry;
+
+    /**
+     * <p>
+     * Index of the next MBean to match.
+     * </p>
+     */
+    private int _next;
+
+    /**
+     * <p>
+     * Load the exclusions.
+     * </p>
+     *
+     * @param registry
+     *            The MBean registry
+     *
+     * @throws Exception
+     *             If the exclusions could not be parsed
+     */
+    @Setup(Level.Trial)
+    public void setup(MBeanRegistry registry) throws Exception
+    {
+        _registry = registry;
+        _filter = JMXFilterParameters.GetInstance();
+        _filter.clear();
+        _filter.loadMap(_filter.loadConfigFromData(EXCLUSIONS));
+    }
+
+    /**
+     * <p>
+     * Remove the exclusions loaded for the benchmark.
+     * </p>
+     */
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+        _filter.clear();
+    }
+
+    /**
+     * <p>
+     * Resolve the exclusions of the next MBean as the MBeanTransformer does:
+     * the exclusions of the store, then the ones matching the MBean.
+     * </p>
+     *
+     * @return the excluded attributes of the MBean
+     */
+    @Benchmark
+    public Hashtable<String, String> matchExclusions()
+    {
+        Hashtable<String, ArrayList<String>> exclusions =
+            _filter.GetJMXStoreExclusions(JdkJMXAbstraction.class.getName());
+        if (_next == _registry.getNames().length)
+        {
+            _next = 0;
+        }
+        return _filter.toHashTable(_filter.GetMBeanExclusions(exclusions, _registry.getNames()[_next++]));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.benchmark;
+
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectInstance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.mbeans.MBeanGetter;
+
+/**
+ * <p>
+ * Benchmarks of MBeanGetter.getMBeans, the query that starts every /MBeans
+ * request, against the registries of the MBeanRegistry.
+ * </p>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MBeanGetterBenchmark
+{
+    /**
+     * <p>
+     * The getter under test.
+     * </p>
+     */
+    private MBeanGetter _getter;
+
+    /**
+     * <p>
+     * Query matching a single generated MBean.
+     * </p>
+     */
+    private String _singleQuery;
+
+    /**
+     * <p>
+     * Create the getter over the stores of the registry.
+     * </p>
+     *
+     * @param registry
+     *            The MBean registry
+     */
+    @Setup(Level.Trial)
+    public void setup(MBeanRegistry registry)
+    {
+        _getter = new MBeanGetter(registry.getStores());
+        _singleQuery = registry.getNames()[registry.getNames().length / 2].toString();
+    }
+
+    /**
+     * <p>
+     * Query every generated MBean.
+     * </p>
+     *
+     * @return the matching MBeans
+     *
+     * @throws ScxException
+     *             If the query failed
+     */
+    @Benchmark
+    public HashMap<IJMX, Set<ObjectInstance>> queryDomain() throws ScxException
+    {
+        return _getter.getMBeans(MBeanRegistry.QUERY);
+    }
+
+    /**
+     * <p>
+     * Query a single MBean by its full ObjectName.
+     * </p>
+     *
+     * <p>
+     * The MockMBeanServer answers a query with every MBean of the queried
+     * domain, so this measures the handling of the query itself (parsing,
+     * store health, the ObjectName cache) rather than the selectivity of an
+     * MBeanServer.
+     * </p>
+     *
+     * @return the matching MBean
+     *
+     * @throws ScxException
+     *             If the query failed
+     */
+    @Benchmark
+    public HashMap<IJMX, Set<ObjectInstance>> querySingle() throws ScxException
+    {
+        return _getter.getMBeans(_singleQuery);
+    }
+}
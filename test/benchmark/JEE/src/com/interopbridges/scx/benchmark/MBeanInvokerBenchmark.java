@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.benchmark;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.mbeans.MBeanGetter;
+import com.interopbridges.scx.mbeans.MBeanInvoker;
+import com.interopbridges.scx.mbeans.MBeanMethodParameter;
+
+/**
+ * <p>
+ * Benchmarks of MBeanInvoker.transformMBeanCall, the resolution, validation
+ * and invocation of an MBean method and the rendering of its result, against
+ * the registries of the MBeanRegistry.
+ * </p>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MBeanInvokerBenchmark
+{
+    /**
+     * <p>
+     * The getter resolving the MBean to invoke.
+     * </p>
+     */
+    private MBeanGetter _getter;
+
+    /**
+     * <p>
+     * Parameters of the method taking a String.
+     * </p>
+     */
+    private ArrayList<MBeanMethodParameter> _stringParams;
+
+    /**
+     * <p>
+     * Create the getter over the stores of the registry.
+     * </p>
+     *
+     * @param registry
+     *            The MBean registry
+     */
+    @Setup(Level.Trial)
+    public void setup(MBeanRegistry registry)
+    {
+        _getter = new MBeanGetter(registry.getStores());
+        _stringParams = new ArrayList<MBeanMethodParameter>();
+        _stringParams.add(new MBeanMethodParameter("name", "String", "String"));
+    }
+
+    /**
+     * <p>
+     * Invoke a method taking a String and returning nothing.
+     * </p>
+     *
+     * @return the InvokeResponse document
+     *
+     * @throws ScxException
+     *             If the call could not be rendered
+     */
+    @Benchmark
+    public StringWriter invokeVoid() throws ScxException
+    {
+        return new MBeanInvoker(_getter, MBeanRegistry.INVOKE_MBEAN, "VoidStringMethod", _stringParams)
+            .transformMBeanCall("5", "5000");
+    }
+
+    /**
+     * <p>
+     * Invoke a method without parameters returning a String.
+     * </p>
+     *
+     * @return the InvokeResponse document
+     *
+     * @throws ScxException
+     *             If the call could not be rendered
+     */
+    @Benchmark
+    public StringWriter invokeReturningValue() throws ScxException
+    {
+        return new MBeanInvoker(_getter, MBeanRegistry.INVOKE_MBEAN, "StringVoidMethod",
+                new ArrayList<MBeanMethodParameter>()).transformMBeanCall("5", "5000");
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.benchmark;
+
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JdkJMXAbstraction;
+import com.interopbridges.scx.jmx.JmxStores;
+import com.interopbridges.scx.mbeanserver.MockMBeanServer;
+import com.interopbridges.scx.webservices.FauxMBeanGenerator;
+
+/**
+ * <p>
+ * Synthetic MBean registry shared by the benchmarks. The registry is the
+ * MockMBeanServer, reached through a JdkJMXAbstraction registered as the only
+ * JMX store, holding the standard set of fake MBeans of the
+ * FauxMBeanGenerator plus mbeanCount MBeans generated by SyntheticMBeans.
+ * </p>
+ *
+ */
+@State(Scope.Benchmark)
+public class MBeanRegistry
+{
+    /**
+     * <p>
+     * Domain of the generated MBeans.
+     * </p>
+     */
+    public static final String DOMAIN = SyntheticMBeans.DOMAIN;
+
+    /**
+     * <p>
+     * JMX query matching every generated MBean.
+     * </p>
+     */
+    public static final String QUERY = SyntheticMBeans.QUERY;
+
+    /**
+     * <p>
+     * ObjectName of the MBean used by the Invoke benchmarks.
+     * </p>
+     */
+    public static final String INVOKE_MBEAN = SyntheticMBeans.INVOKE_MBEAN;
+
+    /**
+     * <p>
+     * Number of generated MBeans in the registry.
+     * </p>
+     */
+    @Param({ "1000", "10000", "100000" })
+    public int mbeanCount;
+
+    /**
+     * <p>
+     * The JMX store holding the registry.
+     * </p>
+     */
+    private IJMX _store;
+
+    /**
+     * <p>
+     * ObjectNames of the generated MBeans, in registration order.
+     * </p>
+     */
+    private ObjectName[] _names;
+
+    /**
+     * <p>
+     * Build the registry, once per benchmark trial.
+     * </p>
+     *
+     * @throws Exception
+     *             If an MBean could not be registered
+     */
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        JmxStores.clearListOfJmxStores();
+        MockMBeanServer.Reset_TestMBeanServer();
+        _store = new JdkJMXAbstraction(MockMBeanServer.getInstance());
+        JmxStores.addStoreToJmxStores(_store);
+
+        new FauxMBeanGenerator(_store).run();
+
+        _names = SyntheticMBeans.register(_store, mbeanCount);
+        SyntheticMBeans.registerInvokeMBean(_store);
+    }
+
+    /**
+     * <p>
+     * Release the registry at the end of the trial.
+     * </p>
+     */
+    @TearDown(Level.Trial)
+    public void teardown()
+    {
+        MockMBeanServer.Reset_TestMBeanServer();
+        JmxStores.clearListOfJmxStores();
+    }
+
+    /**
+     * <p>
+     * The JMX stores to query, as the servlets get them from JmxStores.
+     * </p>
+     *
+     * @return the list of JMX stores, holding only the registry
+     */
+    public List<IJMX> getStores()
+    {
+        return JmxStores.getListOfJmxStoreAbstractions();
+    }
+
+    /**
+     * <p>
+     * The ObjectNames of the generated MBeans.
+     * </p>
+     *
+     * @return the ObjectNames in registration order
+     */
+    public ObjectName[] getNames()
+    {
+        return _names;
+    }
+}
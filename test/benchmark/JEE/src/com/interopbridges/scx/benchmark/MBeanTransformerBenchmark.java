@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.benchmark;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectInstance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.configuration.JMXFilterParameters;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.mbeans.MBeanGetter;
+import com.interopbridges.scx.util.JmxConstant;
+import com.interopbridges.scx.xml.MBeanTransformer;
+
+/**
+ * <p>
+ * Benchmarks of MBeanTransformer.transformMultipleMBeans, the rendering of the
+ * /MBeans response, for every generated MBean of the MBeanRegistry.
+ * </p>
+ *
+ * <p>
+ * The larger registries render past the absolute maximum XML size, so the
+ * documents are requested with Truncate=true and end in a Truncated element
+ * instead of failing. The MBeans are queried once per trial so that only the
+ * transform is measured.
+ * </p>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MBeanTransformerBenchmark
+{
+    /**
+     * <p>
+     * The MBeans to transform.
+     * </p>
+     */
+    private HashMap<IJMX, Set<ObjectInstance>> _mbeans;
+
+    /**
+     * <p>
+     * Request parameters of the default query.
+     * </p>
+     */
+    private HashMap<String, String[]> _params;
+
+    /**
+     * <p>
+     * Request parameters limiting the recursion depth to the MBean
+     * properties.
+     * </p>
+     */
+    private HashMap<String, String[]> _shallowParams;
+
+    /**
+     * <p>
+     * Query the MBeans to transform.
+     * </p>
+     *
+     * @param registry
+     *            The MBean registry
+     *
+     * @throws ScxException
+     *             If the query failed
+     */
+    @Setup(Level.Trial)
+    public void setup(MBeanRegistry registry) throws ScxException
+    {
+        JMXFilterParameters.GetInstance().clear();
+        _mbeans = new MBeanGetter(registry.getStores()).getMBeans(MBeanRegistry.QUERY);
+
+        _params = new HashMap<String, String[]>();
+        _params.put(JmxConstant.STR_TRUNCATE, new String[] { "true" });
+
+        _shallowParams = new HashMap<String, String[]>(_params);
+        _shallowParams.put(JmxConstant.STR_MAXDEPTH, new String[] { "0" });
+    }
+
+    /**
+     * <p>
+     * Transform the MBeans with the default depth and property limits.
+     * </p>
+     *
+     * @return the XML document
+     *
+     * @throws ScxException
+     *             If the transform failed
+     */
+    @Benchmark
+    public StringWriter transform() throws ScxException
+    {
+        return new MBeanTransformer().transformMultipleMBeans(_mbeans, _params);
+    }
+
+    /**
+     * <p>
+     * Transform the MBeans without descending into complex properties.
+     * </p>
+     *
+     * @return the XML document
+     *
+     * @throws ScxException
+     *             If the transform failed
+     */
+    @Benchmark
+    public StringWriter transformShallow() throws ScxException
+    {
+        return new MBeanTransformer().transformMultipleMBeans(_mbeans, _shallowParams);
+    }
+}
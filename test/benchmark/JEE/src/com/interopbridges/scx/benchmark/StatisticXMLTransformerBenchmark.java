@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.benchmark;
+
+import java.io.StringWriter;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.jeestats.IStatistics;
+import com.interopbridges.scx.jeestats.StatisticGroup;
+import com.interopbridges.scx.jeestats.StatisticsRegistry;
+import com.interopbridges.scx.xml.StatisticXMLTransformer;
+
+/**
+ * <p>
+ * Benchmarks of StatisticXMLTransformer, the rendering of the /Stats
+ * response.
+ * </p>
+ *
+ * <p>
+ * The statistics of every registered provider are collected once per trial,
+ * so that only the transform is measured and not the MXBeans read by the
+ * providers.
+ * </p>
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticXMLTransformerBenchmark
+{
+    /**
+     * <p>
+     * Statistics of every registered provider.
+     * </p>
+     */
+    private Vector<StatisticGroup> _groups;
+
+    /**
+     * <p>
+     * Collect the statistics to transform.
+     * </p>
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        _groups = new Vector<StatisticGroup>();
+        for (IStatistics provider : StatisticsRegistry.getInstance().getStatistics())
+        {
+            _groups.add(provider.getStats());
+        }
+    }
+
+    /**
+     * <p>
+     * Transform the statistics of every group, as /Stats does.
+     * </p>
+     *
+     * @return the XML document
+     *
+     * @throws ScxException
+     *             If the transform failed
+     */
+    @Benchmark
+    public StringWriter transformAll() throws ScxException
+    {
+        return new StatisticXMLTransformer().transformAllStatistics("Stats", _groups);
+    }
+
+    /**
+     * <p>
+     * Transform the statistics of a single group, as /Stats/&lt;Group&gt;
+     * does.
+     * </p>
+     *
+     * @return the XML document
+     *
+     * @throws ScxException
+     *             If the transform failed
+     */
+    @Benchmark
+    public StringWriter transformGroup() throws ScxException
+    {
+        return new StatisticXMLTransformer().transformGroupStatistics("Stats", _groups.get(0));
+    }
+}
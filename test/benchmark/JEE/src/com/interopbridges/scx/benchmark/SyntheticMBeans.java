@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.benchmark;
+
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import com.interopbridges.scx.jmx.FakeJmxGenerator;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.mbeans.BasicTypeArraysMBean;
+import com.interopbridges.scx.mbeans.ComplexTypeMBean;
+import com.interopbridges.scx.mbeans.DummyInvokeMBean;
+
+/**
+ * <p>
+ * Populates a JMX store with synthetic MBeans for the benchmarks and the load
+ * harness.
+ * </p>
+ *
+ * <p>
+ * The generated MBeans alternate between the ComplexType MBean (nested
+ * ComplexClass properties and arrays of them) and the BasicTypeArrays MBean
+ * (arrays of every primitive type), which are the two most expensive shapes
+ * for the XML transform. They are wrapped in a StandardMBean, the
+ * MockMBeanServer only describes DynamicMBeans. The DummyInvokeMBean is
+ * registered in a domain of its own so that an Invoke query matches exactly
+ * one MBean while still being resolved against the full registry.
+ * </p>
+ *
+ */
+public final class SyntheticMBeans
+{
+    /**
+     * <p>
+     * Domain of the generated MBeans.
+     * </p>
+     */
+    public static final String DOMAIN = "com.interopbridges.scx.benchmark";
+
+    /**
+     * <p>
+     * JMX query matching every generated MBean.
+     * </p>
+     */
+    public static final String QUERY = DOMAIN + ":*";
+
+    /**
+     * <p>
+     * ObjectName of the MBean used by the Invoke requests.
+     * </p>
+     */
+    public static final String INVOKE_MBEAN = DOMAIN + ".invoke:name=DummyInvokeMBean";
+
+    /**
+     * <p>
+     * Not instantiated, only static helpers.
+     * </p>
+     */
+    private SyntheticMBeans()
+    {
+    }
+
+    /**
+     * <p>
+     * Register count generated MBeans with the store.
+     * </p>
+     *
+     * @param store
+     *            The JMX store to populate
+     * @param count
+     *            The number of MBeans to generate
+     *
+     * @return the ObjectNames of the generated MBeans, in registration order
+     *
+     * @throws Exception
+     *             If an MBean could not be registered
+     */
+    public static ObjectName[] register(IJMX store, int count) throws Exception
+    {
+        ObjectName[] names = new ObjectName[count];
+        for (int i = 0; i < count; i++)
+        {
+            if (i % 2 == 0)
+            {
+                names[i] = new ObjectName(DOMAIN + ":type=ComplexType,index=" + i);
+                store.registerMBean(new StandardMBean(FakeJmxGenerator.getComplexTypeMBean(),
+                        ComplexTypeMBean.class), names[i]);
+            }
+            else
+            {
+                names[i] = new ObjectName(DOMAIN + ":type=BasicTypeArrays,index=" + i);
+                store.registerMBean(new StandardMBean(FakeJmxGenerator.getBasicTypeArraysMBean(),
+                        BasicTypeArraysMBean.class), names[i]);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * <p>
+     * Register the DummyInvokeMBean as INVOKE_MBEAN with the store.
+     * </p>
+     *
+     * @param store
+     *            The JMX store to populate
+     *
+     * @throws Exception
+     *             If the MBean could not be registered
+     */
+    public static void registerInvokeMBean(IJMX store) throws Exception
+    {
+        store.registerMBean(new DummyInvokeMBean(), new ObjectName(INVOKE_MBEAN));
+    }
+}
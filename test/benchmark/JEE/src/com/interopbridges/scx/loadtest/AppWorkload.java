@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Stand-in for the application hosting BeanSpy: threads repeating a fixed
+ * unit of CPU bound work. Comparing the rate of work done with and without
+ * collectors shows how much CPU the requests to BeanSpy take away from the
+ * application.
+ * </p>
+ *
+ */
+public class AppWorkload
+{
+    /**
+     * <p>
+     * Number of iterations in a unit of work.
+     * </p>
+     */
+    private static final int UNIT_ITERATIONS = 10000;
+
+    /**
+     * <p>
+     * Units of work done by all the threads.
+     * </p>
+     */
+    private final AtomicLong _units = new AtomicLong();
+
+    /**
+     * <p>
+     * The application threads.
+     * </p>
+     */
+    private final Thread[] _threads;
+
+    /**
+     * <p>
+     * Set to stop the application threads.
+     * </p>
+     */
+    private volatile boolean _stopped;
+
+    /**
+     * <p>
+     * Result of the work, published so that it cannot be optimized away.
+     * </p>
+     */
+    volatile double _sink;
+
+    /**
+     * <p>
+     * Constructor.
+     * </p>
+     *
+     * @param threads
+     *            The number of application threads
+     */
+    public AppWorkload(int threads)
+    {
+        _threads = new Thread[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            _threads[i] = new Thread("AppWorkload-" + i)
+            {
+                public void run()
+                {
+                    double x = 1;
+                    while (!_stopped)
+                    {
+                        for (int j = 0; j < UNIT_ITERATIONS; j++)
+                        {
+                            x = Math.sqrt(x + j);
+                        }
+                        _units.incrementAndGet();
+                    }
+                    _sink = x;
+                }
+            };
+            _threads[i].setDaemon(true);
+        }
+    }
+
+    /**
+     * <p>
+     * Start the application threads.
+     * </p>
+     */
+    public void start()
+    {
+        for (int i = 0; i < _threads.length; i++)
+        {
+            _threads[i].start();
+        }
+    }
+
+    /**
+     * <p>
+     * Stop the application threads.
+     * </p>
+     *
+     * @throws InterruptedException
+     *             If interrupted while waiting for the threads to stop
+     */
+    public void stop() throws InterruptedException
+    {
+        _stopped = true;
+        for (int i = 0; i < _threads.length; i++)
+        {
+            _threads[i].join();
+        }
+    }
+
+    /**
+     * <p>
+     * The units of work done so far by all the threads.
+     * </p>
+     *
+     * @return the number of units of work
+     */
+    public long getUnits()
+    {
+        return _units.get();
+    }
+}
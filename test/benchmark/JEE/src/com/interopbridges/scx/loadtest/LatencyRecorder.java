@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Records the latencies of the requests to an endpoint and reports their
+ * percentiles.
+ * </p>
+ *
+ * <p>
+ * Every sample is kept, so the percentiles are exact. A run at a few
+ * thousand requests per second for a few minutes stays in the megabytes.
+ * </p>
+ *
+ */
+public class LatencyRecorder
+{
+    /**
+     * <p>
+     * The recorded latencies, in nanoseconds.
+     * </p>
+     */
+    private long[] _samples = new long[1024];
+
+    /**
+     * <p>
+     * Number of recorded latencies.
+     * </p>
+     */
+    private int _count;
+
+    /**
+     * <p>
+     * Number of recorded requests that failed.
+     * </p>
+     */
+    private int _errors;
+
+    /**
+     * <p>
+     * Record the latency of a request.
+     * </p>
+     *
+     * @param latency
+     *            The latency of the request, in nanoseconds
+     * @param failed
+     *            true if the request failed
+     */
+    public synchronized void record(long latency, boolean failed)
+    {
+        if (_count == _samples.length)
+        {
+            long[] samples = new long[_count * 2];
+            System.arraycopy(_samples, 0, samples, 0, _count);
+            _samples = samples;
+        }
+        _samples[_count++] = latency;
+        if (failed)
+        {
+            _errors++;
+        }
+    }
+
+    /**
+     * <p>
+     * The number of recorded requests.
+     * </p>
+     *
+     * @return the number of recorded requests
+     */
+    public synchronized int getCount()
+    {
+        return _count;
+    }
+
+    /**
+     * <p>
+     * The number of recorded requests that failed.
+     * </p>
+     *
+     * @return the number of failed requests
+     */
+    public synchronized int getErrors()
+    {
+        return _errors;
+    }
+
+    /**
+     * <p>
+     * The latencies at the given percentiles.
+     * </p>
+     *
+     * @param percentiles
+     *            The percentiles, between 0 and 100
+     *
+     * @return the latency at each percentile in nanoseconds, 0 if nothing was
+     *         recorded
+     */
+    public synchronized long[] getPercentiles(double[] percentiles)
+    {
+        long[] result = new long[percentiles.length];
+        if (_count == 0)
+        {
+            return result;
+        }
+
+        long[] sorted = new long[_count];
+        System.arraycopy(_samples, 0, sorted, 0, _count);
+        Arrays.sort(sorted);
+        for (int i = 0; i < percentiles.length; i++)
+        {
+            int rank = (int) Math.ceil(percentiles[i] / 100 * _count) - 1;
+            result[i] = sorted[Math.max(0, Math.min(_count - 1, rank))];
+        }
+        return result;
+    }
+}
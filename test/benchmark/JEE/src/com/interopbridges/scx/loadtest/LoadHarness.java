@@ -0,0 +1,580 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.StringTokenizer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.MBeanServerFactory;
+import javax.servlet.ServletException;
+
+import com.interopbridges.scx.benchmark.SyntheticMBeans;
+import com.interopbridges.scx.beanspy.BeanSpy;
+import com.interopbridges.scx.beanspy.MockHttpServletResponse;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JdkJMXAbstraction;
+import com.interopbridges.scx.jmx.JmxStores;
+import com.interopbridges.scx.mbeanserver.MockMBeanServer;
+import com.interopbridges.scx.mxbeanextender.MXBeanExtender;
+import com.interopbridges.scx.util.JmxConstant;
+
+/**
+ * <p>
+ * Load harness driving the BeanSpy and MXBeanExtender servlets with
+ * concurrent collectors, to find how many collectors a node can serve before
+ * BeanSpy hurts the application.
+ * </p>
+ *
+ * <p>
+ * Requests to /MBeans, /Stats and /Invoke are issued in a configurable mix at
+ * a fixed arrival rate and handed to a pool of collector threads calling the
+ * servlets directly, as a servlet container would. The latency of a request
+ * is measured from the time it was scheduled to be sent, not from the time a
+ * collector picked it up, so the time requests wait behind slow ones is
+ * counted (coordinated omission). The service time, from pick up to
+ * completion, is reported next to it.
+ * </p>
+ *
+ * <p>
+ * The registry is the MockMBeanServer populated by SyntheticMBeans, plus any
+ * number of slow stores: small registries behind a SlowJmx delaying every
+ * call. While the load runs, application threads repeat a fixed unit of CPU
+ * work; the drop of their rate against a baseline taken without load is the
+ * CPU stolen from the application.
+ * </p>
+ *
+ * <p>
+ * Settings are given as key=value arguments:
+ * </p>
+ *
+ * <pre>
+ * rate=100                    requests per second
+ * duration=30                 seconds of load
+ * baseline=5                  seconds of application work without load
+ * collectors=8                concurrent collector threads
+ * mix=MBeans=60,Stats=30,Invoke=10
+ * mbeans=10000                generated MBeans in the registry
+ * query=JMXQuery=com.interopbridges.scx.benchmark:*&amp;Limit=100
+ * slowStores=1                number of slow stores
+ * storeLatency=20             milliseconds added to every slow store call
+ * slowStoreMBeans=100         generated MBeans in each slow store
+ * appThreads=&lt;processors&gt;   application threads
+ * seed=1                      seed of the request mix
+ * </pre>
+ *
+ */
+public class LoadHarness
+{
+    /**
+     * <p>
+     * Names of the endpoints, as used in the mix setting.
+     * </p>
+     */
+    private static final String[] ENDPOINTS = { "MBeans", "Stats", "Invoke" };
+
+    /**
+     * <p>
+     * Index of the /MBeans endpoint.
+     * </p>
+     */
+    private static final int MBEANS = 0;
+
+    /**
+     * <p>
+     * Index of the /Stats endpoint.
+     * </p>
+     */
+    private static final int STATS = 1;
+
+    /**
+     * <p>
+     * Index of the /Invoke endpoint.
+     * </p>
+     */
+    private static final int INVOKE = 2;
+
+    /**
+     * <p>
+     * Percentiles reported for every endpoint.
+     * </p>
+     */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 100 };
+
+    /**
+     * <p>
+     * URL of the servlets, as seen by the servlets.
+     * </p>
+     */
+    private static final String BASE_URL = "http://localhost:8080/BeanSpy";
+
+    /**
+     * <p>
+     * Body of the /Invoke requests.
+     * </p>
+     */
+    private static final String INVOKE_BODY = new StringBuffer()
+        .append("<Invoke>")
+        .append("<BeanObjectName>").append(SyntheticMBeans.INVOKE_MBEAN).append("</BeanObjectName>")
+        .append("<Method name=\"StringVoidMethod\"></Method>")
+        .append("</Invoke>")
+        .toString();
+
+    /**
+     * <p>
+     * Marker of a failed invocation in an InvokeResponse.
+     * </p>
+     */
+    private static final String INVOKE_ERROR = new StringBuffer("<").append(JmxConstant.STR_RESULT)
+        .append(">").append(JmxConstant.STR_ERROR).toString();
+
+    /*
+     * The settings of the run, see the class description.
+     */
+    private final int _rate;
+    private final int _duration;
+    private final int _baseline;
+    private final int _collectors;
+    private final int[] _mix;
+    private final int _mbeanCount;
+    private final String[][] _query;
+    private final int _slowStores;
+    private final long _storeLatency;
+    private final int _slowStoreMBeans;
+    private final int _appThreads;
+    private final long _seed;
+
+    /**
+     * <p>
+     * Latency of the requests to each endpoint, from the time they were
+     * scheduled.
+     * </p>
+     */
+    private final LatencyRecorder[] _latency = new LatencyRecorder[ENDPOINTS.length];
+
+    /**
+     * <p>
+     * Service time of the requests to each endpoint, from the time a
+     * collector picked them up.
+     * </p>
+     */
+    private final LatencyRecorder[] _service = new LatencyRecorder[ENDPOINTS.length];
+
+    /**
+     * <p>
+     * The collector threads.
+     * </p>
+     */
+    private final List<Thread> _collectorThreads = new ArrayList<Thread>();
+
+    /*
+     * The servlets under load, shared by the collectors as in a container.
+     */
+    private BeanSpy _beanSpy;
+    private MXBeanExtender _extender;
+
+    /**
+     * <p>
+     * Constructor.
+     * </p>
+     *
+     * @param settings
+     *            The settings of the run, defaults are used for the missing
+     *            ones
+     */
+    public LoadHarness(Properties settings)
+    {
+        _rate = Integer.parseInt(settings.getProperty("rate", "100"));
+        _duration = Integer.parseInt(settings.getProperty("duration", "30"));
+        _baseline = Integer.parseInt(settings.getProperty("baseline", "5"));
+        _collectors = Integer.parseInt(settings.getProperty("collectors", "8"));
+        _mix = parseMix(settings.getProperty("mix", "MBeans=60,Stats=30,Invoke=10"));
+        _mbeanCount = Integer.parseInt(settings.getProperty("mbeans", "10000"));
+        _query = parseQuery(settings.getProperty("query",
+                JmxConstant.STR_JMXQUERY + "=" + SyntheticMBeans.QUERY + "&" + JmxConstant.STR_LIMIT + "=100"));
+        _slowStores = Integer.parseInt(settings.getProperty("slowStores", "1"));
+        _storeLatency = Long.parseLong(settings.getProperty("storeLatency", "20"));
+        _slowStoreMBeans = Integer.parseInt(settings.getProperty("slowStoreMBeans", "100"));
+        _appThreads = Integer.parseInt(settings.getProperty("appThreads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        _seed = Long.parseLong(settings.getProperty("seed", "1"));
+
+        for (int i = 0; i < ENDPOINTS.length; i++)
+        {
+            _latency[i] = new LatencyRecorder();
+            _service[i] = new LatencyRecorder();
+        }
+    }
+
+    /**
+     * <p>
+     * Entry point, runs the harness with the key=value settings given as
+     * arguments and prints the report.
+     * </p>
+     *
+     * @param args
+     *            The settings of the run
+     *
+     * @throws Exception
+     *             If the registry could not be built
+     */
+    public static void main(String[] args) throws Exception
+    {
+        Properties settings = new Properties();
+        for (int i = 0; i < args.length; i++)
+        {
+            int separator = args[i].indexOf('=');
+            if (separator <= 0)
+            {
+                throw new IllegalArgumentException("Settings are given as key=value: " + args[i]);
+            }
+            settings.setProperty(args[i].substring(0, separator), args[i].substring(separator + 1));
+        }
+        new LoadHarness(settings).run(System.out);
+        System.exit(0);
+    }
+
+    /**
+     * <p>
+     * Parse the weights of the endpoints, e.g. MBeans=60,Stats=30,Invoke=10.
+     * Endpoints not listed get no requests.
+     * </p>
+     */
+    static int[] parseMix(String mix)
+    {
+        int[] weights = new int[ENDPOINTS.length];
+        StringTokenizer entries = new StringTokenizer(mix, ",");
+        while (entries.hasMoreTokens())
+        {
+            String entry = entries.nextToken().trim();
+            int separator = entry.indexOf('=');
+            int endpoint = -1;
+            for (int i = 0; i < ENDPOINTS.length && separator > 0; i++)
+            {
+                if (ENDPOINTS[i].equalsIgnoreCase(entry.substring(0, separator).trim()))
+                {
+                    endpoint = i;
+                }
+            }
+            if (endpoint < 0)
+            {
+                throw new IllegalArgumentException("Unknown endpoint in the mix: " + entry);
+            }
+            weights[endpoint] = Integer.parseInt(entry.substring(separator + 1).trim());
+        }
+        return weights;
+    }
+
+    /**
+     * <p>
+     * Parse the parameters of the /MBeans requests, e.g.
+     * JMXQuery=a:*&amp;Limit=100, into name and value pairs.
+     * </p>
+     */
+    static String[][] parseQuery(String query)
+    {
+        List<String[]> params = new ArrayList<String[]>();
+        StringTokenizer entries = new StringTokenizer(query, "&");
+        while (entries.hasMoreTokens())
+        {
+            String entry = entries.nextToken();
+            int separator = entry.indexOf('=');
+            params.add(separator < 0
+                    ? new String[] { entry, "" }
+                    : new String[] { entry.substring(0, separator), entry.substring(separator + 1) });
+        }
+        return params.toArray(new String[params.size()][]);
+    }
+
+    /**
+     * <p>
+     * Build the registry and the servlets, take the baseline of the
+     * application, run the load and print the report.
+     * </p>
+     *
+     * @param out
+     *            Where to print the report
+     *
+     * @throws Exception
+     *             If the registry could not be built
+     */
+    public void run(PrintStream out) throws Exception
+    {
+        setupRegistry();
+        _beanSpy = new BeanSpy();
+        _beanSpy.init();
+        _extender = new MXBeanExtender();
+        _extender.init();
+
+        AppWorkload app = new AppWorkload(_appThreads);
+        app.start();
+        long baselineStart = System.nanoTime();
+        long baselineUnits = app.getUnits();
+        Thread.sleep(_baseline * 1000L);
+        double baselineRate = rate(app.getUnits() - baselineUnits, System.nanoTime() - baselineStart);
+
+        long loadStart = System.nanoTime();
+        long loadUnits = app.getUnits();
+        long elapsed = runLoad();
+        long collectorCpu = getCollectorCpuTime();
+        double loadRate = rate(app.getUnits() - loadUnits, System.nanoTime() - loadStart);
+        app.stop();
+
+        report(out, elapsed, collectorCpu, baselineRate, loadRate);
+        JmxStores.clearListOfJmxStores();
+    }
+
+    /**
+     * <p>
+     * Register the MockMBeanServer holding the generated MBeans and the slow
+     * stores as the JMX stores of BeanSpy.
+     * </p>
+     */
+    private void setupRegistry() throws Exception
+    {
+        JmxStores.clearListOfJmxStores();
+        MockMBeanServer.Reset_TestMBeanServer();
+        IJMX store = new JdkJMXAbstraction(MockMBeanServer.getInstance());
+        JmxStores.addStoreToJmxStores(store);
+        SyntheticMBeans.register(store, _mbeanCount);
+        SyntheticMBeans.registerInvokeMBean(store);
+
+        for (int i = 0; i < _slowStores; i++)
+        {
+            IJMX slow = new SlowJmx(new JdkJMXAbstraction(MBeanServerFactory.newMBeanServer()), _storeLatency);
+            SyntheticMBeans.register(slow, _slowStoreMBeans);
+            JmxStores.addNamedStoreToJmxStores(slow, "SlowJmx-" + i);
+        }
+    }
+
+    /**
+     * <p>
+     * Issue the requests at the fixed arrival rate and wait for all of them
+     * to complete.
+     * </p>
+     *
+     * @return the time from the first request to the completion of the last,
+     *         in nanoseconds
+     */
+    private long runLoad() throws InterruptedException
+    {
+        int total = _rate * _duration;
+        final CountDownLatch done = new CountDownLatch(total);
+        ExecutorService collectors = Executors.newFixedThreadPool(_collectors, new ThreadFactory()
+        {
+            private int _next;
+
+            public synchronized Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "Collector-" + _next++);
+                t.setDaemon(true);
+                _collectorThreads.add(t);
+                return t;
+            }
+        });
+
+        int totalWeight = 0;
+        for (int i = 0; i < _mix.length; i++)
+        {
+            totalWeight += _mix[i];
+        }
+        if (totalWeight <= 0)
+        {
+            throw new IllegalArgumentException("The mix has no requests");
+        }
+        Random random = new Random(_seed);
+
+        long period = 1000000000L / _rate;
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++)
+        {
+            final long intended = start + i * period;
+            long wait;
+            while ((wait = intended - System.nanoTime()) > 0)
+            {
+                LockSupport.parkNanos(wait);
+            }
+
+            int pick = random.nextInt(totalWeight);
+            int endpoint = 0;
+            while (pick >= _mix[endpoint])
+            {
+                pick -= _mix[endpoint++];
+            }
+
+            final int target = endpoint;
+            collectors.execute(new Runnable()
+            {
+                public void run()
+                {
+                    long begin = System.nanoTime();
+                    boolean failed = !send(target);
+                    long end = System.nanoTime();
+                    _latency[target].record(end - intended, failed);
+                    _service[target].record(end - begin, failed);
+                    done.countDown();
+                }
+            });
+        }
+
+        done.await();
+        long elapsed = System.nanoTime() - start;
+        collectors.shutdown();
+        return elapsed;
+    }
+
+    /**
+     * <p>
+     * Send a request to an endpoint.
+     * </p>
+     *
+     * @param endpoint
+     *            The endpoint to request
+     *
+     * @return true if the request succeeded
+     */
+    private boolean send(int endpoint)
+    {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try
+        {
+            switch (endpoint)
+            {
+            case MBEANS:
+                LoadRequest query = new LoadRequest("", BASE_URL + "/MBeans", null);
+                for (int i = 0; i < _query.length; i++)
+                {
+                    query.addParameter(_query[i][0], _query[i][1]);
+                }
+                _beanSpy.doGet(query, response);
+                return true;
+            case STATS:
+                _extender.doGet(new LoadRequest(null, BASE_URL + "/Stats", null), response);
+                return true;
+            default:
+                _beanSpy.doPost(new LoadRequest(JmxConstant.STR_INVOKE_URL,
+                        BASE_URL + JmxConstant.STR_INVOKE_URL, INVOKE_BODY), response);
+                return response.ostream.buf.indexOf(INVOKE_ERROR) < 0;
+            }
+        }
+        catch (ServletException e)
+        {
+            return false;
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * <p>
+     * The CPU time used by the collector threads, that is by the servlets.
+     * </p>
+     *
+     * @return the CPU time in nanoseconds, or -1 if the JVM cannot measure it
+     */
+    private long getCollectorCpuTime()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled())
+        {
+            return -1;
+        }
+        long total = 0;
+        for (Thread t : _collectorThreads)
+        {
+            long cpu = threads.getThreadCpuTime(t.getId());
+            if (cpu > 0)
+            {
+                total += cpu;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * <p>
+     * Units per second.
+     * </p>
+     */
+    private static double rate(long units, long nanos)
+    {
+        return nanos <= 0 ? 0 : units * 1000000000.0 / nanos;
+    }
+
+    /**
+     * <p>
+     * Print the settings, the latencies per endpoint, the throughput and the
+     * CPU used.
+     * </p>
+     */
+    private void report(PrintStream out, long elapsed, long collectorCpu,
+            double baselineRate, double loadRate)
+    {
+        out.println(String.format("BeanSpy load: %d req/s for %d s, %d collectors, %d MBeans, %d slow store(s) at %d ms",
+                _rate, _duration, _collectors, _mbeanCount, _slowStores, _storeLatency));
+        out.println();
+        out.println("Latency in ms, corrected for coordinated omission (service time in brackets)");
+        out.println(String.format("%-8s %8s %7s %17s %17s %17s %17s %17s",
+                "Endpoint", "Count", "Errors", "p50", "p90", "p99", "p99.9", "max"));
+
+        int completed = 0;
+        for (int i = 0; i < ENDPOINTS.length; i++)
+        {
+            completed += _latency[i].getCount();
+            if (_latency[i].getCount() == 0)
+            {
+                continue;
+            }
+            long[] latency = _latency[i].getPercentiles(PERCENTILES);
+            long[] service = _service[i].getPercentiles(PERCENTILES);
+            StringBuffer line = new StringBuffer(String.format("%-8s %8d %7d",
+                    ENDPOINTS[i], _latency[i].getCount(), _latency[i].getErrors()));
+            for (int p = 0; p < PERCENTILES.length; p++)
+            {
+                line.append(String.format(" %8.1f (%6.1f)", latency[p] / 1e6, service[p] / 1e6));
+            }
+            out.println(line.toString());
+        }
+
+        out.println();
+        out.println(String.format("Throughput: %.1f req/s offered, %.1f req/s completed",
+                (double) _rate, rate(completed, elapsed)));
+        if (collectorCpu >= 0)
+        {
+            out.println(String.format("BeanSpy CPU: %.2f s, %.1f%% of one processor, %.1f%% of the %d processors",
+                    collectorCpu / 1e9, 100.0 * collectorCpu / elapsed,
+                    100.0 * collectorCpu / elapsed / Runtime.getRuntime().availableProcessors(),
+                    Runtime.getRuntime().availableProcessors()));
+        }
+        out.println(String.format("Application: %.0f units/s alone, %.0f units/s under load, %.1f%% CPU stolen",
+                baselineRate, loadRate, baselineRate <= 0 ? 0.0 : 100.0 * (1 - loadRate / baselineRate)));
+    }
+}
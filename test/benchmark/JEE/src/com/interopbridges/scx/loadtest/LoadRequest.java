@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.loadtest;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import com.interopbridges.scx.beanspy.MockHttpServletRequest;
+
+/**
+ * <p>
+ * Request sent to the servlets by the load harness: the MockHttpServletRequest
+ * of the unit tests with a request URL, and a body for the POST requests.
+ * </p>
+ *
+ */
+public class LoadRequest extends MockHttpServletRequest
+{
+    /**
+     * <p>
+     * Body of the request, null for a GET request.
+     * </p>
+     */
+    private final String _body;
+
+    /**
+     * <p>
+     * Constructor.
+     * </p>
+     *
+     * @param path
+     *            The path info of the request
+     * @param url
+     *            The request URL
+     * @param body
+     *            The body of a POST request, or null for a GET request
+     */
+    public LoadRequest(String path, String url, String body)
+    {
+        super(path);
+        setRequestURL(new StringBuffer(url));
+        this._body = body;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.servlet.http.HttpServletRequest#getMethod()
+     */
+    public String getMethod()
+    {
+        return _body == null ? "GET" : "POST";
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.servlet.ServletRequest#getContentLength()
+     */
+    public int getContentLength()
+    {
+        return _body == null ? -1 : _body.length();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.servlet.ServletRequest#getReader()
+     */
+    public BufferedReader getReader()
+    {
+        return _body == null ? null : new BufferedReader(new StringReader(_body));
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.loadtest;
+
+import java.io.IOException;
+import java.util.Set;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanRegistrationException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+import javax.management.ReflectionException;
+
+import com.interopbridges.scx.jmx.IJMX;
+
+/**
+ * <p>
+ * JMX store stand-in that answers every call of another store after a fixed
+ * delay. This simulates a remote store (like the WebSphere AdminService or a
+ * JBoss store over RMI) where each call is a network round trip.
+ * </p>
+ *
+ * <p>
+ * The connection check, the identity of the MBean server and the
+ * registration of MBeans are not delayed, so that setting up the registry
+ * stays fast.
+ * </p>
+ *
+ */
+public class SlowJmx implements IJMX
+{
+    /**
+     * <p>
+     * The store answering the calls.
+     * </p>
+     */
+    private final IJMX _delegate;
+
+    /**
+     * <p>
+     * Delay of every call, in milliseconds.
+     * </p>
+     */
+    private final long _latency;
+
+    /**
+     * <p>
+     * Constructor.
+     * </p>
+     *
+     * @param delegate
+     *            The store answering the calls
+     * @param latency
+     *            The delay of every call, in milliseconds
+     */
+    public SlowJmx(IJMX delegate, long latency)
+    {
+        this._delegate = delegate;
+        this._latency = latency;
+    }
+
+    /**
+     * <p>
+     * Wait for the latency of a call.
+     * </p>
+     *
+     * @throws IOException
+     *             If the calling thread was interrupted, as a remote call
+     *             would fail
+     */
+    private void pause() throws IOException
+    {
+        try
+        {
+            Thread.sleep(_latency);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the store");
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#getAttribute(javax.management.ObjectName,
+     * java.lang.String)
+     */
+    public Object getAttribute(ObjectName name, String attribute)
+            throws MBeanException, AttributeNotFoundException,
+            InstanceNotFoundException, ReflectionException, IOException
+    {
+        pause();
+        return _delegate.getAttribute(name, attribute);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#getMBeanCount()
+     */
+    public Integer getMBeanCount() throws IOException
+    {
+        pause();
+        return _delegate.getMBeanCount();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#getMBeanInfo(javax.management.ObjectName)
+     */
+    public MBeanInfo getMBeanInfo(ObjectName name)
+            throws InstanceNotFoundException, IntrospectionException,
+            ReflectionException, IOException
+    {
+        pause();
+        return _delegate.getMBeanInfo(name);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#getMBeanServerID()
+     */
+    public int getMBeanServerID()
+    {
+        return _delegate.getMBeanServerID();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#isStandAloneJmxStore()
+     */
+    public boolean isStandAloneJmxStore()
+    {
+        return _delegate.isStandAloneJmxStore();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#queryMBeans(javax.management.ObjectName,
+     * javax.management.QueryExp)
+     */
+    public Set<ObjectInstance> queryMBeans(ObjectName name, QueryExp query)
+            throws IOException
+    {
+        pause();
+        return _delegate.queryMBeans(name, query);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#queryNames(javax.management.ObjectName,
+     * javax.management.QueryExp)
+     */
+    public Set<ObjectName> queryNames(ObjectName name, QueryExp query)
+            throws IOException
+    {
+        pause();
+        return _delegate.queryNames(name, query);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#registerMBean(java.lang.Object,
+     * javax.management.ObjectName)
+     */
+    public void registerMBean(Object bean, ObjectName keys)
+            throws InstanceAlreadyExistsException, MBeanRegistrationException,
+            NotCompliantMBeanException, IOException
+    {
+        _delegate.registerMBean(bean, keys);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#verifyStoreConnection()
+     */
+    public boolean verifyStoreConnection()
+    {
+        return _delegate.verifyStoreConnection();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#invoke(javax.management.ObjectName,
+     * java.lang.String, java.lang.Object[], java.lang.String[])
+     */
+    public Object invoke(ObjectName name, String operationName, Object[] params, String[] signature)
+            throws InstanceNotFoundException, ReflectionException, MBeanException, IOException
+    {
+        pause();
+        return _delegate.invoke(name, operationName, params, signature);
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+
+/**
+ * <p>
+ * Test class for the BeanSpy request metrics.
+ * </p>
+ *
+ */
+public class BeanSpyMetricsTest
+{
+    /**
+     * <p>
+     * Verify that a striped counter sums the updates of concurrent threads.
+     * </p>
+     *
+     * @throws Exception
+     *             If the test thread was interrupted
+     */
+    @Test
+    public void verifyStripedCounter() throws Exception
+    {
+        final StripedCounter counter = new StripedCounter();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i] = new Thread()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < 10000; j++)
+                    {
+                        counter.increment();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (int i = 0; i < threads.length; i++)
+        {
+            threads[i].join();
+        }
+        counter.add(-5);
+        Assert.assertEquals(80000 - 5, counter.sum());
+    }
+
+    /**
+     * <p>
+     * Verify the request, store and error metrics.
+     * </p>
+     */
+    @Test
+    public void verifyRecordedMetrics()
+    {
+        BeanSpyMetrics metrics = new BeanSpyMetrics();
+
+        long start = metrics.requestStarted();
+        Assert.assertEquals(1, metrics.getInFlightRequests());
+        metrics.recordMBeanVisited();
+        metrics.recordAttributeFetched("store", 5000);
+        metrics.recordAttributeFetched("store", 3000);
+        metrics.recordStoreQuery("store", 2000);
+        metrics.requestFinished(BeanSpyMetrics.MBEANS, start, 1234, false);
+
+        start = metrics.requestStarted();
+        metrics.recordError(new ScxException(ScxExceptionCode.ERROR_INVALID_CURSOR));
+        metrics.recordError(new IllegalStateException());
+        metrics.requestFinished(BeanSpyMetrics.MBEANS, start, 10, true);
+
+        Assert.assertEquals(0, metrics.getInFlightRequests());
+        Assert.assertEquals(1, metrics.getMBeansVisited());
+        Assert.assertEquals(2, metrics.getAttributesFetched());
+        Assert.assertEquals(2, metrics.getMBeansRequestCount());
+        Assert.assertEquals(0, metrics.getStatsRequestCount());
+        Assert.assertEquals(1244, metrics.getBytesWritten());
+        Assert.assertEquals(2, metrics.getErrorCount());
+        Assert.assertEquals(Long.valueOf(1), metrics.getErrors().get("ERROR_INVALID_CURSOR"));
+        Assert.assertEquals(Long.valueOf(1), metrics.getErrors().get(BeanSpyMetrics.OTHER_ERROR));
+
+        BeanSpyMetrics.Endpoint mbeans = metrics.getEndpoints()[BeanSpyMetrics.MBEANS];
+        Assert.assertEquals(1, mbeans.getFailureCount());
+        Assert.assertTrue(mbeans.getLatencyPercentile(99) <= mbeans.getMaxLatency());
+
+        List<BeanSpyMetrics.Store> stores = metrics.getStores();
+        Assert.assertEquals(1, stores.size());
+        Assert.assertEquals("String", stores.get(0).getName());
+        Assert.assertEquals(2, stores.get(0).getAttributeCount());
+        Assert.assertEquals(8, stores.get(0).getAttributeTime());
+        Assert.assertEquals(1, stores.get(0).getQueryCount());
+    }
+
+    /**
+     * <p>
+     * Verify that the statistics group starts with the totals followed by a
+     * group per endpoint, and that the metrics are published as an MBean.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBean could not be read
+     */
+    @Test
+    public void verifyPublishedMetrics() throws Exception
+    {
+        StatisticGroup group = new BeanSpyStatistics().getStats();
+        Assert.assertEquals("BeanSpy", group.getName());
+        Assert.assertTrue(group.getStatisticItemGroup().size() >= 4);
+        Assert.assertEquals("InFlightRequests",
+                group.getStatisticItemGroup().get(0).getStatistics().get(0).getStatisticName());
+        Assert.assertEquals("MBeans",
+                group.getStatisticItemGroup().get(1).getStatistics().get(0).getStatisticValue());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(BeanSpyMetrics.OBJECT_NAME);
+        BeanSpyMetrics.getInstance().register();
+        try
+        {
+            Assert.assertTrue(server.isRegistered(name));
+            Assert.assertNotNull(server.getAttribute(name, "MBeansRequestCount"));
+        }
+        finally
+        {
+            BeanSpyMetrics.getInstance().unregister();
+        }
+        Assert.assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Test class for the rates computed from the sampled JVM counters.
+ * </p>
+ *
+ */
+public class CounterSamplerTest
+{
+    /**
+     * <p>
+     * Verify that no rates are reported before two samples were taken, and
+     * that starting threads between two samples shows in the thread creation
+     * rate.
+     * </p>
+     *
+     * @throws Exception
+     *             If the test threads were interrupted
+     */
+    @Test
+    public void verifyRatesFromTwoSamples() throws Exception
+    {
+        CounterSampler sampler = new CounterSampler(1000);
+        sampler.sample();
+        Assert.assertEquals(0, sampler.getRates().getInterval());
+        Assert.assertEquals(0.0, sampler.getRates().getThreadCreationRate());
+
+        for (int i = 0; i < 5; i++)
+        {
+            Thread t = new Thread();
+            t.start();
+            t.join();
+        }
+        Thread.sleep(20);
+        sampler.sample();
+
+        CounterSampler.Rates rates = sampler.getRates();
+        Assert.assertTrue("Interval should cover the sleep", rates.getInterval() >= 20);
+        Assert.assertTrue("Threads were started", rates.getThreadCreationRate() > 0);
+        Assert.assertTrue(rates.getGCOverheadPercent() >= 0 && rates.getGCOverheadPercent() <= 100);
+        Assert.assertTrue(rates.getClassLoadRate() >= 0);
+    }
+
+    /**
+     * <p>
+     * Verify that a thread which allocated a lot and ended between two
+     * samples does not hide the bytes allocated by the other threads.
+     * </p>
+     *
+     * @throws Exception
+     *             If the test threads were interrupted
+     */
+    @Test
+    public void verifyAllocationRateAfterThreadExit() throws Exception
+    {
+        final Object lock = new Object();
+        final boolean[] done = new boolean[1];
+        Thread allocator = new Thread()
+        {
+            public void run()
+            {
+                byte[][] garbage = new byte[64][];
+                for (int i = 0; i < garbage.length; i++)
+                {
+                    garbage[i] = new byte[256 * 1024];
+                }
+                synchronized (lock)
+                {
+                    while (!done[0])
+                    {
+                        try
+                        {
+                            lock.wait();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            return;
+                        }
+                    }
+                }
+            }
+        };
+        allocator.start();
+        while (allocator.getState() != Thread.State.WAITING)
+        {
+            Thread.sleep(5);
+        }
+
+        CounterSampler sampler = new CounterSampler(1000);
+        sampler.sample();
+        synchronized (lock)
+        {
+            done[0] = true;
+            lock.notifyAll();
+        }
+        allocator.join();
+
+        byte[][] kept = new byte[16][];
+        for (int i = 0; i < kept.length; i++)
+        {
+            kept[i] = new byte[64 * 1024];
+        }
+        Thread.sleep(20);
+        sampler.sample();
+
+        double rate = sampler.getRates().getAllocationRate();
+        if (rate != -1)
+        {
+            Assert.assertTrue("Allocations of the live threads should be counted, rate " + rate, rate > 0);
+        }
+        Assert.assertEquals(16, kept.length);
+    }
+
+    /**
+     * <p>
+     * Verify that the Rates group returns all its statistics.
+     * </p>
+     */
+    @Test
+    public void verifyRateStatisticsGroup()
+    {
+        StatisticGroup group = new RateStatistics().getStats();
+        Assert.assertEquals("Rates", group.getName());
+        Assert.assertEquals(8, group.getStatisticItemGroup().get(0).getStatistics().size());
+        Assert.assertTrue(CounterSampler.getInstance().isRunning());
+        CounterSampler.getInstance().stop();
+    }
+}
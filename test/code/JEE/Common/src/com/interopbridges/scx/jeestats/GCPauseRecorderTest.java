@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.interopbridges.scx.prometheus.PrometheusWriter;
+import com.interopbridges.scx.prometheus.PrometheusWriterTest;
+
+/**
+ * <p>
+ * Test class for the garbage collection pause histograms.
+ * </p>
+ *
+ */
+public class GCPauseRecorderTest
+{
+    /**
+     * <p>
+     * Verify the power of two bucketing of the pauses.
+     * </p>
+     */
+    @Test
+    public void verifyBuckets()
+    {
+        Assert.assertEquals(0, GCPauseRecorder.bucket(0));
+        Assert.assertEquals(1, GCPauseRecorder.bucket(1));
+        Assert.assertEquals(2, GCPauseRecorder.bucket(3));
+        Assert.assertEquals(3, GCPauseRecorder.bucket(4));
+        Assert.assertEquals(GCPauseRecorder.BUCKETS - 1, GCPauseRecorder.bucket(Long.MAX_VALUE));
+        Assert.assertEquals(7, GCPauseRecorder.upperBound(GCPauseRecorder.bucket(5)));
+    }
+
+    /**
+     * <p>
+     * Verify the percentiles and maximum of each window, and that pauses older
+     * than a window are left out of it.
+     * </p>
+     */
+    @Test
+    public void verifyWindows()
+    {
+        GCPauseRecorder recorder = new GCPauseRecorder();
+        long now = 100 * GCPauseRecorder.SLOT_MILLIS;
+
+        // 10 minutes ago: one long pause
+        recorder.record("Old", "System.gc()", 900, now - 10 * GCPauseRecorder.SLOT_MILLIS);
+        // This minute: 99 short pauses and one longer
+        for (int i = 0; i < 99; i++)
+        {
+            recorder.record("Old", "System.gc()", 3, now);
+        }
+        recorder.record("Old", "System.gc()", 40, now);
+
+        List<GCPauseRecorder.Summary> summaries = recorder.summarize(now);
+        Assert.assertEquals(GCPauseRecorder.WINDOWS.length, summaries.size());
+
+        GCPauseRecorder.Summary lastMinute = summaries.get(0);
+        Assert.assertEquals("Old", lastMinute.getCollector());
+        Assert.assertEquals(1, lastMinute.getWindow());
+        Assert.assertEquals(100, lastMinute.getCount());
+        Assert.assertEquals(3, lastMinute.getP50());
+        Assert.assertEquals(3, lastMinute.getP99());
+        Assert.assertEquals(40, lastMinute.getMax());
+
+        GCPauseRecorder.Summary lastQuarter = summaries.get(2);
+        Assert.assertEquals(15, lastQuarter.getWindow());
+        Assert.assertEquals(101, lastQuarter.getCount());
+        Assert.assertEquals(63, lastQuarter.getP99());
+        Assert.assertEquals(900, lastQuarter.getMax());
+
+        // The slot of this minute is reused 16 minutes later
+        recorder.record("Old", "System.gc()", 1, now + 16 * GCPauseRecorder.SLOT_MILLIS);
+        GCPauseRecorder.Summary later = recorder.summarize(now + 16 * GCPauseRecorder.SLOT_MILLIS).get(2);
+        Assert.assertEquals(1, later.getCount());
+        Assert.assertEquals(1, later.getMax());
+    }
+
+    /**
+     * <p>
+     * Verify that the windows of a collector and cause are exported to
+     * Prometheus as distinct series, labeled with their length.
+     * </p>
+     *
+     * @throws Exception
+     *             If the output could not be written
+     */
+    @Test
+    public void verifyPrometheusSeries() throws Exception
+    {
+        GCPauseRecorder recorder = new GCPauseRecorder();
+        long now = System.currentTimeMillis();
+        recorder.record("Young", "Allocation Failure", 3, now);
+        recorder.record("Young", "System.gc()", 20, now);
+        recorder.record("Old", "System.gc()", 200, now);
+
+        StringWriter out = new StringWriter();
+        new PrometheusWriter(out).writeStatistics(new GCPauseStatistics(recorder).getStats());
+        String text = out.toString();
+
+        PrometheusWriterTest.assertNoDuplicateSeries(text);
+        Assert.assertTrue(text, text.indexOf(
+                "beanspy_gc_pause_pause_max{gc_name=\"Old\",gc_cause=\"System.gc()\",window_minutes=\"5\"} 200\n") >= 0);
+        Assert.assertTrue(text, text.indexOf("beanspy_gc_pause_window_minutes") < 0);
+    }
+
+    /**
+     * <p>
+     * Verify that pauses recorded just before a minute boundary are still
+     * reported by every window just after it.
+     * </p>
+     */
+    @Test
+    public void verifyMinuteBoundary()
+    {
+        GCPauseRecorder recorder = new GCPauseRecorder();
+        long boundary = 100 * GCPauseRecorder.SLOT_MILLIS;
+
+        recorder.record("Young", "Allocation Failure", 5, boundary - 1000);
+        recorder.record("Young", "Allocation Failure", 7, boundary - 10);
+
+        List<GCPauseRecorder.Summary> summaries = recorder.summarize(boundary + 10);
+        Assert.assertEquals(GCPauseRecorder.WINDOWS.length, summaries.size());
+        for (GCPauseRecorder.Summary summary : summaries)
+        {
+            Assert.assertEquals("Window of " + summary.getWindow() + " minutes", 2, summary.getCount());
+            Assert.assertEquals(7, summary.getMax());
+        }
+
+        // Once a full minute has passed, the 1 minute window no longer holds them
+        List<GCPauseRecorder.Summary> later = recorder.summarize(boundary + GCPauseRecorder.SLOT_MILLIS + 10);
+        Assert.assertEquals(0, later.get(0).getCount());
+        Assert.assertEquals(2, later.get(1).getCount());
+        Assert.assertEquals(2, later.get(2).getCount());
+    }
+}
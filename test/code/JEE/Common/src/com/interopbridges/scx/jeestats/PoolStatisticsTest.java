@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Test class for the memory pool and buffer pool statistics.
+ * </p>
+ *
+ */
+public class PoolStatisticsTest
+{
+    /**
+     * <p>
+     * Verify that every valid memory pool is returned as its own group,
+     * starting with the pool name.
+     * </p>
+     */
+    @Test
+    public void verifyMemoryPools()
+    {
+        int valid = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.isValid())
+            {
+                valid++;
+            }
+        }
+
+        StatisticGroup group = new MemoryPoolStatistics().getStats();
+        Assert.assertEquals("MemoryPool", group.getName());
+        List<StatisticItemGroup> pools = group.getStatisticItemGroup();
+        Assert.assertEquals(valid, pools.size());
+        for (StatisticItemGroup pool : pools)
+        {
+            List<Statistic> stats = pool.getStatistics();
+            Assert.assertEquals(9, stats.size());
+            Assert.assertEquals("PoolName", stats.get(0).getStatisticName());
+            long used = ((Long) stats.get(2).getStatisticValue()).longValue();
+            long peak = ((Long) stats.get(5).getStatisticValue()).longValue();
+            Assert.assertTrue(used >= 0);
+            Assert.assertTrue(peak == -1 || peak >= 0);
+        }
+    }
+
+    /**
+     * <p>
+     * Verify that the direct buffer pool is reported when the JVM provides
+     * BufferPoolMXBean.
+     * </p>
+     */
+    @Test
+    public void verifyBufferPools()
+    {
+        StatisticGroup group = new BufferPoolStatistics().getStats();
+        Assert.assertEquals("BufferPool", group.getName());
+        try
+        {
+            Class.forName("java.lang.management.BufferPoolMXBean");
+        }
+        catch (ClassNotFoundException e)
+        {
+            Assert.assertEquals(0, group.getStatisticItemGroup().size());
+            return;
+        }
+
+        boolean direct = false;
+        for (StatisticItemGroup pool : group.getStatisticItemGroup())
+        {
+            List<Statistic> stats = pool.getStatistics();
+            Assert.assertEquals(4, stats.size());
+            if ("direct".equals(stats.get(0).getStatisticValue()))
+            {
+                direct = true;
+            }
+        }
+        Assert.assertTrue(direct);
+    }
+}
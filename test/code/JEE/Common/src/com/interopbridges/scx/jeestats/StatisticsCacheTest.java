@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.reflect.Method;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Test class for the TTL cache of statistic groups and statistics.
+ * </p>
+ *
+ */
+public class StatisticsCacheTest
+{
+    /**
+     * <p>
+     * Verify the parsing of the TTL entries, invalid entries are left out.
+     * </p>
+     */
+    @Test
+    public void verifyTtls()
+    {
+        StatisticsCache cache = new StatisticsCache(" Counting=immutable; Counting/Calls=500;Bad;Other=soon;;");
+        Assert.assertEquals(StatisticsCache.IMMUTABLE, cache.getTtl("Counting"));
+        Assert.assertEquals(500, cache.getTtl("Counting/Calls"));
+        Assert.assertEquals(0, cache.getTtl("Other"));
+        Assert.assertEquals(0, cache.getTtl("Bad"));
+    }
+
+    /**
+     * <p>
+     * Verify that an immutable group is read once until the cache is
+     * invalidated, and that groups without a TTL are read every time.
+     * </p>
+     */
+    @Test
+    public void verifyGroupCache()
+    {
+        CountingStatistics stats = new CountingStatistics();
+        StatisticsCache cache = new StatisticsCache("Counting=immutable");
+
+        StatisticGroup first = cache.getStats(stats);
+        Assert.assertSame(first, cache.getStats(stats));
+        Assert.assertEquals(1, stats._calls);
+
+        cache.invalidate();
+        Assert.assertNotSame(first, cache.getStats(stats));
+        Assert.assertEquals(2, stats._calls);
+
+        StatisticsCache uncached = new StatisticsCache("");
+        uncached.getStats(stats);
+        uncached.getStats(stats);
+        Assert.assertEquals(4, stats._calls);
+    }
+
+    /**
+     * <p>
+     * Verify that a group is read again once its TTL has expired.
+     * </p>
+     *
+     * @throws Exception
+     *             If the test thread was interrupted
+     */
+    @Test
+    public void verifyGroupExpiry() throws Exception
+    {
+        CountingStatistics stats = new CountingStatistics();
+        StatisticsCache cache = new StatisticsCache("Counting=20");
+
+        cache.getStats(stats);
+        cache.getStats(stats);
+        Assert.assertEquals(1, stats._calls);
+
+        Thread.sleep(50);
+        cache.getStats(stats);
+        Assert.assertEquals(2, stats._calls);
+    }
+
+    /**
+     * <p>
+     * Verify that a single statistic is cached independently of the other
+     * statistics of its group.
+     * </p>
+     *
+     * @throws Exception
+     *             If the statistic methods could not be invoked
+     */
+    @Test
+    public void verifyStatisticCache() throws Exception
+    {
+        CountingStatistics stats = new CountingStatistics();
+        StatisticsCache cache = new StatisticsCache("Counting/Calls=immutable");
+        Method calls = CountingStatistics.class.getMethod("getCalls", (Class<?>[]) null);
+        Method other = CountingStatistics.class.getMethod("getOther", (Class<?>[]) null);
+
+        Object first = cache.getStatistic(stats, calls);
+        Assert.assertSame(first, cache.getStatistic(stats, calls));
+        Assert.assertEquals(1, stats._calls);
+
+        cache.getStatistic(stats, other);
+        cache.getStatistic(stats, other);
+        Assert.assertEquals(2, stats._others);
+    }
+
+    /**
+     * <p>
+     * Verify that with group entries only, single statistics are read
+     * every time.
+     * </p>
+     *
+     * @throws Exception
+     *             If the statistic methods could not be invoked
+     */
+    @Test
+    public void verifyGroupEntriesOnly() throws Exception
+    {
+        CountingStatistics stats = new CountingStatistics();
+        StatisticsCache cache = new StatisticsCache("Counting=immutable");
+        Method calls = CountingStatistics.class.getMethod("getCalls", (Class<?>[]) null);
+
+        cache.getStatistic(stats, calls);
+        cache.getStatistic(stats, calls);
+        Assert.assertEquals(2, stats._calls);
+    }
+
+    /**
+     * <p>
+     * Statistics counting how often they are read.
+     * </p>
+     */
+    public static class CountingStatistics extends GenericStatistics
+    {
+        int _calls;
+        int _others;
+
+        public CountingStatistics()
+        {
+            super("Counting");
+        }
+
+        @StatisticMethod
+        public Statistic getCalls()
+        {
+            return new LongStatistic("Calls", int.class, ++_calls);
+        }
+
+        @StatisticMethod
+        public Statistic getOther()
+        {
+            return new LongStatistic("Other", int.class, ++_others);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Test class for the registry of statistics providers and the accessor
+ * tables of the statistics classes.
+ * </p>
+ *
+ */
+public class StatisticsRegistryTest
+{
+    /**
+     * <p>
+     * Verify that the built-in statistics are created once and returned in
+     * the expected order.
+     * </p>
+     *
+     * @throws Exception
+     *             If a provider could not be created
+     */
+    @Test
+    public void verifyBuiltinProviders() throws Exception
+    {
+        StatisticsRegistry registry = StatisticsRegistry.getInstance();
+        List<IStatistics> stats = registry.getStatistics();
+
+        Assert.assertEquals(7, stats.size());
+        Assert.assertTrue(stats.get(0) instanceof JmxStoreStatistics);
+        Assert.assertTrue(stats.get(6) instanceof RuntimeStatistics);
+        Assert.assertEquals(4, registry.getInformation().size());
+
+        Assert.assertSame(stats.get(5), registry.getProviderForGroup("Memory"));
+        Assert.assertSame(stats.get(5), registry.getProvider(MemoryStatistics.class.getName()));
+    }
+
+    /**
+     * <p>
+     * Verify that other statistics classes are resolved on first use and the
+     * same instance is returned afterwards.
+     * </p>
+     *
+     * @throws Exception
+     *             If a provider could not be created
+     */
+    @Test
+    public void verifyProviderResolvedByName() throws Exception
+    {
+        StatisticsRegistry registry = StatisticsRegistry.getInstance();
+        IStatistics canned = registry.getProviderForGroup("Canned");
+
+        Assert.assertTrue(canned instanceof CannedStatistics);
+        Assert.assertSame(canned, registry.getProvider(CannedStatistics.class.getName()));
+        Assert.assertNull("Not a statistics class", registry.getProviderForGroup("Fake"));
+
+        try
+        {
+            registry.getProviderForGroup("DoesNotExist");
+            Assert.fail("An unknown group should not resolve");
+        }
+        catch (ClassNotFoundException e)
+        {
+            // Expected
+        }
+    }
+
+    /**
+     * <p>
+     * Verify the accessor table built for a statistics class.
+     * </p>
+     */
+    @Test
+    public void verifyAccessorTable()
+    {
+        StatisticAccessors table = StatisticAccessors.forClass(CannedStatistics.class);
+
+        Assert.assertSame(table, StatisticAccessors.forClass(CannedStatistics.class));
+        Assert.assertEquals(5, table.getStatisticMethods().length);
+        Assert.assertEquals("getCannedStat3", table.getMethod("getCannedStat3").getName());
+        Assert.assertNull(table.getMethod("getCannedStat6"));
+        Assert.assertEquals(5, new CannedStatistics().getStats().getStatisticItemGroup().get(0).getStatistics().size());
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * <p>
+ * Test class verifying that a statistics group reads each of its sources
+ * once per request.
+ * </p>
+ *
+ */
+public class StatisticsSnapshotTest
+{
+    /**
+     * <p>
+     * Verify that the memory statistics read the heap and non-heap usage once,
+     * and that the used and percent used heap agree.
+     * </p>
+     */
+    @Test
+    public void verifyMemorySnapshot()
+    {
+        CountingHandler counter = new CountingHandler(ManagementFactory.getMemoryMXBean());
+        MemoryStatistics stats = new MemoryStatistics((MemoryMXBean) counter.proxy(MemoryMXBean.class));
+
+        List<Statistic> values = stats.getStats().getStatisticItemGroup().get(0).getStatistics();
+
+        Assert.assertEquals(10, values.size());
+        Assert.assertEquals(1, counter.count("getHeapMemoryUsage"));
+        Assert.assertEquals(1, counter.count("getNonHeapMemoryUsage"));
+        Assert.assertEquals(1, counter.count("getObjectPendingFinalizationCount"));
+
+        long used = ((Long) find(values, "HeapUsedMemory")).longValue();
+        long max = ((Long) find(values, "HeapMaximumMemory")).longValue();
+        if (max > 0)
+        {
+            Assert.assertEquals((int) (used * 100 / max), ((Integer) find(values, "PercentHeapMemoryUsed")).intValue());
+        }
+    }
+
+    /**
+     * <p>
+     * Verify that the thread and class loader statistics read each count
+     * once per request, and that a statistic retrieved on its own still reads
+     * current values.
+     * </p>
+     */
+    @Test
+    public void verifyCountSnapshots()
+    {
+        CountingHandler threads = new CountingHandler(ManagementFactory.getThreadMXBean());
+        ThreadStatistics threadStats = new ThreadStatistics((ThreadMXBean) threads.proxy(ThreadMXBean.class));
+        Assert.assertEquals(3, threadStats.getStats().getStatisticItemGroup().get(0).getStatistics().size());
+        Assert.assertEquals(1, threads.count("getThreadCount"));
+        Assert.assertEquals(1, threads.count("getPeakThreadCount"));
+        Assert.assertEquals(1, threads.count("getTotalStartedThreadCount"));
+
+        CountingHandler classes = new CountingHandler(ManagementFactory.getClassLoadingMXBean());
+        ClassLoaderStatistics classStats = new ClassLoaderStatistics(
+                (ClassLoadingMXBean) classes.proxy(ClassLoadingMXBean.class));
+        Assert.assertEquals(3, classStats.getStats().getStatisticItemGroup().get(0).getStatistics().size());
+        Assert.assertEquals(1, classes.count("getLoadedClassCount"));
+
+        Assert.assertNotNull(classStats.getLoadedClassCount().getStatisticValue());
+        Assert.assertEquals(2, classes.count("getLoadedClassCount"));
+    }
+
+    /**
+     * <p>
+     * Get the value of the named statistic.
+     * </p>
+     */
+    private static Object find(List<Statistic> values, String name)
+    {
+        for (Statistic value : values)
+        {
+            if (value.getStatisticName().equals(name))
+            {
+                return value.getStatisticValue();
+            }
+        }
+        Assert.fail("Statistic not returned: " + name);
+        return null;
+    }
+
+    /**
+     * <p>
+     * Delegates to an MXBean, counting the calls per method name.
+     * </p>
+     */
+    private static class CountingHandler implements InvocationHandler
+    {
+        private final Object _target;
+        private final Map<String, Integer> _counts = new HashMap<String, Integer>();
+
+        CountingHandler(Object target)
+        {
+            this._target = target;
+        }
+
+        Object proxy(Class<?> type)
+        {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, this);
+        }
+
+        int count(String method)
+        {
+            Integer count = this._counts.get(method);
+            return count == null ? 0 : count.intValue();
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            this._counts.put(method.getName(), Integer.valueOf(count(method.getName()) + 1));
+            try
+            {
+                return method.invoke(this._target, args);
+            }
+            catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jeestats;
+
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.interopbridges.scx.prometheus.PrometheusWriter;
+import com.interopbridges.scx.prometheus.PrometheusWriterTest;
+
+/**
+ * <p>
+ * Test class for the ranking of threads by CPU and allocation.
+ * </p>
+ *
+ */
+public class ThreadActivitySamplerTest
+{
+    /**
+     * <p>
+     * Verify that the top N ranking keeps the largest values in descending
+     * order.
+     * </p>
+     */
+    @Test
+    public void verifyTopRanking()
+    {
+        long[] ids = { -1, -1, -1 };
+        long[] values = { -1, -1, -1 };
+        long[][] samples = { { 1, 10 }, { 2, 50 }, { 3, 5 }, { 4, 30 }, { 5, 70 }, { 6, -1 } };
+        for (int i = 0; i < samples.length; i++)
+        {
+            ThreadActivitySampler.insertTop(ids, values, samples[i][0], samples[i][1]);
+        }
+
+        Assert.assertEquals(5, ids[0]);
+        Assert.assertEquals(2, ids[1]);
+        Assert.assertEquals(4, ids[2]);
+        Assert.assertEquals(30, values[2]);
+    }
+
+    /**
+     * <p>
+     * Verify that a thread burning CPU between two samples is ranked first.
+     * </p>
+     *
+     * @throws Exception
+     *             If the test thread was interrupted
+     */
+    @Test
+    public void verifyBusyThreadRankedFirst() throws Exception
+    {
+        if (!ManagementFactory.getThreadMXBean().isThreadCpuTimeSupported()
+                || !ManagementFactory.getThreadMXBean().isThreadCpuTimeEnabled())
+        {
+            return;
+        }
+
+        ThreadActivitySampler sampler = new ThreadActivitySampler(1000, 3);
+        sampler.sample();
+        Assert.assertEquals(0, sampler.getActivity().getTopCpu().length);
+
+        Thread busy = new Thread("BusyTestThread")
+        {
+            public void run()
+            {
+                long end = System.currentTimeMillis() + 200;
+                double x = 0;
+                while (System.currentTimeMillis() < end)
+                {
+                    x += Math.sqrt(x + 1);
+                }
+                setName(x > 0 ? "BusyTestThread" : "BusyTestThread.");
+                try
+                {
+                    Thread.sleep(200);
+                }
+                catch (InterruptedException e)
+                {
+                    // Done
+                }
+            }
+        };
+        busy.start();
+        Thread.sleep(300);
+        sampler.sample();
+        busy.interrupt();
+        busy.join();
+
+        ThreadActivitySampler.Entry[] top = sampler.getActivity().getTopCpu();
+        Assert.assertTrue(top.length > 0);
+        Assert.assertEquals("BusyTestThread", top[0].getThreadName());
+        Assert.assertTrue(top[0].getCpuPercent() > 0);
+    }
+
+    /**
+     * <p>
+     * Verify that ranked threads sharing a name are exported to Prometheus as
+     * distinct series, labeled with their rank and thread id.
+     * </p>
+     *
+     * @throws Exception
+     *             If the test threads were interrupted
+     */
+    @Test
+    public void verifyPrometheusSeries() throws Exception
+    {
+        final Object lock = new Object();
+        Thread[] workers = new Thread[2];
+        for (int i = 0; i < workers.length; i++)
+        {
+            workers[i] = new Thread("SameNameTestThread")
+            {
+                public void run()
+                {
+                    synchronized (lock)
+                    {
+                        try
+                        {
+                            lock.wait();
+                        }
+                        catch (InterruptedException e)
+                        {
+                            // Done
+                        }
+                    }
+                }
+            };
+            workers[i].start();
+        }
+
+        ThreadActivitySampler sampler = new ThreadActivitySampler(1000, 1000);
+        sampler.sample();
+        Thread.sleep(20);
+        sampler.sample();
+        for (int i = 0; i < workers.length; i++)
+        {
+            workers[i].interrupt();
+            workers[i].join();
+        }
+
+        StringWriter out = new StringWriter();
+        new PrometheusWriter(out).writeStatistics(new ThreadActivityStatistics(sampler).getStats());
+        String text = out.toString();
+
+        PrometheusWriterTest.assertNoDuplicateSeries(text);
+        Assert.assertTrue(text, text.indexOf("# TYPE beanspy_thread_activity_rank ") < 0);
+        Assert.assertTrue(text, text.indexOf("# TYPE beanspy_thread_activity_thread_id ") < 0);
+        if (sampler.getActivity().getTopCpu().length > 0)
+        {
+            Assert.assertTrue(text, text.indexOf("{ranked_by=\"CPU\",rank=\"1\",thread_id=\"") >= 0);
+        }
+    }
+}
@@ -137,13 +137,7 @@ public class JdkJMXAttributeTest {
      *       &lt;Property Name="Name" type="java.lang.String"&rt;TestContextMBean&lt;/Property&gt;
      *       &lt;Property Name="SimpleClass" type="com.interopbridges.scx.mbeans.SimpleClass"&rt;
      *         &lt;Property Name="attrib" type="java.lang.String"&rt;UserClass Attribute&lt;/Property&gt;
-     *         &lt;Property Name="this" type="com.interopbridges.scx.mbeans.SimpleClass"&rt;
-     *           &lt;Property Name="attrib" type="java.lang.String"&rt;UserClass Attribute&lt;/Property&gt;
-     *           &lt;Property Name="this" type="com.interopbridges.scx.mbeans.SimpleClass"&rt;
-     *             &lt;Property Name="attrib" type="java.lang.String"&rt;UserClass Attribute&lt;/Property&gt;
-     *             &lt;Property Name="this" type="com.interopbridges.scx.mbeans.SimpleClass"&rt;com.interopbridges.scx.mbeans.SimpleClass@17094d48&lt;/Property&gt;
-     *           &lt;/Property&gt;
-     *         &lt;/Property&gt;
+     *         &lt;Property Name="this" type="com.interopbridges.scx.mbeans.SimpleClass" Reference="SimpleClass"&rt;com.interopbridges.scx.mbeans.SimpleClass@17094d48&lt;/Property&gt;
      *       &lt;/Property&gt;
      *     &lt;/Properties&rt;
      *   &lt;/MBean&rt;
@@ -166,11 +160,14 @@ public class JdkJMXAttributeTest {
             MBeanGetter  _mbeanAccessor = new MBeanGetter(JmxStores.getListOfJmxStoreAbstractions());
             String xml = _mbeanAccessor.getMBeansAsXml(mbeanName,Params).toString();
 
-            String[] s = (String []) SAXParser.XPathQuery(xml,"/MBeans/MBean[@Name='javax.management.ObjectName']/Properties/Property[@Name='SimpleClass']/Property[@Name='this']/Property[@Name='this']/Property[@Name='attrib']");
+            String[] s = (String []) SAXParser.XPathQuery(xml,"/MBeans/MBean[@Name='javax.management.ObjectName']/Properties/Property[@Name='SimpleClass']/Property[@Name='attrib']");
 
             Assert.assertTrue(
-                    "Incorrect response to /MBeans/MBean[@Name='javax.management.ObjectName']/Properties/Property[@Name='SimpleClass']/Property[@Name='this']/Property[@Name='this']/Property[@Name='attrib'] does not exist.\n "+
-                    "The XML element (/MBeans/MBean[@Name='javax.management.ObjectName']/Properties/Property[@Name='SimpleClass']/Property[@Name='this']/Property[@Name='this']/Property[@Name='attrib']) is empty",s[0].compareTo("UserClass Attribute")==0);
+                    "Incorrect response to /MBeans/MBean[@Name='javax.management.ObjectName']/Properties/Property[@Name='SimpleClass']/Property[@Name='attrib'] does not exist.\n "+
+                    "The XML element (/MBeans/MBean[@Name='javax.management.ObjectName']/Properties/Property[@Name='SimpleClass']/Property[@Name='attrib']) is empty",s[0].compareTo("UserClass Attribute")==0);
+
+            s = (String []) SAXParser.XPathQuery(xml,"/MBeans/MBean[@Name='javax.management.ObjectName']/Properties/Property[@Name='SimpleClass']/Property[@Name='this']/@Reference");
+            Assert.assertEquals("The self reference should not be rendered again", "SimpleClass", s[0]);
             
         } 
         catch (Exception e) 
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jmx;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.ObjectInstance;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.mbeans.MBeanGetter;
+import com.interopbridges.scx.util.SAXParser;
+import com.interopbridges.scx.webservices.FauxMBeanGenerator;
+
+/**
+ * <p>
+ * Test class for the JMX store health tracking. Verifies that a JMX store that
+ * keeps failing is quarantined, that queries are answered from the remaining
+ * stores and that the skipped stores are reported in the response.
+ * </p>
+ *
+ */
+public class JmxStoreHealthTest
+{
+    /**
+     * <p>
+     * JMX Store that contains the fake MBeans.
+     * </p>
+     */
+    private MockJmx _goodStore;
+
+    /**
+     * <p>
+     * JMX Store that fails every query.
+     * </p>
+     */
+    private MockJmxThatFailsQueries _badStore;
+
+    /**
+     * <p>
+     * System under test (should be reset per test).
+     * </p>
+     */
+    private MBeanGetter _mbeanGetter;
+
+    /**
+     * <p>
+     * Method invoked before each unit-test in this class.
+     * </p>
+     *
+     * @throws Exception
+     *             If there was a problem with test setup (due adding the MBeans
+     *             to the fake JMX store)
+     */
+    @Before
+    public void Setup() throws Exception
+    {
+        JmxStores.clearListOfJmxStores();
+
+        _goodStore = new MockJmx();
+        new FauxMBeanGenerator(_goodStore).run();
+        _badStore = new MockJmxThatFailsQueries();
+
+        List<IJMX> stores = new ArrayList<IJMX>();
+        stores.add(_badStore);
+        stores.add(_goodStore);
+        _mbeanGetter = new MBeanGetter(stores);
+    }
+
+    /**
+     * <p>
+     * Method invoked after each unit-test in this class.
+     * </p>
+     */
+    @After
+    public void TearDown()
+    {
+        JmxStores.clearListOfJmxStores();
+        _mbeanGetter = null;
+    }
+
+    /**
+     * <p>
+     * Verify that the store is only quarantined after the threshold of
+     * consecutive failures, and that the quarantine period doubles up to the
+     * maximum on every further failure.
+     * </p>
+     */
+    @Test
+    public void verifyQuarantineBackoff()
+    {
+        JmxStoreHealth health = new JmxStoreHealth(3, 1000, 3000);
+
+        Assert.assertFalse(health.recordFailure(5, 0));
+        Assert.assertFalse(health.recordFailure(5, 0));
+        Assert.assertFalse("Store should not be quarantined below the threshold", health.isQuarantined(0));
+
+        Assert.assertTrue(health.recordFailure(5, 0));
+        Assert.assertTrue("Store should be quarantined", health.isQuarantined(999));
+        Assert.assertFalse("Probe should not be due during quarantine", health.isProbeDue(999));
+        Assert.assertTrue("Probe should be due after quarantine", health.isProbeDue(1000));
+        Assert.assertTrue("First caller should claim the probe", health.claimProbe(1000));
+        Assert.assertFalse("Probe should only be claimed once", health.claimProbe(1000));
+        Assert.assertTrue("Store should stay quarantined during the probe", health.isQuarantined(1000));
+
+        Assert.assertTrue(health.recordFailure(5, 1000));
+        Assert.assertEquals("Backoff should double", 2000, health.getBackoff());
+        Assert.assertTrue(health.recordFailure(5, 3000));
+        Assert.assertEquals("Backoff should be capped", 3000, health.getBackoff());
+
+        health.recordSuccess(20);
+        Assert.assertFalse("Success should clear quarantine", health.isQuarantined(3001));
+        Assert.assertFalse("Success should clear quarantine", health.isProbeDue(100000));
+        Assert.assertEquals(0, health.getConsecutiveFailures());
+        Assert.assertEquals(6, health.getRequestCount());
+        Assert.assertEquals(5, health.getErrorCount());
+        Assert.assertEquals(20, health.getMaxLatency());
+        Assert.assertEquals(20, health.getLastLatency());
+    }
+
+    /**
+     * <p>
+     * Verify that a failing store does not fail the whole request, the MBeans
+     * from the healthy store are still returned.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifyFailingStoreIsSkipped() throws Exception
+    {
+        List<String> skipped = new ArrayList<String>();
+        HashMap<IJMX, Set<ObjectInstance>> mbeans = _mbeanGetter.getMBeans(
+                "com.interopbridges.scx:jmxType=operationCall", skipped);
+
+        Assert.assertEquals("Only the healthy store should return MBeans", 1, mbeans.size());
+        Assert.assertTrue(mbeans.containsKey(_goodStore));
+        Assert.assertEquals(1, skipped.size());
+        Assert.assertEquals(MockJmxThatFailsQueries.class.getName(), skipped.get(0));
+        Assert.assertEquals(1, JmxStores.getStoreHealth(_badStore).getErrorCount());
+        Assert.assertEquals(0, JmxStores.getStoreHealth(_goodStore).getErrorCount());
+    }
+
+    /**
+     * <p>
+     * Verify that the skipped store is reported in the XML response.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifySkippedStoreIsReportedInXml() throws Exception
+    {
+        String xml = _mbeanGetter.getMBeansAsXml(
+                "com.interopbridges.scx:jmxType=operationCall", null).toString();
+
+        String[] names = SAXParser.XPathQuery(xml, "/MBeans/SkippedJmxStores/JmxStore/@Name");
+        Assert.assertEquals("Skipped store should be listed", 1, names.length);
+        Assert.assertEquals(MockJmxThatFailsQueries.class.getName(), names[0]);
+        Assert.assertTrue("MBeans from the healthy store should be returned",
+                SAXParser.XPathQuery(xml, "/MBeans/MBean").length > 0);
+    }
+
+    /**
+     * <p>
+     * Verify that once the store has been quarantined it is no longer
+     * queried.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifyQuarantinedStoreIsNotQueried() throws Exception
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            _mbeanGetter.getMBeans("com.interopbridges.scx:jmxType=operationCall", null);
+        }
+        Assert.assertTrue("Quarantined store should not be queried again",
+                _badStore.queryCount < 10);
+        Assert.assertTrue(JmxStores.getStoreHealth(_badStore).isQuarantined(System.currentTimeMillis()));
+    }
+
+    /**
+     * <p>
+     * Verify that the request fails if none of the stores can be queried.
+     * </p>
+     */
+    @Test
+    public void verifyAllStoresFailing()
+    {
+        List<IJMX> stores = new ArrayList<IJMX>();
+        stores.add(_badStore);
+        try
+        {
+            new MBeanGetter(stores).getMBeans("com.interopbridges.scx:jmxType=operationCall");
+            Assert.fail("An IO error should have been reported");
+        }
+        catch (ScxException e)
+        {
+            Assert.assertEquals(ScxExceptionCode.IO_ERROR_EXCEPTION, e.getExceptionCode());
+        }
+    }
+}
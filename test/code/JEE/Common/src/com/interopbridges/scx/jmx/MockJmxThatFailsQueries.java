@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jmx;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanInfo;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+/**
+ * <p>
+ * Mock implementation of the JMX Abstraction interface to support a JMX store
+ * that connects successfully but then fails when it is queried. This
+ * simulates a 3rd party JMX Store (like the WebSphere AdminService) that has
+ * got into a bad state after start-up.
+ * </p>
+ *
+ */
+public class MockJmxThatFailsQueries implements IJMX {
+
+    /**
+     * <p>
+     * If true, all queries against the store fail with an IOException.
+     * </p>
+     */
+    public boolean failQueries = true;
+
+    /**
+     * <p>
+     * Value returned from verifyStoreConnection().
+     * </p>
+     */
+    public boolean connected = true;
+
+    /**
+     * <p>
+     * Number of times the store has been queried.
+     * </p>
+     */
+    public int queryCount = 0;
+
+    /**
+     * <p>
+     * Number of times the store connection has been verified.
+     * </p>
+     */
+    public int verifyCount = 0;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#getAttribute(javax.management.ObjectName,
+     * java.lang.String)
+     */
+    public Object getAttribute(ObjectName name, String attribute) throws IOException
+    {
+        throw new IOException("Store is not responding");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#getMBeanCount()
+     */
+    public Integer getMBeanCount() throws IOException
+    {
+        throw new IOException("Store is not responding");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#getMBeanInfo(javax.management.ObjectName)
+     */
+    public MBeanInfo getMBeanInfo(ObjectName name) throws InstanceNotFoundException
+    {
+        throw new InstanceNotFoundException(name.toString());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#isStandAloneJmxStore()
+     */
+    public boolean isStandAloneJmxStore()
+    {
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#queryMBeans(javax.management.ObjectName,
+     * javax.management.QueryExp)
+     */
+    public Set<ObjectInstance> queryMBeans(ObjectName name, QueryExp query) throws IOException
+    {
+        queryCount++;
+        if (failQueries)
+        {
+            throw new IOException("Store is not responding");
+        }
+        return new HashSet<ObjectInstance>();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#queryNames(javax.management.ObjectName,
+     * javax.management.QueryExp)
+     */
+    public Set<ObjectName> queryNames(ObjectName name, QueryExp query) throws IOException
+    {
+        queryCount++;
+        if (failQueries)
+        {
+            throw new IOException("Store is not responding");
+        }
+        return new HashSet<ObjectName>();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#registerMBean(java.lang.Object,
+     * javax.management.ObjectName)
+     */
+    public void registerMBean(Object bean, ObjectName keys) throws IOException
+    {
+        throw new IOException("Store is not responding");
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#verifyStoreConnection()
+     */
+    public boolean verifyStoreConnection()
+    {
+        verifyCount++;
+        return connected;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#getMBeanServerID()
+     */
+    public int getMBeanServerID()
+    {
+        return this.hashCode();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see com.interopbridges.scx.jmx.IJMX#invoke()
+     */
+    public Object invoke(ObjectName name, String operationName, Object[] params, String[] signature)
+            throws IOException
+    {
+        throw new IOException("Store is not responding");
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.jmx;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.interopbridges.scx.mbeans.BasicTypes;
+import com.interopbridges.scx.mbeanserver.MockMBeanServer;
+
+/**
+ * <p>
+ * Test class for the local ObjectName index. The results from the index are
+ * compared against the results of the same query sent to the MBeanServer.
+ * </p>
+ *
+ */
+public class ObjectNameIndexTest
+{
+    /**
+     * <p>
+     * Queries used to compare the index against the MBeanServer.
+     * </p>
+     */
+    private static final String[] QUERIES = {
+        "*:*",
+        "Catalina:*",
+        "Catalina:type=ThreadPool,*",
+        "Catalina:type=ThreadPool,name=http-8080",
+        "Catalina:type=Thread*,*",
+        "Catalina:name=ajp-8009,*",
+        "Cata*:type=Manager,*",
+        "Catalina:type=DoesNotExist,*",
+        "Other:*",
+        "JMImplementation:*",
+    };
+
+    /**
+     * <p>
+     * MBeanServer holding the test MBeans.
+     * </p>
+     */
+    private MBeanServer _server;
+
+    /**
+     * <p>
+     * System under test.
+     * </p>
+     */
+    private ObjectNameIndex _index;
+
+    /**
+     * <p>
+     * Method invoked before each unit-test in this class.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBeans could not be registered
+     */
+    @Before
+    public void Setup() throws Exception
+    {
+        _server = MBeanServerFactory.newMBeanServer();
+        register("Catalina:type=ThreadPool,name=http-8080");
+        register("Catalina:type=ThreadPool,name=ajp-8009");
+        register("Catalina:type=Manager,context=/app1,host=localhost");
+        register("Catalina:type=Manager,context=/app2,host=localhost");
+        register("Other:type=ThreadPool,name=http-8080");
+
+        _index = new ObjectNameIndex(_server);
+        Assert.assertTrue("Index should start", _index.start());
+    }
+
+    /**
+     * <p>
+     * Method invoked after each unit-test in this class.
+     * </p>
+     */
+    @After
+    public void TearDown()
+    {
+        _index.stop();
+        _server = null;
+    }
+
+    /**
+     * <p>
+     * Verify that the seeded index answers queries the same way as the
+     * MBeanServer.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifySeededIndex() throws Exception
+    {
+        verifyQueries();
+        Assert.assertEquals(2, _index.queryNames(new ObjectName("Catalina:type=ThreadPool,*")).size());
+        Assert.assertEquals(_server.queryMBeans(null, null), _index.queryMBeans(null));
+    }
+
+    /**
+     * <p>
+     * Verify that MBeans registered and unregistered after the index was
+     * seeded are picked up.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBeans could not be (un)registered
+     */
+    @Test
+    public void verifyIndexFollowsRegistrations() throws Exception
+    {
+        register("Catalina:type=ThreadPool,name=https-8443");
+        _server.unregisterMBean(new ObjectName("Catalina:type=ThreadPool,name=ajp-8009"));
+        _server.unregisterMBean(new ObjectName("Other:type=ThreadPool,name=http-8080"));
+
+        verifyQueries();
+        Assert.assertTrue(_index.queryNames(new ObjectName("Other:*")).isEmpty());
+    }
+
+    /**
+     * <p>
+     * Verify that a name unregistered after the seeding snapshot was taken,
+     * but before the index was seeded from it, does not reach the index.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifyNameUnregisteredWhileSeeding() throws Exception
+    {
+        final ObjectName stale = new ObjectName("Catalina:type=ThreadPool,name=ajp-8009");
+        MBeanServer server = (MBeanServer) Proxy.newProxyInstance(
+                MBeanServer.class.getClassLoader(),
+                new Class[] { MBeanServer.class },
+                new InvocationHandler()
+                {
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+                    {
+                        try
+                        {
+                            Object result = method.invoke(_server, args);
+                            if (method.getName().equals("queryNames") && _server.isRegistered(stale))
+                            {
+                                _server.unregisterMBean(stale);
+                            }
+                            return result;
+                        }
+                        catch (InvocationTargetException e)
+                        {
+                            throw e.getCause();
+                        }
+                    }
+                });
+
+        ObjectNameIndex index = new ObjectNameIndex(server);
+        Assert.assertTrue("Index should start", index.start());
+        try
+        {
+            Set<ObjectName> names = index.queryNames(new ObjectName("Catalina:type=ThreadPool,*"));
+            Assert.assertEquals(1, names.size());
+            Assert.assertFalse(names.contains(stale));
+            Assert.assertEquals(_server.queryMBeans(null, null), index.queryMBeans(null));
+        }
+        finally
+        {
+            index.stop();
+        }
+    }
+
+    /**
+     * <p>
+     * Verify that a stopped index no longer answers queries.
+     * </p>
+     */
+    @Test
+    public void verifyStoppedIndex()
+    {
+        _index.stop();
+        Assert.assertFalse(_index.isActive());
+        Assert.assertNull(_index.queryNames(null));
+    }
+
+    /**
+     * <p>
+     * Verify that the JDK JMX store answers queries from the index once it
+     * is enabled, and that MBeanServers without a delegate are not indexed.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifyJdkStoreUsesIndex() throws Exception
+    {
+        JdkJMXAbstraction store = new JdkJMXAbstraction(_server);
+        Assert.assertTrue(store.enableObjectNameIndex());
+
+        ObjectName query = new ObjectName("Catalina:type=ThreadPool,*");
+        Assert.assertEquals(_server.queryMBeans(query, null), store.queryMBeans(query, null));
+        Assert.assertEquals(_server.queryNames(query, null), store.queryNames(query, null));
+        store.disableObjectNameIndex();
+
+        Assert.assertFalse("Mock MBeanServer has no delegate",
+                new JdkJMXAbstraction(MockMBeanServer.getInstance()).enableObjectNameIndex());
+    }
+
+    /**
+     * <p>
+     * Compare the results of all the test queries.
+     * </p>
+     */
+    private void verifyQueries() throws Exception
+    {
+        for (String query : QUERIES)
+        {
+            ObjectName name = new ObjectName(query);
+            Assert.assertEquals("Index result differs for " + query,
+                    _server.queryNames(name, null), _index.queryNames(name));
+        }
+    }
+
+    /**
+     * <p>
+     * Register a test MBean with the given name.
+     * </p>
+     */
+    private void register(String name) throws Exception
+    {
+        _server.registerMBean(new BasicTypes(), new ObjectName(name));
+    }
+}
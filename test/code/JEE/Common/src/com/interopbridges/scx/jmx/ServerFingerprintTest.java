@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.jmx;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.interopbridges.scx.mbeans.DummyJBossMBean;
+import com.interopbridges.scx.util.JmxConstant;
+
+/**
+ * <p>
+ * Test class for the application server fingerprint kept by JmxStores.
+ * </p>
+ *
+ */
+public class ServerFingerprintTest
+{
+    /**
+     * <p>
+     * Method invoked after each unit-test in this class.
+     * </p>
+     */
+    @After
+    public void TearDown()
+    {
+        JmxStores.clearListOfJmxStores();
+    }
+
+    /**
+     * <p>
+     * Verify that the fingerprint is built when a store is added, that the
+     * server name and version are read once, and that the fingerprint is
+     * dropped with the stores.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBean could not be registered
+     */
+    @Test
+    public void verifyJBossFingerprint() throws Exception
+    {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        JmxStores.clearListOfJmxStores();
+        Assert.assertSame(ServerFingerprint.NONE, JmxStores.getServerFingerprint());
+        Assert.assertNull(ServerFingerprint.NONE.getAppServerName());
+
+        JmxStores.addNamedStoreToJmxStores(new JdkJMXAbstraction(server), JmxConstant.JBOSS_MBEAN_STORE_NAME);
+        ServerFingerprint fingerprint = JmxStores.getServerFingerprint();
+        Assert.assertEquals(JmxConstant.JBOSS_MBEAN_STORE_NAME, fingerprint.getStoreName());
+        Assert.assertFalse(fingerprint.isJBoss7OrWildfly());
+
+        // The server MBean is registered after the store was added
+        ObjectName name = new ObjectName("jboss.management.local:j2eeType=J2EEServer,name=Local");
+        server.registerMBean(new DummyJBossMBean(), name);
+        Assert.assertEquals("JBoss", fingerprint.getAppServerName());
+        Assert.assertEquals("99.99.99", fingerprint.getAppServerVersion());
+
+        server.unregisterMBean(name);
+        Assert.assertEquals("JBoss", fingerprint.getAppServerName());
+
+        JmxStores.clearListOfJmxStores();
+        Assert.assertSame(ServerFingerprint.NONE, JmxStores.getServerFingerprint());
+    }
+
+    /**
+     * <p>
+     * Verify that JBoss 7 and Wildfly are told apart from the earlier
+     * versions, and named after their major version.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBean could not be registered
+     */
+    @Test
+    public void verifyWildflyFingerprint() throws Exception
+    {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("processType", "Server");
+        attributes.put("releaseVersion", "8.2.1.Final");
+        server.registerMBean(new MapMBean(attributes), new ObjectName("jboss.as:management-root=server"));
+
+        ServerFingerprint fingerprint = ServerFingerprint.detect(JmxConstant.JBOSS_MBEAN_STORE_NAME,
+                new JdkJMXAbstraction(server));
+        Assert.assertTrue(fingerprint.isJBoss7OrWildfly());
+        Assert.assertEquals("Wildfly", fingerprint.getAppServerName());
+        Assert.assertEquals("8.2.1.Final", fingerprint.getAppServerVersion());
+
+        fingerprint = ServerFingerprint.detect(JmxConstant.TOMCAT_MBEAN_STORE_NAME, new JdkJMXAbstraction(server));
+        Assert.assertFalse(fingerprint.isJBoss7OrWildfly());
+        Assert.assertNull(fingerprint.getAppServerVersion());
+    }
+
+    /**
+     * <p>
+     * MBean exposing the entries of a map as read only attributes.
+     * </p>
+     */
+    public static class MapMBean implements DynamicMBean
+    {
+        private final Map<String, Object> _attributes;
+
+        public MapMBean(Map<String, Object> attributes)
+        {
+            this._attributes = attributes;
+        }
+
+        public Object getAttribute(String attribute) throws AttributeNotFoundException
+        {
+            if (!this._attributes.containsKey(attribute))
+            {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return this._attributes.get(attribute);
+        }
+
+        public AttributeList getAttributes(String[] attributes)
+        {
+            AttributeList list = new AttributeList();
+            for (int i = 0; i < attributes.length; i++)
+            {
+                list.add(new Attribute(attributes[i], this._attributes.get(attributes[i])));
+            }
+            return list;
+        }
+
+        public MBeanInfo getMBeanInfo()
+        {
+            MBeanAttributeInfo[] info = new MBeanAttributeInfo[this._attributes.size()];
+            int i = 0;
+            for (String name : this._attributes.keySet())
+            {
+                info[i++] = new MBeanAttributeInfo(name, String.class.getName(), name, true, false, false);
+            }
+            return new MBeanInfo(getClass().getName(), "Map MBean", info, null, null, null);
+        }
+
+        public Object invoke(String actionName, Object[] params, String[] signature)
+        {
+            return null;
+        }
+
+        public void setAttribute(Attribute attribute)
+        {
+            // Read only
+        }
+
+        public AttributeList setAttributes(AttributeList attributes)
+        {
+            return new AttributeList();
+        }
+    }
+}
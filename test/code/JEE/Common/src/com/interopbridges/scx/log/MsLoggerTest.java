@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.log;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Test class for the level checks and parameterized messages of the logger.
+ * </p>
+ *
+ */
+public class MsLoggerTest
+{
+    /**
+     * <p>
+     * The logger wrapped by MsLogger.
+     * </p>
+     */
+    private Logger _julLogger;
+
+    /**
+     * <p>
+     * Level of the logger before the test.
+     * </p>
+     */
+    private Level _level;
+
+    /**
+     * <p>
+     * Messages published during the test.
+     * </p>
+     */
+    private List<String> _messages;
+
+    /**
+     * <p>
+     * Handler recording the published messages.
+     * </p>
+     */
+    private Handler _handler;
+
+    /**
+     * <p>
+     * Method invoked before each unit-test in this class.
+     * </p>
+     */
+    @Before
+    public void Setup()
+    {
+        _julLogger = Logger.getLogger("com.interopbridges.scx");
+        _level = _julLogger.getLevel();
+        _messages = new ArrayList<String>();
+        _handler = new Handler()
+        {
+            public void publish(LogRecord record)
+            {
+                _messages.add(new SimpleFormatter().formatMessage(record));
+            }
+
+            public void flush()
+            {
+            }
+
+            public void close()
+            {
+            }
+        };
+        _handler.setLevel(Level.ALL);
+        _julLogger.addHandler(_handler);
+    }
+
+    /**
+     * <p>
+     * Method invoked after each unit-test in this class.
+     * </p>
+     */
+    @After
+    public void TearDown()
+    {
+        _julLogger.removeHandler(_handler);
+        _julLogger.setLevel(_level);
+    }
+
+    /**
+     * <p>
+     * Verify that the logger is handed out without creating a new one.
+     * </p>
+     */
+    @Test
+    public void verifySingleLogger()
+    {
+        Assert.assertSame(LoggingFactory.getLogger(), LoggingFactory.getLogger());
+    }
+
+    /**
+     * <p>
+     * Verify that the parameters of a disabled message are not formatted.
+     * </p>
+     */
+    @Test
+    public void verifyDisabledNotFormatted()
+    {
+        _julLogger.setLevel(Level.INFO);
+        ILogger logger = LoggingFactory.getLogger();
+        CountingParameter param = new CountingParameter();
+
+        Assert.assertFalse(logger.isFineEnabled());
+        Assert.assertFalse(logger.isFinerEnabled());
+        Assert.assertFalse(logger.isFinestEnabled());
+        logger.fine("Value {0}", param);
+        logger.fine("Values {0} {1}", param, param);
+        logger.finer("Value {0}", param);
+        logger.finer("Values {0} {1}", param, param);
+
+        Assert.assertEquals(0, param._count);
+        Assert.assertEquals(0, _messages.size());
+    }
+
+    /**
+     * <p>
+     * Verify that the parameters of an enabled message are formatted into
+     * the pattern.
+     * </p>
+     */
+    @Test
+    public void verifyEnabledFormatted()
+    {
+        _julLogger.setLevel(Level.FINER);
+        ILogger logger = LoggingFactory.getLogger();
+
+        Assert.assertTrue(logger.isFineEnabled());
+        Assert.assertTrue(logger.isFinerEnabled());
+        Assert.assertFalse(logger.isFinestEnabled());
+        logger.fine("Excluding mbean : {0}", "a:b=c");
+        logger.finer("Found {0} MBeans matching the ObjectName ''{1}''", "3", "a:*");
+
+        Assert.assertEquals(2, _messages.size());
+        Assert.assertEquals("Excluding mbean : a:b=c", _messages.get(0));
+        Assert.assertEquals("Found 3 MBeans matching the ObjectName 'a:*'", _messages.get(1));
+    }
+
+    /**
+     * <p>
+     * Verify that a disabled parameterized message allocates nothing, its
+     * parameters are passed as they are and no message is built.
+     * </p>
+     *
+     * @throws Exception
+     *             If the allocated bytes could not be read
+     */
+    @Test
+    public void verifyDisabledAllocation() throws Exception
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Method allocated;
+        try
+        {
+            allocated = Class.forName("com.sun.management.ThreadMXBean").getMethod(
+                    "getThreadAllocatedBytes", new Class<?>[] { long.class });
+        }
+        catch (Exception e)
+        {
+            // Allocations cannot be measured on this JVM
+            return;
+        }
+
+        _julLogger.setLevel(Level.INFO);
+        ILogger logger = LoggingFactory.getLogger();
+        String name = "com.interopbridges.scx:type=Test,name=Allocation";
+        Long id = Long.valueOf(Thread.currentThread().getId());
+        int calls = 10000;
+
+        long start = ((Long) allocated.invoke(threads, new Object[] { id })).longValue();
+        for (int i = 0; i < calls; i++)
+        {
+            logger.fine("Excluding mbean : {0}", name);
+        }
+        long lazy = ((Long) allocated.invoke(threads, new Object[] { id })).longValue() - start;
+
+        Assert.assertTrue("Disabled messages allocated " + lazy + " bytes", lazy < calls);
+    }
+
+    /**
+     * <p>
+     * Parameter counting how often it is formatted.
+     * </p>
+     */
+    private static class CountingParameter
+    {
+        int _count;
+
+        public String toString()
+        {
+            _count++;
+            return "formatted";
+        }
+    }
+}
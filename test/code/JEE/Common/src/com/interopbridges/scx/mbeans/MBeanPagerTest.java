@@ -0,0 +1,269 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.mbeans;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JmxStores;
+import com.interopbridges.scx.jmx.MockJmx;
+import com.interopbridges.scx.util.JmxConstant;
+import com.interopbridges.scx.util.SAXParser;
+import com.interopbridges.scx.webservices.FauxMBeanGenerator;
+
+/**
+ * <p>
+ * Test class for paging through large sets of MBeans with the Limit and
+ * Cursor parameters.
+ * </p>
+ *
+ */
+public class MBeanPagerTest
+{
+    /**
+     * <p>
+     * The (fake) JMX stores paged through.
+     * </p>
+     */
+    private List<IJMX> _stores;
+
+    /**
+     * <p>
+     * The MBeans matching the (fake) query.
+     * </p>
+     */
+    private HashMap<IJMX, Set<ObjectInstance>> _mbeans;
+
+    /**
+     * <p>
+     * Method invoked before each unit-test in this class.
+     * </p>
+     *
+     * @throws Exception
+     *             If the ObjectNames could not be created
+     */
+    @Before
+    public void Setup() throws Exception
+    {
+        _stores = new ArrayList<IJMX>();
+        _stores.add(new MockJmx());
+        _stores.add(new MockJmx());
+        _stores.add(new MockJmx());
+
+        _mbeans = new HashMap<IJMX, Set<ObjectInstance>>();
+        addMBeans(_stores.get(0), "first", 7);
+        addMBeans(_stores.get(2), "third", 5);
+    }
+
+    /**
+     * <p>
+     * Method invoked after each unit-test in this class.
+     * </p>
+     */
+    @After
+    public void TearDown()
+    {
+        JmxStores.clearListOfJmxStores();
+    }
+
+    /**
+     * <p>
+     * Verify that walking all the pages returns every MBean exactly once.
+     * </p>
+     *
+     * @throws Exception
+     *             If paging failed
+     */
+    @Test
+    public void verifyAllPagesCoverAllMBeans() throws Exception
+    {
+        Set<ObjectName> seen = new HashSet<ObjectName>();
+        String cursor = null;
+        int pages = 0;
+        do
+        {
+            MBeanPager pager = new MBeanPager(_stores, _mbeans, 5, cursor);
+            int count = 0;
+            for (Set<ObjectInstance> page : pager.getPage().values())
+            {
+                for (ObjectInstance mbean : page)
+                {
+                    Assert.assertTrue("MBean returned twice", seen.add(mbean.getObjectName()));
+                    count++;
+                }
+            }
+            Assert.assertTrue("Page too large", count <= 5);
+            cursor = pager.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        Assert.assertEquals(12, seen.size());
+        Assert.assertEquals(3, pages);
+    }
+
+    /**
+     * <p>
+     * Verify that MBeans registered and unregistered between two pages do not
+     * cause other MBeans to be skipped or repeated.
+     * </p>
+     *
+     * @throws Exception
+     *             If paging failed
+     */
+    @Test
+    public void verifyRegistrationBetweenPages() throws Exception
+    {
+        MBeanPager first = new MBeanPager(_stores, _mbeans, 3, null);
+        Set<ObjectInstance> firstPage = first.getPage().get(_stores.get(0));
+        Assert.assertEquals(3, firstPage.size());
+
+        // Remove an MBean already returned and add one before the cursor
+        ObjectInstance returned = firstPage.iterator().next();
+        _mbeans.get(_stores.get(0)).remove(returned);
+        _mbeans.get(_stores.get(0)).add(new ObjectInstance(
+                new ObjectName("com.interopbridges.scx:name=first00"), MockJmx.class.getName()));
+
+        MBeanPager second = new MBeanPager(_stores, _mbeans, 3, first.getNextCursor());
+        for (ObjectInstance mbean : second.getPage().get(_stores.get(0)))
+        {
+            Assert.assertFalse("MBean repeated", firstPage.contains(mbean));
+            Assert.assertTrue("MBean before the cursor returned",
+                    mbean.getObjectName().getCanonicalName().compareTo(
+                            "com.interopbridges.scx:name=first03") > 0);
+        }
+        Assert.assertEquals("com.interopbridges.scx:name=first04",
+                second.getPage().get(_stores.get(0)).iterator().next().getObjectName().getCanonicalName());
+    }
+
+    /**
+     * <p>
+     * Verify that the largest possible limit returns every MBean on a single
+     * page.
+     * </p>
+     *
+     * @throws Exception
+     *             If paging failed
+     */
+    @Test
+    public void verifyMaximumLimit() throws Exception
+    {
+        MBeanPager pager = new MBeanPager(_stores, _mbeans, Integer.MAX_VALUE, null);
+        Assert.assertEquals(7, pager.getPage().get(_stores.get(0)).size());
+        Assert.assertEquals(5, pager.getPage().get(_stores.get(2)).size());
+        Assert.assertNull(pager.getNextCursor());
+    }
+
+    /**
+     * <p>
+     * Verify that an invalid cursor is rejected.
+     * </p>
+     */
+    @Test
+    public void verifyInvalidCursor()
+    {
+        String[] cursors = { "zz", "abc", MBeanPager.encodeCursor(-1, "x:a=b"), "6e616d65" };
+        for (String cursor : cursors)
+        {
+            try
+            {
+                new MBeanPager(_stores, _mbeans, 5, cursor);
+                Assert.fail("Cursor should be rejected: " + cursor);
+            }
+            catch (ScxException e)
+            {
+                Assert.assertEquals(ScxExceptionCode.ERROR_INVALID_CURSOR, e.getExceptionCode());
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Verify the Limit parameter and the NextCursor attribute in the XML
+     * response, walking the pages must return the same MBeans as the unpaged
+     * query.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifyPagedXml() throws Exception
+    {
+        MockJmx store = new MockJmx();
+        new FauxMBeanGenerator(store).run();
+        List<IJMX> stores = new ArrayList<IJMX>();
+        stores.add(store);
+        MBeanGetter getter = new MBeanGetter(stores);
+        String query = "com.interopbridges.scx:jmxType=operationCall";
+
+        int total = SAXParser.XPathQuery(getter.getMBeansAsXml(query, null).toString(),
+                "/MBeans/MBean/@objectName").length;
+        Assert.assertTrue("Need more than one MBean to page", total > 1);
+
+        Set<String> seen = new HashSet<String>();
+        String cursor = null;
+        do
+        {
+            HashMap<String, String[]> params = new HashMap<String, String[]>();
+            params.put(JmxConstant.STR_LIMIT, new String[] { "1" });
+            if (cursor != null)
+            {
+                params.put(JmxConstant.STR_CURSOR, new String[] { cursor });
+            }
+            String xml = getter.getMBeansAsXml(query, params).toString();
+            String[] names = SAXParser.XPathQuery(xml, "/MBeans/MBean/@objectName");
+            Assert.assertEquals("Each page should hold one MBean", 1, names.length);
+            Assert.assertTrue(seen.add(names[0]));
+
+            String[] next = SAXParser.XPathQuery(xml, "/MBeans/@NextCursor");
+            cursor = next.length == 0 ? null : next[0];
+        } while (cursor != null);
+
+        Assert.assertEquals(total, seen.size());
+    }
+
+    /**
+     * <p>
+     * Add a number of (fake) MBeans for a store.
+     * </p>
+     */
+    private void addMBeans(IJMX store, String prefix, int count) throws Exception
+    {
+        Set<ObjectInstance> beans = new HashSet<ObjectInstance>();
+        for (int i = 1; i <= count; i++)
+        {
+            beans.add(new ObjectInstance(new ObjectName("com.interopbridges.scx:name=" + prefix + "0" + i),
+                    MockJmx.class.getName()));
+        }
+        _mbeans.put(store, beans);
+    }
+}
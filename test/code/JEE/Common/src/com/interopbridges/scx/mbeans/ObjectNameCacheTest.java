@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.mbeans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.MockJmx;
+
+/**
+ * <p>
+ * Test class for the cache of parsed JMX queries.
+ * </p>
+ *
+ */
+public class ObjectNameCacheTest
+{
+    /**
+     * <p>
+     * Verify that parsed queries are returned from the cache and that the
+     * least recently used query is dropped when the cache is full.
+     * </p>
+     *
+     * @throws Exception
+     *             If the ObjectName could not be created
+     */
+    @Test
+    public void verifyLeastRecentlyUsedEviction() throws Exception
+    {
+        ObjectNameCache cache = new ObjectNameCache(2);
+        ObjectName a = new ObjectName("a:type=A");
+        ObjectName b = new ObjectName("b:type=B");
+        ObjectName c = new ObjectName("c:type=C");
+
+        cache.put("a:type=A", a);
+        cache.put("b:type=B", b);
+        Assert.assertSame(a, cache.get("a:type=A"));
+
+        cache.put("c:type=C", c);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame("Recently used entry should be kept", a, cache.get("a:type=A"));
+        Assert.assertNull("Least recently used entry should be dropped", cache.get("b:type=B"));
+        Assert.assertSame(c, cache.get("c:type=C"));
+    }
+
+    /**
+     * <p>
+     * Verify that a query which could not be parsed keeps failing with the
+     * same exception code and cause, each time with a new exception.
+     * </p>
+     */
+    @Test
+    public void verifyNegativeCaching()
+    {
+        ObjectNameCache cache = new ObjectNameCache(2);
+        Exception cause = new IllegalArgumentException("bad");
+        ScxException reported = new ScxException(ScxExceptionCode.MALFORMED_OBJECT_NAME, cause);
+        cache.putMalformed("bad", reported);
+
+        ScxException previous = reported;
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                cache.get("bad");
+                Assert.fail("Cached malformed query should throw");
+            }
+            catch (ScxException e)
+            {
+                Assert.assertEquals(ScxExceptionCode.MALFORMED_OBJECT_NAME, e.getExceptionCode());
+                Assert.assertSame(cause, e.getCause());
+                Assert.assertNotSame(previous, e);
+                previous = e;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Verify that a disabled cache does not keep anything.
+     * </p>
+     *
+     * @throws Exception
+     *             If the ObjectName could not be created
+     */
+    @Test
+    public void verifyDisabledCache() throws Exception
+    {
+        ObjectNameCache cache = new ObjectNameCache(0);
+        cache.put("a:type=A", new ObjectName("a:type=A"));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get("a:type=A"));
+    }
+
+    /**
+     * <p>
+     * Verify that the MBeanGetter reports a malformed query every time it is
+     * requested, not just the first time.
+     * </p>
+     */
+    @Test
+    public void verifyRepeatedMalformedQuery()
+    {
+        List<IJMX> stores = new ArrayList<IJMX>();
+        stores.add(new MockJmx());
+        MBeanGetter getter = new MBeanGetter(stores);
+
+        for (int i = 0; i < 2; i++)
+        {
+            try
+            {
+                getter.getMBeans("com.interopbridges.scx:Name=\"unterminated,*");
+                Assert.fail("A malformed query should throw");
+            }
+            catch (ScxException e)
+            {
+                Assert.assertEquals(ScxExceptionCode.MALFORMED_OBJECT_NAME, e.getExceptionCode());
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.mbeans;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.management.AttributeNotFoundException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanException;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.StandardMBean;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.interopbridges.scx.ScxException;
+import com.interopbridges.scx.ScxExceptionCode;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JdkJMXAbstraction;
+import com.interopbridges.scx.jmx.JmxStores;
+import com.interopbridges.scx.util.JmxConstant;
+import com.interopbridges.scx.util.SAXParser;
+
+/**
+ * <p>
+ * Test class for the cost estimation and the admission control of queries.
+ * </p>
+ *
+ */
+public class QueryAdmissionTest
+{
+    /**
+     * <p>
+     * Query matching the MBeans registered for the tests.
+     * </p>
+     */
+    private static final String QUERY = "com.interopbridges.scx:type=BasicTypes,*";
+
+    /**
+     * <p>
+     * Number of MBeans registered for the tests.
+     * </p>
+     */
+    private static final int MBEAN_COUNT = 4;
+
+    /**
+     * <p>
+     * Number of getAttribute calls made to the JMX store.
+     * </p>
+     */
+    private int _calls;
+
+    /**
+     * <p>
+     * The JMX store holding the MBeans.
+     * </p>
+     */
+    private IJMX _store;
+
+    /**
+     * <p>
+     * Number of attributes of one MBean.
+     * </p>
+     */
+    private int _attributes;
+
+    /**
+     * <p>
+     * Method invoked before each unit-test in this class.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBeans could not be registered
+     */
+    @Before
+    public void Setup() throws Exception
+    {
+        _store = new JdkJMXAbstraction(MBeanServerFactory.newMBeanServer())
+        {
+            public Object getAttribute(ObjectName name, String attribute)
+                    throws MBeanException, AttributeNotFoundException,
+                    InstanceNotFoundException, ReflectionException, IOException
+            {
+                _calls++;
+                return super.getAttribute(name, attribute);
+            }
+        };
+        for (int i = 0; i < MBEAN_COUNT; i++)
+        {
+            _store.registerMBean(new StandardMBean(new BasicTypes(), BasicTypesMBean.class),
+                    new ObjectName("com.interopbridges.scx:type=BasicTypes,name=" + i));
+        }
+        _attributes = _store.getMBeanInfo(new ObjectName("com.interopbridges.scx:type=BasicTypes,name=0"))
+                .getAttributes().length;
+    }
+
+    /**
+     * <p>
+     * Method invoked after each unit-test in this class.
+     * </p>
+     */
+    @After
+    public void TearDown()
+    {
+        JmxStores.clearListOfJmxStores();
+    }
+
+    /**
+     * <p>
+     * Verify the cost at each depth and the depth that fits a threshold.
+     * </p>
+     */
+    @Test
+    public void verifyCost()
+    {
+        QueryCost cost = new QueryCost(10, 100, 5);
+        Assert.assertEquals(510, cost.getCost());
+        Assert.assertEquals(10, cost.getCost(0));
+        Assert.assertEquals(210, cost.getCost(2));
+
+        Assert.assertEquals(5, cost.getAffordableDepth(510));
+        Assert.assertEquals(2, cost.getAffordableDepth(309));
+        Assert.assertEquals(0, cost.getAffordableDepth(50));
+        Assert.assertEquals(0, cost.getAffordableDepth(5));
+    }
+
+    /**
+     * <p>
+     * Verify the configured policies, an unknown policy is taken as
+     * Downgrade and a threshold of zero disables the admission control.
+     * </p>
+     */
+    @Test
+    public void verifyPolicies()
+    {
+        Assert.assertEquals(QueryAdmission.POLICY_REJECT, new QueryAdmission(1, "reject", 1, 0).getPolicy());
+        Assert.assertEquals(QueryAdmission.POLICY_QUEUE, new QueryAdmission(1, "Queue", 1, 0).getPolicy());
+        Assert.assertEquals(QueryAdmission.POLICY_DOWNGRADE, new QueryAdmission(1, "Rejct", 1, 0).getPolicy());
+
+        QueryAdmission disabled = new QueryAdmission(0, QueryAdmission.POLICY_REJECT, 1, 0);
+        Assert.assertFalse(disabled.isEnabled());
+        Assert.assertEquals(QueryAdmission.DECISION_ACCEPT, disabled.decide(new QueryCost(10, 100, 5)));
+    }
+
+    /**
+     * <p>
+     * Verify that the estimate counts the MBeans and their attributes, and
+     * that the attributes are not counted when only the ObjectNames are
+     * requested.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBeans could not be queried
+     */
+    @Test
+    public void verifyEstimate() throws Exception
+    {
+        MBeanGetter getter = new MBeanGetter(getStores());
+        QueryCostEstimator estimator = new QueryCostEstimator();
+
+        QueryCost cost = estimator.estimate(getter.getMBeans(QUERY), 3);
+        Assert.assertEquals(MBEAN_COUNT, cost.getMBeanCount());
+        Assert.assertEquals(MBEAN_COUNT * _attributes, cost.getAttributeCount());
+        Assert.assertEquals(MBEAN_COUNT + 3L * MBEAN_COUNT * _attributes, cost.getCost());
+
+        cost = estimator.estimate(getter.getMBeans(QUERY), 0);
+        Assert.assertEquals(0, cost.getAttributeCount());
+        Assert.assertEquals(MBEAN_COUNT, cost.getCost());
+    }
+
+    /**
+     * <p>
+     * Verify that Explain=true returns the estimate and the decision without
+     * reading any attribute.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifyExplain() throws Exception
+    {
+        MBeanGetter getter = new MBeanGetter(getStores());
+        getter.setQueryAdmission(new QueryAdmission(MBEAN_COUNT, QueryAdmission.POLICY_REJECT, 1, 0));
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_EXPLAIN, new String[] { "true" });
+        String xml = getter.getMBeansAsXml(QUERY, params).toString();
+
+        Assert.assertEquals(0, _calls);
+        Assert.assertEquals(String.valueOf(MBEAN_COUNT), 
+                SAXParser.XPathQuery(xml, "/QueryCost/@MBeanCount")[0]);
+        Assert.assertEquals(String.valueOf(MBEAN_COUNT * _attributes), 
+                SAXParser.XPathQuery(xml, "/QueryCost/@AttributeCount")[0]);
+        Assert.assertEquals(String.valueOf(JmxConstant.MAXDEPTH), 
+                SAXParser.XPathQuery(xml, "/QueryCost/@MaxDepth")[0]);
+        Assert.assertEquals(QueryAdmission.POLICY_REJECT, 
+                SAXParser.XPathQuery(xml, "/QueryCost/@Decision")[0]);
+    }
+
+    /**
+     * <p>
+     * Verify that the Reject policy fails a query over the threshold before
+     * any attribute is read, and runs the queries within it.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed unexpectedly
+     */
+    @Test
+    public void verifyReject() throws Exception
+    {
+        MBeanGetter getter = new MBeanGetter(getStores());
+        getter.setQueryAdmission(new QueryAdmission(MBEAN_COUNT, QueryAdmission.POLICY_REJECT, 1, 0));
+
+        try
+        {
+            getter.getMBeansAsXml(QUERY, new HashMap<String, String[]>());
+            Assert.fail("The query should be rejected");
+        }
+        catch (ScxException e)
+        {
+            Assert.assertEquals(ScxExceptionCode.ERROR_QUERY_COST_EXCEEDS_LIMITS, e.getExceptionCode());
+        }
+        Assert.assertEquals(0, _calls);
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_MAXDEPTH, new String[] { "0" });
+        String xml = getter.getMBeansAsXml(QUERY, params).toString();
+        Assert.assertEquals(MBEAN_COUNT, SAXParser.XPathQuery(xml, "/MBeans/MBean").length);
+    }
+
+    /**
+     * <p>
+     * Verify that the Downgrade policy renders the MBeans to the depth that
+     * fits the threshold and reports it.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed
+     */
+    @Test
+    public void verifyDowngrade() throws Exception
+    {
+        MBeanGetter getter = new MBeanGetter(getStores());
+        getter.setQueryAdmission(new QueryAdmission(MBEAN_COUNT * (1 + _attributes), 
+                QueryAdmission.POLICY_DOWNGRADE, 1, 0));
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_MAXDEPTH, new String[] { "5" });
+        String xml = getter.getMBeansAsXml(QUERY, params).toString();
+
+        Assert.assertEquals("1", SAXParser.XPathQuery(xml, "/MBeans/@DowngradedDepth")[0]);
+        Assert.assertEquals(MBEAN_COUNT, SAXParser.XPathQuery(xml, "/MBeans/MBean").length);
+        Assert.assertEquals(MBEAN_COUNT * _attributes, _calls);
+        Assert.assertEquals("The parameters of the request should not change", "5", params.get(JmxConstant.STR_MAXDEPTH)[0]);
+    }
+
+    /**
+     * <p>
+     * Verify that the Queue policy lets a limited number of queries over the
+     * threshold run at the same time, and fails a query that waited too
+     * long.
+     * </p>
+     *
+     * @throws Exception
+     *             If the query failed unexpectedly
+     */
+    @Test
+    public void verifyQueue() throws Exception
+    {
+        QueryAdmission admission = new QueryAdmission(MBEAN_COUNT, QueryAdmission.POLICY_QUEUE, 1, 10);
+        MBeanGetter getter = new MBeanGetter(getStores());
+        getter.setQueryAdmission(admission);
+
+        admission.enterQueue("running");
+        try
+        {
+            getter.getMBeansAsXml(QUERY, new HashMap<String, String[]>());
+            Assert.fail("The query should time out in the queue");
+        }
+        catch (ScxException e)
+        {
+            Assert.assertEquals(ScxExceptionCode.ERROR_QUERY_COST_QUEUE_TIMEOUT, e.getExceptionCode());
+        }
+        admission.leaveQueue();
+
+        String xml = getter.getMBeansAsXml(QUERY, new HashMap<String, String[]>()).toString();
+        Assert.assertEquals(MBEAN_COUNT, SAXParser.XPathQuery(xml, "/MBeans/MBean").length);
+
+        // The query released its turn
+        admission.enterQueue("next");
+        admission.leaveQueue();
+    }
+
+    /**
+     * <p>
+     * Get the list of JMX stores holding the test MBeans.
+     * </p>
+     */
+    private List<IJMX> getStores()
+    {
+        List<IJMX> stores = new ArrayList<IJMX>();
+        stores.add(_store);
+        return stores;
+    }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.prometheus;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.interopbridges.scx.jeestats.DoubleStatistic;
+import com.interopbridges.scx.jeestats.LongStatistic;
+import com.interopbridges.scx.jeestats.Statistic;
+import com.interopbridges.scx.jeestats.StatisticGroup;
+import com.interopbridges.scx.jeestats.StatisticItemGroup;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JdkJMXAbstraction;
+import com.interopbridges.scx.jmx.JmxStores;
+import com.interopbridges.scx.mbeans.BasicTypes;
+
+/**
+ * <p>
+ * Test class for the Prometheus text exposition of statistics and MBeans.
+ * </p>
+ *
+ */
+public class PrometheusWriterTest
+{
+    /**
+     * <p>
+     * Verify the conversion of statistic, attribute and domain names to
+     * metric names.
+     * </p>
+     */
+    @Test
+    public void verifySnakeCase()
+    {
+        Assert.assertEquals("heap_used_memory", PrometheusWriter.toSnakeCase("HeapUsedMemory"));
+        Assert.assertEquals("gc_pause", PrometheusWriter.toSnakeCase("GCPause"));
+        Assert.assertEquals("p99", PrometheusWriter.toSnakeCase("P99"));
+        Assert.assertEquals("java_lang", PrometheusWriter.toSnakeCase("java.lang"));
+        Assert.assertEquals("int_number", PrometheusWriter.toSnakeCase("intNumber"));
+    }
+
+    /**
+     * <p>
+     * Verify that the string statistics of a group become labels, and that
+     * the samples of a family follow a single header.
+     * </p>
+     *
+     * @throws Exception
+     *             If the output could not be written
+     */
+    @Test
+    public void verifyStatisticGroup() throws Exception
+    {
+        StatisticGroup group = new StatisticGroup("MemoryPool");
+        group.addStatisticItemGroup(newPool("Eden \"Space\"", 10));
+        group.addStatisticItemGroup(newPool("C:\\Old\nGen", 20));
+
+        StringWriter out = new StringWriter();
+        new PrometheusWriter(out).writeStatistics(group);
+
+        String expected =
+            "# HELP beanspy_memory_pool_used_memory BeanSpy statistic MemoryPool/UsedMemory\n" +
+            "# TYPE beanspy_memory_pool_used_memory gauge\n" +
+            "beanspy_memory_pool_used_memory{pool_name=\"Eden \\\"Space\\\"\"} 10\n" +
+            "beanspy_memory_pool_used_memory{pool_name=\"C:\\\\Old\\nGen\"} 20\n" +
+            "# HELP beanspy_memory_pool_usage BeanSpy statistic MemoryPool/Usage\n" +
+            "# TYPE beanspy_memory_pool_usage gauge\n" +
+            "beanspy_memory_pool_usage{pool_name=\"Eden \\\"Space\\\"\"} 0.5\n" +
+            "beanspy_memory_pool_usage{pool_name=\"C:\\\\Old\\nGen\"} 0.5\n";
+        Assert.assertEquals(expected, out.toString());
+    }
+
+    /**
+     * <p>
+     * Verify that the numeric statistics identifying the groups of properties
+     * become labels instead of gauges, so that groups differing only in them
+     * are written as distinct series.
+     * </p>
+     *
+     * @throws Exception
+     *             If the output could not be written
+     */
+    @Test
+    public void verifyKeyStatisticLabels() throws Exception
+    {
+        StatisticGroup group = new StatisticGroup("GCPause");
+        for (int window = 1; window <= 5; window += 4)
+        {
+            StatisticItemGroup item = new StatisticItemGroup();
+            item.addStatistic(new Statistic("GCName", String.class, "Copy"));
+            item.addKeyStatistic(new LongStatistic("WindowMinutes", long.class, window));
+            item.addStatistic(new LongStatistic("PauseMax", long.class, window * 10));
+            group.addStatisticItemGroup(item);
+        }
+
+        StringWriter out = new StringWriter();
+        new PrometheusWriter(out).writeStatistics(group);
+
+        String expected =
+            "# HELP beanspy_gc_pause_pause_max BeanSpy statistic GCPause/PauseMax\n" +
+            "# TYPE beanspy_gc_pause_pause_max gauge\n" +
+            "beanspy_gc_pause_pause_max{gc_name=\"Copy\",window_minutes=\"1\"} 10\n" +
+            "beanspy_gc_pause_pause_max{gc_name=\"Copy\",window_minutes=\"5\"} 50\n";
+        Assert.assertEquals(expected, out.toString());
+        assertNoDuplicateSeries(out.toString());
+    }
+
+    /**
+     * <p>
+     * Assert that no series, a metric name with its labels, is written
+     * twice in an exposition.
+     * </p>
+     *
+     * @param text
+     *            The exposition
+     */
+    public static void assertNoDuplicateSeries(String text)
+    {
+        Set<String> series = new HashSet<String>();
+        String[] lines = text.split("\n");
+        for (int i = 0; i < lines.length; i++)
+        {
+            if (lines[i].length() > 0 && !lines[i].startsWith("#"))
+            {
+                String name = lines[i].substring(0, lines[i].lastIndexOf(' '));
+                Assert.assertTrue("Duplicate series " + name + " in\n" + text, series.add(name));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Verify the formatting of the values of the statistic types.
+     * </p>
+     */
+    @Test
+    public void verifyValues()
+    {
+        Assert.assertEquals("42", PrometheusWriter.formatValue(new LongStatistic("A", int.class, 42)));
+        Assert.assertEquals("1", PrometheusWriter.formatValue(new Statistic("A", boolean.class, Boolean.TRUE)));
+        Assert.assertEquals("NaN", PrometheusWriter.formatValue(Double.valueOf(Double.NaN)));
+        Assert.assertEquals("+Inf", PrometheusWriter.formatValue(Double.valueOf(Double.POSITIVE_INFINITY)));
+        Assert.assertNull(PrometheusWriter.formatValue(new Statistic("A", String.class, "text")));
+    }
+
+    /**
+     * <p>
+     * Verify that the numeric attributes of the matching MBeans are written,
+     * labeled with the sorted key properties of the ObjectName.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBean could not be registered
+     */
+    @Test
+    public void verifyMBeans() throws Exception
+    {
+        IJMX store = new JdkJMXAbstraction(MBeanServerFactory.newMBeanServer());
+        store.registerMBean(new BasicTypes(), new ObjectName("test.prometheus:type=Basic,name=\"a,b\""));
+
+        List<IJMX> stores = new ArrayList<IJMX>();
+        stores.add(store);
+        List<ObjectName> patterns = new ArrayList<ObjectName>();
+        patterns.add(new ObjectName("test.prometheus:*"));
+        patterns.add(new ObjectName("test.prometheus:type=Basic,*"));
+
+        StringWriter out = new StringWriter();
+        new PrometheusWriter(out).writeMBeans(stores, patterns);
+        String text = out.toString();
+
+        Assert.assertTrue(text, text.indexOf("# TYPE test_prometheus_int_number gauge\n") >= 0);
+        Assert.assertTrue(text, text.indexOf("test_prometheus_int_number{name=\"a,b\",type=\"Basic\"} "
+                + Integer.MAX_VALUE + "\n") >= 0);
+        Assert.assertTrue(text, text.indexOf("test_prometheus_is_boolean{name=\"a,b\",type=\"Basic\"} 1\n") >= 0);
+        Assert.assertEquals(text, -1, text.indexOf("the_label"));
+        Assert.assertEquals(text, -1, text.indexOf("char_letter"));
+        Assert.assertEquals(text, text.indexOf("# TYPE test_prometheus_int_number"),
+                text.lastIndexOf("# TYPE test_prometheus_int_number"));
+    }
+
+    /**
+     * <p>
+     * Verify that ObjectName keys which only differ in case get distinct
+     * label names.
+     * </p>
+     *
+     * @throws Exception
+     *             If the ObjectName could not be created
+     */
+    @Test
+    public void verifyLabelCollisions() throws Exception
+    {
+        // The keys are sorted: TYPE, Type, type
+        Assert.assertEquals("type=\"C\",type_2=\"A\",type_3=\"B\"",
+                PrometheusWriter.getLabels(new ObjectName("test.prometheus:Type=A,type=B,TYPE=C")).toString());
+    }
+
+    /**
+     * <p>
+     * Verify that a failed query is recorded in the health of the store, and
+     * that the remaining patterns are not sent to it.
+     * </p>
+     *
+     * @throws Exception
+     *             If the output could not be written
+     */
+    @Test
+    public void verifyStoreFailureRecorded() throws Exception
+    {
+        final int[] queries = new int[1];
+        IJMX store = new JdkJMXAbstraction(MBeanServerFactory.newMBeanServer())
+        {
+            public Set<ObjectInstance> queryMBeans(ObjectName name, QueryExp query) throws IOException
+            {
+                queries[0]++;
+                throw new IOException("Connection refused");
+            }
+        };
+        List<IJMX> stores = new ArrayList<IJMX>();
+        stores.add(store);
+        List<ObjectName> patterns = new ArrayList<ObjectName>();
+        patterns.add(new ObjectName("test.prometheus:*"));
+        patterns.add(new ObjectName("test.prometheus:type=Basic,*"));
+
+        StringWriter out = new StringWriter();
+        new PrometheusWriter(out).writeMBeans(stores, patterns);
+
+        Assert.assertEquals("", out.toString());
+        Assert.assertEquals(1, queries[0]);
+        Assert.assertEquals(1, JmxStores.getStoreHealth(store).getErrorCount());
+        Assert.assertEquals(1, JmxStores.getStoreHealth(store).getConsecutiveFailures());
+    }
+
+    /**
+     * <p>
+     * Build the statistics of a pool.
+     * </p>
+     */
+    private static StatisticItemGroup newPool(String name, long used)
+    {
+        StatisticItemGroup item = new StatisticItemGroup();
+        item.addStatistic(new Statistic("PoolName", String.class, name));
+        item.addStatistic(new LongStatistic("UsedMemory", long.class, used));
+        item.addStatistic(new DoubleStatistic("Usage", 0.5, 2));
+        return item;
+    }
+}
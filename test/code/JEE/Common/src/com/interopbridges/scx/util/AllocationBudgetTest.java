@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.util;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Set;
+
+import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.interopbridges.scx.configuration.JMXFilterParameters;
+import com.interopbridges.scx.jeestats.CannedStatistics;
+import com.interopbridges.scx.jeestats.IStatistics;
+import com.interopbridges.scx.jmx.FakeJmxGenerator;
+import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JdkJMXAbstraction;
+import com.interopbridges.scx.jmx.JmxStores;
+import com.interopbridges.scx.mbeans.BasicTypeArraysMBean;
+import com.interopbridges.scx.mbeans.ComplexTypeMBean;
+import com.interopbridges.scx.mbeans.DummyInvokeMBean;
+import com.interopbridges.scx.mbeans.MBeanGetter;
+import com.interopbridges.scx.mbeans.MBeanInvoker;
+import com.interopbridges.scx.mbeanserver.MockMBeanServer;
+import com.interopbridges.scx.xml.InvokeDecoder;
+import com.interopbridges.scx.xml.MBeanTransformer;
+import com.interopbridges.scx.xml.StatisticXMLTransformer;
+
+/**
+ * <p>
+ * Allocation budgets of the rendering paths. GC regressions (boxing, eager
+ * log messages, needless copies) show up here long before they show up as
+ * latency.
+ * </p>
+ *
+ * <p>
+ * The budgets are kept in AllocationBudgets.properties next to this test,
+ * per Java specification version; on other JVMs the checks are skipped. When
+ * a change legitimately needs more memory, raise the budget in the same
+ * change and bump budgets.version.
+ * </p>
+ *
+ */
+public class AllocationBudgetTest
+{
+    /**
+     * <p>
+     * Domain of the MBeans rendered by the tests.
+     * </p>
+     */
+    private static final String DOMAIN = "com.interopbridges.scx.allocation";
+
+    /**
+     * <p>
+     * ObjectName of the MBean invoked by the tests, in a domain of its own.
+     * </p>
+     */
+    private static final String INVOKE_MBEAN = DOMAIN + ".invoke:name=DummyInvokeMBean";
+
+    /**
+     * <p>
+     * Domain of the MBean with large primitive arrays, kept apart from the
+     * fixed MBean set.
+     * </p>
+     */
+    private static final String ARRAYS_DOMAIN = DOMAIN + ".arrays";
+
+    /**
+     * <p>
+     * Number of elements of each array of the LargeArrays MBean.
+     * </p>
+     */
+    private static final int ARRAY_LENGTH = 1000;
+
+    /**
+     * <p>
+     * Number of MBeans of each type rendered by the tests.
+     * </p>
+     */
+    private static final int MBEANS_PER_TYPE = 10;
+
+    /**
+     * <p>
+     * Runs before measuring.
+     * </p>
+     */
+    private static final int WARMUP = 500;
+
+    /**
+     * <p>
+     * Runs measured per round.
+     * </p>
+     */
+    private static final int ITERATIONS = 200;
+
+    /**
+     * <p>
+     * Interface to getting the MBeans from the JMX store.
+     * </p>
+     */
+    private MBeanGetter _getter;
+
+    /**
+     * <p>
+     * Test Setup/preparation method that registers the fixed MBean set.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBeans could not be registered
+     */
+    @Before
+    public void setup() throws Exception
+    {
+        JMXFilterParameters.GetInstance().clear();
+        JmxStores.clearListOfJmxStores();
+        MockMBeanServer.Reset_TestMBeanServer();
+        IJMX store = new JdkJMXAbstraction(MockMBeanServer.getInstance());
+        JmxStores.addStoreToJmxStores(store);
+
+        for (int i = 0; i < MBEANS_PER_TYPE; i++)
+        {
+            store.registerMBean(new StandardMBean(FakeJmxGenerator.getComplexTypeMBean(), ComplexTypeMBean.class),
+                    new ObjectName(DOMAIN + ":type=ComplexType,index=" + i));
+            store.registerMBean(new StandardMBean(FakeJmxGenerator.getBasicTypeArraysMBean(), BasicTypeArraysMBean.class),
+                    new ObjectName(DOMAIN + ":type=BasicTypeArrays,index=" + i));
+        }
+        store.registerMBean(new DummyInvokeMBean(), new ObjectName(INVOKE_MBEAN));
+        store.registerMBean(new StandardMBean(new LargeArrays(), LargeArraysMBean.class),
+                new ObjectName(ARRAYS_DOMAIN + ":type=LargeArrays"));
+
+        _getter = new MBeanGetter(JmxStores.getListOfJmxStoreAbstractions());
+    }
+
+    /**
+     * <p>
+     * Method invoked after each unit-test in this class.
+     * </p>
+     */
+    @After
+    public void teardown()
+    {
+        MockMBeanServer.Reset_TestMBeanServer();
+        JmxStores.clearListOfJmxStores();
+    }
+
+    /**
+     * <p>
+     * Verify the bytes allocated to render the fixed MBean set as /MBeans
+     * does.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBeans could not be rendered
+     */
+    @Test
+    public void verifyMBeanTransformBudget() throws Exception
+    {
+        final HashMap<IJMX, Set<ObjectInstance>> mbeans = _getter.getMBeans(DOMAIN + ":*");
+        Assert.assertEquals(2 * MBEANS_PER_TYPE, mbeans.values().iterator().next().size());
+
+        long allocated = AllocationMeter.measure(new AllocationMeter.Operation()
+        {
+            public void run() throws Exception
+            {
+                new MBeanTransformer().transformMultipleMBeans(mbeans, null);
+            }
+        }, WARMUP, ITERATIONS);
+
+        AllocationMeter.assertWithinBudget("MBeanTransformer.transformMultipleMBeans", allocated);
+    }
+
+    /**
+     * <p>
+     * Verify the bytes allocated to render an MBean whose attributes are
+     * large arrays of primitives, which are formatted without boxing their
+     * elements.
+     * </p>
+     *
+     * @throws Exception
+     *             If the MBean could not be rendered
+     */
+    @Test
+    public void verifyPrimitiveArrayTransformBudget() throws Exception
+    {
+        final HashMap<IJMX, Set<ObjectInstance>> mbeans = _getter.getMBeans(ARRAYS_DOMAIN + ":*");
+        Assert.assertEquals(1, mbeans.values().iterator().next().size());
+
+        long allocated = AllocationMeter.measure(new AllocationMeter.Operation()
+        {
+            public void run() throws Exception
+            {
+                new MBeanTransformer().transformMultipleMBeans(mbeans, null);
+            }
+        }, WARMUP, ITERATIONS);
+
+        AllocationMeter.assertWithinBudget("MBeanTransformer.transformPrimitiveArrays", allocated);
+    }
+
+    /**
+     * <p>
+     * Verify the bytes allocated to collect and render a statistic group as
+     * /Stats/&lt;Group&gt; does.
+     * </p>
+     *
+     * @throws Exception
+     *             If the statistics could not be rendered
+     */
+    @Test
+    public void verifyStatsGroupBudget() throws Exception
+    {
+        final IStatistics provider = new CannedStatistics();
+
+        long allocated = AllocationMeter.measure(new AllocationMeter.Operation()
+        {
+            public void run() throws Exception
+            {
+                new StatisticXMLTransformer().transformGroupStatistics("Stats", provider.getStats());
+            }
+        }, WARMUP, ITERATIONS);
+
+        AllocationMeter.assertWithinBudget("StatisticXMLTransformer.transformGroupStatistics", allocated);
+    }
+
+    /**
+     * <p>
+     * Verify the bytes allocated by an invoke round trip: decoding the POST
+     * body, resolving and calling the MBean method, and rendering the
+     * response, as /Invoke does.
+     * </p>
+     *
+     * @throws Exception
+     *             If the invocation could not be rendered
+     */
+    @Test
+    public void verifyInvokeBudget() throws Exception
+    {
+        final String body = new StringBuffer()
+            .append("<Invoke>")
+            .append("<BeanObjectName>").append(INVOKE_MBEAN).append("</BeanObjectName>")
+            .append("<Method name=\"VoidStringMethod\">")
+            .append("<Param name=\"name\" type=\"string\">abcdefg</Param>")
+            .append("</Method>")
+            .append("</Invoke>")
+            .toString();
+
+        AllocationMeter.Operation invoke = new AllocationMeter.Operation()
+        {
+            public void run() throws Exception
+            {
+                InvokeDecoder decoder = new InvokeDecoder(new BufferedReader(new StringReader(body)), body.length());
+                decoder.DecodeInput();
+                String xml = new MBeanInvoker(_getter, decoder.getBeanObjectName(), decoder.getMethodName(),
+                        decoder.getMethodParams()).transformMBeanCall(null, null).toString();
+                if (xml.indexOf(JmxConstant.STR_SUCCESS) < 0)
+                {
+                    Assert.fail("Invoke failed: " + xml);
+                }
+            }
+        };
+        invoke.run();
+
+        AllocationMeter.assertWithinBudget("MBeanInvoker.transformMBeanCall", AllocationMeter.measure(invoke, WARMUP, ITERATIONS));
+    }
+
+    /**
+     * <p>
+     * Management interface of an MBean with large arrays of primitives.
+     * </p>
+     */
+    public static interface LargeArraysMBean
+    {
+        public long[] getLongs();
+
+        public int[] getInts();
+
+        public double[] getDoubles();
+
+        public boolean[] getFlags();
+    }
+
+    /**
+     * <p>
+     * MBean with ARRAY_LENGTH elements in each of its arrays.
+     * </p>
+     */
+    public static class LargeArrays implements LargeArraysMBean
+    {
+        private final long[] _longs = new long[ARRAY_LENGTH];
+        private final int[] _ints = new int[ARRAY_LENGTH];
+        private final double[] _doubles = new double[ARRAY_LENGTH];
+        private final boolean[] _flags = new boolean[ARRAY_LENGTH];
+
+        public LargeArrays()
+        {
+            for (int i = 0; i < ARRAY_LENGTH; i++)
+            {
+                _longs[i] = Long.MAX_VALUE - i;
+                _ints[i] = -i;
+                _doubles[i] = i / 8.0;
+                _flags[i] = (i & 1) == 0;
+            }
+        }
+
+        public long[] getLongs()
+        {
+            return _longs;
+        }
+
+        public int[] getInts()
+        {
+            return _ints;
+        }
+
+        public double[] getDoubles()
+        {
+            return _doubles;
+        }
+
+        public boolean[] getFlags()
+        {
+            return _flags;
+        }
+    }
+}
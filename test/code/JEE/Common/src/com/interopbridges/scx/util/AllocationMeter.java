@@ -0,0 +1,278 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Properties;
+
+import junit.framework.Assert;
+
+import org.junit.Assume;
+
+/**
+ * <p>
+ * Test facility measuring the bytes allocated per operation by the current
+ * thread, and checking them against the budgets of
+ * AllocationBudgets.properties.
+ * </p>
+ *
+ * <p>
+ * The allocated bytes are read from the HotSpot ThreadMXBean
+ * (com.sun.management), by reflection so that the tests still compile and
+ * pass on JVMs without it, where nothing can be measured.
+ * </p>
+ *
+ * <p>
+ * The allocations depend on the class library of the JVM, so the budgets are
+ * recorded per java.specification.version. On a JVM whose version has no
+ * budgets the check is skipped with a message rather than compared against
+ * the numbers of another class library.
+ * </p>
+ *
+ */
+public class AllocationMeter
+{
+    /**
+     * <p>
+     * Resource holding the budgets, next to this class.
+     * </p>
+     */
+    public static final String BUDGETS = "AllocationBudgets.properties";
+
+    /**
+     * <p>
+     * Key of the version of the budgets.
+     * </p>
+     */
+    public static final String VERSION = "budgets.version";
+
+    /**
+     * <p>
+     * Key of the comma separated specification versions of the JVMs the
+     * budgets were recorded on.
+     * </p>
+     */
+    public static final String JVMS = "budgets.jvms";
+
+    /**
+     * <p>
+     * Specification version of the running JVM.
+     * </p>
+     */
+    private static final String JVM = System.getProperty("java.specification.version");
+
+    /**
+     * <p>
+     * Operation measured by the meter.
+     * </p>
+     */
+    public interface Operation
+    {
+        /**
+         * <p>
+         * Run the operation once.
+         * </p>
+         *
+         * @throws Exception
+         *             If the operation failed
+         */
+        void run() throws Exception;
+    }
+
+    /**
+     * <p>
+     * ThreadMXBean.getThreadAllocatedBytes(long), null if the JVM does not
+     * provide it.
+     * </p>
+     */
+    private static final Method _getThreadAllocatedBytes;
+
+    static
+    {
+        Method getThreadAllocatedBytes = null;
+        try
+        {
+            getThreadAllocatedBytes = Class.forName("com.sun.management.ThreadMXBean").getMethod(
+                    "getThreadAllocatedBytes", new Class<?>[] { long.class });
+            getAllocatedBytes(getThreadAllocatedBytes);
+        }
+        catch (Exception e)
+        {
+            // Allocations cannot be measured on this JVM
+            getThreadAllocatedBytes = null;
+        }
+        _getThreadAllocatedBytes = getThreadAllocatedBytes;
+    }
+
+    /**
+     * <p>
+     * Not instantiated, only static helpers.
+     * </p>
+     */
+    private AllocationMeter()
+    {
+    }
+
+    /**
+     * <p>
+     * Whether the JVM can measure the allocations of a thread.
+     * </p>
+     *
+     * @return true if allocations can be measured
+     */
+    public static boolean isSupported()
+    {
+        return _getThreadAllocatedBytes != null;
+    }
+
+    /**
+     * <p>
+     * The bytes allocated so far by the current thread.
+     * </p>
+     */
+    private static long getAllocatedBytes(Method getThreadAllocatedBytes) throws Exception
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Long allocated = (Long) getThreadAllocatedBytes.invoke(threads,
+                new Object[] { Long.valueOf(Thread.currentThread().getId()) });
+        if (allocated.longValue() < 0)
+        {
+            throw new UnsupportedOperationException("Thread allocation measurement is disabled");
+        }
+        return allocated.longValue();
+    }
+
+    /**
+     * <p>
+     * Measure the bytes allocated by an operation.
+     * </p>
+     *
+     * <p>
+     * The operation is first run warmup times so that lazy initialization
+     * and the JIT compiler settle. It is then run iterations times, in three
+     * rounds, and the average of the lowest round is returned, which leaves
+     * out the allocations of a concurrent class load or compilation.
+     * </p>
+     *
+     * @param operation
+     *            The operation to measure
+     * @param warmup
+     *            The number of runs before measuring
+     * @param iterations
+     *            The number of runs measured in each round
+     *
+     * @return the bytes allocated per run of the operation, or -1 if the JVM
+     *         cannot measure allocations
+     *
+     * @throws Exception
+     *             If the operation failed
+     */
+    public static long measure(Operation operation, int warmup, int iterations) throws Exception
+    {
+        if (!isSupported())
+        {
+            return -1;
+        }
+
+        for (int i = 0; i < warmup; i++)
+        {
+            operation.run();
+        }
+
+        long lowest = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++)
+        {
+            long start = getAllocatedBytes(_getThreadAllocatedBytes);
+            for (int i = 0; i < iterations; i++)
+            {
+                operation.run();
+            }
+            lowest = Math.min(lowest, getAllocatedBytes(_getThreadAllocatedBytes) - start);
+        }
+        return lowest / iterations;
+    }
+
+    /**
+     * <p>
+     * Assert that the bytes allocated per operation are within the budget of
+     * the operation on the running JVM. Nothing is checked if the JVM cannot
+     * measure allocations, and the check is skipped when no budgets were
+     * recorded for the specification version of the JVM.
+     * </p>
+     *
+     * @param operation
+     *            The key of the budget in AllocationBudgets.properties
+     * @param bytesPerOperation
+     *            The measured bytes per operation, as returned by measure
+     *
+     * @throws IOException
+     *             If the budgets could not be read
+     */
+    public static void assertWithinBudget(String operation, long bytesPerOperation) throws IOException
+    {
+        if (bytesPerOperation < 0)
+        {
+            return;
+        }
+
+        Properties budgets = loadBudgets();
+        String jvms = budgets.getProperty(JVMS, "").trim();
+        if (!Arrays.asList(jvms.split("\\s*,\\s*")).contains(JVM))
+        {
+            System.err.println(new StringBuffer("Skipping the allocation budget of ").append(operation)
+                    .append(": ").append(BUDGETS).append(" has budgets for Java ").append(jvms)
+                    .append(" only, not for Java ").append(JVM).toString());
+            Assume.assumeTrue(false);
+        }
+
+        String key = new StringBuffer("java").append(JVM).append(".").append(operation).toString();
+        String budget = budgets.getProperty(key);
+        Assert.assertNotNull("No allocation budget for " + key + " in " + BUDGETS, budget);
+        Assert.assertTrue(new StringBuffer(operation).append(" allocated ").append(bytesPerOperation)
+                .append(" bytes per operation, over its budget of ").append(budget.trim())
+                .append(" bytes (").append(BUDGETS).append(" version ")
+                .append(budgets.getProperty(VERSION)).append(")").toString(),
+                bytesPerOperation <= Long.parseLong(budget.trim()));
+    }
+
+    /**
+     * <p>
+     * Read the budgets.
+     * </p>
+     */
+    private static Properties loadBudgets() throws IOException
+    {
+        InputStream in = AllocationMeter.class.getResourceAsStream(BUDGETS);
+        Assert.assertNotNull(BUDGETS + " is not on the classpath", in);
+        try
+        {
+            Properties budgets = new Properties();
+            budgets.load(in);
+            return budgets;
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -16,13 +16,23 @@
 
 package com.interopbridges.scx.xml;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import javax.management.AttributeNotFoundException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanException;
+import javax.management.MBeanServerFactory;
 import javax.management.ObjectInstance;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.StandardMBean;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
@@ -31,6 +41,7 @@ import org.junit.Test;
 import com.interopbridges.scx.configuration.JMXFilterParameters;
 import com.interopbridges.scx.jmx.FakeJmxGenerator;
 import com.interopbridges.scx.jmx.IJMX;
+import com.interopbridges.scx.jmx.JdkJMXAbstraction;
 import com.interopbridges.scx.jmx.MockJmx;
 import com.interopbridges.scx.util.SAXParser;
 import com.interopbridges.scx.webservices.FauxMBeanGenerator;
@@ -1817,157 +1828,24 @@ public class MBeanTransformerTest
      * </p>
      * 
      * <p>
-     * Ideally, the XML would look like this:<br>
+     * The cycle is not followed even though MaxDepth would allow it: the
+     * parent of the childClass is the object being rendered, so it refers to
+     * the Property it is rendered in. The XML for complexitemarray looks like
+     * this:<br>
      * 
      * <pre>
-     * &lt;MBean Name="com.interopbridges.scx.mbeans.ComplexType" objectName="com.interopbridges.scx:complexitem=serialVersionUID 999999999999999999,theLabel=ComplexType"&gt;
-     *   &lt;Properties&gt;
-     *     &lt;Property Name="complexitem" type="com.interopbridges.scx.mbeans.ComplexClass"&gt;
-     *       &lt;Property Name="_boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *       &lt;Property Name="_byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *       &lt;Property Name="_character" type="java.lang.Character"&gt;x&lt;/Property&gt;
-     *       &lt;Property Name="_double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *       &lt;Property Name="_float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *       &lt;Property Name="_int" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *       &lt;Property Name="_long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *       &lt;Property Name="_short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *       &lt;Property Name="boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *       &lt;Property Name="byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *       &lt;Property Name="character" type="java.lang.Character"&gt;z&lt;/Property&gt;
-     *       &lt;Property Name="childClass" type="com.interopbridges.scx.mbeans.ComplexRecursiveClass"&gt;
-     *         &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *         &lt;Property Name="parent" type="com.interopbridges.scx.mbeans.ComplexClass"&gt;
-     *           &lt;Property Name="_boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *           &lt;Property Name="_byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *           &lt;Property Name="_character" type="java.lang.Character"&gt;x&lt;/Property&gt;
-     *           &lt;Property Name="_double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *           &lt;Property Name="_float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *           &lt;Property Name="_int" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *           &lt;Property Name="_long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *           &lt;Property Name="_short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *           &lt;Property Name="boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *           &lt;Property Name="byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *           &lt;Property Name="character" type="java.lang.Character"&gt;z&lt;/Property&gt;
-     *           &lt;Property Name="childClass" type="com.interopbridges.scx.mbeans.ComplexRecursiveClass"&gt;
-     *             &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *             &lt;Property Name="parent" type="com.interopbridges.scx.mbeans.ComplexClass"&gt;serialVersionUID 999999999999999999&lt;/Property&gt;
-     *           &lt;/Property&gt;
-     *           &lt;Property Name="double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *           &lt;Property Name="float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *           &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *           &lt;Property Name="long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *           &lt;Property Name="myClass" type="com.interopbridges.scx.mbeans.ComplexClass$anonInnerClass"/&gt;
-     *           &lt;Property Name="short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *           &lt;Property Name="string" type="java.lang.String"&gt;Some String&lt;/Property&gt;
-     *         &lt;/Property&gt;
-     *       &lt;/Property&gt;
-     *       &lt;Property Name="double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *       &lt;Property Name="float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *       &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *       &lt;Property Name="long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *       &lt;Property Name="myClass" type="com.interopbridges.scx.mbeans.ComplexClass$anonInnerClass"/&gt;
-     *       &lt;Property Name="short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *       &lt;Property Name="string" type="java.lang.String"&gt;Some String&lt;/Property&gt;
-     *     &lt;/Property&gt;
      *     &lt;Property Name="complexitemarray" type="[Lcom.interopbridges.scx.mbeans.ComplexClass;"&gt;
      *       &lt;Property Name="complexitemarray" index="0"&gt;
      *         &lt;Property Name="_boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *         &lt;Property Name="_byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *         &lt;Property Name="_character" type="java.lang.Character"&gt;x&lt;/Property&gt;
-     *         &lt;Property Name="_double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *         &lt;Property Name="_float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *         &lt;Property Name="_int" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *         &lt;Property Name="_long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *         &lt;Property Name="_short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *         &lt;Property Name="boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *         &lt;Property Name="byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *         &lt;Property Name="character" type="java.lang.Character"&gt;z&lt;/Property&gt;
+     *         ...
      *         &lt;Property Name="childClass" type="com.interopbridges.scx.mbeans.ComplexRecursiveClass"&gt;
      *           &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *           &lt;Property Name="parent" type="com.interopbridges.scx.mbeans.ComplexClass"&gt;
-     *             &lt;Property Name="_boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *             &lt;Property Name="_byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *             &lt;Property Name="_character" type="java.lang.Character"&gt;x&lt;/Property&gt;
-     *             &lt;Property Name="_double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *             &lt;Property Name="_float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *             &lt;Property Name="_int" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *             &lt;Property Name="_long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *             &lt;Property Name="_short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *             &lt;Property Name="boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *             &lt;Property Name="byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *             &lt;Property Name="character" type="java.lang.Character"&gt;z&lt;/Property&gt;
-     *             &lt;Property Name="childClass" type="com.interopbridges.scx.mbeans.ComplexRecursiveClass"&gt;
-     *               &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *               &lt;Property Name="parent" type="com.interopbridges.scx.mbeans.ComplexClass"&gt;serialVersionUID 999999999999999999&lt;/Property&gt;
-     *             &lt;/Property&gt;
-     *             &lt;Property Name="double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *             &lt;Property Name="float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *             &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *             &lt;Property Name="long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *             &lt;Property Name="myClass" type="com.interopbridges.scx.mbeans.ComplexClass$anonInnerClass"/&gt;
-     *             &lt;Property Name="short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *             &lt;Property Name="string" type="java.lang.String"&gt;Some String&lt;/Property&gt;
-     *           &lt;/Property&gt;
+     *           &lt;Property Name="parent" type="com.interopbridges.scx.mbeans.ComplexClass" Reference="complexitemarray[0]"&gt;serialVersionUID 999999999999999999&lt;/Property&gt;
      *         &lt;/Property&gt;
-     *         &lt;Property Name="double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *         &lt;Property Name="float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *         &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *         &lt;Property Name="long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *         &lt;Property Name="myClass" type="com.interopbridges.scx.mbeans.ComplexClass$anonInnerClass"/&gt;
-     *         &lt;Property Name="short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *         &lt;Property Name="string" type="java.lang.String"&gt;Some String&lt;/Property&gt;
-     *       &lt;/Property&gt;
-     *       &lt;Property Name="complexitemarray" index="1"&gt;
-     *         &lt;Property Name="_boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *         &lt;Property Name="_byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *         &lt;Property Name="_character" type="java.lang.Character"&gt;x&lt;/Property&gt;
-     *         &lt;Property Name="_double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *         &lt;Property Name="_float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *         &lt;Property Name="_int" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *         &lt;Property Name="_long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *         &lt;Property Name="_short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *         &lt;Property Name="boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *         &lt;Property Name="byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *         &lt;Property Name="character" type="java.lang.Character"&gt;z&lt;/Property&gt;
-     *         &lt;Property Name="childClass" type="com.interopbridges.scx.mbeans.ComplexRecursiveClass"&gt;
-     *           &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *           &lt;Property Name="parent" type="com.interopbridges.scx.mbeans.ComplexClass"&gt;
-     *             &lt;Property Name="_boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *             &lt;Property Name="_byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *             &lt;Property Name="_character" type="java.lang.Character"&gt;x&lt;/Property&gt;
-     *             &lt;Property Name="_double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *             &lt;Property Name="_float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *             &lt;Property Name="_int" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *             &lt;Property Name="_long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *             &lt;Property Name="_short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *             &lt;Property Name="boolean" type="java.lang.Boolean"&gt;true&lt;/Property&gt;
-     *             &lt;Property Name="byte" type="java.lang.Byte"&gt;127&lt;/Property&gt;
-     *             &lt;Property Name="character" type="java.lang.Character"&gt;z&lt;/Property&gt;
-     *             &lt;Property Name="childClass" type="com.interopbridges.scx.mbeans.ComplexRecursiveClass"&gt;
-     *               &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *               &lt;Property Name="parent" type="com.interopbridges.scx.mbeans.ComplexClass"&gt;serialVersionUID 999999999999999999&lt;/Property&gt;
-     *             &lt;/Property&gt;
-     *             &lt;Property Name="double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *             &lt;Property Name="float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *             &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *             &lt;Property Name="long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *             &lt;Property Name="myClass" type="com.interopbridges.scx.mbeans.ComplexClass$anonInnerClass"/&gt;
-     *             &lt;Property Name="short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *             &lt;Property Name="string" type="java.lang.String"&gt;Some String&lt;/Property&gt;
-     *           &lt;/Property&gt;
-     *         &lt;/Property&gt;
-     *         &lt;Property Name="double" type="java.lang.Double"&gt;1.7976931348623157E308&lt;/Property&gt;
-     *         &lt;Property Name="float" type="java.lang.Float"&gt;3.4028235E38&lt;/Property&gt;
-     *         &lt;Property Name="integer" type="java.lang.Integer"&gt;2147483647&lt;/Property&gt;
-     *         &lt;Property Name="long" type="java.lang.Long"&gt;9223372036854775807&lt;/Property&gt;
-     *         &lt;Property Name="myClass" type="com.interopbridges.scx.mbeans.ComplexClass$anonInnerClass"/&gt;
-     *         &lt;Property Name="short" type="java.lang.Short"&gt;32767&lt;/Property&gt;
-     *         &lt;Property Name="string" type="java.lang.String"&gt;Some String&lt;/Property&gt;
+     *         ...
      *       &lt;/Property&gt;
+     *       ...
      *     &lt;/Property&gt;
-     *     &lt;Property Name="theLabel" type="java.lang.String"&gt;ComplexType&lt;/Property&gt;
-     *   &lt;/Properties&gt;
-     * &lt;/MBean&gt;
      * </pre>
      * 
      * </p>
@@ -2003,7 +1881,9 @@ public class MBeanTransformerTest
                         xml,
                         FakeJmxGenerator.getComplexTypeMBean()
                                 .getComplexClass().toString(),
-                        "/MBean[@Name='com.interopbridges.scx.mbeans.ComplexType']/Properties/Property[@Name='complexitemarray']/Property[@Name='complexitemarray' and @index='0']/Property[@Name='childClass']/Property[@Name='parent']/Property[@Name='childClass']/Property[@Name='parent' and @type='com.interopbridges.scx.mbeans.ComplexClass']");
+                        "/MBean[@Name='com.interopbridges.scx.mbeans.ComplexType']/Properties/Property[@Name='complexitemarray']/Property[@Name='complexitemarray' and @index='0']/Property[@Name='childClass']/Property[@Name='parent' and @type='com.interopbridges.scx.mbeans.ComplexClass' and @Reference='complexitemarray[0]']");
+        Assert.assertEquals("The cycle should not be rendered again. Input was " + xml, 0,
+                SAXParser.XPathQuery(xml, "//Property[@Name='parent']/Property").length);
     }
 
     /**
@@ -3192,5 +3072,472 @@ public class MBeanTransformerTest
         s = SAXParser.XPathQuery(xml, "/MBeans/MBean[@objectName='com.interopbridges.scx:jmxType=operation,name=add']/Properties/Property[@Name='name']");
         Assert.assertTrue("The 'name' attribute should exist for the 'com.interopbridges.scx:jmxType=operation,name=add' mbean", s.length==1);
     }
-    
+
+    /**
+     * <p>
+     * Verify that in truncation mode reaching the size limit returns a
+     * well-formed partial document, and that the MBeans that were not
+     * rendered are listed in the truncation marker.
+     * </p>
+     */
+    @Test
+    public void verifyTruncatedMultipleMBeanTransform() throws Exception
+    {
+        HashMap<IJMX, Set<ObjectInstance>> mbeansl = getOperationCallMBeans(this._stores.get(0));
+        int total = mbeansl.get(this._stores.get(0)).size();
+        Assert.assertTrue("Need more than one MBean to truncate", total > 1);
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_TRUNCATE, new String[] { "true" });
+
+        MBeanTransformer sut = new MBeanTransformer();
+        sut.setTruncationLimit(1);
+        String xml = sut.transformMultipleMBeans(mbeansl, params).toString();
+
+        String[] s = SAXParser.XPathQuery(xml, "/MBeans/MBean");
+        Assert.assertEquals("Only the first MBean should be rendered", 1, s.length);
+        s = SAXParser.XPathQuery(xml, "/MBeans/MBean/Properties/Property");
+        Assert.assertEquals("The first MBean should stop after one property", 1, s.length);
+        Assert.assertEquals("The first MBean should be marked as partial",
+                SAXParser.XPathQuery(xml, "/MBeans/MBean/@objectName")[0],
+                SAXParser.XPathQuery(xml, "/MBeans/Truncated/PartialMBean/@objectName")[0]);
+
+        s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/@Reason");
+        Assert.assertEquals(JmxConstant.STR_MAXSIZE, s[0]);
+        s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/@OmittedCount");
+        Assert.assertEquals(String.valueOf(total - 1), s[0]);
+        s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/OmittedMBean/@objectName");
+        Assert.assertEquals(total - 1, s.length);
+    }
+
+    /**
+     * <p>
+     * Verify that the response is not truncated unless it was requested.
+     * </p>
+     */
+    @Test
+    public void verifyTruncationNotRequested() throws Exception
+    {
+        HashMap<IJMX, Set<ObjectInstance>> mbeansl = getOperationCallMBeans(this._stores.get(0));
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_TRUNCATE, new String[] { "false" });
+
+        MBeanTransformer sut = new MBeanTransformer();
+        sut.setTruncationLimit(1);
+        String xml = sut.transformMultipleMBeans(mbeansl, params).toString();
+
+        Assert.assertEquals(mbeansl.get(this._stores.get(0)).size(), 
+                SAXParser.XPathQuery(xml, "/MBeans/MBean").length);
+        Assert.assertEquals(0, SAXParser.XPathQuery(xml, "/MBeans/Truncated").length);
+    }
+
+    /**
+     * <p>
+     * Verify that a MaxTime limit truncates the response once it has passed.
+     * </p>
+     */
+    @Test
+    public void verifyTimeLimitTruncation() throws Exception
+    {
+        IJMX slowStore = new MockJmx()
+        {
+            public Object getAttribute(ObjectName name, String attribute)
+                    throws MBeanException, AttributeNotFoundException,
+                    InstanceNotFoundException, ReflectionException
+            {
+                try
+                {
+                    Thread.sleep(10);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getAttribute(name, attribute);
+            }
+        };
+        new FauxMBeanGenerator(slowStore).run();
+        HashMap<IJMX, Set<ObjectInstance>> mbeansl = getOperationCallMBeans(slowStore);
+        int total = mbeansl.get(slowStore).size();
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_MAXTIME, new String[] { "1" });
+
+        String xml = new MBeanTransformer().transformMultipleMBeans(mbeansl, params).toString();
+
+        String[] s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/@Reason");
+        Assert.assertEquals(JmxConstant.STR_MAXTIME, s[0]);
+        s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/@OmittedCount");
+        Assert.assertEquals(total, SAXParser.XPathQuery(xml, "/MBeans/MBean").length + Integer.parseInt(s[0]));
+    }
+
+    /**
+     * <p>
+     * Verify that a CompositeData attribute (the HeapMemoryUsage of the
+     * platform Memory MBean) is rendered from its CompositeType, one typed
+     * Property per item.
+     * </p>
+     */
+    @Test
+    public void verifyCompositeDataTransform() throws Exception
+    {
+        IJMX platformStore = new JdkJMXAbstraction();
+        ObjectInstance memory = platformStore.queryMBeans(new ObjectName("java.lang:type=Memory"), null).iterator().next();
+
+        String xml = new MBeanTransformer().transformSingleMBean(platformStore, memory, null).toString();
+
+        String heap = "/MBean/Properties/Property[@Name='HeapMemoryUsage']";
+        String[] s = SAXParser.XPathQuery(xml, heap + "/Property/@Name");
+        Assert.assertEquals("HeapMemoryUsage should be rendered as its four items. Input was " + xml, 4, s.length);
+        s = SAXParser.XPathQuery(xml, heap + "/Property[@Name='used']/@type");
+        Assert.assertEquals("java.lang.Long", s[0]);
+        s = SAXParser.XPathQuery(xml, heap + "/Property[@Name='used']");
+        Assert.assertTrue("The used memory should be a number. Input was " + xml, Long.parseLong(s[0]) > 0);
+        Assert.assertEquals("The CompositeDataSupport internals must not be rendered", 0,
+                SAXParser.XPathQuery(xml, heap + "//Property[@Name='compositeType']").length);
+    }
+
+    /**
+     * <p>
+     * Verify that a TabularData attribute (the SystemProperties of the
+     * platform Runtime MBean) is rendered as one indexed Property per row, and
+     * that MaxRows limits the number of rows rendered.
+     * </p>
+     */
+    @Test
+    public void verifyTabularDataTransform() throws Exception
+    {
+        IJMX platformStore = new JdkJMXAbstraction();
+        ObjectInstance runtime = platformStore.queryMBeans(new ObjectName("java.lang:type=Runtime"), null).iterator().next();
+        int rows = System.getProperties().size();
+        Assert.assertTrue("Need more than three system properties", rows > 3);
+
+        String props = "/MBean/Properties/Property[@Name='SystemProperties']";
+        String xml = new MBeanTransformer().transformSingleMBean(platformStore, runtime, null).toString();
+        Assert.assertEquals("Every row should be rendered. Input was " + xml, rows,
+                SAXParser.XPathQuery(xml, props + "/Property[@Name='SystemProperties']/@index").length);
+        Assert.assertEquals(0, SAXParser.XPathQuery(xml, props + "/@RowCount").length);
+        String[] s = SAXParser.XPathQuery(xml, props + "/Property/Property[@Name='key' and .='java.version']/../Property[@Name='value']");
+        Assert.assertEquals(System.getProperty("java.version"), s[0]);
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_MAXROWS, new String[] { "3" });
+        xml = new MBeanTransformer().transformSingleMBean(platformStore, runtime, params).toString();
+        Assert.assertEquals("Only MaxRows rows should be rendered. Input was " + xml, 3,
+                SAXParser.XPathQuery(xml, props + "/Property[@Name='SystemProperties']/@index").length);
+        s = SAXParser.XPathQuery(xml, props + "/@RowCount");
+        Assert.assertEquals(String.valueOf(rows), s[0]);
+        s = SAXParser.XPathQuery(xml, props + "/Property[@index='2']/Property[@Name='key']/@type");
+        Assert.assertEquals("java.lang.String", s[0]);
+    }
+
+    /**
+     * <p>
+     * Verify that MaxArrayElements limits the elements rendered for each
+     * array, and that an array cut short carries its full length.
+     * </p>
+     */
+    @Test
+    public void verifyMaxArrayElements() throws Exception
+    {
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_MAXARRAYELEMENTS, new String[] { "1" });
+        String xml = new MBeanTransformer().transformSingleMBean(_stores.get(0),
+                FakeJmxGenerator.getBasicTypeArraysObjectInstance(), params).toString();
+
+        String arrays = "/MBean[@Name='com.interopbridges.scx.mbeans.BasicTypeArrays']/Properties/Property";
+        String[] s = SAXParser.XPathQuery(xml, arrays + "[@Name='longNumber']/Property");
+        Assert.assertEquals("Only one element should be rendered. Input was " + xml, 1, s.length);
+        Assert.assertEquals(String.valueOf(Long.MIN_VALUE), s[0]);
+        s = SAXParser.XPathQuery(xml, arrays + "[@Name='longNumber']/@ElementCount");
+        Assert.assertEquals("2", s[0]);
+        s = SAXParser.XPathQuery(xml, arrays + "[@Name='charLetter']/@ElementCount");
+        Assert.assertEquals("3", s[0]);
+        s = SAXParser.XPathQuery(xml, arrays + "[@Name='stringArray']/Property");
+        Assert.assertEquals(1, s.length);
+        Assert.assertEquals("a", s[0]);
+
+        xml = new MBeanTransformer().transformSingleMBean(_stores.get(0),
+                FakeJmxGenerator.getBasicTypeArraysObjectInstance(), null).toString();
+        Assert.assertEquals("Arrays within the limit are rendered whole. Input was " + xml, 0,
+                SAXParser.XPathQuery(xml, arrays + "/@ElementCount").length);
+    }
+
+    /**
+     * <p>
+     * Verify that the numbers of the primitive arrays are formatted like
+     * Long.toString formats them.
+     * </p>
+     */
+    @Test
+    public void verifyFormatLong()
+    {
+        long[] values = { 0, 7, -7, 10, -10, 1234567890123L, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE };
+        char[] buffer = new char[20];
+        for (int i = 0; i < values.length; i++)
+        {
+            int start = MBeanTransformer.formatLong(values[i], buffer);
+            Assert.assertEquals(Long.toString(values[i]), new String(buffer, start, buffer.length - start));
+        }
+        Assert.assertEquals("5", MBeanTransformer.indexToString(5));
+        Assert.assertEquals("123456", MBeanTransformer.indexToString(123456));
+    }
+
+    /**
+     * <p>
+     * Verify that an object shared by two properties and a back-reference to
+     * an enclosing object are rendered once, the other Property refers to the
+     * path it was rendered in.
+     * </p>
+     */
+    @Test
+    public void verifySharedAndCyclicObjectsRenderedOnce() throws Exception
+    {
+        IJMX store = new JdkJMXAbstraction(MBeanServerFactory.newMBeanServer());
+        ObjectName name = new ObjectName("com.interopbridges.scx:type=Graph");
+        store.registerMBean(new StandardMBean(new Graph(), GraphMBean.class), name);
+        ObjectInstance graph = store.queryMBeans(name, null).iterator().next();
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_MAXDEPTH, new String[] { "10" });
+        String xml = new MBeanTransformer().transformSingleMBean(store, graph, params).toString();
+
+        String root = "/MBean/Properties/Property[@Name='Root']";
+        Assert.assertEquals("The shared child should be rendered once. Input was " + xml, 1,
+                SAXParser.XPathQuery(xml, root + "/Property[@Name='left']/Property[@Name='label' and .='child']").length);
+        String[] s = SAXParser.XPathQuery(xml, root + "/Property[@Name='right']/@Reference");
+        Assert.assertEquals("Root/left", s[0]);
+        s = SAXParser.XPathQuery(xml, root + "/Property[@Name='left']/Property[@Name='parent']/@Reference");
+        Assert.assertEquals("The back-reference should refer to the root. Input was " + xml, 1, s.length);
+        Assert.assertEquals("Root", s[0]);
+        s = SAXParser.XPathQuery(xml, root + "/Property[@Name='left']/Property[@Name='parent']");
+        Assert.assertEquals("root", s[0]);
+    }
+
+    /**
+     * <p>
+     * Management interface of an MBean whose attribute is a graph of objects.
+     * </p>
+     */
+    public static interface GraphMBean
+    {
+        public Node getRoot();
+    }
+
+    /**
+     * <p>
+     * MBean whose root node has the same child on both sides, the child
+     * refers back to the root.
+     * </p>
+     */
+    public static class Graph implements GraphMBean
+    {
+        private final Node _root = new Node("root", null);
+
+        public Graph()
+        {
+            Node child = new Node("child", _root);
+            _root._left = child;
+            _root._right = child;
+        }
+
+        public Node getRoot()
+        {
+            return _root;
+        }
+    }
+
+    /**
+     * <p>
+     * Node of the object graph.
+     * </p>
+     */
+    public static class Node
+    {
+        private final String _label;
+        private final Node _parent;
+        private Node _left;
+        private Node _right;
+
+        public Node(String label, Node parent)
+        {
+            _label = label;
+            _parent = parent;
+        }
+
+        public String getLabel()
+        {
+            return _label;
+        }
+
+        public Node getParent()
+        {
+            return _parent;
+        }
+
+        public Node getLeft()
+        {
+            return _left;
+        }
+
+        public Node getRight()
+        {
+            return _right;
+        }
+
+        public String toString()
+        {
+            return _label;
+        }
+    }
+
+    /**
+     * <p>
+     * Verify that in truncation mode an MBean whose estimated size does not
+     * fit before the truncation limit is not fetched. The estimate is learnt
+     * from the first MBean of the response, the size is counted in UTF-8
+     * bytes.
+     * </p>
+     */
+    @Test
+    public void verifyEstimatedSizeStopsBeforeFetch() throws Exception
+    {
+        final int[] calls = new int[1];
+        IJMX store = new JdkJMXAbstraction(MBeanServerFactory.newMBeanServer())
+        {
+            public Object getAttribute(ObjectName name, String attribute)
+                    throws MBeanException, AttributeNotFoundException,
+                    InstanceNotFoundException, ReflectionException, IOException
+            {
+                calls[0]++;
+                return super.getAttribute(name, attribute);
+            }
+        };
+        for (int i = 0; i < 3; i++)
+        {
+            store.registerMBean(new StandardMBean(new Padded(), PaddedMBean.class),
+                    new ObjectName("com.interopbridges.scx:type=Padded,name=" + i));
+        }
+        Set<ObjectInstance> all = store.queryMBeans(new ObjectName("com.interopbridges.scx:type=Padded,*"), null);
+        Set<ObjectInstance> first = new LinkedHashSet<ObjectInstance>();
+        first.add(all.iterator().next());
+
+        HashMap<IJMX, Set<ObjectInstance>> mbeansl = new HashMap<IJMX, Set<ObjectInstance>>();
+        mbeansl.put(store, first);
+        MBeanTransformer sut = new MBeanTransformer();
+        sut.setSizeEstimator(new RenderedSizeEstimator());
+        int oneMBean = sut.transformMultipleMBeans(mbeansl, null).toString().getBytes("UTF-8").length;
+
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_TRUNCATE, new String[] { "true" });
+        mbeansl.put(store, all);
+        sut = new MBeanTransformer();
+        sut.setSizeEstimator(new RenderedSizeEstimator());
+        sut.setTruncationLimit(oneMBean + 50);
+        calls[0] = 0;
+        String xml = sut.transformMultipleMBeans(mbeansl, params).toString();
+
+        Assert.assertEquals("Only the attributes of the first MBean should be fetched", 2, calls[0]);
+        Assert.assertEquals(1, SAXParser.XPathQuery(xml, "/MBeans/MBean").length);
+        Assert.assertEquals(2, SAXParser.XPathQuery(xml, "/MBeans/MBean/Properties/Property").length);
+        String[] s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/@Reason");
+        Assert.assertEquals(JmxConstant.STR_MAXSIZE, s[0]);
+        s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/@OmittedCount");
+        Assert.assertEquals("2", s[0]);
+        Assert.assertEquals("The rendered MBean is complete", 0,
+                SAXParser.XPathQuery(xml, "/MBeans/Truncated/PartialMBean").length);
+    }
+
+    /**
+     * <p>
+     * Verify that an MBean cut short because the next attribute is not
+     * expected to fit is marked as partial in the truncation marker.
+     * </p>
+     */
+    @Test
+    public void verifyAttributeWithoutRoomMarksPartialMBean() throws Exception
+    {
+        IJMX store = new JdkJMXAbstraction(MBeanServerFactory.newMBeanServer());
+        for (int i = 0; i < 3; i++)
+        {
+            store.registerMBean(new StandardMBean(new Padded(), PaddedMBean.class),
+                    new ObjectName("com.interopbridges.scx:type=Padded,name=" + i));
+        }
+        Set<ObjectInstance> all = store.queryMBeans(new ObjectName("com.interopbridges.scx:type=Padded,*"), null);
+        Set<ObjectInstance> first = new LinkedHashSet<ObjectInstance>();
+        first.add(all.iterator().next());
+
+        HashMap<IJMX, Set<ObjectInstance>> mbeansl = new HashMap<IJMX, Set<ObjectInstance>>();
+        mbeansl.put(store, first);
+        int oneMBean = new MBeanTransformer().transformMultipleMBeans(mbeansl, null).toString()
+                .getBytes("UTF-8").length;
+
+        // The second attribute is not expected to fit before the limit
+        RenderedSizeEstimator estimator = new RenderedSizeEstimator();
+        HashMap<String, String[]> params = new HashMap<String, String[]>();
+        params.put(JmxConstant.STR_TRUNCATE, new String[] { "true" });
+        estimator.forClass(first.iterator().next().getClassName(), JmxConstant.MAXDEPTH,
+                JmxConstant.MAXPROPERTIES, JmxConstant.MAXXMLSIZE, JmxConstant.MAXROWS,
+                JmxConstant.MAXARRAYELEMENTS, new Hashtable<String, String>())
+                .recordAttribute("Second", 100 * oneMBean);
+        mbeansl.put(store, all);
+        MBeanTransformer sut = new MBeanTransformer();
+        sut.setSizeEstimator(estimator);
+        sut.setTruncationLimit(3 * oneMBean);
+        String xml = sut.transformMultipleMBeans(mbeansl, params).toString();
+
+        String[] names = SAXParser.XPathQuery(xml, "/MBeans/MBean/@objectName");
+        Assert.assertEquals(1, names.length);
+        Assert.assertEquals(1, SAXParser.XPathQuery(xml, "/MBeans/MBean/Properties/Property").length);
+        String[] s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/PartialMBean/@objectName");
+        Assert.assertEquals(1, s.length);
+        Assert.assertEquals(names[0], s[0]);
+        s = SAXParser.XPathQuery(xml, "/MBeans/Truncated/@OmittedCount");
+        Assert.assertEquals("2", s[0]);
+    }
+
+    /**
+     * <p>
+     * Management interface of an MBean with two attributes of a fixed size.
+     * </p>
+     */
+    public static interface PaddedMBean
+    {
+        public String getFirst();
+
+        public String getSecond();
+    }
+
+    /**
+     * <p>
+     * MBean whose attributes are made of characters encoded in two bytes.
+     * </p>
+     */
+    public static class Padded implements PaddedMBean
+    {
+        private static final String PADDING = new String(new char[100]).replace('\0', '\u00e9');
+
+        public String getFirst()
+        {
+            return PADDING;
+        }
+
+        public String getSecond()
+        {
+            return PADDING;
+        }
+    }
+
+    /**
+     * <p>
+     * Get the operationCall MBeans registered in the given store.
+     * </p>
+     */
+    private HashMap<IJMX, Set<ObjectInstance>> getOperationCallMBeans(IJMX store) throws Exception
+    {
+        HashMap<IJMX, Set<ObjectInstance>> mbeansl = new HashMap<IJMX, Set<ObjectInstance>>();
+        mbeansl.put(store, store.queryMBeans(new ObjectName("com.interopbridges.scx:jmxType=operationCall"), null));
+        return mbeansl;
+    }
 }
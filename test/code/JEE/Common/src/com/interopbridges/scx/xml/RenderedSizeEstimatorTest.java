@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.xml;
+
+import java.util.Hashtable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * <p>
+ * Test class for the estimates of the rendered size of the MBeans.
+ * </p>
+ *
+ */
+public class RenderedSizeEstimatorTest
+{
+    /**
+     * <p>
+     * Class name of the MBeans estimated.
+     * </p>
+     */
+    private static final String CLASS_NAME = "com.interopbridges.scx.mbeans.BasicTypes";
+
+    /**
+     * <p>
+     * Verify that the estimates are kept apart for each of the limits and
+     * exclusions that change the rendered size, and shared otherwise.
+     * </p>
+     */
+    @Test
+    public void verifyEstimatesKeptByLimits()
+    {
+        RenderedSizeEstimator estimator = new RenderedSizeEstimator();
+        Hashtable<String, String> none = new Hashtable<String, String>();
+        Hashtable<String, String> excluded = new Hashtable<String, String>();
+        excluded.put("Second", "Second");
+
+        RenderedSizeEstimator.ClassEstimate estimate = estimator.forClass(CLASS_NAME, 2, 20, 1000, 10, 10, none);
+        estimate.recordMBean(100);
+
+        Assert.assertSame(estimate, estimator.forClass(CLASS_NAME, 2, 20, 1000, 10, 10, null));
+        Assert.assertEquals(100, estimator.forClass(CLASS_NAME, 2, 20, 1000, 10, 10, none).getMBeanSize());
+
+        Assert.assertEquals(RenderedSizeEstimator.UNKNOWN,
+                estimator.forClass(CLASS_NAME, 3, 20, 1000, 10, 10, none).getMBeanSize());
+        Assert.assertEquals(RenderedSizeEstimator.UNKNOWN,
+                estimator.forClass(CLASS_NAME, 2, 21, 1000, 10, 10, none).getMBeanSize());
+        Assert.assertEquals(RenderedSizeEstimator.UNKNOWN,
+                estimator.forClass(CLASS_NAME, 2, 20, 1001, 10, 10, none).getMBeanSize());
+        Assert.assertEquals(RenderedSizeEstimator.UNKNOWN,
+                estimator.forClass(CLASS_NAME, 2, 20, 1000, 11, 10, none).getMBeanSize());
+        Assert.assertEquals(RenderedSizeEstimator.UNKNOWN,
+                estimator.forClass(CLASS_NAME, 2, 20, 1000, 10, 11, none).getMBeanSize());
+        Assert.assertEquals(RenderedSizeEstimator.UNKNOWN,
+                estimator.forClass(CLASS_NAME, 2, 20, 1000, 10, 10, excluded).getMBeanSize());
+    }
+}
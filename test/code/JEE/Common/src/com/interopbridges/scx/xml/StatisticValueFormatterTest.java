@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+package com.interopbridges.scx.xml;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.interopbridges.scx.jeestats.DoubleStatistic;
+import com.interopbridges.scx.jeestats.LongStatistic;
+import com.interopbridges.scx.jeestats.Statistic;
+
+/**
+ * <p>
+ * Test class for the formatting of primitive statistic values.
+ * </p>
+ *
+ */
+public class StatisticValueFormatterTest
+{
+    /**
+     * <p>
+     * Verify that longs are formatted as Long.toString formats them.
+     * </p>
+     */
+    @Test
+    public void verifyLongFormat()
+    {
+        long[] values = { 0, 7, -7, 10, 999, 1000, 123456789012345L, Long.MAX_VALUE, Long.MIN_VALUE, -1 };
+        char[] buffer = new char[StatisticValueFormatter.BUFFER_SIZE];
+        for (int i = 0; i < values.length; i++)
+        {
+            int length = StatisticValueFormatter.formatLong(values[i], buffer);
+            Assert.assertEquals(Long.toString(values[i]), new String(buffer, 0, length));
+        }
+    }
+
+    /**
+     * <p>
+     * Verify that rounded doubles are formatted as Double.toString formats
+     * them, and that values Double.toString writes with an exponent are left
+     * to it.
+     * </p>
+     */
+    @Test
+    public void verifyDoubleFormat()
+    {
+        double[] values = { 0, 0.01, 0.07, 0.1, 0.5, 1, 2.5, 12.34, 99.99, 100.1, -3.25, 1234567.89, 0.3 + 0.3 };
+        char[] buffer = new char[StatisticValueFormatter.BUFFER_SIZE];
+        for (int i = 0; i < values.length; i++)
+        {
+            double rounded = ((Double) new DoubleStatistic("Value", values[i], 2).getStatisticValue()).doubleValue();
+            int length = StatisticValueFormatter.formatDouble(rounded, 2, buffer);
+            Assert.assertEquals(Double.toString(rounded), new String(buffer, 0, length));
+        }
+        Assert.assertEquals(-1, StatisticValueFormatter.formatDouble(12345678.5, 2, buffer));
+        Assert.assertEquals(-1, StatisticValueFormatter.formatDouble(0.0001, 4, buffer));
+        Assert.assertEquals(-1, StatisticValueFormatter.formatDouble(Double.NaN, 2, buffer));
+    }
+
+    /**
+     * <p>
+     * Verify that a primitive statistic produces the same XML as the
+     * equivalent boxed statistic.
+     * </p>
+     *
+     * @throws Exception
+     *             If the XML could not be generated
+     */
+    @Test
+    public void verifySameXmlAsBoxedStatistic() throws Exception
+    {
+        StatisticXMLTransformer transformer = new StatisticXMLTransformer();
+
+        Assert.assertEquals(
+                transformer.transformSingleStatistic("Stats", "Memory",
+                        new Statistic("HeapUsedMemory", long.class, Long.valueOf(-123456789L))).toString(),
+                transformer.transformSingleStatistic("Stats", "Memory",
+                        new LongStatistic("HeapUsedMemory", long.class, -123456789L)).toString());
+        Assert.assertEquals(
+                transformer.transformSingleStatistic("Stats", "Thread",
+                        new Statistic("ThreadCount", int.class, Integer.valueOf(42))).toString(),
+                transformer.transformSingleStatistic("Stats", "Thread",
+                        new LongStatistic("ThreadCount", int.class, 42)).toString());
+        Assert.assertEquals(
+                transformer.transformSingleStatistic("Stats", "Rates",
+                        new Statistic("ClassLoadRate", double.class, Double.valueOf(Math.round(12.345 * 100) / 100.0))).toString(),
+                transformer.transformSingleStatistic("Stats", "Rates",
+                        new DoubleStatistic("ClassLoadRate", 12.345, 2)).toString());
+    }
+}
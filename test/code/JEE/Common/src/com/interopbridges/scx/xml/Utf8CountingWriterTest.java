@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) Microsoft Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use
+ * this file except in compliance with the License. You may obtain a copy of the
+ * License at http://www.apache.org/licenses/LICENSE-2.0.
+ *
+ * THIS CODE IS PROVIDED *AS IS* BASIS, WITHOUT WARRANTIES OR CONDITIONS
+ * OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING WITHOUT LIMITATION
+ * ANY IMPLIED WARRANTIES OR CONDITIONS OF TITLE, FITNESS FOR A PARTICULAR PURPOSE,
+ * MERCHANTABLITY OR NON-INFRINGEMENT.
+ *
+ * See the Apache Version 2.0 License for specific language governing
+ * permissions and limitations under the License.
+ */
+
+
+package com.interopbridges.scx.xml;
+
+import java.io.StringWriter;
+
+import javax.xml.transform.sax.TransformerHandler;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * <p>
+ * Test class for the writer counting the UTF-8 bytes of the XML output.
+ * </p>
+ *
+ */
+public class Utf8CountingWriterTest
+{
+    /**
+     * <p>
+     * Text with characters encoded in one, two, three and four bytes.
+     * </p>
+     */
+    private static final String MIXED = "a\u00e9\u20ac\ud83d\ude00z";
+
+    /**
+     * <p>
+     * Verify the byte count of every way of writing to the writer against
+     * the encoded content.
+     * </p>
+     */
+    @Test
+    public void verifyByteCount() throws Exception
+    {
+        Utf8CountingWriter writer = new Utf8CountingWriter();
+        writer.write(MIXED);
+        Assert.assertEquals(11, writer.getByteCount());
+
+        writer.write(MIXED.toCharArray(), 1, 2);
+        writer.write(MIXED, 3, 2);
+        writer.write('\u00e9');
+        writer.append("\u20ac");
+        Assert.assertEquals(writer.toString().getBytes("UTF-8").length, writer.getByteCount());
+        Assert.assertEquals(writer.getByteCount(), Utf8CountingWriter.sizeOf(writer));
+        Assert.assertEquals(writer.getByteCount(), Utf8CountingWriter.utf8Length(writer.toString()));
+    }
+
+    /**
+     * <p>
+     * Verify that the size of any other StringWriter is its number of
+     * characters.
+     * </p>
+     */
+    @Test
+    public void verifySizeOfStringWriter()
+    {
+        StringWriter writer = new StringWriter();
+        writer.write(MIXED);
+        Assert.assertEquals(MIXED.length(), Utf8CountingWriter.sizeOf(writer));
+    }
+
+    /**
+     * <p>
+     * Verify that the count is kept up to date while an XML document is
+     * written to the writer.
+     * </p>
+     */
+    @Test
+    public void verifyXmlDocumentByteCount() throws Exception
+    {
+        Utf8CountingWriter writer = new Utf8CountingWriter();
+        TransformerHandler transformer = XMLDoc.createXmlDocument(writer, "UTF-8", "no", "no");
+        transformer.startDocument();
+        AttributesImpl atts = new AttributesImpl();
+        atts.addAttribute("", "", "Name", "CDATA", MIXED);
+        transformer.startElement("", "", "Property", atts);
+        transformer.characters(MIXED.toCharArray(), 0, MIXED.length());
+        transformer.endElement("", "", "Property");
+        transformer.endDocument();
+
+        Assert.assertEquals(writer.toString().getBytes("UTF-8").length, writer.getByteCount());
+    }
+}